@@ -0,0 +1,18 @@
+package com.example.attendancesystem;
+
+import android.app.Application;
+
+import com.example.attendancesystem.services.ProfileCache;
+
+/**
+ * Point d'entrée du processus : initialise les caches partagés avant toute activité
+ * (y compris lors d'une restauration directe sur un écran après arrêt du processus).
+ */
+public class AttendanceApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ProfileCache.init(this);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.attendancesystem.activities;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
@@ -11,6 +12,7 @@ import androidx.cardview.widget.CardView;
 
 import com.example.attendancesystem.models.Admin;
 import com.example.attendancesystem.services.FirebaseManager;
+import com.example.attendancesystem.services.SystemStatsRepository;
 import com.example.attendancesystem.utils.Utils;
 import com.example.attendancesystem.R;
 
@@ -24,8 +26,12 @@ public class AdminDashboardActivity extends AppCompatActivity {
 
     // Firebase
     private FirebaseManager firebaseManager;
+    private SystemStatsRepository systemStatsRepository;
     private Admin currentAdmin;
 
+    // Rafraîchissement périodique des statistiques (tant que l'écran est visible)
+    private final SystemStatsRepository.SystemStatsListener systemStatsListener = this::displaySystemStats;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -39,6 +45,7 @@ public class AdminDashboardActivity extends AppCompatActivity {
 
         // Initialiser Firebase
         firebaseManager = FirebaseManager.getInstance();
+        systemStatsRepository = SystemStatsRepository.getInstance();
 
         // Initialiser les views
         initViews();
@@ -93,23 +100,31 @@ public class AdminDashboardActivity extends AppCompatActivity {
     }
 
     private void loadSystemStats() {
-        // TODO: Charger les vraies statistiques depuis Firebase
-        // Pour l'instant, affichage de données de test
-        tvTotalUsers.setText("245 utilisateurs");
         tvActiveTerminals.setText("1 terminal actif"); // Puisqu'on n'a qu'un seul terminal
-        tvTodayAttendance.setText("1,847 pointages aujourd'hui");
 
-        // Charger les vraies statistiques système
-        loadRealSystemStatistics();
+        // Servi depuis le cache si les chiffres ont moins d'une minute
+        systemStatsRepository.getSystemStats(new FirebaseManager.DataCallback<FirebaseManager.SystemStats>() {
+            @Override
+            public void onSuccess(FirebaseManager.SystemStats stats) {
+                displaySystemStats(stats);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "Error loading system statistics: " + error);
+                Utils.showToast(AdminDashboardActivity.this, "Erreur de chargement des statistiques");
+            }
+        });
     }
 
-    private void loadRealSystemStatistics() {
-        if (currentAdmin != null) {
-            // TODO: Implémenter le calcul des vraies statistiques système
-            // Compter les utilisateurs dans toutes les collections
-            // Compter les pointages du jour
-            // Etc.
-        }
+    private void displaySystemStats(FirebaseManager.SystemStats stats) {
+        long totalUsers = stats.getTotalUsers();
+        tvTotalUsers.setText(totalUsers + (totalUsers > 1 ? " utilisateurs" : " utilisateur"));
+
+        long checkIns = stats.getTodayPresentCount();
+        long absences = stats.getTodayAbsentCount();
+        tvTodayAttendance.setText(checkIns + (checkIns > 1 ? " pointages" : " pointage") + " aujourd'hui · "
+                + absences + (absences > 1 ? " absences" : " absence"));
     }
 
     private void setupListeners() {
@@ -147,6 +162,7 @@ public class AdminDashboardActivity extends AppCompatActivity {
 
         if (id == R.id.action_refresh) {
             loadUserData();
+            systemStatsRepository.refresh(null);
             Utils.showToast(this, "Données actualisées");
             return true;
         } else if (id == R.id.action_logout) {
@@ -167,6 +183,18 @@ public class AdminDashboardActivity extends AppCompatActivity {
         finish();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        systemStatsRepository.addListener(systemStatsListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        systemStatsRepository.removeListener(systemStatsListener);
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -2,6 +2,8 @@ package com.example.attendancesystem.activities;
 
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
@@ -9,6 +11,8 @@ import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -19,22 +23,42 @@ import com.example.attendancesystem.models.Justification;
 import com.example.attendancesystem.services.FirebaseManager;
 import com.example.attendancesystem.utils.AdminJustificationAdapter;
 import com.example.attendancesystem.utils.Utils; // Still useful for general utilities
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class AdminJustificationActivity extends AppCompatActivity implements AdminJustificationAdapter.OnJustificationActionListener {
 
     private static final String TAG = "AdminJustificationAct";
 
+    private static final String FILTER_ALL = "Toutes";
+    private static final int PAGE_SIZE = 25;
+    private static final int PREFETCH_DISTANCE = 5; // Charger la page suivante 5 lignes avant la fin
+    private static final String BULK_APPROVAL_REASON = "Approbation groupée";
+
     private FirebaseManager firebaseManager;
     private RecyclerView rvJustifications;
+    private LinearLayoutManager layoutManager;
     private AdminJustificationAdapter adapter;
-    private List<Justification> allJustifications;
     private List<Justification> displayedJustifications;
     private ProgressBar progressBar;
     private Spinner statusFilterSpinner;
 
+    // File paginée côté serveur (statut null = tous les statuts)
+    private String selectedStatus;
+    private DocumentSnapshot lastPageCursor;
+    private boolean hasMorePages = true;
+    private boolean isLoadingPage = false;
+    private boolean firstPageLoaded = false;
+    private int pagingGeneration = 0;
+
+    // Écoute des nouvelles soumissions, active seulement quand l'écran est visible
+    private ListenerRegistration queueRegistration;
+
     private Admin currentAdmin; // NEW: Field to hold the current logged-in admin's data
 
     @Override
@@ -48,7 +72,6 @@ public class AdminJustificationActivity extends AppCompatActivity implements Adm
         }
 
         firebaseManager = FirebaseManager.getInstance();
-        allJustifications = new ArrayList<>();
         displayedJustifications = new ArrayList<>();
 
         initViews();
@@ -64,9 +87,21 @@ public class AdminJustificationActivity extends AppCompatActivity implements Adm
     }
 
     private void setupRecyclerView() {
-        adapter = new AdminJustificationAdapter(displayedJustifications, this); // 'this' for listener
-        rvJustifications.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new AdminJustificationAdapter(this); // 'this' for listener
+        layoutManager = new LinearLayoutManager(this);
+        rvJustifications.setLayoutManager(layoutManager);
         rvJustifications.setAdapter(adapter);
+
+        rvJustifications.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) return;
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= layoutManager.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
     }
 
     private void setupFilterSpinner() {
@@ -81,7 +116,14 @@ public class AdminJustificationActivity extends AppCompatActivity implements Adm
         statusFilterSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                filterJustifications();
+                String label = parent.getItemAtPosition(position).toString();
+                String status = FILTER_ALL.equals(label) ? null : label;
+                boolean changed = status == null ? selectedStatus != null : !status.equals(selectedStatus);
+                selectedStatus = status;
+                // La première sélection (à l'affichage) est servie par le chargement initial
+                if (changed && currentAdmin != null) {
+                    loadJustifications();
+                }
             }
 
             @Override
@@ -119,6 +161,9 @@ public class AdminJustificationActivity extends AppCompatActivity implements Adm
     }
 
 
+    /**
+     * Recharger la file depuis la première page pour le statut sélectionné
+     */
     private void loadJustifications() {
         // Only proceed if admin data is loaded
         if (currentAdmin == null) {
@@ -127,40 +172,177 @@ public class AdminJustificationActivity extends AppCompatActivity implements Adm
             return;
         }
 
+        // Toute réponse d'une pagination précédente sera ignorée
+        pagingGeneration++;
+        stopListening();
+        lastPageCursor = null;
+        hasMorePages = true;
+        isLoadingPage = false;
+        firstPageLoaded = false;
+        displayedJustifications.clear();
+        adapter.submitList(null);
+
         showLoading(true);
-        firebaseManager.getAllJustifications(new FirebaseManager.DataCallback<List<Justification>>() {
-            @Override
-            public void onSuccess(List<Justification> justifications) {
-                allJustifications.clear();
-                allJustifications.addAll(justifications);
-                filterJustifications();
-                showLoading(false);
-                Log.d(TAG, "Loaded " + allJustifications.size() + " total justifications.");
-            }
+        loadNextPage();
+    }
 
-            @Override
-            public void onFailure(String error) {
-                Toast.makeText(AdminJustificationActivity.this, "Error loading justifications: " + error, Toast.LENGTH_SHORT).show();
-                Log.e(TAG, "Error loading justifications: " + error);
-                showLoading(false);
+    /**
+     * Charger la page suivante (curseur Firestore startAfter)
+     */
+    private void loadNextPage() {
+        if (currentAdmin == null || isLoadingPage || !hasMorePages) return;
+        isLoadingPage = true;
+
+        boolean firstPage = lastPageCursor == null;
+        int generation = pagingGeneration;
+
+        firebaseManager.getJustificationsPage(selectedStatus, PAGE_SIZE, lastPageCursor,
+                new FirebaseManager.DataCallback<FirebaseManager.JustificationPage>() {
+                    @Override
+                    public void onSuccess(FirebaseManager.JustificationPage page) {
+                        if (generation != pagingGeneration) return;
+                        isLoadingPage = false;
+                        lastPageCursor = page.getLastDocument();
+                        hasMorePages = page.hasMore();
+
+                        for (Justification justification : page.getJustifications()) {
+                            // Une soumission reçue en direct peut aussi figurer dans la page
+                            if (indexOf(justification.getJustificationId()) < 0) {
+                                displayedJustifications.add(justification);
+                            }
+                        }
+                        publish();
+                        Log.d(TAG, "Loaded " + displayedJustifications.size() + " justifications so far.");
+
+                        if (firstPage) {
+                            firstPageLoaded = true;
+                            showLoading(false);
+                            startListening();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        if (generation != pagingGeneration) return;
+                        isLoadingPage = false;
+                        Log.e(TAG, "Error loading justifications: " + error);
+                        if (firstPage) {
+                            showLoading(false);
+                            Toast.makeText(AdminJustificationActivity.this, "Error loading justifications: " + error, Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
+    }
+
+    // =================== MISES À JOUR EN DIRECT ===================
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (firstPageLoaded) {
+            startListening();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        stopListening();
+    }
+
+    /**
+     * Écouter uniquement les soumissions plus récentes que la tête de file affichée
+     */
+    private void startListening() {
+        if (queueRegistration != null) return;
+
+        Timestamp since = displayedJustifications.isEmpty() ?
+                null : displayedJustifications.get(0).getSubmittedAt();
+        if (since == null) {
+            since = Timestamp.now();
+        }
+        queueRegistration = firebaseManager.listenToNewJustifications(selectedStatus, since,
+                new FirebaseManager.JustificationQueueListener() {
+                    @Override
+                    public void onJustificationAdded(Justification justification) {
+                        if (indexOf(justification.getJustificationId()) >= 0) return;
+                        boolean atTop = layoutManager.findFirstVisibleItemPosition() <= 0;
+                        displayedJustifications.add(0, justification);
+                        adapter.submitList(new ArrayList<>(displayedJustifications), () -> {
+                            if (atTop) {
+                                rvJustifications.scrollToPosition(0);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onJustificationModified(Justification justification) {
+                        int index = indexOf(justification.getJustificationId());
+                        if (index >= 0) {
+                            displayedJustifications.set(index, justification);
+                            publish();
+                        }
+                    }
+
+                    @Override
+                    public void onJustificationRemoved(Justification justification) {
+                        removeJustification(justification.getJustificationId());
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        Log.w(TAG, "Justification queue listener error: " + error);
+                    }
+                });
+    }
+
+    private void stopListening() {
+        if (queueRegistration != null) {
+            queueRegistration.remove();
+            queueRegistration = null;
+        }
+    }
+
+    private int indexOf(String justificationId) {
+        if (justificationId == null) return -1;
+        for (int i = 0; i < displayedJustifications.size(); i++) {
+            if (justificationId.equals(displayedJustifications.get(i).getJustificationId())) {
+                return i;
             }
-        });
+        }
+        return -1;
     }
 
-    private void filterJustifications() {
-        String selectedStatus = statusFilterSpinner.getSelectedItem().toString();
-        displayedJustifications.clear();
+    private void removeJustification(String justificationId) {
+        int index = indexOf(justificationId);
+        if (index >= 0) {
+            displayedJustifications.remove(index);
+            publish();
+        }
+    }
 
-        if (selectedStatus.equals("Toutes")) {
-            displayedJustifications.addAll(allJustifications);
+    /**
+     * Après une revue : retirer la justification si elle ne correspond plus au filtre,
+     * sinon rafraîchir sa ligne (pas de rechargement complet de la file)
+     */
+    private void onJustificationReviewed(Justification justification) {
+        if (selectedStatus != null && !selectedStatus.equals(justification.getStatus())) {
+            removeJustification(justification.getJustificationId());
         } else {
-            for (Justification j : allJustifications) {
-                if (j.getStatus().equalsIgnoreCase(selectedStatus)) {
-                    displayedJustifications.add(j);
-                }
+            // Modifiée sur place : même instance dans l'ancienne et la nouvelle liste,
+            // DiffUtil ne peut pas voir le changement
+            int index = adapter.getCurrentList().indexOf(justification);
+            if (index >= 0) {
+                adapter.notifyItemChanged(index);
             }
         }
-        adapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Publier la liste courante ; le diff est calculé en arrière-plan par l'adapter
+     */
+    private void publish() {
+        adapter.submitList(new ArrayList<>(displayedJustifications));
     }
 
     private void showLoading(boolean show) {
@@ -178,19 +360,26 @@ public class AdminJustificationActivity extends AppCompatActivity implements Adm
             return;
         }
 
-        justification.approve(currentAdmin.getEmail(), comments, reason); // Use currentAdmin.getEmail()
-        firebaseManager.updateJustification(justification, new FirebaseManager.DataCallback<Void>() {
-            @Override
-            public void onSuccess(Void aVoid) {
-                Toast.makeText(AdminJustificationActivity.this, "Justification approuvée!", Toast.LENGTH_SHORT).show();
-                loadJustifications(); // Reload to update UI
-            }
-
-            @Override
-            public void onFailure(String error) {
-                Toast.makeText(AdminJustificationActivity.this, "Erreur approbation: " + error, Toast.LENGTH_SHORT).show();
-            }
-        });
+        // L'approbation justifie aussi les absences du jour dans la même écriture
+        firebaseManager.reviewJustifications(Collections.singletonList(justification), "approved",
+                currentAdmin.getEmail(), comments, reason,
+                new FirebaseManager.DataCallback<List<FirebaseManager.JustificationReviewResult>>() {
+                    @Override
+                    public void onSuccess(List<FirebaseManager.JustificationReviewResult> results) {
+                        FirebaseManager.JustificationReviewResult result = results.get(0);
+                        if (result.isSuccess()) {
+                            Toast.makeText(AdminJustificationActivity.this, "Justification approuvée!", Toast.LENGTH_SHORT).show();
+                            onJustificationReviewed(justification);
+                        } else {
+                            onFailure(result.getError());
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        Toast.makeText(AdminJustificationActivity.this, "Erreur approbation: " + error, Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
 
     @Override
@@ -201,19 +390,107 @@ public class AdminJustificationActivity extends AppCompatActivity implements Adm
             return;
         }
 
-        justification.reject(currentAdmin.getEmail(), comments, reason); // Use currentAdmin.getEmail()
-        firebaseManager.updateJustification(justification, new FirebaseManager.DataCallback<Void>() {
-            @Override
-            public void onSuccess(Void aVoid) {
-                Toast.makeText(AdminJustificationActivity.this, "Justification rejetée!", Toast.LENGTH_SHORT).show();
-                loadJustifications(); // Reload to update UI
-            }
+        firebaseManager.reviewJustifications(Collections.singletonList(justification), "rejected",
+                currentAdmin.getEmail(), comments, reason,
+                new FirebaseManager.DataCallback<List<FirebaseManager.JustificationReviewResult>>() {
+                    @Override
+                    public void onSuccess(List<FirebaseManager.JustificationReviewResult> results) {
+                        FirebaseManager.JustificationReviewResult result = results.get(0);
+                        if (result.isSuccess()) {
+                            Toast.makeText(AdminJustificationActivity.this, "Justification rejetée!", Toast.LENGTH_SHORT).show();
+                            onJustificationReviewed(justification);
+                        } else {
+                            onFailure(result.getError());
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        Toast.makeText(AdminJustificationActivity.this, "Erreur rejet: " + error, Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
 
-            @Override
-            public void onFailure(String error) {
-                Toast.makeText(AdminJustificationActivity.this, "Erreur rejet: " + error, Toast.LENGTH_SHORT).show();
+    // =================== APPROBATION GROUPÉE ===================
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.admin_justification_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_approve_all_pending) {
+            confirmApproveAllPending();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Approuver en une fois toutes les justifications en attente affichées
+     */
+    private void confirmApproveAllPending() {
+        if (currentAdmin == null || currentAdmin.getEmail() == null) {
+            Toast.makeText(this, "Admin data not available. Cannot approve.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        List<Justification> pending = new ArrayList<>();
+        for (Justification justification : displayedJustifications) {
+            if (justification.checkStatusIsSubmitted() || justification.checkStatusIsUnderReview()) {
+                pending.add(justification);
             }
-        });
+        }
+        if (pending.isEmpty()) {
+            Utils.showToast(this, "Aucune justification en attente");
+            return;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Approbation groupée")
+                .setMessage("Approuver les " + pending.size() + " justifications en attente affichées ?")
+                .setPositiveButton("Approuver", (dialog, which) -> approveAll(pending))
+                .setNegativeButton("Annuler", null)
+                .show();
+    }
+
+    private void approveAll(List<Justification> pending) {
+        showLoading(true);
+        firebaseManager.reviewJustifications(pending, "approved", currentAdmin.getEmail(),
+                null, BULK_APPROVAL_REASON,
+                new FirebaseManager.DataCallback<List<FirebaseManager.JustificationReviewResult>>() {
+                    @Override
+                    public void onSuccess(List<FirebaseManager.JustificationReviewResult> results) {
+                        showLoading(false);
+                        int approved = 0;
+                        int absences = 0;
+                        for (FirebaseManager.JustificationReviewResult result : results) {
+                            if (result.isSuccess()) {
+                                approved++;
+                                absences += result.getJustifiedAbsences();
+                                onJustificationReviewed(result.getJustification());
+                            } else {
+                                Log.w(TAG, "Bulk approval failed for " + result.getJustification().getJustificationId()
+                                        + ": " + result.getError());
+                            }
+                        }
+
+                        int failed = results.size() - approved;
+                        String message = approved + " justification(s) approuvée(s), " + absences + " absence(s) justifiée(s)";
+                        if (failed > 0) {
+                            message += ", " + failed + " échec(s)";
+                        }
+                        Toast.makeText(AdminJustificationActivity.this, message, Toast.LENGTH_LONG).show();
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        showLoading(false);
+                        Toast.makeText(AdminJustificationActivity.this, "Erreur approbation: " + error, Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
 
     @Override
@@ -10,30 +10,37 @@ import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Attendance;
 import com.example.attendancesystem.models.Student;
+import com.example.attendancesystem.services.AttendanceFilterEngine;
+import com.example.attendancesystem.services.AttendanceRepository;
 import com.example.attendancesystem.services.FirebaseManager;
 import com.example.attendancesystem.utils.AttendanceHistoryAdapter;
 import com.example.attendancesystem.utils.Utils;
+import com.google.firebase.firestore.DocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Date;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.Collections;
 
 public class AttendanceHistoryActivity extends AppCompatActivity {
 
     private static final String TAG = "AttendanceHistory";
 
+    // Pagination
+    private static final int PAGE_SIZE = 20;
+    private static final int PREFETCH_DISTANCE = 5; // Charger la page suivante 5 lignes avant la fin
+
     // Views
     private Spinner spinnerCourseFilter, spinnerStatusFilter;
     private TextView tvTotalSessions, tvPresentCount, tvAbsentCount;
@@ -44,11 +51,26 @@ public class AttendanceHistoryActivity extends AppCompatActivity {
 
     // Data
     private FirebaseManager firebaseManager;
+    private AttendanceRepository attendanceRepository;
     private Student currentStudent;
-    private List<Attendance> allAttendanceList;
     private List<Attendance> filteredAttendanceList;
+    // Historique chargé, filtré hors du thread principal
+    private AttendanceFilterEngine filterEngine;
     private AttendanceHistoryAdapter adapter;
 
+    // État de la pagination
+    private DocumentSnapshot lastPageCursor;
+    private boolean hasMorePages = true;
+    private boolean isLoadingPage = false;
+    // Horodatage de la présence la plus ancienne déjà chargée
+    private long oldestLoadedTime = Long.MAX_VALUE;
+    private int pagingGeneration = 0;
+
+    // Cours rencontrés dans les pages chargées (filtre par cours)
+    private final List<String> knownCourses = new ArrayList<>(Arrays.asList("Tous les cours"));
+    private ArrayAdapter<String> courseFilterAdapter;
+    private final Set<String> knownTeachers = new LinkedHashSet<>(Arrays.asList("Tous les enseignants"));
+
     // Filtres
     private String selectedCourseFilter = "Tous les cours";
     private String selectedStatusFilter = "Tous les statuts";
@@ -58,6 +80,13 @@ public class AttendanceHistoryActivity extends AppCompatActivity {
     private Calendar selectedStartDate;
     private Calendar selectedEndDate;
 
+    // Synchronisation en arrière-plan du repository (copie locale créée ou modifiée)
+    private final AttendanceRepository.AttendanceChangeListener attendanceChangeListener = studentEmail -> {
+        if (currentStudent != null && studentEmail.equals(currentStudent.getEmail())) {
+            runOnUiThread(this::loadAttendanceHistory);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -69,8 +98,9 @@ public class AttendanceHistoryActivity extends AppCompatActivity {
         }
 
         firebaseManager = FirebaseManager.getInstance();
-        allAttendanceList = new ArrayList<>();
+        attendanceRepository = AttendanceRepository.getInstance(this);
         filteredAttendanceList = new ArrayList<>();
+        filterEngine = new AttendanceFilterEngine(ContextCompat.getMainExecutor(this));
 
         initViews();
         setupFilters();
@@ -89,9 +119,22 @@ public class AttendanceHistoryActivity extends AppCompatActivity {
 
 
         // Setup RecyclerView
-        adapter = new AttendanceHistoryAdapter(filteredAttendanceList);
-        rvAttendanceHistory.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new AttendanceHistoryAdapter();
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        rvAttendanceHistory.setLayoutManager(layoutManager);
         rvAttendanceHistory.setAdapter(adapter);
+
+        // Charger la page suivante à l'approche de la fin de la liste
+        rvAttendanceHistory.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) return;
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= layoutManager.getItemCount() - PREFETCH_DISTANCE && !isPeriodLoaded()) {
+                    loadNextPage();
+                }
+            }
+        });
     }
 
     private void setupFilters() {
@@ -175,6 +218,10 @@ public class AttendanceHistoryActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * (Re)charger l'historique : copie locale complète si elle existe, sinon pages serveur
+     * en attendant la fin de la première synchronisation (notifiée par le repository)
+     */
     private void loadAttendanceHistory() {
         if (currentStudent == null) {
             Log.e(TAG, "❌ Cannot load attendance - currentStudent is null");
@@ -182,38 +229,124 @@ public class AttendanceHistoryActivity extends AppCompatActivity {
         }
 
         Log.d(TAG, "🔄 Loading attendance history for: " + currentStudent.getEmail());
+
+        // Toute réponse d'une pagination précédente sera ignorée
+        pagingGeneration++;
+        lastPageCursor = null;
+        hasMorePages = true;
+        isLoadingPage = false;
+        oldestLoadedTime = Long.MAX_VALUE;
+        filterEngine.clear();
+        filteredAttendanceList.clear();
+        // La liste affichée est conservée jusqu'à la première page : le diff ne re-lie que les lignes modifiées
+
         showLoading(true); // Afficher le chargement
+        // Pas de page serveur pendant la lecture de la copie locale
+        isLoadingPage = true;
+        int generation = pagingGeneration;
 
-        firebaseManager.getStudentAttendanceHistory(currentStudent.getEmail(),
+        attendanceRepository.getStudentAttendanceHistory(currentStudent.getEmail(),
                 new FirebaseManager.DataCallback<List<Attendance>>() {
                     @Override
-                    public void onSuccess(List<Attendance> attendanceList) {
-                        Log.d(TAG, "🎉 Attendance history received: " + attendanceList.size() + " records");
-
+                    public void onSuccess(List<Attendance> records) {
+                        if (generation != pagingGeneration) return;
+                        isLoadingPage = false;
+                        if (records == null) {
+                            // Première synchronisation en cours : pages serveur en attendant
+                            loadNextPage();
+                            return;
+                        }
+
+                        Log.d(TAG, "🎉 Local attendance history: " + records.size() + " records");
+                        // Historique complet : plus de page à charger
+                        hasMorePages = false;
                         showLoading(false);
+                        onPageLoaded(records);
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        if (generation != pagingGeneration) return;
+                        isLoadingPage = false;
+                        loadNextPage();
+                    }
+                });
+    }
 
-                        allAttendanceList.clear();
-                        allAttendanceList.addAll(attendanceList);
+    /**
+     * Charger la page suivante (curseur Firestore startAfter)
+     */
+    private void loadNextPage() {
+        if (currentStudent == null || isLoadingPage || !hasMorePages) return;
+        isLoadingPage = true;
 
-                        setupCourseFilter();
-                        applyFilters();
-                        updateStatistics();
+        boolean firstPage = lastPageCursor == null;
+        int generation = pagingGeneration;
 
-                        // Afficher un message de succès temporaire
-                        Utils.showToast(AttendanceHistoryActivity.this,
-                                attendanceList.size() + " présences chargées ✅");
+        firebaseManager.getStudentAttendanceHistoryPage(currentStudent.getEmail(), PAGE_SIZE, lastPageCursor,
+                new FirebaseManager.DataCallback<FirebaseManager.AttendancePage>() {
+                    @Override
+                    public void onSuccess(FirebaseManager.AttendancePage page) {
+                        if (generation != pagingGeneration) return;
+                        isLoadingPage = false;
+                        lastPageCursor = page.getLastDocument();
+                        hasMorePages = page.hasMore();
+
+                        Log.d(TAG, "🎉 Attendance page received: " + page.getAttendances().size() + " records");
+
+                        if (firstPage) {
+                            showLoading(false);
+                        }
+                        onPageLoaded(page.getAttendances());
                     }
 
                     @Override
                     public void onFailure(String error) {
+                        if (generation != pagingGeneration) return;
+                        isLoadingPage = false;
                         Log.e(TAG, "❌ Error loading attendance history: " + error);
-                        showLoading(false);
-                        Utils.showToast(AttendanceHistoryActivity.this, "Erreur: " + error);
-                        showEmptyState(true);
+                        if (firstPage) {
+                            showLoading(false);
+                            Utils.showToast(AttendanceHistoryActivity.this, "Erreur: " + error);
+                            adapter.updateAttendanceList(filteredAttendanceList);
+                            showEmptyState(true);
+                        }
                     }
                 });
     }
 
+    private void onPageLoaded(List<Attendance> page) {
+        setupCourseFilter(page);
+
+        // Les pages arrivent déjà triées par le serveur (plus récent en premier)
+        for (int i = page.size() - 1; i >= 0; i--) {
+            if (page.get(i).getTimestamp() != null) {
+                oldestLoadedTime = Math.min(oldestLoadedTime, page.get(i).getTimestamp().toDate().getTime());
+                break;
+            }
+        }
+        filterEngine.addAll(page);
+        applyFilters();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        attendanceRepository.addChangeListener(attendanceChangeListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        attendanceRepository.removeChangeListener(attendanceChangeListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        filterEngine.shutdown();
+    }
+
     // Ajouter cette méthode pour afficher/masquer le chargement
     private void showLoading(boolean show) {
         if (progressBar != null) {
@@ -225,36 +358,37 @@ public class AttendanceHistoryActivity extends AppCompatActivity {
         }
     }
 
-    private void setupCourseFilter() {
-        // Extraire les cours uniques
-        List<String> uniqueCourses = new ArrayList<>();
-        Set<String> uniqueTeachers = new HashSet<>();
-
-        uniqueCourses.add("Tous les cours");
-        uniqueTeachers.add("Tous les enseignants");
-
-
-        for (Attendance attendance : allAttendanceList) {
+    private void setupCourseFilter(List<Attendance> page) {
+        // Seule la nouvelle page est parcourue : cours et enseignants déjà vus sont conservés
+        boolean coursesChanged = false;
+        boolean teachersChanged = false;
+        for (Attendance attendance : page) {
             String courseName = attendance.getCourseName();
-            if (courseName != null && !uniqueCourses.contains(courseName)) {
-                uniqueCourses.add(courseName);
+            if (courseName != null && !knownCourses.contains(courseName)) {
+                knownCourses.add(courseName);
+                coursesChanged = true;
             }
             // Extraire les enseignants (si disponible via une jointure ou données dénormalisées)
             String teacherName = getTeacherNameFromCourse(attendance.getCourseId());
-            if (teacherName != null && !teacherName.isEmpty()) {
-                uniqueTeachers.add(teacherName);
+            if (teacherName != null && !teacherName.isEmpty() && knownTeachers.add(teacherName)) {
+                teachersChanged = true;
             }
         }
 
-        ArrayAdapter<String> courseAdapter = new ArrayAdapter<>(this,
-                android.R.layout.simple_spinner_item, uniqueCourses);
-        courseAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        spinnerCourseFilter.setAdapter(courseAdapter);
+        // Adapter conservé entre les pages : la sélection courante n'est pas réinitialisée
+        if (courseFilterAdapter == null) {
+            courseFilterAdapter = new ArrayAdapter<>(this,
+                    android.R.layout.simple_spinner_item, knownCourses);
+            courseFilterAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+            spinnerCourseFilter.setAdapter(courseFilterAdapter);
+        } else if (coursesChanged) {
+            courseFilterAdapter.notifyDataSetChanged();
+        }
         // Setup enseignants (si vous avez un spinner pour ça)
-        if (findViewById(R.id.spinner_teacher_filter) != null) {
+        if (teachersChanged && findViewById(R.id.spinner_teacher_filter) != null) {
             Spinner spinnerTeacherFilter = findViewById(R.id.spinner_teacher_filter);
             ArrayAdapter<String> teacherAdapter = new ArrayAdapter<>(this,
-                    android.R.layout.simple_spinner_item, new ArrayList<>(uniqueTeachers));
+                    android.R.layout.simple_spinner_item, new ArrayList<>(knownTeachers));
             teacherAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
             spinnerTeacherFilter.setAdapter(teacherAdapter);
         }
@@ -272,113 +406,69 @@ public class AttendanceHistoryActivity extends AppCompatActivity {
                 return "Enseignant Inconnu";
         }
     }
+    /**
+     * Filtrer et compter en arrière-plan ; seul le dernier filtre demandé est affiché
+     */
     private void applyFilters() {
-        filteredAttendanceList.clear();
-
-        for (Attendance attendance : allAttendanceList) {
-            boolean matchesCourse = selectedCourseFilter.equals("Tous les cours") ||
-                    selectedCourseFilter.equals(attendance.getCourseName());
+        filterEngine.filter(currentCriteria(), this::onFiltered);
+    }
 
-            boolean matchesStatus = selectedStatusFilter.equals("Tous les statuts") ||
-                    getStatusDisplayName(attendance.getStatus()).equals(selectedStatusFilter);
+    private void onFiltered(AttendanceFilterEngine.Result result) {
+        filteredAttendanceList = result.getAttendances();
+        adapter.updateAttendanceList(filteredAttendanceList);
 
-            // NOUVEAU: Filtre par période
-            boolean matchesPeriod = matchesPeriodFilter(attendance);
+        boolean periodLoaded = isPeriodLoaded();
+        showEmptyState(filteredAttendanceList.isEmpty() && (!hasMorePages || periodLoaded));
+        tvTotalSessions.setText(String.valueOf(result.getTotalCount()));
+        tvPresentCount.setText(String.valueOf(result.getPresentCount()));
+        tvAbsentCount.setText(String.valueOf(result.getAbsentCount()));
 
-            if (matchesCourse && matchesStatus && matchesPeriod) {
-                filteredAttendanceList.add(attendance);
-            }
+        // Filtre sélectif : continuer tant que l'écran n'est pas rempli et que la période n'est pas couverte
+        if (filteredAttendanceList.size() < PAGE_SIZE && hasMorePages && !periodLoaded) {
+            loadNextPage();
         }
-        // Trier par date (plus récent en premier)
-        Collections.sort(filteredAttendanceList, (a1, a2) -> {
-            if (a1.getTimestamp() == null || a2.getTimestamp() == null) return 0;
-            return a2.getTimestamp().compareTo(a1.getTimestamp());
-        });
-
-        adapter.notifyDataSetChanged();
-        showEmptyState(filteredAttendanceList.isEmpty());
-        updateStatistics();
     }
 
-    // NOUVELLE méthode pour filtrer par période
-    private boolean matchesPeriodFilter(Attendance attendance) {
-        if (selectedPeriodFilter.equals("Toutes les périodes")) {
-            return true;
-        }
-
-        if (attendance.getTimestamp() == null) {
-            return false;
-        }
-
-        Date attendanceDate = attendance.getTimestamp().toDate();
-        Calendar attendanceCal = Calendar.getInstance();
-        attendanceCal.setTime(attendanceDate);
+    /**
+     * Pages du plus récent au plus ancien : une fois le début de la période dépassé,
+     * les pages suivantes ne peuvent plus rien ajouter au filtre courant
+     */
+    private boolean isPeriodLoaded() {
+        return oldestLoadedTime < currentCriteria().getPeriodStart();
+    }
 
-        Calendar now = Calendar.getInstance();
+    private AttendanceFilterEngine.Criteria currentCriteria() {
+        String course = selectedCourseFilter.equals("Tous les cours") ? null : selectedCourseFilter;
+        String status = getStatusValue(selectedStatusFilter);
 
         switch (selectedPeriodFilter) {
             case "Aujourd'hui":
-                return isSameDay(attendanceCal, now);
-
+                return new AttendanceFilterEngine.Criteria(course, status, AttendanceFilterEngine.Period.TODAY);
             case "Cette semaine":
-                return isSameWeek(attendanceCal, now);
-
+                return new AttendanceFilterEngine.Criteria(course, status, AttendanceFilterEngine.Period.THIS_WEEK);
             case "Ce mois":
-                return isSameMonth(attendanceCal, now);
-
+                return new AttendanceFilterEngine.Criteria(course, status, AttendanceFilterEngine.Period.THIS_MONTH);
             case "Personnalisé":
                 if (selectedStartDate != null && selectedEndDate != null) {
-                    return ((Date) attendanceDate).after(selectedStartDate.getTime()) &&
-                            attendanceDate.before(selectedEndDate.getTime());
+                    return new AttendanceFilterEngine.Criteria(course, status, AttendanceFilterEngine.Period.CUSTOM,
+                            selectedStartDate.getTimeInMillis(), selectedEndDate.getTimeInMillis());
                 }
-                return true;
-
+                return new AttendanceFilterEngine.Criteria(course, status, AttendanceFilterEngine.Period.ALL);
             default:
-                return true;
+                return new AttendanceFilterEngine.Criteria(course, status, AttendanceFilterEngine.Period.ALL);
         }
     }
 
-    // Méthodes utilitaires pour les dates
-    private boolean isSameDay(Calendar cal1, Calendar cal2) {
-        return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-                cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR);
-    }
-
-    private boolean isSameWeek(Calendar cal1, Calendar cal2) {
-        return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-                cal1.get(Calendar.WEEK_OF_YEAR) == cal2.get(Calendar.WEEK_OF_YEAR);
-    }
-
-    private boolean isSameMonth(Calendar cal1, Calendar cal2) {
-        return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-                cal1.get(Calendar.MONTH) == cal2.get(Calendar.MONTH);
-    }
-
-    private String getStatusDisplayName(String status) {
-        switch (status) {
-            case "present": return "Présent";
-            case "absent": return "Absent";
-            case "justified": return "Justifié";
-            default: return status;
-        }
-    }
-
-    private void updateStatistics() {
-        int totalSessions = filteredAttendanceList.size();
-        int presentCount = 0;
-        int absentCount = 0;
-
-        for (Attendance attendance : filteredAttendanceList) {
-            if (attendance.isPresent()) {
-                presentCount++;
-            } else if (attendance.isAbsent()) {
-                absentCount++;
-            }
+    /**
+     * Libellé du filtre de statut -> valeur stockée (null = tous les statuts)
+     */
+    private String getStatusValue(String displayName) {
+        switch (displayName) {
+            case "Présent": return "present";
+            case "Absent": return "absent";
+            case "Justifié": return "justified";
+            default: return null;
         }
-
-        tvTotalSessions.setText(String.valueOf(totalSessions));
-        tvPresentCount.setText(String.valueOf(presentCount));
-        tvAbsentCount.setText(String.valueOf(absentCount));
     }
 
     private void showEmptyState(boolean show) {
@@ -12,6 +12,7 @@ import androidx.cardview.widget.CardView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Student;
+import com.example.attendancesystem.services.AttendanceRepository;
 import com.example.attendancesystem.services.FirebaseManager;
 import com.example.attendancesystem.utils.Utils;
 
@@ -35,8 +36,16 @@ public class AttendanceStatisticsActivity extends AppCompatActivity {
 
     // Data
     private FirebaseManager firebaseManager;
+    private AttendanceRepository attendanceRepository;
     private Student currentStudent;
 
+    // Rafraîchissement en arrière-plan du repository
+    private final AttendanceRepository.AttendanceChangeListener attendanceChangeListener = studentEmail -> {
+        if (currentStudent != null && studentEmail.equals(currentStudent.getEmail())) {
+            runOnUiThread(this::loadAttendanceStatistics);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -50,6 +59,7 @@ public class AttendanceStatisticsActivity extends AppCompatActivity {
 
         // Initialiser Firebase
         firebaseManager = FirebaseManager.getInstance();
+        attendanceRepository = AttendanceRepository.getInstance(this);
 
         // Initialiser les views
         initViews();
@@ -142,11 +152,8 @@ public class AttendanceStatisticsActivity extends AppCompatActivity {
         Log.d(TAG, "Loading attendance statistics for: " + currentStudent.getEmail());
 
         // ✅ UTILISER LA NOUVELLE MÉTHODE CORRIGÉE
-        firebaseManager.getStudentAttendanceStatistics(
+        attendanceRepository.getStudentAttendanceStatistics(
                 currentStudent.getEmail(),
-                currentStudent.getDepartment(),
-                currentStudent.getField() != null ? currentStudent.getField() : "",
-                currentStudent.getYear(),
                 new FirebaseManager.DataCallback<FirebaseManager.AttendanceStatsDetailed>() {
                     @Override
                     public void onSuccess(FirebaseManager.AttendanceStatsDetailed stats) {
@@ -213,7 +220,7 @@ public class AttendanceStatisticsActivity extends AppCompatActivity {
     private void loadCourseSpecificStatistics() {
         if (currentStudent == null) return;
 
-        firebaseManager.getStudentStatisticsByCourse(
+        attendanceRepository.getStudentStatisticsByCourse(
                 currentStudent.getEmail(),
                 new FirebaseManager.DataCallback<Map<String, FirebaseManager.AttendanceStatsDetailed>>() {
                     @Override
@@ -432,10 +439,22 @@ public class AttendanceStatisticsActivity extends AppCompatActivity {
         return true;
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        attendanceRepository.addChangeListener(attendanceChangeListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        attendanceRepository.removeChangeListener(attendanceChangeListener);
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        // Recharger les statistiques au retour sur l'activité
+        // Recharger les statistiques au retour sur l'activité (servies par le store local)
         if (currentStudent != null) {
             loadAttendanceStatistics();
         }
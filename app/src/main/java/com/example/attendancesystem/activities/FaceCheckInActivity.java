@@ -0,0 +1,271 @@
+package com.example.attendancesystem.activities;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.util.Size;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+
+import com.example.attendancesystem.R;
+import com.example.attendancesystem.models.Attendance;
+import com.example.attendancesystem.models.Session;
+import com.example.attendancesystem.services.FaceFrameAnalyzer;
+import com.example.attendancesystem.services.FaceRecognitionEngine;
+import com.example.attendancesystem.services.FirebaseManager;
+import com.example.attendancesystem.utils.Utils;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Terminal de pointage : aperçu caméra et reconnaissance continue des étudiants
+ * de la session préparée par SessionManagementActivity.
+ *
+ * La liste d'appel est suivie en direct : un étudiant déjà présent (pointé ici, sur un
+ * autre terminal ou manuellement par l'enseignant) n'est pas renvoyé à CheckInQueue.
+ */
+public class FaceCheckInActivity extends AppCompatActivity {
+
+    private static final String TAG = "FaceCheckIn";
+
+    public static final String EXTRA_SESSION_ID = "sessionId";
+
+    // Résolution d'analyse : assez pour un visage à 1 m, légère pour la détection
+    private static final Size ANALYSIS_RESOLUTION = new Size(640, 480);
+
+    // Views
+    private PreviewView previewView;
+    private TextView tvSessionName, tvCheckInStatus, tvPipelineStats;
+
+    // Data
+    private FirebaseManager firebaseManager;
+    private FaceRecognitionEngine faceRecognitionEngine;
+    private Session session;
+    private ListenerRegistration rosterRegistration;
+    private final Set<String> checkedInEmails = new HashSet<>();
+    private final Set<String> presentEmails = new HashSet<>(); // Liste d'appel en direct
+    private int retryCount = 0; // Visages non reconnus depuis le dernier pointage
+
+    // Caméra
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+    private ImageAnalysis imageAnalysis;
+    private FaceFrameAnalyzer analyzer;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_face_check_in);
+
+        firebaseManager = FirebaseManager.getInstance();
+        faceRecognitionEngine = FaceRecognitionEngine.getInstance(this);
+        session = faceRecognitionEngine.getPreparedSession();
+
+        String sessionId = getIntent().getStringExtra(EXTRA_SESSION_ID);
+        if (session == null || !session.getSessionId().equals(sessionId)) {
+            Utils.showToast(this, "Session non préparée pour la reconnaissance faciale");
+            finish();
+            return;
+        }
+
+        presentEmails.addAll(session.getPresentStudentEmails());
+        initViews();
+        startCamera();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (session != null) {
+            attachRoster();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (rosterRegistration != null) {
+            rosterRegistration.remove();
+            rosterRegistration = null;
+        }
+    }
+
+    private void initViews() {
+        previewView = findViewById(R.id.preview_view);
+        tvSessionName = findViewById(R.id.tv_session_name);
+        tvCheckInStatus = findViewById(R.id.tv_check_in_status);
+        tvPipelineStats = findViewById(R.id.tv_pipeline_stats);
+
+        tvSessionName.setText(session.getCourseName() + " - " + session.getRoom());
+    }
+
+    // =================== CAMÉRA ===================
+
+    private void startCamera() {
+        ListenableFuture<ProcessCameraProvider> providerFuture = ProcessCameraProvider.getInstance(this);
+        providerFuture.addListener(() -> {
+            try {
+                bindCamera(providerFuture.get());
+            } catch (Exception e) {
+                Log.e(TAG, "Camera unavailable", e);
+                Utils.showToast(this, "Caméra indisponible");
+                finish();
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    private void bindCamera(ProcessCameraProvider cameraProvider) throws Exception {
+        Preview preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+        // Une seule image en attente : si l'analyse prend du retard, les images intermédiaires sont abandonnées
+        imageAnalysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(new ResolutionSelector.Builder()
+                        .setResolutionStrategy(new ResolutionStrategy(ANALYSIS_RESOLUTION,
+                                ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                        .build())
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                .build();
+
+        analyzer = new FaceFrameAnalyzer(this, faceRecognitionEngine, new FaceFrameAnalyzer.Listener() {
+            @Override
+            public void onNoFace(FaceFrameAnalyzer.FrameStats stats) {
+                tvCheckInStatus.setText("Placez votre visage devant la caméra");
+                showStats(stats);
+            }
+
+            @Override
+            public void onRecognition(int trackId, FaceRecognitionEngine.Recognition recognition,
+                                      FaceFrameAnalyzer.FrameStats stats) {
+                onFaceRecognized(recognition, stats);
+                showStats(stats);
+            }
+
+            @Override
+            public void onFaceTracked(int trackId, String studentEmail, FaceFrameAnalyzer.FrameStats stats) {
+                // Même étudiant que l'image précédente : le message affiché reste valable
+                showStats(stats);
+            }
+
+            @Override
+            public void onError(String error) {
+                tvCheckInStatus.setText("Erreur d'analyse, nouvelle tentative...");
+            }
+        });
+        imageAnalysis.setAnalyzer(analysisExecutor, analyzer);
+
+        // Caméra frontale (face aux étudiants), sinon la caméra arrière
+        CameraSelector cameraSelector = cameraProvider.hasCamera(CameraSelector.DEFAULT_FRONT_CAMERA) ?
+                CameraSelector.DEFAULT_FRONT_CAMERA : CameraSelector.DEFAULT_BACK_CAMERA;
+
+        cameraProvider.unbindAll();
+        cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
+    }
+
+    // =================== LISTE D'APPEL ===================
+
+    private void attachRoster() {
+        rosterRegistration = firebaseManager.listenToSessionRoster(session.getSessionId(),
+                new FirebaseManager.SessionRosterListener() {
+            @Override
+            public void onSessionChanged(Session updated) {
+                if (!updated.isActive()) {
+                    Utils.showToast(FaceCheckInActivity.this, "Session terminée");
+                    finish();
+                    return;
+                }
+                session = updated;
+                presentEmails.addAll(updated.getPresentStudentEmails());
+            }
+
+            @Override
+            public void onAttendanceAdded(Attendance attendance) {
+                applyAttendance(attendance);
+            }
+
+            @Override
+            public void onAttendanceModified(Attendance attendance) {
+                applyAttendance(attendance);
+            }
+
+            @Override
+            public void onAttendanceRemoved(Attendance attendance) {
+                // Pointage annulé par l'enseignant : l'étudiant peut se représenter
+                presentEmails.remove(attendance.getStudentEmail());
+                checkedInEmails.remove(attendance.getStudentEmail());
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.w(TAG, "Roster sync failed: " + error);
+            }
+        });
+    }
+
+    private void applyAttendance(Attendance attendance) {
+        if ("present".equals(attendance.getStatus())) {
+            presentEmails.add(attendance.getStudentEmail());
+        }
+    }
+
+    private boolean isAlreadyPresent(String email) {
+        return checkedInEmails.contains(email) || presentEmails.contains(email);
+    }
+
+    // =================== POINTAGE ===================
+
+    private void onFaceRecognized(FaceRecognitionEngine.Recognition recognition, FaceFrameAnalyzer.FrameStats stats) {
+        if (!recognition.isMatch()) {
+            retryCount++;
+            tvCheckInStatus.setText("Visage non reconnu, veuillez réessayer");
+            return;
+        }
+
+        String email = recognition.getStudent().getEmail();
+        String name = recognition.getStudent().getFullName();
+        if (isAlreadyPresent(email)) {
+            tvCheckInStatus.setText(name + " - déjà pointé(e)");
+            return;
+        }
+
+        checkedInEmails.add(email);
+        faceRecognitionEngine.checkIn(recognition, session, retryCount, stats);
+        retryCount = 0;
+        tvCheckInStatus.setText("✅ " + name + " (" + Math.round(recognition.getConfidence() * 100) + "%)");
+    }
+
+    private void showStats(FaceFrameAnalyzer.FrameStats stats) {
+        tvPipelineStats.setText(String.format(Locale.FRENCH,
+                "%.1f img/s · détection %d ms · recadrage %d ms · reconnaissance %d ms (%d%% des images)",
+                stats.getFramesPerSecond(), stats.getDetectionTime(), stats.getCropTime(),
+                stats.getRecognitionTime(), Math.round(stats.getRecognitionRate() * 100)));
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (imageAnalysis != null) {
+            imageAnalysis.clearAnalyzer();
+        }
+        // Après la dernière image en cours : libération sur le même thread
+        if (analyzer != null) {
+            FaceFrameAnalyzer closing = analyzer;
+            analysisExecutor.execute(closing::close);
+        }
+        analysisExecutor.shutdown();
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.attendancesystem.activities;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Bundle;
+import android.util.Log;
+import android.util.Size;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.AspectRatioStrategy;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+
+import com.example.attendancesystem.R;
+import com.example.attendancesystem.models.Session;
+import com.example.attendancesystem.services.FaceRecognitionEngine;
+import com.example.attendancesystem.services.GroupFaceRecognizer;
+import com.example.attendancesystem.utils.Utils;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pointage de groupe pour les grands amphithéâtres : l'enseignant prend quelques photos
+ * grand angle de la salle, tous les visages sont reconnus en parallèle, puis les présences
+ * retenues sont envoyées ensemble.
+ */
+public class GroupCheckInActivity extends AppCompatActivity {
+
+    private static final String TAG = "GroupCheckIn";
+
+    public static final String EXTRA_SESSION_ID = "sessionId";
+
+    // ~12 Mpx : assez pour les visages du fond de la salle, sans les capteurs 50-200 Mpx
+    private static final Size CAPTURE_SIZE = new Size(4000, 3000);
+
+    // Views
+    private PreviewView previewView;
+    private TextView tvSessionName, tvGroupStatus, tvGroupStats;
+    private Button btnCapture, btnCommit;
+
+    // Data
+    private FaceRecognitionEngine faceRecognitionEngine;
+    private Session session;
+    private GroupFaceRecognizer.Reconciler reconciler;
+
+    // Caméra : capture et reconnaissance sur le même thread, une photo à la fois
+    private final ExecutorService captureExecutor = Executors.newSingleThreadExecutor();
+    private ImageCapture imageCapture;
+    // Créé sur captureExecutor, avant toute capture
+    private volatile GroupFaceRecognizer recognizer;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_group_check_in);
+
+        faceRecognitionEngine = FaceRecognitionEngine.getInstance(this);
+        session = faceRecognitionEngine.getPreparedSession();
+
+        String sessionId = getIntent().getStringExtra(EXTRA_SESSION_ID);
+        if (session == null || !session.getSessionId().equals(sessionId)) {
+            Utils.showToast(this, "Session non préparée pour la reconnaissance faciale");
+            finish();
+            return;
+        }
+
+        reconciler = new GroupFaceRecognizer.Reconciler(session);
+        initViews();
+        loadRecognizer();
+        startCamera();
+    }
+
+    private void initViews() {
+        previewView = findViewById(R.id.preview_view);
+        tvSessionName = findViewById(R.id.tv_session_name);
+        tvGroupStatus = findViewById(R.id.tv_group_status);
+        tvGroupStats = findViewById(R.id.tv_group_stats);
+        btnCapture = findViewById(R.id.btn_capture);
+        btnCommit = findViewById(R.id.btn_commit);
+
+        tvSessionName.setText(session.getCourseName() + " - " + session.getRoom());
+        btnCapture.setEnabled(false);
+        btnCommit.setEnabled(false);
+        btnCapture.setOnClickListener(v -> capture());
+        btnCommit.setOnClickListener(v -> commit());
+    }
+
+    /**
+     * Modèles chargés hors du thread principal (un interpréteur par cœur)
+     */
+    private void loadRecognizer() {
+        captureExecutor.execute(() -> {
+            try {
+                recognizer = new GroupFaceRecognizer(this, faceRecognitionEngine);
+                runOnUiThread(() -> btnCapture.setEnabled(imageCapture != null));
+            } catch (IOException e) {
+                Log.e(TAG, "Face model unavailable", e);
+                runOnUiThread(() -> {
+                    Utils.showToast(this, "Modèle de reconnaissance faciale introuvable");
+                    finish();
+                });
+            }
+        });
+    }
+
+    // =================== CAMÉRA ===================
+
+    private void startCamera() {
+        ListenableFuture<ProcessCameraProvider> providerFuture = ProcessCameraProvider.getInstance(this);
+        providerFuture.addListener(() -> {
+            try {
+                bindCamera(providerFuture.get());
+            } catch (Exception e) {
+                Log.e(TAG, "Camera unavailable", e);
+                Utils.showToast(this, "Caméra indisponible");
+                finish();
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    private void bindCamera(ProcessCameraProvider cameraProvider) {
+        Preview preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+        // Haute résolution plafonnée : les visages du fond de la salle sont petits, mais une
+        // photo plein capteur (et sa copie redressée) ne tiendrait pas en mémoire
+        imageCapture = new ImageCapture.Builder()
+                .setCaptureMode(ImageCapture.CAPTURE_MODE_MAXIMIZE_QUALITY)
+                .setResolutionSelector(new ResolutionSelector.Builder()
+                        .setAspectRatioStrategy(AspectRatioStrategy.RATIO_4_3_FALLBACK_AUTO_STRATEGY)
+                        .setResolutionStrategy(new ResolutionStrategy(CAPTURE_SIZE,
+                                ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                        .build())
+                .build();
+
+        // Caméra arrière, tournée vers la salle
+        cameraProvider.unbindAll();
+        cameraProvider.bindToLifecycle(this, CameraSelector.DEFAULT_BACK_CAMERA, preview, imageCapture);
+        btnCapture.setEnabled(recognizer != null);
+    }
+
+    private void capture() {
+        btnCapture.setEnabled(false);
+        tvGroupStatus.setText("Analyse de la photo...");
+
+        imageCapture.takePicture(captureExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                Bitmap frame;
+                try {
+                    frame = upright(image);
+                } finally {
+                    image.close();
+                }
+
+                try {
+                    GroupFaceRecognizer.FrameResult result = recognizer.recognize(frame);
+                    runOnUiThread(() -> onFrameRecognized(result));
+                } catch (Exception e) {
+                    Log.e(TAG, "Group recognition failed", e);
+                    runOnUiThread(() -> onCaptureFailed("Erreur d'analyse, reprenez la photo"));
+                } finally {
+                    frame.recycle();
+                }
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException e) {
+                Log.e(TAG, "Capture failed", e);
+                runOnUiThread(() -> onCaptureFailed("Erreur de capture, réessayez"));
+            }
+        });
+    }
+
+    /**
+     * Photo redressée en RGB_565 : deux fois moins de mémoire que l'ARGB_8888 de toBitmap(),
+     * la copie tournée n'ajoute donc que la moitié de la photo au pic mémoire
+     */
+    private static Bitmap upright(ImageProxy image) {
+        Bitmap bitmap = image.toBitmap();
+
+        // Rotation puis retour dans le quart positif du plan
+        Matrix matrix = new Matrix();
+        matrix.postRotate(image.getImageInfo().getRotationDegrees());
+        RectF bounds = new RectF(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+
+        int width = Math.round(bounds.width());
+        int height = Math.round(bounds.height());
+        Bitmap upright = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        new Canvas(upright).drawBitmap(bitmap, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        bitmap.recycle();
+        return upright;
+    }
+
+    // =================== POINTAGE ===================
+
+    private void onFrameRecognized(GroupFaceRecognizer.FrameResult result) {
+        if (isFinishing()) return;
+
+        int added = reconciler.addFrame(result);
+        int matches = reconciler.getMatchCount();
+
+        tvGroupStatus.setText(String.format(Locale.FRENCH,
+                "%d étudiant(s) reconnu(s) (+%d) · %d déjà présent(s) · %d visage(s) non reconnu(s)",
+                matches, added, reconciler.getAlreadyPresentCount(), reconciler.getUnrecognizedFaces()));
+        tvGroupStats.setText(String.format(Locale.FRENCH,
+                "Photo %d : %d visages · détection %d ms · reconnaissance %d ms (%d cœurs)",
+                reconciler.getFrameCount(), result.getFaceCount(), result.getDetectionTime(),
+                result.getRecognitionTime(), recognizer.getWorkerCount()));
+
+        btnCommit.setText("Valider " + matches + " présence(s)");
+        btnCommit.setEnabled(matches > 0);
+        btnCapture.setEnabled(true);
+    }
+
+    private void onCaptureFailed(String message) {
+        if (isFinishing()) return;
+        tvGroupStatus.setText(message);
+        btnCapture.setEnabled(true);
+    }
+
+    private void commit() {
+        int count = reconciler.getMatchCount();
+        faceRecognitionEngine.checkInGroup(reconciler.getMatches(), session);
+        Utils.showToast(this, count + " présence(s) enregistrée(s)");
+        finish();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Après la photo en cours d'analyse : libération sur le même thread
+        captureExecutor.execute(() -> {
+            if (recognizer != null) {
+                recognizer.close();
+            }
+        });
+        captureExecutor.shutdown();
+    }
+}
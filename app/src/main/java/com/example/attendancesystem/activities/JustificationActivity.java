@@ -19,16 +19,17 @@ import com.example.attendancesystem.R;
 import com.example.attendancesystem.utils.JustificationAdapter; // Assuming you have this adapter
 import com.example.attendancesystem.models.Justification;
 import com.example.attendancesystem.models.Student; // Import Student model
+import com.example.attendancesystem.services.AttendanceRepository;
+import com.example.attendancesystem.services.CourseCatalog;
 import com.example.attendancesystem.services.FirebaseManager;
+import com.example.attendancesystem.utils.DateFormats;
 import com.example.attendancesystem.utils.Utils;
 import com.google.android.material.textfield.TextInputLayout;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date; // For justification date
 import java.util.List;
-import java.util.Locale;
 import java.util.Map; // For studentCourses data
 
 public class JustificationActivity extends AppCompatActivity {
@@ -47,6 +48,8 @@ public class JustificationActivity extends AppCompatActivity {
 
     // Data
     private FirebaseManager firebaseManager;
+    private CourseCatalog courseCatalog;
+    private AttendanceRepository attendanceRepository;
     private String currentUserEmail;
     private Student currentStudent; // To hold current student data
     private List<Justification> justificationsList;
@@ -56,6 +59,13 @@ public class JustificationActivity extends AppCompatActivity {
     // Calendar to hold the selected justification date
     private Calendar selectedDateCalendar;
 
+    // Décision de revue reçue par la synchronisation en arrière-plan : liste rechargée sans bloquer le formulaire
+    private final AttendanceRepository.AttendanceChangeListener attendanceChangeListener = studentEmail -> {
+        if (studentEmail.equals(currentUserEmail)) {
+            loadJustifications(false);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -67,6 +77,8 @@ public class JustificationActivity extends AppCompatActivity {
         }
 
         firebaseManager = FirebaseManager.getInstance();
+        courseCatalog = CourseCatalog.getInstance();
+        attendanceRepository = AttendanceRepository.getInstance(this);
         currentUserEmail = Utils.getSavedUserEmail(this);
         justificationsList = new ArrayList<>();
         studentCourses = new ArrayList<>();
@@ -91,7 +103,7 @@ public class JustificationActivity extends AppCompatActivity {
         rvJustifications = findViewById(R.id.rv_justifications);
 
         // Setup RecyclerView
-        justificationAdapter = new JustificationAdapter(justificationsList, false); // false for student view
+        justificationAdapter = new JustificationAdapter(false); // false for student view
         rvJustifications.setLayoutManager(new LinearLayoutManager(this));
         rvJustifications.setAdapter(justificationAdapter);
 
@@ -136,8 +148,7 @@ public class JustificationActivity extends AppCompatActivity {
     }
 
     private void updateDateTextView() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-        tvJustificationDate.setText(sdf.format(selectedDateCalendar.getTime()));
+        tvJustificationDate.setText(DateFormats.date(selectedDateCalendar.getTime()));
     }
 
     private void loadStudentData() {
@@ -172,9 +183,8 @@ public class JustificationActivity extends AppCompatActivity {
             return;
         }
 
-        // Use the FirebaseManager method to get student's courses based on their academic details
-        firebaseManager.getStudentCourses(
-                currentStudent.getEmail(), // You might not need email for course query, but passing for consistency
+        // Cours résolus localement par le catalogue (index par département, filière et année)
+        courseCatalog.getStudentCourses(
                 currentStudent.getDepartment(),
                 currentStudent.getField(),
                 currentStudent.getYear(),
@@ -256,6 +266,8 @@ public class JustificationActivity extends AppCompatActivity {
             @Override
             public void onSuccess(String justificationId) {
                 Log.d(TAG, "Justification saved with ID: " + justificationId);
+                // Visible tout de suite dans la copie locale, avant la prochaine synchronisation
+                attendanceRepository.onJustificationSaved(justification);
                 showLoading(false);
                 Utils.showToast(JustificationActivity.this, "Justification soumise avec succès !");
                 clearForm();
@@ -325,27 +337,42 @@ public class JustificationActivity extends AppCompatActivity {
     }
 
     private void loadJustifications() {
+        loadJustifications(true);
+    }
+
+    /**
+     * Justifications de l'étudiant, servies par la copie locale du repository
+     */
+    private void loadJustifications(boolean showLoading) {
         if (currentUserEmail == null) {
             Log.e(TAG, "Cannot load justifications: currentUserEmail is null.");
             return;
         }
-        showLoading(true); // Show loading while fetching justifications
+        if (showLoading) {
+            showLoading(true); // Show loading while fetching justifications
+        }
 
-        firebaseManager.getStudentJustifications(currentUserEmail, new FirebaseManager.DataCallback<List<Justification>>() {
+        attendanceRepository.getStudentJustifications(currentUserEmail, new FirebaseManager.DataCallback<List<Justification>>() {
             @Override
             public void onSuccess(List<Justification> justifications) {
+                if (isFinishing() || isDestroyed()) return;
                 Log.d(TAG, "Loaded " + justifications.size() + " justifications for " + currentUserEmail);
                 justificationsList.clear();
                 justificationsList.addAll(justifications);
-                justificationAdapter.notifyDataSetChanged();
-                showLoading(false); // Hide loading
+                justificationAdapter.updateJustifications(justificationsList);
+                if (showLoading) {
+                    showLoading(false); // Hide loading
+                }
             }
 
             @Override
             public void onFailure(String error) {
+                if (isFinishing() || isDestroyed()) return;
                 Log.e(TAG, "Error loading justifications: " + error);
                 Utils.showToast(JustificationActivity.this, "Erreur de chargement des justifications: " + error);
-                showLoading(false); // Hide loading
+                if (showLoading) {
+                    showLoading(false); // Hide loading
+                }
             }
         });
     }
@@ -370,6 +397,18 @@ public class JustificationActivity extends AppCompatActivity {
         tvJustificationDate.setEnabled(!show);
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        attendanceRepository.addChangeListener(attendanceChangeListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        attendanceRepository.removeChangeListener(attendanceChangeListener);
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
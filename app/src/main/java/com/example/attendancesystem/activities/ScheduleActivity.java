@@ -17,6 +17,7 @@ import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Session;
 import com.example.attendancesystem.models.Student;
 import com.example.attendancesystem.services.FirebaseManager;
+import com.example.attendancesystem.services.ScheduleRepository;
 import com.example.attendancesystem.utils.SchedulePagerAdapter;
 import com.example.attendancesystem.utils.Utils;
 import com.google.android.material.tabs.TabLayout;
@@ -45,6 +46,7 @@ public class ScheduleActivity extends AppCompatActivity {
 
     // Data
     private FirebaseManager firebaseManager;
+    private ScheduleRepository scheduleRepository;
     private Student currentStudent;
     private SchedulePagerAdapter pagerAdapter;
 
@@ -64,6 +66,7 @@ public class ScheduleActivity extends AppCompatActivity {
 
         // Initialiser Firebase et calendar
         firebaseManager = FirebaseManager.getInstance();
+        scheduleRepository = ScheduleRepository.getInstance();
         currentCalendar = Calendar.getInstance();
 
         // Initialiser les views
@@ -174,7 +177,9 @@ public class ScheduleActivity extends AppCompatActivity {
     }
 
     /**
-     * Charger les données de l'emploi du temps
+     * Charger les données de l'emploi du temps.
+     * Les trois vues sont des tranches du même mois : une seule requête (deux si la
+     * semaine est à cheval sur deux mois), puis préchargement des mois voisins.
      */
     private void loadScheduleData() {
         if (currentStudent == null) {
@@ -184,25 +189,29 @@ public class ScheduleActivity extends AppCompatActivity {
 
         Log.d(TAG, "Loading schedule data for: " + currentStudent.getEmail());
 
-        // Charger les sessions d'aujourd'hui
+        // Charger le mois en premier : jour et semaine sont servis depuis le même chargement
+        loadMonthlySchedule();
+
+        // Charger les sessions du jour
         loadTodaySchedule();
 
         // Charger les sessions de la semaine
         loadWeeklySchedule();
+    }
 
-        // Charger les sessions du mois
-        loadMonthlySchedule();
+    private String getStudentField() {
+        return currentStudent.getField() != null ? currentStudent.getField() : "";
     }
 
     /**
-     * Charger l'emploi du temps d'aujourd'hui
+     * Charger l'emploi du temps du jour sélectionné
      */
     private void loadTodaySchedule() {
-        firebaseManager.getTodaySessionsForStudent(
-                currentStudent.getEmail(),
+        scheduleRepository.getDaySessions(
                 currentStudent.getDepartment(),
-                currentStudent.getField() != null ? currentStudent.getField() : "",
+                getStudentField(),
                 currentStudent.getYear(),
+                currentCalendar,
                 new FirebaseManager.DataCallback<List<Session>>() {
                     @Override
                     public void onSuccess(List<Session> sessions) {
@@ -226,22 +235,11 @@ public class ScheduleActivity extends AppCompatActivity {
      * Charger l'emploi du temps de la semaine
      */
     private void loadWeeklySchedule() {
-        // Calculer le début de la semaine
-        Calendar weekStart = Calendar.getInstance();
-        weekStart.setTime(currentCalendar.getTime());
-        weekStart.set(Calendar.DAY_OF_WEEK, weekStart.getFirstDayOfWeek());
-        weekStart.set(Calendar.HOUR_OF_DAY, 0);
-        weekStart.set(Calendar.MINUTE, 0);
-        weekStart.set(Calendar.SECOND, 0);
-        weekStart.set(Calendar.MILLISECOND, 0);
-
-        Timestamp weekStartTimestamp = new Timestamp(weekStart.getTime());
-
-        firebaseManager.getWeeklySessionsForField(
+        scheduleRepository.getWeekSessions(
                 currentStudent.getDepartment(),
-                currentStudent.getField() != null ? currentStudent.getField() : "",
+                getStudentField(),
                 currentStudent.getYear(),
-                weekStartTimestamp,
+                currentCalendar,
                 new FirebaseManager.DataCallback<List<Session>>() {
                     @Override
                     public void onSuccess(List<Session> sessions) {
@@ -260,32 +258,24 @@ public class ScheduleActivity extends AppCompatActivity {
     }
 
     /**
-     * Charger l'emploi du temps du mois
+     * Charger l'emploi du temps du mois complet
      */
     private void loadMonthlySchedule() {
-        // Calculer le début du mois
-        Calendar monthStart = Calendar.getInstance();
-        monthStart.setTime(currentCalendar.getTime());
-        monthStart.set(Calendar.DAY_OF_MONTH, 1);
-        monthStart.set(Calendar.HOUR_OF_DAY, 0);
-        monthStart.set(Calendar.MINUTE, 0);
-        monthStart.set(Calendar.SECOND, 0);
-        monthStart.set(Calendar.MILLISECOND, 0);
-
-        Timestamp monthStartTimestamp = new Timestamp(monthStart.getTime());
-
-        // Pour le mois, on charge plusieurs semaines
-        firebaseManager.getWeeklySessionsForField(
+        scheduleRepository.getMonthSessions(
                 currentStudent.getDepartment(),
-                currentStudent.getField() != null ? currentStudent.getField() : "",
+                getStudentField(),
                 currentStudent.getYear(),
-                monthStartTimestamp,
+                currentCalendar,
                 new FirebaseManager.DataCallback<List<Session>>() {
                     @Override
                     public void onSuccess(List<Session> sessions) {
                         Log.d(TAG, "Monthly schedule loaded: " + sessions.size() + " sessions");
                         pagerAdapter.updateMonthlySchedule(sessions);
                         checkEmptyState();
+
+                        // Navigation précédent / suivant sans attente
+                        scheduleRepository.prefetchAdjacentMonths(currentStudent.getDepartment(),
+                                getStudentField(), currentStudent.getYear(), currentCalendar);
                     }
 
                     @Override
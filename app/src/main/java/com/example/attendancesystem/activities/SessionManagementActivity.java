@@ -1,27 +1,40 @@
 package com.example.attendancesystem.activities;
 
+import android.Manifest;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
+import com.example.attendancesystem.models.Attendance;
 import com.example.attendancesystem.models.Session;
 import com.example.attendancesystem.models.Teacher;
+import com.example.attendancesystem.services.CheckInQueue;
+import com.example.attendancesystem.services.FaceRecognitionEngine;
 import com.example.attendancesystem.services.FirebaseManager;
+import com.example.attendancesystem.utils.SessionStudentsAdapter;
 import com.example.attendancesystem.utils.Utils;
 import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SessionManagementActivity extends AppCompatActivity {
 
@@ -31,14 +44,55 @@ public class SessionManagementActivity extends AppCompatActivity {
     private TextView tvCurrentSession, tvSessionStatus, tvStudentCount;
     private Button btnStartSession, btnEndSession, btnManualAttendance;
     private CardView cardFaceRecognition;
+    private Button btnGroupCheckIn;
     private RecyclerView rvCurrentStudents;
 
     // Data
     private FirebaseManager firebaseManager;
+    private CheckInQueue checkInQueue;
     private Teacher currentTeacher;
     private Session currentSession;
     private boolean isSessionActive = false;
 
+    // Suivi en temps réel (attaché entre onStart et onStop)
+    private ListenerRegistration activeSessionRegistration;
+    private ListenerRegistration rosterRegistration;
+    private String listenedSessionId;
+    private final Map<String, String> liveStatuses = new HashMap<>();
+    private SessionStudentsAdapter studentsAdapter;
+
+    // Pointages refusés par le serveur (affichés tant que l'activité est visible)
+    private AlertDialog rejectedDialog;
+    private final CheckInQueue.QueueListener queueListener = new CheckInQueue.QueueListener() {
+        @Override
+        public void onPendingCountChanged(int pendingCount) {
+        }
+
+        @Override
+        public void onCheckInsUploaded(List<Attendance> attendances) {
+        }
+
+        @Override
+        public void onCheckInsRejected(List<CheckInQueue.RejectedCheckIn> rejectedCheckIns) {
+            showRejectedCheckIns(rejectedCheckIns);
+        }
+    };
+
+    // Reconnaissance faciale
+    private FaceRecognitionEngine faceRecognitionEngine;
+    private Runnable afterCameraPermission; // Écran caméra à ouvrir une fois la permission accordée
+
+    private final ActivityResultLauncher<String> requestCameraPermission =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), granted -> {
+                if (granted) {
+                    if (afterCameraPermission != null) {
+                        afterCameraPermission.run();
+                    }
+                } else {
+                    Utils.showToast(this, "Permission caméra requise pour la reconnaissance faciale");
+                }
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -50,6 +104,9 @@ public class SessionManagementActivity extends AppCompatActivity {
         }
 
         firebaseManager = FirebaseManager.getInstance();
+        // Reprend l'envoi des pointages restés sur le terminal (réseau coupé, arrêt de l'app)
+        checkInQueue = CheckInQueue.getInstance(this);
+        faceRecognitionEngine = FaceRecognitionEngine.getInstance(this);
 
         initViews();
         setupListeners();
@@ -64,10 +121,13 @@ public class SessionManagementActivity extends AppCompatActivity {
         btnEndSession = findViewById(R.id.btn_end_session);
         btnManualAttendance = findViewById(R.id.btn_manual_attendance);
         cardFaceRecognition = findViewById(R.id.card_face_recognition);
+        btnGroupCheckIn = findViewById(R.id.btn_group_check_in);
         rvCurrentStudents = findViewById(R.id.rv_current_students);
 
         // Setup RecyclerView
         rvCurrentStudents.setLayoutManager(new LinearLayoutManager(this));
+        studentsAdapter = new SessionStudentsAdapter();
+        rvCurrentStudents.setAdapter(studentsAdapter);
     }
 
     private void setupListeners() {
@@ -75,6 +135,7 @@ public class SessionManagementActivity extends AppCompatActivity {
         btnEndSession.setOnClickListener(v -> endSession());
         btnManualAttendance.setOnClickListener(v -> openManualAttendance());
         cardFaceRecognition.setOnClickListener(v -> openFaceRecognition());
+        btnGroupCheckIn.setOnClickListener(v -> openGroupCheckIn());
     }
 
     private void loadTeacherData() {
@@ -84,7 +145,7 @@ public class SessionManagementActivity extends AppCompatActivity {
                 @Override
                 public void onSuccess(Teacher teacher) {
                     currentTeacher = teacher;
-                    loadCurrentSession();
+                    startListening();
                 }
 
                 @Override
@@ -99,33 +160,147 @@ public class SessionManagementActivity extends AppCompatActivity {
         }
     }
 
-    private void loadCurrentSession() {
-        if (currentTeacher == null) return;
+    // =================== SUIVI EN TEMPS RÉEL ===================
+
+    /**
+     * Écouter la session active de l'enseignant (remplace le rechargement dans onResume)
+     */
+    private void startListening() {
+        if (currentTeacher == null || activeSessionRegistration != null) return;
+
+        activeSessionRegistration = firebaseManager.listenToActiveSessionForTeacher(currentTeacher.getEmail(),
+                new FirebaseManager.DataCallback<Session>() {
+                    @Override
+                    public void onSuccess(Session session) {
+                        onActiveSessionChanged(session);
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        Utils.showToast(SessionManagementActivity.this, "Erreur lors du chargement de la session: " + error);
+                    }
+                });
+    }
+
+    private void stopListening() {
+        if (activeSessionRegistration != null) {
+            activeSessionRegistration.remove();
+            activeSessionRegistration = null;
+        }
+        detachRoster();
+    }
 
-        // Chercher une session active pour ce professeur
-        firebaseManager.getActiveSessionForTeacher(currentTeacher.getEmail(), new FirebaseManager.DataCallback<Session>() {
+    private void onActiveSessionChanged(Session session) {
+        if (session == null) {
+            detachRoster();
+            currentSession = null;
+            isSessionActive = false;
+            studentsAdapter.clear();
+            updateUI();
+            return;
+        }
+
+        // Les changements de la session suivie arrivent déjà par le listener de la liste d'appel
+        if (session.getSessionId() != null && session.getSessionId().equals(listenedSessionId)) return;
+
+        detachRoster();
+        applySession(session);
+        attachRoster(session.getSessionId());
+    }
+
+    private void attachRoster(String sessionId) {
+        listenedSessionId = sessionId;
+        rosterRegistration = firebaseManager.listenToSessionRoster(sessionId, new FirebaseManager.SessionRosterListener() {
             @Override
-            public void onSuccess(Session session) {
-                if (session != null) {
-                    currentSession = session;
-                    isSessionActive = session.isActive();
-                } else {
-                    currentSession = null;
-                    isSessionActive = false;
+            public void onSessionChanged(Session session) {
+                applySession(session);
+            }
+
+            @Override
+            public void onAttendanceAdded(Attendance attendance) {
+                applyAttendance(attendance);
+            }
+
+            @Override
+            public void onAttendanceModified(Attendance attendance) {
+                applyAttendance(attendance);
+            }
+
+            @Override
+            public void onAttendanceRemoved(Attendance attendance) {
+                String email = attendance.getStudentEmail();
+                liveStatuses.remove(email);
+                if (currentSession != null) {
+                    currentSession.unmarkStudent(email);
                 }
-                updateUI();
+                studentsAdapter.clearStatus(email);
+                loadSessionStudents();
             }
 
             @Override
-            public void onFailure(String error) {
-                Utils.showToast(SessionManagementActivity.this, "Erreur lors du chargement de la session: " + error);
-                currentSession = null;
-                isSessionActive = false;
-                updateUI();
+            public void onError(String error) {
+                Utils.showToast(SessionManagementActivity.this, "Erreur de synchronisation: " + error);
             }
         });
     }
 
+    private void detachRoster() {
+        if (rosterRegistration != null) {
+            rosterRegistration.remove();
+            rosterRegistration = null;
+        }
+        listenedSessionId = null;
+        liveStatuses.clear();
+    }
+
+    /**
+     * Nouvelle version du document de session : les pointages déjà reçus sont réappliqués
+     */
+    private void applySession(Session session) {
+        boolean rosterChanged = currentSession == null
+                || !session.getSessionId().equals(currentSession.getSessionId())
+                || !session.getEnrolledStudentEmails().equals(currentSession.getEnrolledStudentEmails());
+
+        for (Map.Entry<String, String> entry : liveStatuses.entrySet()) {
+            if ("present".equals(entry.getValue())) {
+                session.markStudentPresent(entry.getKey());
+            }
+        }
+
+        currentSession = session;
+        isSessionActive = session.isActive();
+        if (rosterChanged) {
+            studentsAdapter.setEnrolledStudents(session.getEnrolledStudentEmails());
+            for (Map.Entry<String, String> entry : liveStatuses.entrySet()) {
+                studentsAdapter.setStatus(entry.getKey(), entry.getValue());
+            }
+            if (isSessionActive) {
+                prepareFaceRecognition();
+            }
+        }
+        updateUI();
+    }
+
+    /**
+     * Un pointage reçu : seule la ligne de l'étudiant et le compteur sont mis à jour
+     */
+    private void applyAttendance(Attendance attendance) {
+        String email = attendance.getStudentEmail();
+        if (email == null || attendance.getStatus() == null) return;
+
+        liveStatuses.put(email, attendance.getStatus());
+        if (currentSession != null) {
+            // Un pointage corrigé (présent -> absent) doit aussi quitter les présents
+            if (attendance.isPresent()) {
+                currentSession.markStudentPresent(email);
+            } else {
+                currentSession.markStudentAbsent(email);
+            }
+        }
+        studentsAdapter.setStatus(email, attendance.getStatus());
+        loadSessionStudents();
+    }
+
     private void showStartSessionDialog() {
         if (currentTeacher == null) return;
 
@@ -172,9 +347,9 @@ public class SessionManagementActivity extends AppCompatActivity {
         firebaseManager.updateSession(session, new FirebaseManager.DataCallback<Void>() {
             @Override
             public void onSuccess(Void aVoid) {
-                currentSession = session;
                 isSessionActive = true;
-                updateUI();
+                // Le listener de session active prend le relais pour la liste d'appel
+                onActiveSessionChanged(session);
                 Utils.showToast(SessionManagementActivity.this, "Session démarrée: " + session.getCourseName());
             }
 
@@ -192,24 +367,18 @@ public class SessionManagementActivity extends AppCompatActivity {
                 .setTitle("Terminer la session")
                 .setMessage("Êtes-vous sûr de vouloir terminer la session '" + currentSession.getCourseName() + "' ?")
                 .setPositiveButton("Terminer", (dialog, which) -> {
-                    // Terminer la session
-                    currentSession.endSession();
-
-                    // Sauvegarder dans Firebase
-                    firebaseManager.updateSession(currentSession, new FirebaseManager.DataCallback<Void>() {
+                    // Envoyer les pointages encore en file avant de calculer les absences :
+                    // un étudiant dont le pointage n'est pas encore écrit serait marqué absent
+                    checkInQueue.drain(new FirebaseManager.DataCallback<Void>() {
                         @Override
                         public void onSuccess(Void aVoid) {
-                            isSessionActive = false;
-                            updateUI();
-                            Utils.showToast(SessionManagementActivity.this, "Session terminée");
-
-                            // Optionnel: Revenir au dashboard après quelques secondes
-                            findViewById(android.R.id.content).postDelayed(() -> finish(), 2000);
+                            completeSession();
                         }
 
                         @Override
                         public void onFailure(String error) {
-                            Utils.showToast(SessionManagementActivity.this, "Erreur lors de la fermeture: " + error);
+                            Utils.showToast(SessionManagementActivity.this,
+                                    "Pointages non envoyés, session non terminée: " + error);
                         }
                     });
                 })
@@ -217,6 +386,29 @@ public class SessionManagementActivity extends AppCompatActivity {
                 .show();
     }
 
+    private void completeSession() {
+        if (currentSession == null) return;
+
+        // Terminer la session (absences + compteurs écrits avec la session)
+        firebaseManager.completeSession(currentSession, new FirebaseManager.DataCallback<Void>() {
+            @Override
+            public void onSuccess(Void aVoid) {
+                isSessionActive = false;
+                faceRecognitionEngine.release();
+                updateUI();
+                Utils.showToast(SessionManagementActivity.this, "Session terminée");
+
+                // Optionnel: Revenir au dashboard après quelques secondes
+                findViewById(android.R.id.content).postDelayed(() -> finish(), 2000);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Utils.showToast(SessionManagementActivity.this, "Erreur lors de la fermeture: " + error);
+            }
+        });
+    }
+
     private void openManualAttendance() {
         if (currentSession == null) {
             Utils.showToast(this, "Aucune session active");
@@ -228,13 +420,65 @@ public class SessionManagementActivity extends AppCompatActivity {
     }
 
     private void openFaceRecognition() {
+        openCameraScreen(FaceCheckInActivity.class, FaceCheckInActivity.EXTRA_SESSION_ID, this::openFaceRecognition);
+    }
+
+    /**
+     * Pointage de groupe (amphithéâtre) : photos grand angle de la salle, même index de session
+     */
+    private void openGroupCheckIn() {
+        openCameraScreen(GroupCheckInActivity.class, GroupCheckInActivity.EXTRA_SESSION_ID, this::openGroupCheckIn);
+    }
+
+    private void openCameraScreen(Class<?> activityClass, String sessionIdExtra, Runnable retry) {
         if (currentSession == null) {
             Utils.showToast(this, "Aucune session active");
             return;
         }
 
-        // TODO: Implémenter la reconnaissance faciale
-        Utils.showToast(this, "Reconnaissance faciale - À implémenter");
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
+            afterCameraPermission = retry;
+            requestCameraPermission.launch(Manifest.permission.CAMERA);
+            return;
+        }
+
+        // Index déjà construit au démarrage de la session : l'écran s'ouvre immédiatement
+        Session session = currentSession;
+        faceRecognitionEngine.prepareSession(session, new FirebaseManager.DataCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer recognizableCount) {
+                if (session != currentSession) return;
+                if (recognizableCount == 0) {
+                    Utils.showToast(SessionManagementActivity.this, "Aucun inscrit avec une photo de profil");
+                    return;
+                }
+                Intent intent = new Intent(SessionManagementActivity.this, activityClass);
+                intent.putExtra(sessionIdExtra, session.getSessionId());
+                startActivity(intent);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Utils.showToast(SessionManagementActivity.this, "Erreur: " + error);
+            }
+        });
+    }
+
+    /**
+     * Préparer l'index des visages dès que la liste d'appel est connue
+     */
+    private void prepareFaceRecognition() {
+        faceRecognitionEngine.prepareSession(currentSession, new FirebaseManager.DataCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer recognizableCount) {
+                Log.d(TAG, "Face index ready: " + recognizableCount + " students");
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "Face index unavailable: " + error);
+            }
+        });
     }
 
     private void updateUI() {
@@ -244,13 +488,10 @@ public class SessionManagementActivity extends AppCompatActivity {
             tvSessionStatus.setText("Session Active");
             tvSessionStatus.setTextColor(getColor(R.color.success_color));
 
-            int totalEnrolled = currentSession.getStatistics().getTotalEnrolled();
-            int totalPresent = currentSession.getStatistics().getTotalPresent();
-            tvStudentCount.setText(totalPresent + " étudiants présents / " + totalEnrolled + " inscrits");
-
             btnStartSession.setVisibility(View.GONE);
             btnEndSession.setVisibility(View.VISIBLE);
             btnManualAttendance.setEnabled(true);
+            btnGroupCheckIn.setEnabled(true);
             cardFaceRecognition.setAlpha(1.0f);
             cardFaceRecognition.setClickable(true);
 
@@ -264,6 +505,7 @@ public class SessionManagementActivity extends AppCompatActivity {
             btnStartSession.setVisibility(View.VISIBLE);
             btnEndSession.setVisibility(View.GONE);
             btnManualAttendance.setEnabled(false);
+            btnGroupCheckIn.setEnabled(false);
             cardFaceRecognition.setAlpha(0.5f);
             cardFaceRecognition.setClickable(false);
         }
@@ -274,19 +516,46 @@ public class SessionManagementActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Mettre à jour le compteur de la session (la liste est tenue à jour par le listener)
+     */
     private void loadSessionStudents() {
-        // TODO: Implémenter l'affichage de la liste des étudiants de la session
-        // Pour l'instant, on peut simplement afficher le nombre d'étudiants
-        if (currentSession != null && currentSession.getStatistics() != null) {
-            int enrolled = currentSession.getStatistics().getTotalEnrolled();
-            int present = currentSession.getStatistics().getTotalPresent();
-            int absent = currentSession.getStatistics().getTotalAbsent();
+        if (!isSessionActive || currentSession == null || currentSession.getStatistics() == null) return;
 
-            String statusText = String.format("Inscrits: %d | Présents: %d | Absents: %d",
-                    enrolled, present, absent);
+        int enrolled = currentSession.getStatistics().getTotalEnrolled();
+        int present = currentSession.getStatistics().getTotalPresent();
+        tvStudentCount.setText(present + " étudiants présents / " + enrolled + " inscrits");
+    }
 
-            // Mettre à jour l'affichage si nécessaire
+    /**
+     * Lister les pointages refusés : ils ne seront pas renvoyés, l'enseignant les saisit à la main
+     */
+    private void showRejectedCheckIns(List<CheckInQueue.RejectedCheckIn> rejectedCheckIns) {
+        if (rejectedDialog != null) {
+            rejectedDialog.dismiss();
+            rejectedDialog = null;
+        }
+        if (rejectedCheckIns.isEmpty()) return;
+
+        StringBuilder message = new StringBuilder();
+        for (CheckInQueue.RejectedCheckIn rejectedCheckIn : rejectedCheckIns) {
+            Attendance attendance = rejectedCheckIn.getAttendance();
+            String student = attendance.getStudentName() != null ?
+                    attendance.getStudentName() : attendance.getStudentEmail();
+            message.append("• ").append(student);
+            if (attendance.getCourseName() != null) {
+                message.append(" (").append(attendance.getCourseName()).append(")");
+            }
+            message.append("\n   ").append(rejectedCheckIn.getError()).append("\n");
         }
+
+        rejectedDialog = new AlertDialog.Builder(this)
+                .setTitle("Pointages refusés par le serveur")
+                .setMessage(message.toString().trim() + "\n\nCes pointages ne seront pas renvoyés : " +
+                        "utilisez la saisie manuelle pour les enregistrer.")
+                .setPositiveButton("Compris", (dialog, which) -> checkInQueue.dismissRejected())
+                .setNegativeButton("Plus tard", null)
+                .show();
     }
 
     @Override
@@ -296,9 +565,21 @@ public class SessionManagementActivity extends AppCompatActivity {
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Recharger la session courante quand on revient sur l'activité
-        loadCurrentSession();
+    protected void onStart() {
+        super.onStart();
+        // Suivi en temps réel de la session (pas de rechargement dans onResume)
+        startListening();
+        checkInQueue.addListener(queueListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        stopListening();
+        checkInQueue.removeListener(queueListener);
+        if (rejectedDialog != null) {
+            rejectedDialog.dismiss();
+            rejectedDialog = null;
+        }
     }
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Student;
+import com.example.attendancesystem.services.CourseCatalog;
 import com.example.attendancesystem.services.FirebaseManager;
 import com.example.attendancesystem.utils.StudentCoursesAdapter;
 import com.example.attendancesystem.utils.Utils;
@@ -37,6 +38,7 @@ public class StudentCoursesActivity extends AppCompatActivity {
 
     // Data
     private FirebaseManager firebaseManager;
+    private CourseCatalog courseCatalog;
     private Student currentStudent;
     private List<Map<String, String>> studentCourses;
     private StudentCoursesAdapter adapter;
@@ -54,6 +56,7 @@ public class StudentCoursesActivity extends AppCompatActivity {
 
         // Initialiser Firebase
         firebaseManager = FirebaseManager.getInstance();
+        courseCatalog = CourseCatalog.getInstance();
         studentCourses = new ArrayList<>();
 
         // Initialiser les views
@@ -73,7 +76,7 @@ public class StudentCoursesActivity extends AppCompatActivity {
     }
 
     private void setupRecyclerView() {
-        adapter = new StudentCoursesAdapter(studentCourses);
+        adapter = new StudentCoursesAdapter();
         rvCourses.setLayoutManager(new LinearLayoutManager(this));
         rvCourses.setAdapter(adapter);
     }
@@ -139,8 +142,7 @@ public class StudentCoursesActivity extends AppCompatActivity {
                 ", Field=" + currentStudent.getField() +
                 ", Year=" + currentStudent.getYear());
 
-        firebaseManager.getStudentCourses(
-                currentStudent.getEmail(),
+        courseCatalog.getStudentCourses(
                 currentStudent.getDepartment(),
                 currentStudent.getField() != null ? currentStudent.getField() : "",
                 currentStudent.getYear(),
@@ -182,8 +184,8 @@ public class StudentCoursesActivity extends AppCompatActivity {
                     studentCourses.size() + " cours trouvés";
             tvCoursesCount.setText(countText);
 
-            // Mettre à jour l'adapter
-            adapter.notifyDataSetChanged();
+            // Mettre à jour l'adapter (seuls les cours modifiés sont re-liés)
+            adapter.updateCourses(studentCourses);
 
             Log.d(TAG, "Courses display updated with " + studentCourses.size() + " courses");
         }
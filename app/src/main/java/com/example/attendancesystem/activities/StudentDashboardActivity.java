@@ -22,6 +22,8 @@ import com.bumptech.glide.load.resource.bitmap.CircleCrop;
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Session;
 import com.example.attendancesystem.models.Student;
+import com.example.attendancesystem.services.AttendanceRepository;
+import com.example.attendancesystem.services.DashboardBootstrap;
 import com.example.attendancesystem.services.FirebaseManager;
 import com.example.attendancesystem.utils.NotificationHelper;
 import com.example.attendancesystem.utils.Utils;
@@ -44,12 +46,22 @@ public class StudentDashboardActivity extends AppCompatActivity {
     // Data
     private FirebaseManager firebaseManager;
     private Student currentStudent;
+    private String currentUserEmail;
+    private DashboardBootstrap dashboardBootstrap;
+    private AttendanceRepository attendanceRepository;
     private boolean isDataLoading = false;
     private NotificationHelper notificationHelper;
 
     // Constants
     private static final int NOTIFICATION_PERMISSION_REQUEST = 1001;
 
+    // Copie locale synchronisée en arrière-plan : cartes rechargées depuis le repository
+    private final AttendanceRepository.AttendanceChangeListener attendanceChangeListener = studentEmail -> {
+        if (studentEmail.equals(currentUserEmail) && !isDataLoading && !isFinishing()) {
+            loadDashboard(false);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -71,6 +83,8 @@ public class StudentDashboardActivity extends AppCompatActivity {
 
         // Initialize Firebase
         firebaseManager = FirebaseManager.getInstance();
+        dashboardBootstrap = new DashboardBootstrap(this);
+        attendanceRepository = AttendanceRepository.getInstance(this);
 
         // Initialize notification helper
         notificationHelper = new NotificationHelper(this);
@@ -142,38 +156,55 @@ public class StudentDashboardActivity extends AppCompatActivity {
     }
 
     private void loadUserData() {
+        loadDashboard(true);
+    }
+
+    /**
+     * Charger le tableau de bord : profil, sessions du jour, prochaine session et
+     * statistiques partent en parallèle et chaque carte s'affiche dès que sa partie arrive.
+     */
+    private void loadDashboard(boolean showLoading) {
         String userEmail = Utils.getSavedUserEmail(this);
         if (userEmail != null) {
-            Log.d(TAG, "Loading student data for: " + userEmail);
-
-            showMainLoading(true);
-
-            firebaseManager.getStudentByEmail(userEmail, new FirebaseManager.DataCallback<Student>() {
-                @Override
-                public void onSuccess(Student student) {
-                    currentStudent = student;
-                    Log.d(TAG, "Student loaded: " + student.getFullName() +
-                            " - Field: " + student.getField() +
-                            " - Year: " + student.getYear() +
-                            " - Department: " + student.getDepartment());
-                    updateUI();
-                    loadTodayAttendance();
-                }
+            Log.d(TAG, "Loading student dashboard for: " + userEmail);
 
-                @Override
-                public void onFailure(String error) {
-                    Log.e(TAG, "Error loading student data: " + error);
+            currentUserEmail = userEmail;
+            if (showLoading) {
+                showMainLoading(true);
+            }
 
-                    showMainLoading(false);
-                    tvWelcome.setText("Erreur de chargement");
-                    tvTodayStatus.setText("Impossible de charger les données");
-                    tvAttendanceRate.setText("--");
-                    tvNextCourse.setText("Non disponible");
+            dashboardBootstrap.loadStudentDashboard(userEmail,
+                    new DashboardBootstrap.Listener<DashboardBootstrap.StudentDashboard>() {
+                        @Override
+                        public void onPartLoaded(DashboardBootstrap.StudentDashboard snapshot, DashboardBootstrap.Part part) {
+                            if (isFinishing() || isDestroyed()) return;
+                            switch (part) {
+                                case PROFILE:
+                                    onProfileLoaded(snapshot);
+                                    break;
+                                case TODAY_SESSIONS:
+                                    onTodaySessionsLoaded(snapshot);
+                                    break;
+                                case NEXT_SESSION:
+                                    onNextSessionLoaded(snapshot);
+                                    break;
+                                case STATISTICS:
+                                    onStatisticsLoaded(snapshot);
+                                    break;
+                            }
+                        }
 
-                    Utils.showToast(StudentDashboardActivity.this,
-                            "Erreur de chargement: " + error + "\nVeuillez réessayer.");
-                }
-            });
+                        @Override
+                        public void onComplete(DashboardBootstrap.StudentDashboard snapshot) {
+                            if (isFinishing() || isDestroyed()) return;
+                            showMainLoading(false);
+
+                            // Le rappel a besoin du profil (préférences) et de la prochaine session
+                            if (currentStudent != null && snapshot.getNextSession() != null) {
+                                scheduleReminderIfNeeded(snapshot.getNextSession());
+                            }
+                        }
+                    });
         } else {
             Log.e(TAG, "No saved user email found");
             showMainLoading(false);
@@ -187,6 +218,30 @@ public class StudentDashboardActivity extends AppCompatActivity {
         }
     }
 
+    private void onProfileLoaded(DashboardBootstrap.StudentDashboard snapshot) {
+        if (snapshot.hasError(DashboardBootstrap.Part.PROFILE)) {
+            String error = snapshot.getError(DashboardBootstrap.Part.PROFILE);
+            Log.e(TAG, "Error loading student data: " + error);
+
+            showMainLoading(false);
+            tvWelcome.setText("Erreur de chargement");
+            tvTodayStatus.setText("Impossible de charger les données");
+            tvAttendanceRate.setText("--");
+            tvNextCourse.setText("Non disponible");
+
+            Utils.showToast(StudentDashboardActivity.this,
+                    "Erreur de chargement: " + error + "\nVeuillez réessayer.");
+            return;
+        }
+
+        currentStudent = snapshot.getStudent();
+        Log.d(TAG, "Student loaded: " + currentStudent.getFullName() +
+                " - Field: " + currentStudent.getField() +
+                " - Year: " + currentStudent.getYear() +
+                " - Department: " + currentStudent.getDepartment());
+        updateUI();
+    }
+
     private void updateUI() {
         if (currentStudent != null) {
             String firstName = Utils.getFirstName(currentStudent.getFullName());
@@ -236,40 +291,18 @@ public class StudentDashboardActivity extends AppCompatActivity {
         }
     }
 
-    private void loadTodayAttendance() {
-        if (currentStudent == null) {
-            Log.w(TAG, "Cannot load today attendance - currentStudent is null");
+    private void onTodaySessionsLoaded(DashboardBootstrap.StudentDashboard snapshot) {
+        if (snapshot.hasError(DashboardBootstrap.Part.TODAY_SESSIONS)) {
+            String error = snapshot.getError(DashboardBootstrap.Part.TODAY_SESSIONS);
+            Log.e(TAG, "Error loading today's sessions: " + error);
+            Utils.showToast(StudentDashboardActivity.this, "Erreur lors du chargement des sessions: " + error);
+            tvTodayStatus.setText("Erreur de chargement");
             return;
         }
 
-        Log.d(TAG, "Loading today's sessions for: " +
-                "Department=" + currentStudent.getDepartment() +
-                ", Field=" + currentStudent.getField() +
-                ", Year=" + currentStudent.getYear());
-
-        // Load today's sessions for this student's department, field and year
-        firebaseManager.getTodaySessionsForStudent(
-                currentStudent.getEmail(),
-                currentStudent.getDepartment(),
-                currentStudent.getField(),
-                currentStudent.getYear(),
-                new FirebaseManager.DataCallback<List<Session>>() {
-                    @Override
-                    public void onSuccess(List<Session> sessions) {
-                        Log.d(TAG, "Today's sessions loaded successfully: " + sessions.size() + " sessions found");
-                        updateTodayStatus(sessions);
-                        loadNextSession();
-                        loadAttendanceStatistics();
-                    }
-
-                    @Override
-                    public void onFailure(String error) {
-                        Log.e(TAG, "Error loading today's sessions: " + error);
-                        Utils.showToast(StudentDashboardActivity.this, "Erreur lors du chargement des sessions: " + error);
-                        tvTodayStatus.setText("Erreur de chargement");
-                        tvNextCourse.setText("Données non disponibles");
-                    }
-                });
+        List<Session> sessions = snapshot.getTodaySessions();
+        Log.d(TAG, "Today's sessions loaded successfully: " + sessions.size() + " sessions found");
+        updateTodayStatus(sessions);
     }
 
     private void updateTodayStatus(List<Session> sessions) {
@@ -289,8 +322,7 @@ public class StudentDashboardActivity extends AppCompatActivity {
             if (session.isActive()) {
                 activeSessions++;
             } else if (session.isCompleted() &&
-                    session.getPresentStudentEmails() != null &&
-                    session.getPresentStudentEmails().contains(currentStudent.getEmail())) {
+                    session.isStudentPresent(currentUserEmail)) {
                 attendedSessions++;
 
                 // Notification de présence réussie (si pas déjà notifié)
@@ -322,47 +354,26 @@ public class StudentDashboardActivity extends AppCompatActivity {
         return !Utils.getBooleanPref(this, key, false);
     }
 
-    private void loadNextSession() {
-        if (currentStudent == null) {
-            Log.w(TAG, "Cannot load next session - currentStudent is null");
-            tvNextCourse.setText("Non disponible");
+    private void onNextSessionLoaded(DashboardBootstrap.StudentDashboard snapshot) {
+        if (snapshot.hasError(DashboardBootstrap.Part.NEXT_SESSION)) {
+            Log.e(TAG, "Error loading next session: " + snapshot.getError(DashboardBootstrap.Part.NEXT_SESSION));
+            tvNextCourse.setText("Erreur de chargement");
             return;
         }
 
-        Log.d(TAG, "Loading next session for student");
-
-        // Load next upcoming session for this student
-        firebaseManager.getNextSessionForStudent(
-                currentStudent.getEmail(),
-                currentStudent.getDepartment(),
-                currentStudent.getField() != null ? currentStudent.getField() : "",
-                currentStudent.getYear(),
-                new FirebaseManager.DataCallback<Session>() {
-                    @Override
-                    public void onSuccess(Session session) {
-                        if (session != null) {
-                            Log.d(TAG, "Next session found: " + session.getCourseName() +
-                                    " at " + session.getStartTime() +
-                                    " in " + session.getRoom());
-
-                            String timeStr = Utils.formatTime(session.getStartTime());
-                            String sessionText = session.getCourseName() + " - " + timeStr;
-                            tvNextCourse.setText(sessionText);
-
-                            // Programmer un rappel si le cours est dans moins de 1 heure
-                            scheduleReminderIfNeeded(session);
-                        } else {
-                            Log.d(TAG, "No next session found");
-                            tvNextCourse.setText("Aucun cours programmé");
-                        }
-                    }
+        Session session = snapshot.getNextSession();
+        if (session != null) {
+            Log.d(TAG, "Next session found: " + session.getCourseName() +
+                    " at " + session.getStartTime() +
+                    " in " + session.getRoom());
 
-                    @Override
-                    public void onFailure(String error) {
-                        Log.e(TAG, "Error loading next session: " + error);
-                        tvNextCourse.setText("Erreur de chargement");
-                    }
-                });
+            String timeStr = Utils.formatTime(session.getStartTime());
+            String sessionText = session.getCourseName() + " - " + timeStr;
+            tvNextCourse.setText(sessionText);
+        } else {
+            Log.d(TAG, "No next session found");
+            tvNextCourse.setText("Aucun cours programmé");
+        }
     }
 
     private void scheduleReminderIfNeeded(Session session) {
@@ -393,40 +404,22 @@ public class StudentDashboardActivity extends AppCompatActivity {
         }
     }
 
-    private void loadAttendanceStatistics() {
-        if (currentStudent == null) {
-            Log.w(TAG, "Cannot load attendance statistics - currentStudent is null");
+    private void onStatisticsLoaded(DashboardBootstrap.StudentDashboard snapshot) {
+        if (snapshot.hasError(DashboardBootstrap.Part.STATISTICS)) {
+            Log.e(TAG, "Error loading attendance statistics: " + snapshot.getError(DashboardBootstrap.Part.STATISTICS));
             tvAttendanceRate.setText("N/A");
             return;
         }
 
-        Log.d(TAG, "Loading attendance statistics for student");
-
-        // Load attendance statistics for this student
-        firebaseManager.getStudentAttendanceStatistics(
-                currentStudent.getEmail(),
-                currentStudent.getDepartment(),
-                currentStudent.getField() != null ? currentStudent.getField() : "",
-                currentStudent.getYear(),
-                new FirebaseManager.DataCallback<FirebaseManager.AttendanceStatsDetailed>() {
-                    @Override
-                    public void onSuccess(FirebaseManager.AttendanceStatsDetailed stats) {
-                        if (stats != null && stats.getTotalSessions() > 0) {
-                            double rate = stats.getAttendanceRate();
-                            tvAttendanceRate.setText(String.format("%.1f%%", rate));
-                            Log.d(TAG, "Attendance rate loaded: " + rate + "%");
-                        } else {
-                            tvAttendanceRate.setText("0%");
-                            Log.d(TAG, "No attendance statistics available - showing 0%");
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(String error) {
-                        Log.e(TAG, "Error loading attendance statistics: " + error);
-                        tvAttendanceRate.setText("N/A");
-                    }
-                });
+        FirebaseManager.AttendanceStatsDetailed stats = snapshot.getStatistics();
+        if (stats != null && stats.getTotalSessions() > 0) {
+            double rate = stats.getAttendanceRate();
+            tvAttendanceRate.setText(String.format("%.1f%%", rate));
+            Log.d(TAG, "Attendance rate loaded: " + rate + "%");
+        } else {
+            tvAttendanceRate.setText("0%");
+            Log.d(TAG, "No attendance statistics available - showing 0%");
+        }
     }
 
     private void setupListeners() {
@@ -582,6 +575,10 @@ public class StudentDashboardActivity extends AppCompatActivity {
             // Nettoyer le cache des images si nécessaire
             // Glide.get(this).clearMemory(); // Optionnel
 
+            // Copie locale des présences, justifications et sessions (mémoire et disque)
+            attendanceRepository.removeChangeListener(attendanceChangeListener);
+            attendanceRepository.clear();
+
         } catch (Exception e) {
             Utils.logError(TAG, "Error clearing temporary data: " + e.getMessage());
         }
@@ -657,6 +654,18 @@ public class StudentDashboardActivity extends AppCompatActivity {
 
 
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        attendanceRepository.addChangeListener(attendanceChangeListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        attendanceRepository.removeChangeListener(attendanceChangeListener);
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -665,9 +674,9 @@ public class StudentDashboardActivity extends AppCompatActivity {
         checkSessionExpiry();
 
         // Refresh data when returning to the activity (code existant)
-        if (currentStudent != null) {
+        if (currentStudent != null && !isDataLoading) {
             Log.d(TAG, "onResume - refreshing data");
-            loadTodayAttendance();
+            loadDashboard(false);
         }
     }
 }
\ No newline at end of file
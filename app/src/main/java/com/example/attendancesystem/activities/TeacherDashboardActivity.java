@@ -11,12 +11,17 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
 
 import com.example.attendancesystem.R;
+import com.example.attendancesystem.models.Attendance;
 import com.example.attendancesystem.models.Session;
 import com.example.attendancesystem.models.Teacher;
+import com.example.attendancesystem.services.DashboardBootstrap;
 import com.example.attendancesystem.services.FirebaseManager;
 import com.example.attendancesystem.utils.Utils;
+import com.google.firebase.firestore.ListenerRegistration;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class TeacherDashboardActivity extends AppCompatActivity {
 
@@ -29,6 +34,15 @@ public class TeacherDashboardActivity extends AppCompatActivity {
     // Firebase
     private FirebaseManager firebaseManager;
     private Teacher currentTeacher;
+    private DashboardBootstrap dashboardBootstrap;
+
+    // Session active suivie en temps réel (entre onStart et onStop)
+    private ListenerRegistration activeSessionRegistration;
+    private ListenerRegistration rosterRegistration;
+    private String listenedSessionId;
+    private boolean activeSessionKnown = false;
+    private Session liveSession;
+    private final Set<String> livePresentStudents = new HashSet<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -43,6 +57,7 @@ public class TeacherDashboardActivity extends AppCompatActivity {
 
         // Initialiser Firebase
         firebaseManager = FirebaseManager.getInstance();
+        dashboardBootstrap = new DashboardBootstrap(this);
 
         // Initialiser les views
         initViews();
@@ -70,28 +85,60 @@ public class TeacherDashboardActivity extends AppCompatActivity {
         String userEmail = Utils.getSavedUserEmail(this);
         if (userEmail != null) {
             Log.d(TAG, "Loading teacher data for: " + userEmail);
-            firebaseManager.getTeacherByEmail(userEmail, new FirebaseManager.DataCallback<Teacher>() {
-                @Override
-                public void onSuccess(Teacher teacher) {
-                    currentTeacher = teacher;
-                    Log.d(TAG, "Teacher loaded: " + teacher.getFullName() +
-                            " - Department: " + teacher.getDepartment());
-                    updateUI();
-                    loadTodayStatistics();
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    Log.e(TAG, "Error loading teacher data: " + error);
-                    Utils.showToast(TeacherDashboardActivity.this, "Erreur de chargement: " + error);
-                }
-            });
+            loadDashboard(userEmail);
         } else {
             Log.e(TAG, "No saved user email found");
             Utils.showToast(this, "Utilisateur non connecté");
         }
     }
 
+    /**
+     * Profil, sessions du jour et prochaine session partent en parallèle ;
+     * chaque carte est mise à jour dès que sa partie arrive.
+     */
+    private void loadDashboard(String userEmail) {
+        dashboardBootstrap.loadTeacherDashboard(userEmail,
+                new DashboardBootstrap.Listener<DashboardBootstrap.TeacherDashboard>() {
+                    @Override
+                    public void onPartLoaded(DashboardBootstrap.TeacherDashboard snapshot, DashboardBootstrap.Part part) {
+                        if (isFinishing() || isDestroyed()) return;
+                        switch (part) {
+                            case PROFILE:
+                                onProfileLoaded(snapshot);
+                                break;
+                            case TODAY_SESSIONS:
+                                onTodaySessionsLoaded(snapshot);
+                                break;
+                            case NEXT_SESSION:
+                                onNextSessionLoaded(snapshot);
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+
+                    @Override
+                    public void onComplete(DashboardBootstrap.TeacherDashboard snapshot) {
+                        Log.d(TAG, "Teacher dashboard loaded" + (snapshot.hasErrors() ? " with errors" : ""));
+                    }
+                });
+    }
+
+    private void onProfileLoaded(DashboardBootstrap.TeacherDashboard snapshot) {
+        if (snapshot.hasError(DashboardBootstrap.Part.PROFILE)) {
+            String error = snapshot.getError(DashboardBootstrap.Part.PROFILE);
+            Log.e(TAG, "Error loading teacher data: " + error);
+            Utils.showToast(TeacherDashboardActivity.this, "Erreur de chargement: " + error);
+            return;
+        }
+
+        currentTeacher = snapshot.getTeacher();
+        Log.d(TAG, "Teacher loaded: " + currentTeacher.getFullName() +
+                " - Department: " + currentTeacher.getDepartment());
+        updateUI();
+        startListening();
+    }
+
     private void updateUI() {
         if (currentTeacher != null) {
             String firstName = Utils.getFirstName(currentTeacher.getFullName());
@@ -102,44 +149,42 @@ public class TeacherDashboardActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Recharger les cartes du jour (session démarrée ou terminée)
+     */
     private void loadTodayStatistics() {
         if (currentTeacher == null) {
             Log.w(TAG, "Cannot load today statistics - currentTeacher is null");
             return;
         }
 
-        Log.d(TAG, "Loading today's sessions for teacher: " + currentTeacher.getEmail());
+        Log.d(TAG, "Reloading today's sessions for teacher: " + currentTeacher.getEmail());
+        loadDashboard(currentTeacher.getEmail());
+    }
 
-        // Charger les sessions d'aujourd'hui pour cet enseignant
-        firebaseManager.getTodaySessionsForTeacher(currentTeacher.getEmail(),
-                new FirebaseManager.DataCallback<List<Session>>() {
-                    @Override
-                    public void onSuccess(List<Session> sessions) {
-                        Log.d(TAG, "Today's sessions loaded successfully: " + sessions.size() + " sessions found");
-
-                        if (sessions != null) {
-                            for (int i = 0; i < sessions.size(); i++) {
-                                Session s = sessions.get(i);
-                                Log.d(TAG, "Session " + (i+1) + ": " + s.getCourseName() +
-                                        " - Field: " + s.getField() +
-                                        " - Time: " + s.getStartTime() +
-                                        " - Status: " + s.getStatus());
-                            }
-                        }
+    private void onTodaySessionsLoaded(DashboardBootstrap.TeacherDashboard snapshot) {
+        if (snapshot.hasError(DashboardBootstrap.Part.TODAY_SESSIONS)) {
+            String error = snapshot.getError(DashboardBootstrap.Part.TODAY_SESSIONS);
+            Log.e(TAG, "Error loading today's sessions: " + error);
+            Utils.showToast(TeacherDashboardActivity.this, "Erreur lors du chargement des sessions: " + error);
+            tvTodayCourses.setText("Erreur de chargement");
+            tvStudentsPresent.setText("Données non disponibles");
+            return;
+        }
 
-                        updateTodaySessionsInfo(sessions);
-                        loadNextSession();
-                        loadAttendanceStatistics(sessions);
-                    }
+        List<Session> sessions = snapshot.getTodaySessions();
+        Log.d(TAG, "Today's sessions loaded successfully: " + sessions.size() + " sessions found");
 
-                    @Override
-                    public void onFailure(String error) {
-                        Log.e(TAG, "Error loading today's sessions: " + error);
-                        Utils.showToast(TeacherDashboardActivity.this, "Erreur lors du chargement des sessions: " + error);
-                        tvTodayCourses.setText("Erreur de chargement");
-                        tvStudentsPresent.setText("Données non disponibles");
-                    }
-                });
+        for (int i = 0; i < sessions.size(); i++) {
+            Session s = sessions.get(i);
+            Log.d(TAG, "Session " + (i+1) + ": " + s.getCourseName() +
+                    " - Field: " + s.getField() +
+                    " - Time: " + s.getStartTime() +
+                    " - Status: " + s.getStatus());
+        }
+
+        updateTodaySessionsInfo(sessions);
+        loadAttendanceStatistics(sessions);
     }
 
     private void updateTodaySessionsInfo(List<Session> sessions) {
@@ -176,41 +221,28 @@ public class TeacherDashboardActivity extends AppCompatActivity {
         Log.d(TAG, "Today sessions info updated: " + statusText);
     }
 
-    private void loadNextSession() {
-        if (currentTeacher == null) {
-            Log.w(TAG, "Cannot load next session - currentTeacher is null");
+    private void onNextSessionLoaded(DashboardBootstrap.TeacherDashboard snapshot) {
+        if (snapshot.hasError(DashboardBootstrap.Part.NEXT_SESSION)) {
+            Log.e(TAG, "Error loading next session: " + snapshot.getError(DashboardBootstrap.Part.NEXT_SESSION));
+            tvUpcomingCourse.setText("Erreur de chargement");
             return;
         }
 
-        Log.d(TAG, "Loading next session for teacher: " + currentTeacher.getEmail());
-
-        // Charger la prochaine session pour cet enseignant
-        firebaseManager.getNextSessionForTeacher(currentTeacher.getEmail(),
-                new FirebaseManager.DataCallback<Session>() {
-                    @Override
-                    public void onSuccess(Session session) {
-                        if (session != null) {
-                            Log.d(TAG, "Next session found: " + session.getCourseName() +
-                                    " - Field: " + session.getField() +
-                                    " at " + session.getStartTime() +
-                                    " in " + session.getRoom());
-
-                            String timeStr = Utils.formatTime(session.getStartTime());
-                            String sessionText = session.getCourseName() + " (" + session.getField() + ") - " +
-                                    timeStr + " (" + session.getRoom() + ")";
-                            tvUpcomingCourse.setText(sessionText);
-                        } else {
-                            Log.d(TAG, "No next session found");
-                            tvUpcomingCourse.setText("Aucun cours programmé");
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(String error) {
-                        Log.e(TAG, "Error loading next session: " + error);
-                        tvUpcomingCourse.setText("Erreur de chargement");
-                    }
-                });
+        Session session = snapshot.getNextSession();
+        if (session != null) {
+            Log.d(TAG, "Next session found: " + session.getCourseName() +
+                    " - Field: " + session.getField() +
+                    " at " + session.getStartTime() +
+                    " in " + session.getRoom());
+
+            String timeStr = Utils.formatTime(session.getStartTime());
+            String sessionText = session.getCourseName() + " (" + session.getField() + ") - " +
+                    timeStr + " (" + session.getRoom() + ")";
+            tvUpcomingCourse.setText(sessionText);
+        } else {
+            Log.d(TAG, "No next session found");
+            tvUpcomingCourse.setText("Aucun cours programmé");
+        }
     }
 
     private void loadAttendanceStatistics(List<Session> todaySessions) {
@@ -250,7 +282,10 @@ public class TeacherDashboardActivity extends AppCompatActivity {
                 }
             }
 
-            if (hasActiveSession) {
+            if (hasActiveSession && liveSession != null) {
+                showLiveHeadcount();
+                return;
+            } else if (hasActiveSession) {
                 statsText = "Session en cours...";
             } else {
                 statsText = "Statistiques non disponibles";
@@ -261,6 +296,112 @@ public class TeacherDashboardActivity extends AppCompatActivity {
         Log.d(TAG, "Attendance statistics updated: " + statsText);
     }
 
+    // =================== SESSION EN COURS (TEMPS RÉEL) ===================
+
+    private void startListening() {
+        if (currentTeacher == null || activeSessionRegistration != null) return;
+
+        activeSessionRegistration = firebaseManager.listenToActiveSessionForTeacher(currentTeacher.getEmail(),
+                new FirebaseManager.DataCallback<Session>() {
+                    @Override
+                    public void onSuccess(Session session) {
+                        onActiveSessionChanged(session);
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        Log.e(TAG, "Active session listener error: " + error);
+                    }
+                });
+    }
+
+    private void stopListening() {
+        if (activeSessionRegistration != null) {
+            activeSessionRegistration.remove();
+            activeSessionRegistration = null;
+        }
+        detachRoster();
+    }
+
+    private void onActiveSessionChanged(Session session) {
+        String sessionId = session != null ? session.getSessionId() : null;
+        boolean firstEvent = !activeSessionKnown;
+        activeSessionKnown = true;
+
+        if (sessionId == null ? listenedSessionId == null : sessionId.equals(listenedSessionId)) return;
+
+        detachRoster();
+        liveSession = session;
+        if (session != null) {
+            attachRoster(session);
+        }
+
+        // Session démarrée ou terminée : les statistiques du jour ont changé
+        if (!firstEvent) {
+            loadTodayStatistics();
+        }
+    }
+
+    private void attachRoster(Session session) {
+        listenedSessionId = session.getSessionId();
+        rosterRegistration = firebaseManager.listenToSessionRoster(session.getSessionId(),
+                new FirebaseManager.SessionRosterListener() {
+                    @Override
+                    public void onSessionChanged(Session updated) {
+                        liveSession = updated;
+                        showLiveHeadcount();
+                    }
+
+                    @Override
+                    public void onAttendanceAdded(Attendance attendance) {
+                        applyAttendance(attendance);
+                    }
+
+                    @Override
+                    public void onAttendanceModified(Attendance attendance) {
+                        applyAttendance(attendance);
+                    }
+
+                    @Override
+                    public void onAttendanceRemoved(Attendance attendance) {
+                        livePresentStudents.remove(attendance.getStudentEmail());
+                        showLiveHeadcount();
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        Log.e(TAG, "Session roster listener error: " + error);
+                    }
+                });
+    }
+
+    private void detachRoster() {
+        if (rosterRegistration != null) {
+            rosterRegistration.remove();
+            rosterRegistration = null;
+        }
+        listenedSessionId = null;
+        liveSession = null;
+        livePresentStudents.clear();
+    }
+
+    private void applyAttendance(Attendance attendance) {
+        if (attendance.isPresent()) {
+            livePresentStudents.add(attendance.getStudentEmail());
+        } else {
+            livePresentStudents.remove(attendance.getStudentEmail());
+        }
+        showLiveHeadcount();
+    }
+
+    private void showLiveHeadcount() {
+        if (liveSession == null || !liveSession.isActive()) return;
+
+        int enrolled = liveSession.getStatistics() != null ?
+                liveSession.getStatistics().getTotalEnrolled() : liveSession.getEnrolledStudentEmails().size();
+        tvStudentsPresent.setText("Session en cours : " + livePresentStudents.size() + "/" + enrolled + " présents");
+    }
+
     private void setupListeners() {
         cardManageSession.setOnClickListener(v -> {
             Intent intent = new Intent(this, SessionManagementActivity.class);
@@ -330,12 +471,15 @@ public class TeacherDashboardActivity extends AppCompatActivity {
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Actualiser les données quand on revient sur l'activité
-        if (currentTeacher != null) {
-            Log.d(TAG, "onResume - refreshing data");
-            loadTodayStatistics();
-        }
+    protected void onStart() {
+        super.onStart();
+        // Les changements de session arrivent par listener (plus de rechargement dans onResume)
+        startListening();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        stopListening();
     }
 }
\ No newline at end of file
@@ -65,9 +65,11 @@ public class DayScheduleFragment extends Fragment {
     }
 
     private void setupRecyclerView() {
-        adapter = new ScheduleAdapter(sessions, ScheduleAdapter.VIEW_TYPE_DAY);
+        adapter = new ScheduleAdapter(ScheduleAdapter.VIEW_TYPE_DAY);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.setAdapter(adapter);
+        // Sessions reçues avant la création de la vue
+        adapter.updateSessions(sessions);
 
         Log.d(TAG, "RecyclerView setup completed");
     }
@@ -94,7 +96,7 @@ public class DayScheduleFragment extends Fragment {
         }
 
         if (adapter != null) {
-            adapter.notifyDataSetChanged();
+            adapter.updateSessions(sessions);
         }
 
         updateEmptyState();
@@ -16,6 +16,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Session;
+import com.example.attendancesystem.utils.DateFormats;
 import com.example.attendancesystem.utils.ScheduleAdapter;
 import com.example.attendancesystem.utils.Utils;
 
@@ -25,7 +26,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -75,9 +75,11 @@ public class MonthScheduleFragment extends Fragment {
     }
 
     private void setupRecyclerView() {
-        adapter = new ScheduleAdapter(sessions, ScheduleAdapter.VIEW_TYPE_MONTH);
+        adapter = new ScheduleAdapter(ScheduleAdapter.VIEW_TYPE_MONTH);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.setAdapter(adapter);
+        // Sessions reçues avant la création de la vue
+        adapter.updateSessions(sessions);
 
         Log.d(TAG, "RecyclerView setup completed");
     }
@@ -85,11 +87,10 @@ public class MonthScheduleFragment extends Fragment {
     private void updateMonthInfo() {
         if (tvMonthInfo != null) {
             Calendar calendar = Calendar.getInstance();
-            String monthName = calendar.getDisplayName(Calendar.MONTH, Calendar.LONG, Locale.FRENCH);
+            String monthName = DateFormats.monthName(calendar.get(Calendar.MONTH));
             int year = calendar.get(Calendar.YEAR);
 
-            String monthInfo = String.format("%s %d",
-                    monthName != null ? monthName : "Mois", year);
+            String monthInfo = monthName + " " + year;
             tvMonthInfo.setText(monthInfo);
         }
     }
@@ -121,7 +122,7 @@ public class MonthScheduleFragment extends Fragment {
         }
 
         if (adapter != null) {
-            adapter.notifyDataSetChanged();
+            adapter.updateSessions(sessions);
         }
 
         updateEmptyState();
@@ -161,13 +162,13 @@ public class MonthScheduleFragment extends Fragment {
 
         if (isEmpty && tvEmptyMessage != null) {
             Calendar calendar = Calendar.getInstance();
-            String monthName = calendar.getDisplayName(Calendar.MONTH, Calendar.LONG, Locale.FRENCH);
+            String monthName = DateFormats.monthName(calendar.get(Calendar.MONTH));
 
             tvEmptyMessage.setText(String.format(
                     "Aucun cours programmé en %s\n\n" +
                             "Votre emploi du temps pour ce mois est libre.\n" +
                             "Consultez les autres mois ou vérifiez avec l'administration.",
-                    monthName != null ? monthName : "ce mois"));
+                    monthName));
         }
 
         Log.d(TAG, "Empty state updated - isEmpty: " + isEmpty);
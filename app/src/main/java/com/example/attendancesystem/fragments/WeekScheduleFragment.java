@@ -16,8 +16,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Session;
+import com.example.attendancesystem.utils.DateFormats;
 import com.example.attendancesystem.utils.ScheduleAdapter;
-import com.example.attendancesystem.utils.Utils;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -74,9 +74,11 @@ public class WeekScheduleFragment extends Fragment {
     }
 
     private void setupRecyclerView() {
-        adapter = new ScheduleAdapter(sessions, ScheduleAdapter.VIEW_TYPE_WEEK);
+        adapter = new ScheduleAdapter(ScheduleAdapter.VIEW_TYPE_WEEK);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.setAdapter(adapter);
+        // Sessions reçues avant la création de la vue
+        adapter.updateSessions(sessions);
 
         Log.d(TAG, "RecyclerView setup completed");
     }
@@ -87,11 +89,11 @@ public class WeekScheduleFragment extends Fragment {
 
             // Début de la semaine (lundi)
             calendar.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
-            String startWeek = Utils.formatDate(new com.google.firebase.Timestamp(calendar.getTime()));
+            String startWeek = DateFormats.date(calendar.getTime());
 
             // Fin de la semaine (dimanche)
             calendar.add(Calendar.DAY_OF_WEEK, 6);
-            String endWeek = Utils.formatDate(new com.google.firebase.Timestamp(calendar.getTime()));
+            String endWeek = DateFormats.date(calendar.getTime());
 
             String weekInfo = String.format("Semaine du %s au %s", startWeek, endWeek);
             tvWeekInfo.setText(weekInfo);
@@ -139,7 +141,7 @@ public class WeekScheduleFragment extends Fragment {
         }
 
         if (adapter != null) {
-            adapter.notifyDataSetChanged();
+            adapter.updateSessions(sessions);
         }
 
         updateEmptyState();
@@ -160,19 +162,7 @@ public class WeekScheduleFragment extends Fragment {
                 Calendar calendar = Calendar.getInstance();
                 calendar.setTime(session.getStartTime().toDate());
 
-                int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-                String dayName;
-
-                switch (dayOfWeek) {
-                    case Calendar.MONDAY: dayName = "Lundi"; break;
-                    case Calendar.TUESDAY: dayName = "Mardi"; break;
-                    case Calendar.WEDNESDAY: dayName = "Mercredi"; break;
-                    case Calendar.THURSDAY: dayName = "Jeudi"; break;
-                    case Calendar.FRIDAY: dayName = "Vendredi"; break;
-                    case Calendar.SATURDAY: dayName = "Samedi"; break;
-                    case Calendar.SUNDAY: dayName = "Dimanche"; break;
-                    default: dayName = "Lundi"; break;
-                }
+                String dayName = DateFormats.dayName(calendar.get(Calendar.DAY_OF_WEEK));
 
                 sessionsByDay.get(dayName).add(session);
             }
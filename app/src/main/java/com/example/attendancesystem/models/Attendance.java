@@ -21,6 +21,7 @@ public class Attendance {
     private AttendanceDetails attendanceDetails;
     private Timestamp createdAt;
     private Timestamp lastModifiedAt;
+    private boolean deleted; // Suppression logique (visible par les listeners de liste d'appel)
 
     // Constructeur vide requis pour Firebase
     public Attendance() {
@@ -63,7 +64,10 @@ public class Attendance {
     // Classe interne pour les détails du pointage
     public static class AttendanceDetails {
         private Timestamp captureTime;
-        private long processingTime; // en millisecondes
+        private long processingTime; // analyse de l'image retenue (détection, recadrage, reconnaissance), en millisecondes
+        private long detectionTime; // détection du visage, en millisecondes
+        private long recognitionTime; // empreinte + recherche dans l'index, en millisecondes
+        private double framesPerSecond; // débit mesuré du pipeline caméra
         private int retryCount;
         private String location; // Localisation fixe du terminal unique
 
@@ -78,6 +82,9 @@ public class Attendance {
             Map<String, Object> map = new HashMap<>();
             map.put("captureTime", captureTime);
             map.put("processingTime", processingTime);
+            map.put("detectionTime", detectionTime);
+            map.put("recognitionTime", recognitionTime);
+            map.put("framesPerSecond", framesPerSecond);
             map.put("retryCount", retryCount);
             map.put("location", location);
             return map;
@@ -90,6 +97,15 @@ public class Attendance {
         public long getProcessingTime() { return processingTime; }
         public void setProcessingTime(long processingTime) { this.processingTime = processingTime; }
 
+        public long getDetectionTime() { return detectionTime; }
+        public void setDetectionTime(long detectionTime) { this.detectionTime = detectionTime; }
+
+        public long getRecognitionTime() { return recognitionTime; }
+        public void setRecognitionTime(long recognitionTime) { this.recognitionTime = recognitionTime; }
+
+        public double getFramesPerSecond() { return framesPerSecond; }
+        public void setFramesPerSecond(double framesPerSecond) { this.framesPerSecond = framesPerSecond; }
+
         public int getRetryCount() { return retryCount; }
         public void setRetryCount(int retryCount) { this.retryCount = retryCount; }
 
@@ -132,6 +148,7 @@ public class Attendance {
         }
         map.put("createdAt", createdAt);
         map.put("lastModifiedAt", lastModifiedAt);
+        map.put("deleted", deleted);
         return map;
     }
 
@@ -152,6 +169,7 @@ public class Attendance {
     public AttendanceDetails getAttendanceDetails() { return attendanceDetails; }
     public Timestamp getCreatedAt() { return createdAt; }
     public Timestamp getLastModifiedAt() { return lastModifiedAt; }
+    public boolean isDeleted() { return deleted; }
 
     // Setters
     public void setAttendanceId(String attendanceId) { this.attendanceId = attendanceId; }
@@ -170,6 +188,7 @@ public class Attendance {
     public void setAttendanceDetails(AttendanceDetails attendanceDetails) { this.attendanceDetails = attendanceDetails; }
     public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
     public void setLastModifiedAt(Timestamp lastModifiedAt) { this.lastModifiedAt = lastModifiedAt; }
+    public void setDeleted(boolean deleted) { this.deleted = deleted; }
 
     @Override
     public String toString() {
@@ -16,6 +16,7 @@ public class Course {
     private List<String> targetYears; // Ajouté pour correspondre à Firestore
     private boolean isActive;
     private Timestamp createdAt;
+    private Timestamp lastModifiedAt; // Rafraîchissement delta du catalogue
 
     // Planning du cours
     private Schedule courseScheduleEntry; // Correspond à 'courseScheduleEntry' dans Firestore
@@ -151,6 +152,7 @@ public class Course {
     public String getDepartment() { return department; }
     public boolean isActive() { return isActive; }
     public Timestamp getCreatedAt() { return createdAt; }
+    public Timestamp getLastModifiedAt() { return lastModifiedAt; }
     public CourseStatistics getStatistics() { return statistics; }
     public String getField() { return field; }
     public List<String> getTargetYears() { return targetYears; }
@@ -168,6 +170,7 @@ public class Course {
     public void setDepartment(String department) { this.department = department; }
     public void setActive(boolean active) { this.isActive = active; }
     public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
+    public void setLastModifiedAt(Timestamp lastModifiedAt) { this.lastModifiedAt = lastModifiedAt; }
     public void setStatistics(CourseStatistics statistics) { this.statistics = statistics; }
 
     @Override
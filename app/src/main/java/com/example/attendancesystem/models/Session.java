@@ -28,10 +28,8 @@ public class Session {
     private String timeSlot; // "08:00-10:00", "14:00-16:00"
     private boolean isRecurring; // always true for fixed weekly schedule
 
-    // Student lists
-    private List<String> enrolledStudentEmails;
-    private List<String> presentStudentEmails;
-    private List<String> absentStudentEmails;
+    // Student lists (exposées en List pour Firestore : enrolled/present/absentStudentEmails)
+    private final SessionRoster roster = new SessionRoster();
 
     // Statistics
     private SessionStatistics statistics;
@@ -41,9 +39,6 @@ public class Session {
 
     // Constructeur vide requis pour Firebase
     public Session() {
-        this.enrolledStudentEmails = new ArrayList<>();
-        this.presentStudentEmails = new ArrayList<>();
-        this.absentStudentEmails = new ArrayList<>();
         this.targetYears = new ArrayList<>();
         this.statistics = new SessionStatistics();
         this.isRecurring = true; // Default to recurring for fixed timetable
@@ -68,9 +63,6 @@ public class Session {
         this.status = "scheduled";
         this.isManuallyManaged = false;
         this.isRecurring = true;
-        this.enrolledStudentEmails = new ArrayList<>();
-        this.presentStudentEmails = new ArrayList<>();
-        this.absentStudentEmails = new ArrayList<>();
         this.statistics = new SessionStatistics();
         this.createdAt = Timestamp.now();
         this.lastUpdatedAt = Timestamp.now();
@@ -99,9 +91,13 @@ public class Session {
 
         // Méthode pour recalculer les statistiques
         public void recalculate(List<String> enrolled, List<String> present, List<String> absent) {
-            this.totalEnrolled = enrolled.size();
-            this.totalPresent = present.size();
-            this.totalAbsent = absent.size();
+            recalculate(enrolled.size(), present.size(), absent.size());
+        }
+
+        public void recalculate(int totalEnrolled, int totalPresent, int totalAbsent) {
+            this.totalEnrolled = totalEnrolled;
+            this.totalPresent = totalPresent;
+            this.totalAbsent = totalAbsent;
             this.attendanceRate = totalEnrolled > 0 ? (double) totalPresent / totalEnrolled * 100 : 0.0;
         }
 
@@ -143,42 +139,42 @@ public class Session {
     }
 
     public void markStudentPresent(String studentEmail) {
-        if (enrolledStudentEmails.contains(studentEmail)) {
-            if (!presentStudentEmails.contains(studentEmail)) {
-                presentStudentEmails.add(studentEmail);
-            }
-            absentStudentEmails.remove(studentEmail);
+        if (roster.markPresent(studentEmail)) {
             updateStatistics();
         }
     }
 
     public void markStudentAbsent(String studentEmail) {
-        if (enrolledStudentEmails.contains(studentEmail)) {
-            if (!absentStudentEmails.contains(studentEmail)) {
-                absentStudentEmails.add(studentEmail);
-            }
-            presentStudentEmails.remove(studentEmail);
+        if (roster.markAbsent(studentEmail)) {
+            updateStatistics();
+        }
+    }
+
+    public void unmarkStudent(String studentEmail) {
+        if (roster.unmark(studentEmail)) {
             updateStatistics();
         }
     }
 
     public void enrollStudent(String studentEmail) {
-        if (!enrolledStudentEmails.contains(studentEmail)) {
-            enrolledStudentEmails.add(studentEmail);
+        if (roster.enroll(studentEmail)) {
             updateStatistics();
         }
     }
 
     public void removeStudent(String studentEmail) {
-        enrolledStudentEmails.remove(studentEmail);
-        presentStudentEmails.remove(studentEmail);
-        absentStudentEmails.remove(studentEmail);
-        updateStatistics();
+        if (roster.remove(studentEmail)) {
+            updateStatistics();
+        }
     }
 
+    public boolean isStudentEnrolled(String studentEmail) { return roster.isEnrolled(studentEmail); }
+    public boolean isStudentPresent(String studentEmail) { return roster.isPresent(studentEmail); }
+    public boolean isStudentAbsent(String studentEmail) { return roster.isAbsent(studentEmail); }
+
     private void updateStatistics() {
         if (statistics != null) {
-            statistics.recalculate(enrolledStudentEmails, presentStudentEmails, absentStudentEmails);
+            statistics.recalculate(roster.getEnrolledCount(), roster.getPresentCount(), roster.getAbsentCount());
         }
         this.lastUpdatedAt = Timestamp.now();
     }
@@ -188,15 +184,15 @@ public class Session {
         this.lastUpdatedAt = Timestamp.now();
     }
 
-    public void endSession() {
+    /**
+     * Terminer la session : les inscrits non pointés passent absents en une seule passe.
+     * Retourne les étudiants nouvellement marqués absents.
+     */
+    public List<String> endSession() {
         this.status = "completed";
-        // Marquer les étudiants non présents comme absents
-        for (String studentEmail : enrolledStudentEmails) {
-            if (!presentStudentEmails.contains(studentEmail)) {
-                markStudentAbsent(studentEmail);
-            }
-        }
-        this.lastUpdatedAt = Timestamp.now();
+        List<String> newlyAbsent = roster.markUnmarkedAbsent();
+        updateStatistics();
+        return newlyAbsent;
     }
 
     public void cancelSession() {
@@ -223,9 +219,9 @@ public class Session {
         map.put("dayOfWeek", dayOfWeek);
         map.put("timeSlot", timeSlot);
         map.put("isRecurring", isRecurring);
-        map.put("enrolledStudentEmails", enrolledStudentEmails);
-        map.put("presentStudentEmails", presentStudentEmails);
-        map.put("absentStudentEmails", absentStudentEmails);
+        map.put("enrolledStudentEmails", roster.getEnrolled());
+        map.put("presentStudentEmails", roster.getPresent());
+        map.put("absentStudentEmails", roster.getAbsent());
         if (statistics != null) {
             map.put("statistics", statistics.toMap());
         }
@@ -245,9 +241,10 @@ public class Session {
     public String getStatus() { return status; }
     public String getRoom() { return room; }
     public boolean isManuallyManaged() { return isManuallyManaged; }
-    public List<String> getEnrolledStudentEmails() { return enrolledStudentEmails; }
-    public List<String> getPresentStudentEmails() { return presentStudentEmails; }
-    public List<String> getAbsentStudentEmails() { return absentStudentEmails; }
+    // Copies : passer par enrollStudent / markStudentPresent / markStudentAbsent pour modifier
+    public List<String> getEnrolledStudentEmails() { return roster.getEnrolled(); }
+    public List<String> getPresentStudentEmails() { return roster.getPresent(); }
+    public List<String> getAbsentStudentEmails() { return roster.getAbsent(); }
     public SessionStatistics getStatistics() { return statistics; }
     public Timestamp getCreatedAt() { return createdAt; }
     public Timestamp getLastUpdatedAt() { return lastUpdatedAt; }
@@ -272,15 +269,15 @@ public class Session {
     public void setRoom(String room) { this.room = room; }
     public void setManuallyManaged(boolean manuallyManaged) { this.isManuallyManaged = manuallyManaged; }
     public void setEnrolledStudentEmails(List<String> enrolledStudentEmails) {
-        this.enrolledStudentEmails = enrolledStudentEmails;
+        roster.setEnrolled(enrolledStudentEmails);
         updateStatistics();
     }
     public void setPresentStudentEmails(List<String> presentStudentEmails) {
-        this.presentStudentEmails = presentStudentEmails;
+        roster.setPresent(presentStudentEmails);
         updateStatistics();
     }
     public void setAbsentStudentEmails(List<String> absentStudentEmails) {
-        this.absentStudentEmails = absentStudentEmails;
+        roster.setAbsent(absentStudentEmails);
         updateStatistics();
     }
     public void setStatistics(SessionStatistics statistics) { this.statistics = statistics; }
@@ -0,0 +1,119 @@
+package com.example.attendancesystem.models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Liste d'appel d'une session : inscrits, présents et absents.
+ *
+ * Les ensembles sont des LinkedHashSet (appartenance en O(1), ordre d'insertion conservé
+ * pour Firestore), leur taille sert directement de compteur pour les statistiques.
+ * Session expose toujours des List pour rester compatible avec les champs du document.
+ */
+public class SessionRoster {
+
+    private final Set<String> enrolled = new LinkedHashSet<>();
+    private final Set<String> present = new LinkedHashSet<>();
+    private final Set<String> absent = new LinkedHashSet<>();
+
+    // =================== MODIFICATIONS ===================
+
+    /**
+     * Inscrire un étudiant. Retourne false s'il était déjà inscrit.
+     */
+    public boolean enroll(String studentEmail) {
+        return studentEmail != null && enrolled.add(studentEmail);
+    }
+
+    /**
+     * Retirer un étudiant de toutes les listes
+     */
+    public boolean remove(String studentEmail) {
+        boolean changed = enrolled.remove(studentEmail);
+        changed |= present.remove(studentEmail);
+        changed |= absent.remove(studentEmail);
+        return changed;
+    }
+
+    /**
+     * Marquer un étudiant inscrit comme présent. Retourne true si la liste a changé.
+     */
+    public boolean markPresent(String studentEmail) {
+        if (!enrolled.contains(studentEmail)) return false;
+        boolean changed = present.add(studentEmail);
+        changed |= absent.remove(studentEmail);
+        return changed;
+    }
+
+    /**
+     * Marquer un étudiant inscrit comme absent. Retourne true si la liste a changé.
+     */
+    public boolean markAbsent(String studentEmail) {
+        if (!enrolled.contains(studentEmail)) return false;
+        boolean changed = absent.add(studentEmail);
+        changed |= present.remove(studentEmail);
+        return changed;
+    }
+
+    /**
+     * Remettre un inscrit « non pointé » (pointage supprimé). Retourne true si la liste a changé.
+     */
+    public boolean unmark(String studentEmail) {
+        boolean changed = present.remove(studentEmail);
+        changed |= absent.remove(studentEmail);
+        return changed;
+    }
+
+    /**
+     * Marquer absents, en une seule passe, tous les inscrits non présents.
+     * Retourne les étudiants nouvellement marqués absents.
+     */
+    public List<String> markUnmarkedAbsent() {
+        List<String> newlyAbsent = new ArrayList<>();
+        for (String studentEmail : enrolled) {
+            if (!present.contains(studentEmail) && absent.add(studentEmail)) {
+                newlyAbsent.add(studentEmail);
+            }
+        }
+        return newlyAbsent;
+    }
+
+    // =================== REMPLACEMENT (désérialisation Firestore) ===================
+
+    public void setEnrolled(Collection<String> studentEmails) {
+        replace(enrolled, studentEmails);
+    }
+
+    public void setPresent(Collection<String> studentEmails) {
+        replace(present, studentEmails);
+    }
+
+    public void setAbsent(Collection<String> studentEmails) {
+        replace(absent, studentEmails);
+    }
+
+    private static void replace(Set<String> target, Collection<String> studentEmails) {
+        target.clear();
+        if (studentEmails != null) {
+            target.addAll(studentEmails);
+        }
+    }
+
+    // =================== LECTURE ===================
+
+    public boolean isEnrolled(String studentEmail) { return enrolled.contains(studentEmail); }
+    public boolean isPresent(String studentEmail) { return present.contains(studentEmail); }
+    public boolean isAbsent(String studentEmail) { return absent.contains(studentEmail); }
+
+    public int getEnrolledCount() { return enrolled.size(); }
+    public int getPresentCount() { return present.size(); }
+    public int getAbsentCount() { return absent.size(); }
+
+    // Copies sous forme de liste (format des champs Firestore)
+    public List<String> getEnrolled() { return new ArrayList<>(enrolled); }
+    public List<String> getPresent() { return new ArrayList<>(present); }
+    public List<String> getAbsent() { return new ArrayList<>(absent); }
+}
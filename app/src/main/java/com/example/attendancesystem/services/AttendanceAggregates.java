@@ -0,0 +1,325 @@
+package com.example.attendancesystem.services;
+
+import com.example.attendancesystem.models.Attendance;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compteurs de présence pré-agrégés.
+ *
+ * attendance_stats/{studentEmail}                     → totaux de l'étudiant
+ * attendance_stats/{studentEmail}/courses/{courseId}  → totaux par (étudiant, cours)
+ *
+ * Chaque document contient les compteurs present / absent / justified / total et des
+ * buckets journaliers "daily.yyyyMMdd" utilisés pour les fenêtres glissantes (60 jours).
+ * Les compteurs sont incrémentés dans le même WriteBatch que l'écriture de la présence,
+ * ils restent donc cohérents avec la collection attendance. Quand une présence peut déjà
+ * exister (ID déterministe session + étudiant : nouvel essai, second terminal, pointage
+ * tardif après une absence), le statut enregistré est relu avant l'écriture et seul le
+ * changement réel est compté (recordReplacement).
+ */
+public final class AttendanceAggregates {
+
+    public static final String STATS_COLLECTION = "attendance_stats";
+    public static final String COURSES_SUBCOLLECTION = "courses";
+
+    // Un changement de statut = 2 écritures (étudiant + cours), à compter dans la limite de 500 d'un batch
+    public static final int WRITES_PER_STATUS_CHANGE = 2;
+
+    // Les buckets plus anciens sont supprimés à la lecture
+    static final int BUCKET_RETENTION_DAYS = 400;
+
+    private static final String FIELD_TOTAL = "total";
+    private static final String FIELD_DAILY = "daily";
+    private static final String FIELD_REBUILT_AT = "rebuiltAt";
+    private static final String UNKNOWN_COURSE = "unknown";
+
+    private AttendanceAggregates() {}
+
+    /**
+     * Destination des écritures de compteurs : WriteBatch ou Transaction
+     */
+    public interface CounterWrites {
+        void merge(DocumentReference document, Map<String, Object> data);
+    }
+
+    public static CounterWrites into(WriteBatch batch) {
+        return (document, data) -> batch.set(document, data, SetOptions.merge());
+    }
+
+    public static CounterWrites into(Transaction transaction) {
+        return (document, data) -> transaction.set(document, data, SetOptions.merge());
+    }
+
+    public static DocumentReference studentStatsRef(FirebaseFirestore db, String studentEmail) {
+        return db.collection(STATS_COLLECTION).document(studentEmail);
+    }
+
+    public static DocumentReference courseStatsRef(FirebaseFirestore db, String studentEmail, String courseId) {
+        return studentStatsRef(db, studentEmail)
+                .collection(COURSES_SUBCOLLECTION)
+                .document(courseId != null && !courseId.isEmpty() ? courseId : UNKNOWN_COURSE);
+    }
+
+    // =================== ÉCRITURE ===================
+
+    /**
+     * Ajouter au batch la mise à jour des compteurs pour un changement de statut.
+     * oldStatus = null pour une nouvelle présence, newStatus = null pour une suppression.
+     */
+    public static void recordStatusChange(FirebaseFirestore db, WriteBatch batch, Attendance attendance,
+                                          String oldStatus, String newStatus) {
+        recordStatusChange(db, into(batch), attendance, oldStatus, newStatus);
+    }
+
+    public static void recordStatusChange(FirebaseFirestore db, CounterWrites writes, Attendance attendance,
+                                          String oldStatus, String newStatus) {
+        recordStatusChange(db, writes, attendance.getStudentEmail(), attendance.getCourseId(),
+                attendance.getCourseName(), dayOf(attendance), oldStatus, newStatus);
+    }
+
+    public static void recordStatusChange(FirebaseFirestore db, WriteBatch batch, String studentEmail,
+                                          String courseId, String courseName, Date day,
+                                          String oldStatus, String newStatus) {
+        recordStatusChange(db, into(batch), studentEmail, courseId, courseName, day, oldStatus, newStatus);
+    }
+
+    /**
+     * Remplacement d'une présence dont le document existait peut-être déjà.
+     * stored = document relu avant l'écriture (null, absent ou supprimé : nouvelle présence).
+     * Si l'ancienne présence tombe un autre jour, elle est décomptée de son propre bucket
+     * (jusqu'à 2 * WRITES_PER_STATUS_CHANGE écritures).
+     */
+    public static void recordReplacement(FirebaseFirestore db, CounterWrites writes,
+                                         DocumentSnapshot stored, Attendance replacement) {
+        String storedStatus = null;
+        Date storedDay = null;
+        if (stored != null && stored.exists() && !Boolean.TRUE.equals(stored.getBoolean("deleted"))) {
+            storedStatus = stored.getString("status");
+            storedDay = stored.getTimestamp("timestamp") != null ? stored.getTimestamp("timestamp").toDate() : null;
+        }
+
+        Date day = dayOf(replacement);
+        if (storedStatus == null || storedDay == null || dayKey(storedDay).equals(dayKey(day))) {
+            recordStatusChange(db, writes, replacement, storedStatus, replacement.getStatus());
+            return;
+        }
+        if (normalize(storedStatus) != null && normalize(storedStatus).equals(normalize(replacement.getStatus()))) {
+            return;
+        }
+        recordStatusChange(db, writes, replacement.getStudentEmail(), replacement.getCourseId(),
+                replacement.getCourseName(), storedDay, storedStatus, null);
+        recordStatusChange(db, writes, replacement, null, replacement.getStatus());
+    }
+
+    private static Date dayOf(Attendance attendance) {
+        return attendance.getTimestamp() != null ? attendance.getTimestamp().toDate() : new Date();
+    }
+
+    public static void recordStatusChange(FirebaseFirestore db, CounterWrites writes, String studentEmail,
+                                          String courseId, String courseName, Date day,
+                                          String oldStatus, String newStatus) {
+        if (studentEmail == null) return;
+
+        String normalizedOld = normalize(oldStatus);
+        String normalizedNew = normalize(newStatus);
+        if (normalizedOld != null && normalizedOld.equals(normalizedNew)) return;
+
+        Map<String, Object> counters = buildCounterDeltas(normalizedOld, normalizedNew);
+
+        Map<String, Object> daily = new HashMap<>();
+        daily.put(dayKey(day), new HashMap<>(counters));
+
+        Map<String, Object> studentData = new HashMap<>(counters);
+        studentData.put(FIELD_DAILY, daily);
+        studentData.put("studentEmail", studentEmail);
+        studentData.put("lastUpdatedAt", FieldValue.serverTimestamp());
+        writes.merge(studentStatsRef(db, studentEmail), studentData);
+
+        Map<String, Object> courseData = new HashMap<>(counters);
+        courseData.put(FIELD_DAILY, daily);
+        courseData.put("studentEmail", studentEmail);
+        courseData.put("courseId", courseId);
+        if (courseName != null) {
+            courseData.put("courseName", courseName);
+        }
+        courseData.put("lastUpdatedAt", FieldValue.serverTimestamp());
+        writes.merge(courseStatsRef(db, studentEmail, courseId), courseData);
+    }
+
+    private static Map<String, Object> buildCounterDeltas(String oldStatus, String newStatus) {
+        Map<String, Object> counters = new HashMap<>();
+        if (oldStatus != null) {
+            counters.put(oldStatus, FieldValue.increment(-1));
+        }
+        if (newStatus != null) {
+            counters.put(newStatus, FieldValue.increment(1));
+        }
+        if (oldStatus == null && newStatus != null) {
+            counters.put(FIELD_TOTAL, FieldValue.increment(1));
+        } else if (oldStatus != null && newStatus == null) {
+            counters.put(FIELD_TOTAL, FieldValue.increment(-1));
+        }
+        return counters;
+    }
+
+    /**
+     * Reconstruire entièrement les compteurs d'un étudiant à partir de ses présences
+     * (données antérieures aux agrégats). Écrase les documents existants.
+     */
+    public static void writeRebuild(FirebaseFirestore db, WriteBatch batch, String studentEmail,
+                                    List<Attendance> records) {
+        Map<String, Object> studentData = newEmptyAggregate(studentEmail);
+        Map<String, Map<String, Object>> courseData = new HashMap<>();
+
+        for (Attendance attendance : records) {
+            String status = normalize(attendance.getStatus());
+            if (status == null) continue;
+
+            String courseKey = attendance.getCourseId() != null && !attendance.getCourseId().isEmpty() ?
+                    attendance.getCourseId() : UNKNOWN_COURSE;
+            Map<String, Object> course = courseData.get(courseKey);
+            if (course == null) {
+                course = newEmptyAggregate(studentEmail);
+                course.put("courseId", attendance.getCourseId());
+                course.put("courseName", attendance.getCourseName());
+                courseData.put(courseKey, course);
+            }
+
+            Date day = attendance.getTimestamp() != null ? attendance.getTimestamp().toDate() : new Date();
+            addToAggregate(studentData, status, dayKey(day));
+            addToAggregate(course, status, dayKey(day));
+        }
+
+        studentData.put(FIELD_REBUILT_AT, FieldValue.serverTimestamp());
+        batch.set(studentStatsRef(db, studentEmail), studentData);
+        for (Map.Entry<String, Map<String, Object>> entry : courseData.entrySet()) {
+            batch.set(courseStatsRef(db, studentEmail, entry.getKey()), entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> newEmptyAggregate(String studentEmail) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("studentEmail", studentEmail);
+        data.put("present", 0L);
+        data.put("absent", 0L);
+        data.put("justified", 0L);
+        data.put(FIELD_TOTAL, 0L);
+        data.put(FIELD_DAILY, new HashMap<String, Object>());
+        data.put("lastUpdatedAt", FieldValue.serverTimestamp());
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addToAggregate(Map<String, Object> data, String status, String dayKey) {
+        data.put(status, (Long) data.get(status) + 1);
+        data.put(FIELD_TOTAL, (Long) data.get(FIELD_TOTAL) + 1);
+
+        Map<String, Object> daily = (Map<String, Object>) data.get(FIELD_DAILY);
+        Map<String, Object> bucket = (Map<String, Object>) daily.get(dayKey);
+        if (bucket == null) {
+            bucket = new HashMap<>();
+            daily.put(dayKey, bucket);
+        }
+        Long current = (Long) bucket.get(status);
+        bucket.put(status, current != null ? current + 1 : 1L);
+        Long total = (Long) bucket.get(FIELD_TOTAL);
+        bucket.put(FIELD_TOTAL, total != null ? total + 1 : 1L);
+    }
+
+    // =================== LECTURE ===================
+
+    /**
+     * Le document a-t-il été initialisé à partir de l'historique complet ?
+     */
+    public static boolean isInitialized(DocumentSnapshot document) {
+        return document != null && document.exists() && document.get(FIELD_REBUILT_AT) != null;
+    }
+
+    /**
+     * Statistiques sur la fenêtre glissante commençant à sinceMillis (somme des buckets journaliers)
+     */
+    @SuppressWarnings("unchecked")
+    public static FirebaseManager.AttendanceStatsDetailed toWindowStats(DocumentSnapshot document, long sinceMillis) {
+        int present = 0, absent = 0, justified = 0, total = 0;
+
+        Object dailyObj = document.get(FIELD_DAILY);
+        if (dailyObj instanceof Map) {
+            String sinceKey = dayKey(new Date(sinceMillis));
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) dailyObj).entrySet()) {
+                // Clés yyyyMMdd : la comparaison lexicographique suit l'ordre chronologique
+                if (entry.getKey().compareTo(sinceKey) < 0 || !(entry.getValue() instanceof Map)) continue;
+
+                Map<String, Object> bucket = (Map<String, Object>) entry.getValue();
+                present += asInt(bucket.get("present"));
+                absent += asInt(bucket.get("absent"));
+                justified += asInt(bucket.get("justified"));
+                total += asInt(bucket.get(FIELD_TOTAL));
+            }
+        }
+
+        return new FirebaseManager.AttendanceStatsDetailed(total, present, absent, justified);
+    }
+
+    /**
+     * Chemins des buckets expirés, à supprimer avec FieldValue.delete()
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> expiredBucketPaths(DocumentSnapshot document) {
+        List<String> paths = new ArrayList<>();
+        Object dailyObj = document.get(FIELD_DAILY);
+        if (!(dailyObj instanceof Map)) return paths;
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -BUCKET_RETENTION_DAYS);
+        String oldestKey = dayKey(calendar.getTime());
+
+        for (String key : ((Map<String, Object>) dailyObj).keySet()) {
+            if (key.compareTo(oldestKey) < 0) {
+                paths.add(FIELD_DAILY + "." + key);
+            }
+        }
+        return paths;
+    }
+
+    private static int asInt(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    private static String normalize(String status) {
+        if (status == null) return null;
+        String lower = status.toLowerCase();
+        switch (lower) {
+            case "present":
+            case "absent":
+            case "justified":
+                return lower;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Clé de bucket journalier (yyyyMMdd) dans le fuseau de l'appareil
+     */
+    static String dayKey(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        int value = calendar.get(Calendar.YEAR) * 10000
+                + (calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+        return String.valueOf(value);
+    }
+}
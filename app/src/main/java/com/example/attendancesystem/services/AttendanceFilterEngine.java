@@ -0,0 +1,278 @@
+package com.example.attendancesystem.services;
+
+import com.example.attendancesystem.models.Attendance;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filtrage de l'historique de présence hors du thread principal.
+ *
+ * Les clés de période (jour, semaine, mois) sont calculées une seule fois par présence,
+ * à l'ajout ; un changement de filtre n'est plus qu'une comparaison d'entiers par ligne.
+ * Filtre et statistiques sont produits en un seul passage sur un thread dédié, puis
+ * publiés sur l'exécuteur de l'appelant (thread principal). Seul le dernier filtre
+ * demandé est publié : les résultats dépassés sont ignorés.
+ *
+ * Toutes les opérations passent par le même thread, dans l'ordre des appels :
+ * les enregistrements ne sont jamais lus et modifiés en même temps.
+ */
+public class AttendanceFilterEngine {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Périodes proposées par l'écran d'historique
+     */
+    public enum Period {
+        ALL, TODAY, THIS_WEEK, THIS_MONTH, CUSTOM
+    }
+
+    /**
+     * Critères de filtrage (null = pas de filtre sur ce critère)
+     */
+    public static class Criteria {
+        private final String courseName;
+        private final String status;
+        private final Period period;
+        private final long customStart;
+        private final long customEnd;
+
+        public Criteria(String courseName, String status, Period period, long customStart, long customEnd) {
+            this.courseName = courseName;
+            this.status = status;
+            this.period = period != null ? period : Period.ALL;
+            this.customStart = customStart;
+            this.customEnd = customEnd;
+        }
+
+        public Criteria(String courseName, String status, Period period) {
+            this(courseName, status, period, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        /**
+         * Début de la période en millisecondes (Long.MIN_VALUE pour toutes les périodes) :
+         * les présences plus anciennes ne peuvent pas correspondre
+         */
+        public long getPeriodStart() {
+            Calendar start = Calendar.getInstance();
+            start.set(Calendar.HOUR_OF_DAY, 0);
+            start.set(Calendar.MINUTE, 0);
+            start.set(Calendar.SECOND, 0);
+            start.set(Calendar.MILLISECOND, 0);
+            switch (period) {
+                case TODAY:
+                    return start.getTimeInMillis();
+                case THIS_WEEK:
+                    int offset = Math.floorMod(start.get(Calendar.DAY_OF_WEEK) - start.getFirstDayOfWeek(), 7);
+                    start.add(Calendar.DAY_OF_MONTH, -offset);
+                    return start.getTimeInMillis();
+                case THIS_MONTH:
+                    start.set(Calendar.DAY_OF_MONTH, 1);
+                    return start.getTimeInMillis();
+                case CUSTOM:
+                    return customStart;
+                default:
+                    return Long.MIN_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Présences retenues et statistiques calculées dans le même passage
+     */
+    public static class Result {
+        private final List<Attendance> attendances;
+        private final int presentCount;
+        private final int absentCount;
+        private final int justifiedCount;
+
+        Result(List<Attendance> attendances, int presentCount, int absentCount, int justifiedCount) {
+            this.attendances = attendances;
+            this.presentCount = presentCount;
+            this.absentCount = absentCount;
+            this.justifiedCount = justifiedCount;
+        }
+
+        public List<Attendance> getAttendances() { return attendances; }
+        public int getTotalCount() { return attendances.size(); }
+        public int getPresentCount() { return presentCount; }
+        public int getAbsentCount() { return absentCount; }
+        public int getJustifiedCount() { return justifiedCount; }
+    }
+
+    public interface Callback {
+        void onFiltered(Result result);
+    }
+
+    /**
+     * Présence et ses clés de période précalculées
+     */
+    private static class Entry {
+        final Attendance attendance;
+        final boolean hasTime;
+        final long time;
+        final long epochDay;
+        final long weekStartDay; // jour epoch du premier jour de la semaine
+        final int monthKey;      // année * 12 + mois
+
+        Entry(Attendance attendance, int firstDayOfWeek, TimeZone timeZone) {
+            this.attendance = attendance;
+            this.hasTime = attendance.getTimestamp() != null;
+            this.time = hasTime ? attendance.getTimestamp().toDate().getTime() : 0;
+            this.epochDay = hasTime ? toEpochDay(time, timeZone) : 0;
+            this.weekStartDay = weekStart(epochDay, firstDayOfWeek);
+            this.monthKey = hasTime ? monthKey(epochDay) : 0;
+        }
+    }
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Executor callbackExecutor;
+    private final AtomicInteger latestRequest = new AtomicInteger();
+
+    // Lu et modifié uniquement sur le thread worker
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * @param callbackExecutor exécuteur des résultats (ContextCompat.getMainExecutor pour l'UI)
+     */
+    public AttendanceFilterEngine(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    // =================== DONNÉES ===================
+
+    /**
+     * Ajouter une page de présences (dans l'ordre d'affichage, plus récent en premier)
+     */
+    public void addAll(List<Attendance> attendances) {
+        List<Attendance> copy = new ArrayList<>(attendances);
+        worker.execute(() -> {
+            // Semaine et fuseau relus à chaque page : suivent un changement de réglage de l'appareil
+            int firstDayOfWeek = Calendar.getInstance().getFirstDayOfWeek();
+            TimeZone timeZone = TimeZone.getDefault();
+            for (Attendance attendance : copy) {
+                entries.add(new Entry(attendance, firstDayOfWeek, timeZone));
+            }
+        });
+    }
+
+    /**
+     * Vider l'historique (rechargement) ; les filtres en cours ne seront pas publiés
+     */
+    public void clear() {
+        latestRequest.incrementAndGet();
+        worker.execute(entries::clear);
+    }
+
+    public void shutdown() {
+        latestRequest.incrementAndGet();
+        worker.shutdownNow();
+    }
+
+    // =================== FILTRAGE ===================
+
+    /**
+     * Filtrer et compter en arrière-plan ; le callback n'est appelé que si aucun
+     * autre filtre n'a été demandé entre-temps
+     */
+    public void filter(Criteria criteria, Callback callback) {
+        int request = latestRequest.incrementAndGet();
+        worker.execute(() -> {
+            if (request != latestRequest.get()) return;
+
+            Result result = run(criteria);
+            callbackExecutor.execute(() -> {
+                if (request == latestRequest.get()) {
+                    callback.onFiltered(result);
+                }
+            });
+        });
+    }
+
+    private Result run(Criteria criteria) {
+        long now = System.currentTimeMillis();
+        long today = toEpochDay(now, TimeZone.getDefault());
+        long thisWeek = weekStart(today, Calendar.getInstance().getFirstDayOfWeek());
+        int thisMonth = monthKey(today);
+
+        List<Attendance> matches = new ArrayList<>();
+        int present = 0;
+        int absent = 0;
+        int justified = 0;
+
+        for (Entry entry : entries) {
+            Attendance attendance = entry.attendance;
+
+            if (criteria.courseName != null && !criteria.courseName.equals(attendance.getCourseName())) continue;
+            if (criteria.status != null && !criteria.status.equals(attendance.getStatus())) continue;
+
+            if (criteria.period != Period.ALL) {
+                if (!entry.hasTime) continue;
+                switch (criteria.period) {
+                    case TODAY:
+                        if (entry.epochDay != today) continue;
+                        break;
+                    case THIS_WEEK:
+                        if (entry.weekStartDay != thisWeek) continue;
+                        break;
+                    case THIS_MONTH:
+                        if (entry.monthKey != thisMonth) continue;
+                        break;
+                    case CUSTOM:
+                        if (entry.time <= criteria.customStart || entry.time >= criteria.customEnd) continue;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            matches.add(attendance);
+            if (attendance.isPresent()) {
+                present++;
+            } else if (attendance.isAbsent()) {
+                absent++;
+            } else if (attendance.isJustified()) {
+                justified++;
+            }
+        }
+
+        return new Result(matches, present, absent, justified);
+    }
+
+    // =================== CLÉS DE PÉRIODE ===================
+
+    static long toEpochDay(long millis, TimeZone timeZone) {
+        return Math.floorDiv(millis + timeZone.getOffset(millis), DAY_MS);
+    }
+
+    /**
+     * Premier jour de la semaine contenant epochDay (firstDayOfWeek au format Calendar)
+     */
+    static long weekStart(long epochDay, int firstDayOfWeek) {
+        // 1970-01-01 était un jeudi (Calendar.THURSDAY = 5)
+        int dayOfWeek = (int) Math.floorMod(epochDay + 4, 7L) + 1;
+        return epochDay - Math.floorMod(dayOfWeek - firstDayOfWeek, 7);
+    }
+
+    /**
+     * Année * 12 + mois (0-11), sans Calendar (algorithme civil_from_days)
+     */
+    static int monthKey(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long month = mp < 10 ? mp + 3 : mp - 9; // 1-12
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + (month - 1));
+    }
+}
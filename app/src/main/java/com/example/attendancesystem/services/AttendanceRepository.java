@@ -0,0 +1,394 @@
+package com.example.attendancesystem.services;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.attendancesystem.models.Attendance;
+import com.example.attendancesystem.models.Justification;
+import com.example.attendancesystem.models.Session;
+import com.example.attendancesystem.utils.Utils;
+
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Couche "local-first" entre les écrans étudiant et FirebaseManager.
+ *
+ * Historique, statistiques et justifications sont servis depuis la copie locale de
+ * l'étudiant (LocalAttendanceStore), persistée sur disque (AttendanceStoreFiles) et
+ * rechargée au démarrage à froid. Le réseau n'est sollicité qu'en arrière-plan, quand la
+ * copie a plus de REFRESH_INTERVAL_MS, et seulement pour les documents modifiés depuis le
+ * dernier high-water mark (AttendanceSyncEngine). Tant que la première synchronisation
+ * n'est pas terminée, les lectures passent par Firestore (documents agrégés pour les
+ * statistiques).
+ *
+ * Les sessions du tableau de bord (sessions du jour, prochaine session) sont servies depuis
+ * la dernière lecture tant qu'elles restent valables, puis relues en arrière-plan.
+ *
+ * Les écrans abonnés via AttendanceChangeListener sont notifiés quand une synchronisation
+ * change les données servies.
+ */
+public class AttendanceRepository {
+    private static final String TAG = "AttendanceRepository";
+
+    // Même fenêtre que Utils.needsSync()
+    private static final long REFRESH_INTERVAL_MS = 5 * 60 * 1000;
+
+    private final Context context;
+    private final FirebaseManager firebaseManager;
+    private final LocalAttendanceStore store;
+    private final AttendanceStoreFiles files;
+    private final AttendanceSyncEngine syncEngine;
+    private final List<AttendanceChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Lecture des fichiers, fusion et écriture hors du thread principal, dans l'ordre
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Étudiants dont une synchronisation réseau est en cours (une seule à la fois par étudiant)
+    private final Set<String> refreshingStudents = new HashSet<>();
+    // Incrémenté par clear() : les synchronisations lancées avant sont écartées (exécuteur)
+    private int generation;
+
+    // Singleton pattern
+    private static AttendanceRepository instance;
+
+    /**
+     * Interface pour être notifié quand les données d'un étudiant changent
+     */
+    public interface AttendanceChangeListener {
+        void onAttendanceChanged(String studentEmail);
+    }
+
+    private AttendanceRepository(Context context) {
+        this.context = context;
+        this.firebaseManager = FirebaseManager.getInstance();
+        this.store = new LocalAttendanceStore();
+        this.files = new AttendanceStoreFiles(context.getFilesDir());
+        this.syncEngine = new AttendanceSyncEngine(firebaseManager, store);
+    }
+
+    public static synchronized AttendanceRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new AttendanceRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void addChangeListener(AttendanceChangeListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeChangeListener(AttendanceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyChanged(String studentEmail) {
+        mainHandler.post(() -> {
+            for (AttendanceChangeListener listener : listeners) {
+                listener.onAttendanceChanged(studentEmail);
+            }
+        });
+    }
+
+    // =================== HISTORIQUE ===================
+
+    /**
+     * Historique complet d'un étudiant depuis la copie locale (du plus récent au plus ancien),
+     * livré sur le thread principal. Livre null si l'étudiant n'a pas encore de copie : la
+     * synchronisation complète est alors lancée et les abonnés sont notifiés à sa fin.
+     */
+    public void getStudentAttendanceHistory(String studentEmail, FirebaseManager.DataCallback<List<Attendance>> callback) {
+        executor.execute(() -> {
+            List<Attendance> records = ensureCopyLoaded(studentEmail) ? store.getStudentAttendance(studentEmail) : null;
+            mainHandler.post(() -> callback.onSuccess(records));
+            refreshIfStale(studentEmail);
+        });
+    }
+
+    // =================== SYNCHRONISATION ===================
+
+    /**
+     * Charger la copie persistée de l'étudiant si elle n'est pas encore en mémoire (exécuteur)
+     */
+    private boolean ensureCopyLoaded(String studentEmail) {
+        if (store.hasCopy(studentEmail)) return true;
+
+        LocalAttendanceStore.StoredCopy copy = files.read(studentEmail);
+        if (copy == null) return false;
+        store.importCopy(studentEmail, copy);
+        return true;
+    }
+
+    private void refreshIfStale(String studentEmail) {
+        if (System.currentTimeMillis() - store.getLastRefresh(studentEmail) > REFRESH_INTERVAL_MS) {
+            refresh(studentEmail);
+        }
+    }
+
+    /**
+     * Synchroniser l'étudiant en arrière-plan puis fusionner et persister le résultat (exécuteur)
+     */
+    private void refresh(String studentEmail) {
+        synchronized (refreshingStudents) {
+            if (!refreshingStudents.add(studentEmail)) return;
+        }
+        int startedIn = generation;
+
+        syncEngine.sync(studentEmail, new FirebaseManager.DataCallback<AttendanceSyncEngine.SyncResult>() {
+            @Override
+            public void onSuccess(AttendanceSyncEngine.SyncResult result) {
+                executor.execute(() -> {
+                    finishRefresh(studentEmail);
+                    // Déconnexion pendant la synchronisation : rien n'est réécrit
+                    if (startedIn != generation) return;
+
+                    long now = System.currentTimeMillis();
+                    boolean changed;
+                    if (result.isFullSync()) {
+                        store.replaceCopy(studentEmail, result.getAttendance(), result.getJustifications(), now);
+                        changed = true;
+                    } else {
+                        changed = store.applyChanges(studentEmail, result.getAttendance(),
+                                result.getJustifications(), now);
+                    }
+                    // Données et high-water marks écrits ensemble
+                    persist(studentEmail);
+                    Utils.setLastSyncTime(context, now);
+
+                    if (changed) {
+                        notifyChanged(studentEmail);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(String error) {
+                // Hors ligne : la copie locale reste servie, nouvel essai à la prochaine lecture
+                Log.w(TAG, "Background sync failed for " + studentEmail + ": " + error);
+                finishRefresh(studentEmail);
+            }
+        });
+    }
+
+    /**
+     * Écrire la copie de l'étudiant sur disque (exécuteur ; rien sans copie complète)
+     */
+    private void persist(String studentEmail) {
+        files.write(studentEmail, store.exportCopy(studentEmail));
+    }
+
+    private void finishRefresh(String studentEmail) {
+        synchronized (refreshingStudents) {
+            refreshingStudents.remove(studentEmail);
+        }
+    }
+
+    // =================== STATISTIQUES ===================
+
+    /**
+     * Statistiques des 60 derniers jours : calculées sur la copie locale si elle existe,
+     * sinon une seule lecture du document agrégé pendant la première synchronisation
+     */
+    public void getStudentAttendanceStatistics(String studentEmail,
+                                               FirebaseManager.DataCallback<FirebaseManager.AttendanceStatsDetailed> callback) {
+        executor.execute(() -> {
+            if (ensureCopyLoaded(studentEmail)) {
+                FirebaseManager.AttendanceStatsDetailed stats =
+                        store.computeStatistics(studentEmail, firebaseManager.getStatisticsWindowStart());
+                mainHandler.post(() -> callback.onSuccess(stats));
+            } else {
+                firebaseManager.getStudentAttendanceStatistics(studentEmail, callback);
+            }
+            refreshIfStale(studentEmail);
+        });
+    }
+
+    /**
+     * Statistiques par cours des 60 derniers jours (même principe)
+     */
+    public void getStudentStatisticsByCourse(String studentEmail,
+                                             FirebaseManager.DataCallback<Map<String, FirebaseManager.AttendanceStatsDetailed>> callback) {
+        executor.execute(() -> {
+            if (ensureCopyLoaded(studentEmail)) {
+                Map<String, FirebaseManager.AttendanceStatsDetailed> stats =
+                        store.computeStatisticsByCourse(studentEmail, firebaseManager.getStatisticsWindowStart());
+                mainHandler.post(() -> callback.onSuccess(stats));
+            } else {
+                firebaseManager.getStudentStatisticsByCourse(studentEmail, callback);
+            }
+            refreshIfStale(studentEmail);
+        });
+    }
+
+    // =================== JUSTIFICATIONS ===================
+
+    /**
+     * Justifications d'un étudiant (dernière déposée en premier) : copie locale si elle
+     * existe, sinon Firestore pendant la première synchronisation
+     */
+    public void getStudentJustifications(String studentEmail, FirebaseManager.DataCallback<List<Justification>> callback) {
+        executor.execute(() -> {
+            if (ensureCopyLoaded(studentEmail)) {
+                List<Justification> justifications = store.getStudentJustifications(studentEmail);
+                mainHandler.post(() -> callback.onSuccess(justifications));
+            } else {
+                firebaseManager.getStudentJustifications(studentEmail, callback);
+            }
+            refreshIfStale(studentEmail);
+        });
+    }
+
+    // =================== SESSIONS DU TABLEAU DE BORD ===================
+
+    /**
+     * Sessions du jour d'un étudiant : la dernière lecture du jour pour ce périmètre est servie
+     * immédiatement, puis relue en arrière-plan (abonnés notifiés si elle a changé)
+     */
+    public void getTodaySessionsForStudent(String studentEmail, String department, String field, String year,
+                                           FirebaseManager.DataCallback<List<Session>> callback) {
+        String scope = scopeKey(department, field, year);
+        executor.execute(() -> {
+            ensureCopyLoaded(studentEmail);
+            long todayStart = startOfToday();
+            List<Session> cached = store.getTodaySessions(studentEmail, scope, todayStart);
+            if (cached != null) {
+                mainHandler.post(() -> callback.onSuccess(cached));
+            }
+            int startedIn = generation;
+
+            firebaseManager.getTodaySessionsForStudent(studentEmail, department, field, year,
+                    new FirebaseManager.DataCallback<List<Session>>() {
+                        @Override
+                        public void onSuccess(List<Session> sessions) {
+                            executor.execute(() -> {
+                                if (startedIn != generation) return;
+                                boolean changed = store.putTodaySessions(studentEmail, scope, todayStart, sessions);
+                                onSessionsRead(studentEmail, cached != null, changed, () -> callback.onSuccess(sessions));
+                            });
+                        }
+
+                        @Override
+                        public void onFailure(String error) {
+                            // Hors ligne : la dernière lecture reste affichée
+                            if (cached == null) callback.onFailure(error);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Prochaine session d'un étudiant : la dernière lecture est servie tant que la session
+     * n'a pas commencé, puis relue en arrière-plan
+     */
+    public void getNextSessionForStudent(String studentEmail, String department, String field, String year,
+                                         FirebaseManager.DataCallback<Session> callback) {
+        String scope = scopeKey(department, field, year);
+        executor.execute(() -> {
+            ensureCopyLoaded(studentEmail);
+            boolean served = store.hasNextSession(studentEmail, scope, System.currentTimeMillis());
+            if (served) {
+                Session cached = store.getNextSession(studentEmail);
+                mainHandler.post(() -> callback.onSuccess(cached));
+            }
+            int startedIn = generation;
+
+            firebaseManager.getNextSessionForStudent(studentEmail, department, field, year,
+                    new FirebaseManager.DataCallback<Session>() {
+                        @Override
+                        public void onSuccess(Session session) {
+                            executor.execute(() -> {
+                                if (startedIn != generation) return;
+                                boolean changed = store.putNextSession(studentEmail, scope, session);
+                                onSessionsRead(studentEmail, served, changed, () -> callback.onSuccess(session));
+                            });
+                        }
+
+                        @Override
+                        public void onFailure(String error) {
+                            if (!served) callback.onFailure(error);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Lecture réseau des sessions terminée (exécuteur) : livrer si rien n'avait été servi,
+     * sinon notifier les abonnés d'un changement
+     */
+    private void onSessionsRead(String studentEmail, boolean served, boolean changed, Runnable deliver) {
+        if (changed) {
+            persist(studentEmail);
+        }
+        if (!served) {
+            mainHandler.post(deliver);
+        } else if (changed) {
+            notifyChanged(studentEmail);
+        }
+    }
+
+    private static String scopeKey(String department, String field, String year) {
+        return department + "|" + field + "|" + year;
+    }
+
+    private static long startOfToday() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    // =================== ÉCRITURES LOCALES ===================
+
+    /**
+     * Présence écrite par l'application : ajoutée à la copie de l'étudiant si elle existe
+     * (la synchronisation suivante la remplace par la version serveur), puis abonnés notifiés
+     */
+    public void onAttendanceSaved(Attendance attendance) {
+        if (attendance == null || attendance.getStudentEmail() == null) return;
+        executor.execute(() -> {
+            String studentEmail = attendance.getStudentEmail();
+            if (store.putLocalAttendance(attendance)) {
+                persist(studentEmail);
+            }
+            notifyChanged(studentEmail);
+        });
+    }
+
+    /**
+     * Justification déposée par l'application : visible tout de suite dans la copie locale
+     */
+    public void onJustificationSaved(Justification justification) {
+        if (justification == null || justification.getStudentEmail() == null) return;
+        executor.execute(() -> {
+            String studentEmail = justification.getStudentEmail();
+            if (store.putLocalJustification(justification)) {
+                persist(studentEmail);
+                notifyChanged(studentEmail);
+            }
+        });
+    }
+
+    /**
+     * Oublier toutes les copies locales, en mémoire et sur disque (déconnexion)
+     */
+    public void clear() {
+        executor.execute(() -> {
+            generation++;
+            store.clear();
+            files.deleteAll();
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.attendancesystem.services;
+
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Persistance des copies de LocalAttendanceStore : un fichier JSON par étudiant
+ * (filesDir/attendance_store/), écrit avec AtomicFile.
+ *
+ * Données et high-water marks sont dans le même fichier et remplacés en une seule écriture :
+ * après un arrêt du processus, la copie relue reprend la synchronisation delta exactement
+ * là où elle s'était arrêtée. Les horodatages sont stockés en millisecondes.
+ * Appels à faire hors du thread principal.
+ */
+public class AttendanceStoreFiles {
+    private static final String TAG = "AttendanceStoreFiles";
+
+    private static final String DIRECTORY = "attendance_store";
+
+    private final File directory;
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Timestamp.class, (JsonSerializer<Timestamp>) (timestamp, type, context) ->
+                    new JsonPrimitive(timestamp.toDate().getTime()))
+            .registerTypeAdapter(Timestamp.class, (JsonDeserializer<Timestamp>) (json, type, context) ->
+                    new Timestamp(new Date(json.getAsLong())))
+            .registerTypeAdapter(Date.class, (JsonSerializer<Date>) (date, type, context) ->
+                    new JsonPrimitive(date.getTime()))
+            .registerTypeAdapter(Date.class, (JsonDeserializer<Date>) (json, type, context) ->
+                    new Date(json.getAsLong()))
+            .create();
+
+    public AttendanceStoreFiles(File filesDir) {
+        this.directory = new File(filesDir, DIRECTORY);
+    }
+
+    /**
+     * Copie persistée d'un étudiant, null si absente ou illisible (une synchronisation complète la recrée)
+     */
+    public LocalAttendanceStore.StoredCopy read(String studentEmail) {
+        AtomicFile file = fileFor(studentEmail);
+        try {
+            String content = new String(file.readFully(), StandardCharsets.UTF_8);
+            return gson.fromJson(content, LocalAttendanceStore.StoredCopy.class);
+        } catch (FileNotFoundException e) {
+            // Pas encore de copie pour cet étudiant
+            return null;
+        } catch (IOException | JsonParseException e) {
+            Log.e(TAG, "Error reading attendance copy of " + studentEmail, e);
+            return null;
+        }
+    }
+
+    public void write(String studentEmail, LocalAttendanceStore.StoredCopy copy) {
+        if (copy == null) return;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Cannot create " + directory);
+            return;
+        }
+
+        AtomicFile file = fileFor(studentEmail);
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(gson.toJson(copy).getBytes(StandardCharsets.UTF_8));
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing attendance copy of " + studentEmail, e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    /**
+     * Supprimer toutes les copies (déconnexion)
+     */
+    public void deleteAll() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.delete()) {
+                Log.w(TAG, "Cannot delete " + file.getName());
+            }
+        }
+    }
+
+    private AtomicFile fileFor(String studentEmail) {
+        try {
+            return new AtomicFile(new File(directory, URLEncoder.encode(studentEmail, "UTF-8") + ".json"));
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 est toujours disponible
+            throw new IllegalStateException(e);
+        }
+    }
+}
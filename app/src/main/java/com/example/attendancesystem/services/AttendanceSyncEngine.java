@@ -0,0 +1,124 @@
+package com.example.attendancesystem.services;
+
+import android.util.Log;
+
+import com.example.attendancesystem.models.Attendance;
+import com.example.attendancesystem.models.Justification;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Source;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Moteur de synchronisation delta des présences et justifications d'un étudiant.
+ *
+ * Les high-water marks (plus grand lastModifiedAt / lastUpdatedAt déjà fusionné) sont lus
+ * dans la copie locale (LocalAttendanceStore), persistés avec elle. Chaque synchronisation
+ * ne télécharge que les documents modifiés depuis ce point : nouvelles présences, bascules
+ * de statut (absent -> justifié après acceptation d'une justification), suppressions
+ * logiques, nouvelles justifications et décisions de revue.
+ *
+ * Une synchronisation complète (Source.SERVER : jamais le cache Firestore, qui peut être
+ * partiel) est faite quand l'étudiant n'a pas encore de copie, puis tous les
+ * FULL_RESYNC_INTERVAL_MS pour rattraper d'éventuels documents anciens sans horodatage.
+ */
+public class AttendanceSyncEngine {
+    private static final String TAG = "AttendanceSyncEngine";
+
+    // Recharge complète périodique, comme le catalogue des cours
+    private static final long FULL_RESYNC_INTERVAL_MS = 7L * 24 * 60 * 60 * 1000;
+    // Marge sous le high-water mark : écritures concurrentes horodatées juste avant lui
+    // (la fusion est idempotente, les documents déjà connus sont ignorés)
+    private static final long WATERMARK_OVERLAP_MS = 60 * 1000;
+
+    private final FirebaseManager firebaseManager;
+    private final LocalAttendanceStore store;
+
+    /**
+     * Résultat d'une synchronisation, à fusionner dans la copie locale
+     */
+    public static class SyncResult {
+        private final List<Attendance> attendance;
+        private final List<Justification> justifications;
+        private final boolean fullSync;
+
+        public SyncResult(List<Attendance> attendance, List<Justification> justifications, boolean fullSync) {
+            this.attendance = attendance;
+            this.justifications = justifications;
+            this.fullSync = fullSync;
+        }
+
+        public List<Attendance> getAttendance() { return attendance; }
+        public List<Justification> getJustifications() { return justifications; }
+        public boolean isFullSync() { return fullSync; }
+    }
+
+    public AttendanceSyncEngine(FirebaseManager firebaseManager, LocalAttendanceStore store) {
+        this.firebaseManager = firebaseManager;
+        this.store = store;
+    }
+
+    /**
+     * Synchroniser un étudiant : complète si nécessaire, delta sinon.
+     * Présences et justifications sont lues en parallèle ; le résultat n'est pas fusionné ici.
+     */
+    public void sync(String studentEmail, FirebaseManager.DataCallback<SyncResult> callback) {
+        boolean fullSync = needsFullSync(studentEmail);
+        TaskCompletionSource<List<Attendance>> attendance = new TaskCompletionSource<>();
+        TaskCompletionSource<List<Justification>> justifications = new TaskCompletionSource<>();
+
+        if (fullSync) {
+            firebaseManager.getStudentAttendanceHistory(studentEmail, Source.SERVER, complete(attendance));
+            firebaseManager.getStudentJustifications(studentEmail, Source.SERVER, complete(justifications));
+        } else {
+            firebaseManager.getStudentAttendanceModifiedSince(studentEmail,
+                    since(studentEmail, LocalAttendanceStore.ATTENDANCE), complete(attendance));
+            firebaseManager.getStudentJustificationsModifiedSince(studentEmail,
+                    since(studentEmail, LocalAttendanceStore.JUSTIFICATIONS), complete(justifications));
+        }
+
+        Task<List<Attendance>> attendanceTask = attendance.getTask();
+        Task<List<Justification>> justificationsTask = justifications.getTask();
+        Tasks.whenAllComplete(attendanceTask, justificationsTask).addOnCompleteListener(done -> {
+            Exception error = attendanceTask.getException() != null ?
+                    attendanceTask.getException() : justificationsTask.getException();
+            if (error != null) {
+                callback.onFailure(error.getMessage());
+                return;
+            }
+
+            Log.d(TAG, (fullSync ? "Full" : "Delta") + " sync " + studentEmail + ": "
+                    + attendanceTask.getResult().size() + " attendance, "
+                    + justificationsTask.getResult().size() + " justifications");
+            callback.onSuccess(new SyncResult(attendanceTask.getResult(), justificationsTask.getResult(), fullSync));
+        });
+    }
+
+    private boolean needsFullSync(String studentEmail) {
+        return !store.hasCopy(studentEmail)
+                || System.currentTimeMillis() - store.getLastFullSyncAt(studentEmail) > FULL_RESYNC_INTERVAL_MS;
+    }
+
+    private Timestamp since(String studentEmail, String collection) {
+        long watermark = store.getWatermark(studentEmail, collection);
+        return new Timestamp(new Date(Math.max(0, watermark - WATERMARK_OVERLAP_MS)));
+    }
+
+    private static <T> FirebaseManager.DataCallback<T> complete(TaskCompletionSource<T> source) {
+        return new FirebaseManager.DataCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                source.trySetResult(result);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                source.trySetException(new Exception(error));
+            }
+        };
+    }
+}
@@ -0,0 +1,558 @@
+package com.example.attendancesystem.services;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.example.attendancesystem.models.Attendance;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File d'attente durable des pointages du terminal.
+ *
+ * Chaque pointage reçoit son identifiant côté client puis est écrit sur disque
+ * (AtomicFile) avant tout envoi : il survit à la perte réseau comme à l'arrêt du processus.
+ * Les pointages arrivés pendant COALESCE_DELAY_MS sont regroupés et envoyés par
+ * saveAttendanceBatch, par lots d'au plus MAX_ATTENDANCE_PER_BATCH.
+ *
+ * Seules les erreurs passagères (UNAVAILABLE, DEADLINE_EXCEEDED, ABORTED) sont retentées
+ * avec un délai exponentiel. Un refus définitif (règles de sécurité, données invalides...)
+ * fait renvoyer le lot pointage par pointage : les pointages refusés sont retirés de la
+ * file et conservés dans une liste de rejets (fichier séparé) présentée à l'enseignant,
+ * sans bloquer les suivants ni drain().
+ */
+public class CheckInQueue {
+    private static final String TAG = "CheckInQueue";
+
+    private static final String QUEUE_FILE = "checkin_queue.json";
+    private static final String REJECTED_FILE = "checkin_rejected.json";
+
+    // Regroupement des pointages successifs dans un même batch
+    private static final long COALESCE_DELAY_MS = 500;
+    // Backoff exponentiel : 2 s, 4 s, 8 s ... plafonné à 5 min
+    private static final long INITIAL_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private final Context context;
+    private final FirebaseManager firebaseManager;
+    private final AtomicFile queueFile;
+    private final AtomicFile rejectedFile;
+    // Thread unique : accès au fichier et à la file sans verrou
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Pointages en attente, par identifiant (un second pointage remplace le premier)
+    private final Map<String, Attendance> pending = new LinkedHashMap<>();
+    // Pointages refusés définitivement par le serveur, par identifiant
+    private final Map<String, RejectedCheckIn> rejected = new LinkedHashMap<>();
+    private final List<QueueListener> listeners = new ArrayList<>();
+    // Appels de drain() en attente de la file vide
+    private final List<FirebaseManager.DataCallback<Void>> drainCallbacks = new ArrayList<>();
+
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean flushInProgress = false;
+    private long currentBackoffMs = INITIAL_BACKOFF_MS;
+    // Pointages encore à renvoyer un par un après le refus définitif d'un lot
+    private int isolateRemaining = 0;
+
+    // Singleton pattern
+    private static CheckInQueue instance;
+
+    /**
+     * Interface pour suivre l'état de la file (appelée sur le thread principal)
+     */
+    public interface QueueListener {
+        void onPendingCountChanged(int pendingCount);
+        void onCheckInsUploaded(List<Attendance> attendances);
+        // Liste complète des pointages refusés (vide après dismissRejected)
+        void onCheckInsRejected(List<RejectedCheckIn> rejectedCheckIns);
+    }
+
+    /**
+     * Pointage refusé définitivement par le serveur, avec la cause
+     */
+    public static class RejectedCheckIn {
+        private final Attendance attendance;
+        private final String error;
+
+        public RejectedCheckIn(Attendance attendance, String error) {
+            this.attendance = attendance;
+            this.error = error;
+        }
+
+        public Attendance getAttendance() { return attendance; }
+        public String getError() { return error; }
+    }
+
+    private CheckInQueue(Context context) {
+        this.context = context;
+        this.firebaseManager = FirebaseManager.getInstance();
+        this.queueFile = new AtomicFile(new File(context.getFilesDir(), QUEUE_FILE));
+        this.rejectedFile = new AtomicFile(new File(context.getFilesDir(), REJECTED_FILE));
+
+        // Reprendre les pointages non envoyés avant l'arrêt du processus
+        executor.execute(() -> {
+            loadFromDisk();
+            if (!pending.isEmpty()) {
+                Log.d(TAG, "Restored " + pending.size() + " pending check-ins");
+                scheduleFlush(0);
+            }
+        });
+    }
+
+    public static synchronized CheckInQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new CheckInQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void addListener(QueueListener listener) {
+        executor.execute(() -> {
+            if (!listeners.contains(listener)) {
+                listeners.add(listener);
+            }
+            int pendingCount = pending.size();
+            List<RejectedCheckIn> rejectedCheckIns = new ArrayList<>(rejected.values());
+            mainHandler.post(() -> {
+                listener.onPendingCountChanged(pendingCount);
+                if (!rejectedCheckIns.isEmpty()) {
+                    listener.onCheckInsRejected(rejectedCheckIns);
+                }
+            });
+        });
+    }
+
+    public void removeListener(QueueListener listener) {
+        executor.execute(() -> listeners.remove(listener));
+    }
+
+    // =================== ENREGISTREMENT ===================
+
+    /**
+     * Mettre un pointage en file. L'identifiant est attribué immédiatement et retourné,
+     * l'envoi se fait en arrière-plan.
+     */
+    public String enqueue(Attendance attendance) {
+        if (attendance.getAttendanceId() == null) {
+            attendance.setAttendanceId(firebaseManager.newAttendanceId(attendance));
+        }
+
+        executor.execute(() -> {
+            pending.put(attendance.getAttendanceId(), attendance);
+            persist();
+            notifyPendingCount();
+            if (!flushInProgress) {
+                scheduleFlush(COALESCE_DELAY_MS);
+            }
+        });
+        return attendance.getAttendanceId();
+    }
+
+    /**
+     * Mettre en file les pointages d'un groupe (pointage en amphithéâtre) : une seule écriture
+     * de la file sur disque et un envoi immédiat, en batchs consécutifs de
+     * MAX_ATTENDANCE_PER_BATCH. Retourne les identifiants attribués, dans l'ordre.
+     */
+    public List<String> enqueueAll(List<Attendance> attendances) {
+        List<String> ids = new ArrayList<>(attendances.size());
+        for (Attendance attendance : attendances) {
+            if (attendance.getAttendanceId() == null) {
+                attendance.setAttendanceId(firebaseManager.newAttendanceId(attendance));
+            }
+            ids.add(attendance.getAttendanceId());
+        }
+        if (attendances.isEmpty()) return ids;
+
+        executor.execute(() -> {
+            for (Attendance attendance : attendances) {
+                pending.put(attendance.getAttendanceId(), attendance);
+            }
+            persist();
+            notifyPendingCount();
+            if (!flushInProgress) {
+                scheduleFlush(0);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Forcer un envoi immédiat (ex. retour du réseau), en réinitialisant le backoff
+     */
+    public void flushNow() {
+        executor.execute(() -> {
+            currentBackoffMs = INITIAL_BACKOFF_MS;
+            scheduleFlush(0);
+        });
+    }
+
+    /**
+     * Envoyer immédiatement tous les pointages en attente et prévenir quand la file est vide
+     * (ex. avant la clôture d'une session). Échec dès qu'une erreur passagère survient : les
+     * pointages restent en file et l'envoi continue en arrière-plan. Les pointages refusés
+     * définitivement sortent de la file et ne bloquent pas drain(). Callback sur le thread principal.
+     */
+    public void drain(FirebaseManager.DataCallback<Void> callback) {
+        executor.execute(() -> {
+            if (pending.isEmpty() && !flushInProgress) {
+                mainHandler.post(() -> callback.onSuccess(null));
+                return;
+            }
+            drainCallbacks.add(callback);
+            currentBackoffMs = INITIAL_BACKOFF_MS;
+            scheduleFlush(0);
+        });
+    }
+
+    private void completeDrains(String error) {
+        if (drainCallbacks.isEmpty()) return;
+        List<FirebaseManager.DataCallback<Void>> callbacks = new ArrayList<>(drainCallbacks);
+        drainCallbacks.clear();
+        mainHandler.post(() -> {
+            for (FirebaseManager.DataCallback<Void> callback : callbacks) {
+                if (error != null) {
+                    callback.onFailure(error);
+                } else {
+                    callback.onSuccess(null);
+                }
+            }
+        });
+    }
+
+    // =================== ENVOI ===================
+
+    private void scheduleFlush(long delayMs) {
+        if (scheduledFlush != null && !scheduledFlush.isDone()) {
+            // Un envoi plus proche est déjà prévu
+            if (scheduledFlush.getDelay(TimeUnit.MILLISECONDS) <= delayMs) return;
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = executor.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        if (flushInProgress || pending.isEmpty()) return;
+        flushInProgress = true;
+
+        // Après le refus d'un lot, un pointage par envoi pour isoler le ou les fautifs
+        int maxBatchSize = isolateRemaining > 0 ? 1 : FirebaseManager.MAX_ATTENDANCE_PER_BATCH;
+        List<Attendance> batch = new ArrayList<>();
+        for (Attendance attendance : pending.values()) {
+            if (batch.size() >= maxBatchSize) break;
+            batch.add(attendance);
+        }
+
+        firebaseManager.saveAttendanceBatch(batch)
+                .addOnSuccessListener(executor, aVoid -> onBatchUploaded(batch))
+                .addOnFailureListener(executor, e -> onBatchFailed(batch, e));
+    }
+
+    private void onBatchUploaded(List<Attendance> batch) {
+        flushInProgress = false;
+        currentBackoffMs = INITIAL_BACKOFF_MS;
+        isolateRemaining = Math.max(0, isolateRemaining - batch.size());
+
+        for (Attendance attendance : batch) {
+            // Ne pas retirer un pointage remplacé pendant l'envoi
+            if (pending.get(attendance.getAttendanceId()) == attendance) {
+                pending.remove(attendance.getAttendanceId());
+            }
+        }
+        persist();
+        Log.d(TAG, "Uploaded " + batch.size() + " check-ins, " + pending.size() + " pending");
+
+        List<QueueListener> targets = new ArrayList<>(listeners);
+        mainHandler.post(() -> {
+            AttendanceRepository repository = AttendanceRepository.getInstance(context);
+            for (Attendance attendance : batch) {
+                repository.onAttendanceSaved(attendance);
+            }
+            for (QueueListener listener : targets) {
+                listener.onCheckInsUploaded(batch);
+            }
+        });
+        notifyPendingCount();
+
+        if (!pending.isEmpty()) {
+            scheduleFlush(0);
+        } else {
+            completeDrains(null);
+        }
+    }
+
+    private void onBatchFailed(List<Attendance> batch, Exception e) {
+        flushInProgress = false;
+        String error = e.getMessage();
+
+        if (!isTransient(e)) {
+            if (batch.size() > 1) {
+                // Lot refusé : renvoyer ses pointages un par un, sans attendre
+                Log.w(TAG, "Batch of " + batch.size() + " rejected (" + error + "), isolating");
+                isolateRemaining = batch.size();
+                scheduleFlush(0);
+            } else {
+                reject(batch.get(0), error);
+            }
+            return;
+        }
+
+        for (Attendance attendance : batch) {
+            Attendance.AttendanceDetails details = attendance.getAttendanceDetails();
+            if (details != null) {
+                details.setRetryCount(details.getRetryCount() + 1);
+            }
+        }
+        persist();
+
+        completeDrains(error);
+        Log.w(TAG, "Upload failed (" + error + "), retrying in " + currentBackoffMs + " ms");
+        scheduleFlush(currentBackoffMs);
+        currentBackoffMs = Math.min(currentBackoffMs * 2, MAX_BACKOFF_MS);
+    }
+
+    /**
+     * Seules les indisponibilités du serveur ou du réseau valent d'être retentées ;
+     * toute autre erreur se reproduirait à chaque envoi. Les lectures groupées
+     * (Tasks.whenAllSuccess) enveloppent l'erreur Firestore dans une ExecutionException.
+     */
+    private static boolean isTransient(Exception e) {
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof FirebaseFirestoreException)) {
+            cause = cause.getCause();
+        }
+        if (cause == null) return false;
+        switch (((FirebaseFirestoreException) cause).getCode()) {
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+            case ABORTED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Sortir un pointage refusé de la file et le conserver pour l'enseignant
+     */
+    private void reject(Attendance attendance, String error) {
+        Log.e(TAG, "Check-in " + attendance.getAttendanceId() + " rejected: " + error);
+        isolateRemaining = Math.max(0, isolateRemaining - 1);
+        if (pending.get(attendance.getAttendanceId()) == attendance) {
+            pending.remove(attendance.getAttendanceId());
+        }
+        rejected.put(attendance.getAttendanceId(), new RejectedCheckIn(attendance, error));
+        persist();
+        persistRejected();
+        notifyPendingCount();
+        notifyRejected();
+
+        if (!pending.isEmpty()) {
+            scheduleFlush(0);
+        } else {
+            completeDrains(null);
+        }
+    }
+
+    /**
+     * Vider la liste des pointages refusés (vus par l'enseignant)
+     */
+    public void dismissRejected() {
+        executor.execute(() -> {
+            if (rejected.isEmpty()) return;
+            rejected.clear();
+            persistRejected();
+            notifyRejected();
+        });
+    }
+
+    public void getPendingCount(FirebaseManager.DataCallback<Integer> callback) {
+        executor.execute(() -> callback.onSuccess(pending.size()));
+    }
+
+    private void notifyPendingCount() {
+        int pendingCount = pending.size();
+        List<QueueListener> targets = new ArrayList<>(listeners);
+        mainHandler.post(() -> {
+            for (QueueListener listener : targets) {
+                listener.onPendingCountChanged(pendingCount);
+            }
+        });
+    }
+
+    private void notifyRejected() {
+        List<RejectedCheckIn> rejectedCheckIns = new ArrayList<>(rejected.values());
+        List<QueueListener> targets = new ArrayList<>(listeners);
+        mainHandler.post(() -> {
+            for (QueueListener listener : targets) {
+                listener.onCheckInsRejected(rejectedCheckIns);
+            }
+        });
+    }
+
+    // =================== PERSISTANCE ===================
+
+    private void persist() {
+        JSONArray array = new JSONArray();
+        try {
+            for (Attendance attendance : pending.values()) {
+                array.put(toJson(attendance));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing check-in queue", e);
+            return;
+        }
+        write(queueFile, array);
+    }
+
+    private void persistRejected() {
+        JSONArray array = new JSONArray();
+        try {
+            for (RejectedCheckIn rejectedCheckIn : rejected.values()) {
+                JSONObject json = toJson(rejectedCheckIn.getAttendance());
+                json.put("error", rejectedCheckIn.getError());
+                array.put(json);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing rejected check-ins", e);
+            return;
+        }
+        write(rejectedFile, array);
+    }
+
+    private static void write(AtomicFile file, JSONArray array) {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(array.toString().getBytes(StandardCharsets.UTF_8));
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing " + file.getBaseFile().getName(), e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    private void loadFromDisk() {
+        for (JSONObject json : read(queueFile)) {
+            Attendance attendance = fromJson(json);
+            pending.put(attendance.getAttendanceId(), attendance);
+        }
+        for (JSONObject json : read(rejectedFile)) {
+            Attendance attendance = fromJson(json);
+            rejected.put(attendance.getAttendanceId(),
+                    new RejectedCheckIn(attendance, json.optString("error", null)));
+        }
+    }
+
+    private static List<JSONObject> read(AtomicFile file) {
+        List<JSONObject> objects = new ArrayList<>();
+        try {
+            String content = new String(file.readFully(), StandardCharsets.UTF_8);
+            JSONArray array = new JSONArray(content);
+            for (int i = 0; i < array.length(); i++) {
+                objects.add(array.getJSONObject(i));
+            }
+        } catch (FileNotFoundException e) {
+            // Première utilisation : pas de fichier sur disque
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error reading " + file.getBaseFile().getName(), e);
+        }
+        return objects;
+    }
+
+    private static JSONObject toJson(Attendance attendance) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("attendanceId", attendance.getAttendanceId());
+        json.put("studentEmail", attendance.getStudentEmail());
+        json.put("studentName", attendance.getStudentName());
+        json.put("studentId", attendance.getStudentId());
+        json.put("courseId", attendance.getCourseId());
+        json.put("courseName", attendance.getCourseName());
+        json.put("sessionId", attendance.getSessionId());
+        json.put("status", attendance.getStatus());
+        json.put("confidence", attendance.getConfidence());
+        json.put("isManualEntry", attendance.isManualEntry());
+        json.put("modifiedBy", attendance.getModifiedBy());
+        json.put("modificationReason", attendance.getModificationReason());
+        putTimestamp(json, "timestamp", attendance.getTimestamp());
+        putTimestamp(json, "createdAt", attendance.getCreatedAt());
+
+        Attendance.AttendanceDetails details = attendance.getAttendanceDetails();
+        if (details != null) {
+            putTimestamp(json, "captureTime", details.getCaptureTime());
+            json.put("processingTime", details.getProcessingTime());
+            json.put("detectionTime", details.getDetectionTime());
+            json.put("recognitionTime", details.getRecognitionTime());
+            json.put("framesPerSecond", details.getFramesPerSecond());
+            json.put("retryCount", details.getRetryCount());
+            json.put("location", details.getLocation());
+        }
+        return json;
+    }
+
+    private static Attendance fromJson(JSONObject json) {
+        Attendance attendance = new Attendance();
+        attendance.setAttendanceId(json.optString("attendanceId", null));
+        attendance.setStudentEmail(json.optString("studentEmail", null));
+        attendance.setStudentName(json.optString("studentName", null));
+        attendance.setStudentId(json.optString("studentId", null));
+        attendance.setCourseId(json.optString("courseId", null));
+        attendance.setCourseName(json.optString("courseName", null));
+        attendance.setSessionId(json.optString("sessionId", null));
+        attendance.setStatus(json.optString("status", null));
+        attendance.setConfidence(json.optDouble("confidence", 0.0));
+        attendance.setManualEntry(json.optBoolean("isManualEntry", false));
+        attendance.setModifiedBy(json.optString("modifiedBy", null));
+        attendance.setModificationReason(json.optString("modificationReason", null));
+        attendance.setTimestamp(getTimestamp(json, "timestamp"));
+        attendance.setCreatedAt(getTimestamp(json, "createdAt"));
+
+        Attendance.AttendanceDetails details = attendance.getAttendanceDetails();
+        if (json.has("captureTime")) {
+            details.setCaptureTime(getTimestamp(json, "captureTime"));
+        }
+        details.setProcessingTime(json.optLong("processingTime", 0));
+        details.setDetectionTime(json.optLong("detectionTime", 0));
+        details.setRecognitionTime(json.optLong("recognitionTime", 0));
+        details.setFramesPerSecond(json.optDouble("framesPerSecond", 0));
+        details.setRetryCount(json.optInt("retryCount", 0));
+        if (json.has("location")) {
+            details.setLocation(json.optString("location"));
+        }
+        return attendance;
+    }
+
+    private static void putTimestamp(JSONObject json, String key, Timestamp timestamp) throws JSONException {
+        if (timestamp != null) {
+            json.put(key, timestamp.toDate().getTime());
+        }
+    }
+
+    private static Timestamp getTimestamp(JSONObject json, String key) {
+        return json.has(key) ? new Timestamp(new Date(json.optLong(key))) : null;
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.attendancesystem.services;
+
+import android.util.Log;
+
+import com.example.attendancesystem.models.Course;
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Catalogue des cours en mémoire.
+ *
+ * Le catalogue complet est chargé une fois, puis rafraîchi par delta (cours dont
+ * lastModifiedAt a avancé). L'application ne modifie pas les cours : ils sont édités hors
+ * de l'application, qui doit renseigner lastModifiedAt ; le rechargement complet périodique
+ * rattrape les autres. Des index inversés par département, filière et année
+ * cible permettent de résoudre localement chaque palier de recherche
+ * (critères complets, filière + année, filière seule) sans aller-retour réseau.
+ */
+public class CourseCatalog {
+    private static final String TAG = "CourseCatalog";
+
+    // Intervalle minimal entre deux rafraîchissements delta
+    private static final long DELTA_REFRESH_INTERVAL_MS = 5 * 60 * 1000;
+    // Rechargement complet périodique : rattrape les cours modifiés sans lastModifiedAt (console)
+    private static final long FULL_RELOAD_INTERVAL_MS = 24 * 60 * 60 * 1000;
+
+    // Nombre minimal de cours pour accepter un palier de recherche
+    private static final int MIN_TIER_RESULTS = 3;
+    private static final int FIELD_AND_YEAR_LIMIT = 10;
+    private static final int FIELD_ONLY_LIMIT = 8;
+
+    private final FirebaseManager firebaseManager;
+
+    // Cours actifs par identifiant et index inversés (identifiants de cours)
+    private final Map<String, Course> coursesById = new HashMap<>();
+    private final Map<String, Set<String>> byDepartment = new HashMap<>();
+    private final Map<String, Set<String>> byField = new HashMap<>();
+    private final Map<String, Set<String>> byYear = new HashMap<>();
+
+    private boolean loaded = false;
+    private long watermark = 0;
+    private long lastFullLoadAt = 0;
+    private long lastRefreshAt = 0;
+    // Callbacks en attente du chargement en cours
+    private List<Runnable> pendingReady;
+
+    // Singleton pattern
+    private static CourseCatalog instance;
+
+    private CourseCatalog() {
+        this.firebaseManager = FirebaseManager.getInstance();
+    }
+
+    public static synchronized CourseCatalog getInstance() {
+        if (instance == null) {
+            instance = new CourseCatalog();
+        }
+        return instance;
+    }
+
+    // =================== RECHERCHE ===================
+
+    /**
+     * Cours d'un étudiant, résolus localement par paliers :
+     * critères complets, puis filière + année, puis filière seule.
+     */
+    public void getStudentCourses(String department, String field, String year,
+                                  FirebaseManager.DataCallback<List<Map<String, String>>> callback) {
+        whenReady(callback, () -> {
+            List<Map<String, String>> courses = new ArrayList<>();
+            for (Course course : findStudentCourses(department, field, year)) {
+                courses.add(toCourseMap(course));
+            }
+            return courses;
+        });
+    }
+
+    /**
+     * Définitions des cours actifs d'une filière pour une année (emploi du temps)
+     */
+    public void getCoursesFor(String department, String field, String year,
+                              FirebaseManager.DataCallback<List<Course>> callback) {
+        whenReady(callback, () -> resolve(intersect(byDepartment.get(department),
+                byField.get(field), byYear.get(year)), Integer.MAX_VALUE));
+    }
+
+    private List<Course> findStudentCourses(String department, String field, String year) {
+        List<Course> courses = resolve(intersect(byDepartment.get(department),
+                byField.get(field), byYear.get(year)), Integer.MAX_VALUE);
+        if (courses.size() >= MIN_TIER_RESULTS) return courses;
+
+        courses = resolve(intersect(byField.get(field), byYear.get(year)), FIELD_AND_YEAR_LIMIT);
+        if (courses.size() >= MIN_TIER_RESULTS) return courses;
+
+        return resolve(intersect(byField.get(field)), FIELD_ONLY_LIMIT);
+    }
+
+    // =================== CHARGEMENT ===================
+
+    private interface CatalogQuery<T> {
+        T run();
+    }
+
+    private <T> void whenReady(FirebaseManager.DataCallback<T> callback, CatalogQuery<T> query) {
+        if (loaded) {
+            // Réponse immédiate depuis le catalogue, rafraîchissement en arrière-plan si nécessaire
+            callback.onSuccess(query.run());
+            refreshIfStale();
+            return;
+        }
+
+        if (pendingReady != null) {
+            pendingReady.add(() -> deliver(callback, query));
+            return;
+        }
+        pendingReady = new ArrayList<>();
+        pendingReady.add(() -> deliver(callback, query));
+        fullLoad();
+    }
+
+    private <T> void deliver(FirebaseManager.DataCallback<T> callback, CatalogQuery<T> query) {
+        if (loaded) {
+            callback.onSuccess(query.run());
+        } else {
+            callback.onFailure("Impossible de charger les cours");
+        }
+    }
+
+    private void fullLoad() {
+        firebaseManager.getAllCourses(new FirebaseManager.DataCallback<List<Course>>() {
+            @Override
+            public void onSuccess(List<Course> courses) {
+                clearIndexes();
+                apply(courses);
+                loaded = true;
+                lastFullLoadAt = System.currentTimeMillis();
+                lastRefreshAt = lastFullLoadAt;
+                Log.d(TAG, "Catalog loaded: " + coursesById.size() + " active courses");
+                flushPending();
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "Catalog load failed: " + error);
+                flushPending();
+            }
+        });
+    }
+
+    private void refreshIfStale() {
+        long now = System.currentTimeMillis();
+        if (now - lastFullLoadAt > FULL_RELOAD_INTERVAL_MS) {
+            lastFullLoadAt = now;
+            lastRefreshAt = now;
+            fullLoad();
+            return;
+        }
+        if (now - lastRefreshAt < DELTA_REFRESH_INTERVAL_MS || watermark <= 0) return;
+        lastRefreshAt = now;
+
+        firebaseManager.getCoursesModifiedSince(new Timestamp(new Date(watermark)),
+                new FirebaseManager.DataCallback<List<Course>>() {
+                    @Override
+                    public void onSuccess(List<Course> changes) {
+                        apply(changes);
+                        Log.d(TAG, "Catalog delta: " + changes.size() + " changed courses");
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        Log.w(TAG, "Catalog delta failed: " + error);
+                    }
+                });
+    }
+
+    private void flushPending() {
+        List<Runnable> ready = pendingReady;
+        pendingReady = null;
+        if (ready != null) {
+            for (Runnable runnable : ready) {
+                runnable.run();
+            }
+        }
+    }
+
+    // =================== INDEX ===================
+
+    private void apply(List<Course> courses) {
+        for (Course course : courses) {
+            unindex(course.getCourseId());
+            if (course.isActive()) {
+                index(course);
+            }
+            if (course.getLastModifiedAt() != null) {
+                watermark = Math.max(watermark, course.getLastModifiedAt().toDate().getTime());
+            }
+        }
+    }
+
+    private void index(Course course) {
+        String id = course.getCourseId();
+        coursesById.put(id, course);
+        addToIndex(byDepartment, course.getDepartment(), id);
+        addToIndex(byField, course.getField(), id);
+        if (course.getTargetYears() != null) {
+            for (String year : course.getTargetYears()) {
+                addToIndex(byYear, year, id);
+            }
+        }
+    }
+
+    private void unindex(String courseId) {
+        Course previous = coursesById.remove(courseId);
+        if (previous == null) return;
+        removeFromIndex(byDepartment, previous.getDepartment(), courseId);
+        removeFromIndex(byField, previous.getField(), courseId);
+        if (previous.getTargetYears() != null) {
+            for (String year : previous.getTargetYears()) {
+                removeFromIndex(byYear, year, courseId);
+            }
+        }
+    }
+
+    private void clearIndexes() {
+        coursesById.clear();
+        byDepartment.clear();
+        byField.clear();
+        byYear.clear();
+    }
+
+    private static void addToIndex(Map<String, Set<String>> index, String key, String courseId) {
+        if (key == null) return;
+        Set<String> ids = index.get(key);
+        if (ids == null) {
+            ids = new LinkedHashSet<>();
+            index.put(key, ids);
+        }
+        ids.add(courseId);
+    }
+
+    private static void removeFromIndex(Map<String, Set<String>> index, String key, String courseId) {
+        if (key == null) return;
+        Set<String> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(courseId);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Intersection des index, en partant du plus petit ensemble
+     */
+    @SafeVarargs
+    private static Set<String> intersect(Set<String>... sets) {
+        Set<String> smallest = null;
+        for (Set<String> set : sets) {
+            if (set == null) return Collections.emptySet();
+            if (smallest == null || set.size() < smallest.size()) {
+                smallest = set;
+            }
+        }
+        if (smallest == null) return Collections.emptySet();
+
+        Set<String> result = new LinkedHashSet<>();
+        for (String id : smallest) {
+            boolean inAll = true;
+            for (Set<String> set : sets) {
+                if (set != smallest && !set.contains(id)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private List<Course> resolve(Set<String> ids, int limit) {
+        List<Course> courses = new ArrayList<>();
+        for (String id : ids) {
+            if (courses.size() >= limit) break;
+            courses.add(coursesById.get(id));
+        }
+        return courses;
+    }
+
+    /**
+     * Représentation attendue par les écrans (StudentCoursesAdapter, spinner des justifications)
+     */
+    private static Map<String, String> toCourseMap(Course course) {
+        Map<String, String> map = new HashMap<>();
+        map.put("id", course.getCourseId());
+        map.put("name", course.getCourseName());
+        map.put("teacherName", course.getTeacherName());
+        map.put("department", course.getDepartment());
+        map.put("field", course.getField());
+
+        Course.Schedule schedule = course.getCourseScheduleEntry();
+        if (schedule != null && schedule.getDayOfWeek() != null) {
+            map.put("dayOfWeek", schedule.getDayOfWeek());
+            map.put("timeSlot", schedule.getStartTime() + "-" + schedule.getEndTime());
+            map.put("room", schedule.getRoom());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.attendancesystem.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.attendancesystem.models.Session;
+import com.example.attendancesystem.models.Student;
+import com.example.attendancesystem.models.Teacher;
+import com.example.attendancesystem.utils.Utils;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chargement initial des tableaux de bord.
+ *
+ * Les lectures indépendantes (profil, sessions du jour, prochaine session,
+ * statistiques) sont lancées en parallèle puis regroupées avec Tasks.whenAllComplete :
+ * le temps de chargement est celui de la requête la plus lente et non leur somme.
+ * Chaque partie est transmise dès son arrivée pour un affichage progressif.
+ *
+ * Les requêtes de sessions d'un étudiant dépendent de son département, de sa filière
+ * et de son année : ce périmètre est mémorisé au premier chargement pour que les
+ * lancements suivants n'attendent plus le profil. Sessions et statistiques de l'étudiant
+ * passent par AttendanceRepository, qui répond depuis la copie locale et rafraîchit en
+ * arrière-plan.
+ */
+public class DashboardBootstrap {
+    private static final String TAG = "DashboardBootstrap";
+
+    private static final String PREF_SCOPE_PREFIX = "dashboard_scope_";
+    private static final String SCOPE_SEPARATOR = "|";
+
+    private final Context context;
+    private final FirebaseManager firebaseManager;
+    private final AttendanceRepository attendanceRepository;
+
+    /**
+     * Parties d'un tableau de bord
+     */
+    public enum Part {
+        PROFILE, TODAY_SESSIONS, NEXT_SESSION, STATISTICS
+    }
+
+    /**
+     * Suivi du chargement (appelé sur le thread principal)
+     */
+    public interface Listener<T> {
+        // Une partie vient d'arriver (ou d'échouer : voir snapshot.getError(part))
+        void onPartLoaded(T snapshot, Part part);
+        // Toutes les parties sont terminées
+        void onComplete(T snapshot);
+    }
+
+    /**
+     * État commun : erreurs par partie
+     */
+    public abstract static class Snapshot {
+        private final Map<Part, String> errors = new EnumMap<>(Part.class);
+
+        public String getError(Part part) { return errors.get(part); }
+        public boolean hasError(Part part) { return errors.containsKey(part); }
+        public boolean hasErrors() { return !errors.isEmpty(); }
+    }
+
+    public static class StudentDashboard extends Snapshot {
+        // Périmètre (département, filière, année) des sessions en cours de chargement
+        private String[] scope;
+        private Student student;
+        private List<Session> todaySessions;
+        private Session nextSession;
+        private FirebaseManager.AttendanceStatsDetailed statistics;
+
+        public Student getStudent() { return student; }
+        public List<Session> getTodaySessions() { return todaySessions; }
+        public Session getNextSession() { return nextSession; }
+        public FirebaseManager.AttendanceStatsDetailed getStatistics() { return statistics; }
+    }
+
+    public static class TeacherDashboard extends Snapshot {
+        private Teacher teacher;
+        private List<Session> todaySessions;
+        private Session nextSession;
+
+        public Teacher getTeacher() { return teacher; }
+        public List<Session> getTodaySessions() { return todaySessions; }
+        public Session getNextSession() { return nextSession; }
+    }
+
+    public DashboardBootstrap(Context context) {
+        this.context = context.getApplicationContext();
+        this.firebaseManager = FirebaseManager.getInstance();
+        this.attendanceRepository = AttendanceRepository.getInstance(this.context);
+    }
+
+    // =================== ÉTUDIANT ===================
+
+    public void loadStudentDashboard(String email, Listener<StudentDashboard> listener) {
+        StudentDashboard snapshot = new StudentDashboard();
+        List<Task<Void>> parts = new ArrayList<>();
+
+        // Sessions du jour et prochaine session : terminées seulement une fois le périmètre
+        // confirmé par le profil, jamais par les réponses d'un périmètre mémorisé périmé
+        TaskCompletionSource<Void> sessionsReady = new TaskCompletionSource<>();
+        TaskCompletionSource<Void> nextReady = new TaskCompletionSource<>();
+        parts.add(sessionsReady.getTask());
+        parts.add(nextReady.getTask());
+
+        // Sessions lancées immédiatement avec le périmètre mémorisé
+        String[] cachedScope = getCachedScope(email);
+        List<Task<Void>> cachedLoads = cachedScope != null ?
+                loadStudentSessions(email, cachedScope, snapshot, listener) : null;
+
+        // Profil
+        Task<Void> profile = track(snapshot, Part.PROFILE, listener, (FirebaseManager.DataCallback<Student> callback) ->
+                firebaseManager.getStudentByEmail(email, callback), student -> {
+            snapshot.student = student;
+            String[] scope = scopeOf(student);
+            saveScope(email, scope);
+            if (cachedScope != null && sameScope(cachedScope, scope)) {
+                forward(cachedLoads, sessionsReady, nextReady);
+                return;
+            }
+            // Premier lancement ou périmètre modifié : les résultats de l'ancien périmètre sont écartés
+            snapshot.todaySessions = null;
+            snapshot.nextSession = null;
+            snapshot.errors.remove(Part.TODAY_SESSIONS);
+            snapshot.errors.remove(Part.NEXT_SESSION);
+            forward(loadStudentSessions(email, scope, snapshot, listener), sessionsReady, nextReady);
+        });
+        profile.addOnFailureListener(e -> {
+            if (cachedLoads != null) {
+                // Profil indisponible : le périmètre mémorisé fait foi
+                forward(cachedLoads, sessionsReady, nextReady);
+                return;
+            }
+            // Sans profil ni périmètre mémorisé, les sessions ne peuvent pas être chargées
+            snapshot.errors.put(Part.TODAY_SESSIONS, e.getMessage());
+            snapshot.errors.put(Part.NEXT_SESSION, e.getMessage());
+            sessionsReady.trySetResult(null);
+            nextReady.trySetResult(null);
+        });
+        parts.add(profile);
+
+        // Statistiques (ne dépendent que de l'email)
+        parts.add(track(snapshot, Part.STATISTICS, listener,
+                (FirebaseManager.DataCallback<FirebaseManager.AttendanceStatsDetailed> callback) ->
+                        attendanceRepository.getStudentAttendanceStatistics(email, callback),
+                stats -> snapshot.statistics = stats));
+
+        whenAllComplete(parts, snapshot, listener);
+    }
+
+    /**
+     * Lancer les lectures de sessions d'un périmètre ; retourne [sessions du jour, prochaine session]
+     */
+    private List<Task<Void>> loadStudentSessions(String email, String[] scope, StudentDashboard snapshot,
+                                                 Listener<StudentDashboard> listener) {
+        snapshot.scope = scope;
+        List<Task<Void>> loads = new ArrayList<>(2);
+
+        loads.add(track(snapshot, Part.TODAY_SESSIONS, listener, (FirebaseManager.DataCallback<List<Session>> callback) ->
+                        attendanceRepository.getTodaySessionsForStudent(email, scope[0], scope[1], scope[2],
+                                dropIfStale(snapshot, scope, callback)),
+                sessions -> snapshot.todaySessions = sessions));
+
+        loads.add(track(snapshot, Part.NEXT_SESSION, listener, (FirebaseManager.DataCallback<Session> callback) ->
+                        attendanceRepository.getNextSessionForStudent(email, scope[0], scope[1], scope[2],
+                                dropIfStale(snapshot, scope, callback)),
+                session -> snapshot.nextSession = session));
+        return loads;
+    }
+
+    /**
+     * Ignorer la réponse d'un périmètre mémorisé remplacé entre-temps par celui du profil
+     */
+    private static <R> FirebaseManager.DataCallback<R> dropIfStale(StudentDashboard snapshot, String[] scope,
+                                                                  FirebaseManager.DataCallback<R> callback) {
+        return new FirebaseManager.DataCallback<R>() {
+            @Override
+            public void onSuccess(R result) {
+                if (snapshot.scope == scope) callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                if (snapshot.scope == scope) callback.onFailure(error);
+            }
+        };
+    }
+
+    // =================== ENSEIGNANT ===================
+
+    public void loadTeacherDashboard(String email, Listener<TeacherDashboard> listener) {
+        TeacherDashboard snapshot = new TeacherDashboard();
+        List<Task<Void>> parts = new ArrayList<>();
+
+        // Les requêtes enseignant ne dépendent que de l'email : tout part en même temps
+        parts.add(track(snapshot, Part.PROFILE, listener, (FirebaseManager.DataCallback<Teacher> callback) ->
+                firebaseManager.getTeacherByEmail(email, callback), teacher -> snapshot.teacher = teacher));
+
+        parts.add(track(snapshot, Part.TODAY_SESSIONS, listener, (FirebaseManager.DataCallback<List<Session>> callback) ->
+                firebaseManager.getTodaySessionsForTeacher(email, callback), sessions -> snapshot.todaySessions = sessions));
+
+        parts.add(track(snapshot, Part.NEXT_SESSION, listener, (FirebaseManager.DataCallback<Session> callback) ->
+                firebaseManager.getNextSessionForTeacher(email, callback), session -> snapshot.nextSession = session));
+
+        whenAllComplete(parts, snapshot, listener);
+    }
+
+    // =================== ORCHESTRATION ===================
+
+    private interface Request<R> {
+        void start(FirebaseManager.DataCallback<R> callback);
+    }
+
+    private interface Consumer<R> {
+        void accept(R result);
+    }
+
+    /**
+     * Lancer une lecture et l'exposer comme Task ; la partie est notifiée dès son arrivée
+     */
+    private <T extends Snapshot, R> Task<Void> track(T snapshot, Part part, Listener<T> listener,
+                                                    Request<R> request, Consumer<R> onResult) {
+        TaskCompletionSource<Void> source = new TaskCompletionSource<>();
+        request.start(new FirebaseManager.DataCallback<R>() {
+            @Override
+            public void onSuccess(R result) {
+                snapshot.errors.remove(part);
+                onResult.accept(result);
+                listener.onPartLoaded(snapshot, part);
+                source.trySetResult(null);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.w(TAG, "Dashboard part " + part + " failed: " + error);
+                snapshot.errors.put(part, error);
+                listener.onPartLoaded(snapshot, part);
+                source.trySetException(new Exception(error));
+            }
+        });
+        return source.getTask();
+    }
+
+    private static void forward(List<Task<Void>> loads, TaskCompletionSource<Void> sessionsReady,
+                                TaskCompletionSource<Void> nextReady) {
+        loads.get(0).addOnCompleteListener(done -> sessionsReady.trySetResult(null));
+        loads.get(1).addOnCompleteListener(done -> nextReady.trySetResult(null));
+    }
+
+    private static <T extends Snapshot> void whenAllComplete(List<Task<Void>> parts, T snapshot, Listener<T> listener) {
+        long startedAt = System.currentTimeMillis();
+        Tasks.whenAllComplete(parts).addOnCompleteListener(done -> {
+            Log.d(TAG, "Dashboard ready in " + (System.currentTimeMillis() - startedAt) + " ms");
+            listener.onComplete(snapshot);
+        });
+    }
+
+    // =================== PÉRIMÈTRE ÉTUDIANT ===================
+
+    private static String[] scopeOf(Student student) {
+        return new String[]{
+                student.getDepartment(),
+                student.getField() != null ? student.getField() : "",
+                student.getYear()
+        };
+    }
+
+    private static boolean sameScope(String[] a, String[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == null ? b[i] != null : !a[i].equals(b[i])) return false;
+        }
+        return true;
+    }
+
+    private String[] getCachedScope(String email) {
+        String value = Utils.getStringPref(context, PREF_SCOPE_PREFIX + email, null);
+        if (value == null) return null;
+        String[] scope = value.split("\\" + SCOPE_SEPARATOR, -1);
+        return scope.length == 3 ? scope : null;
+    }
+
+    private void saveScope(String email, String[] scope) {
+        if (scope[0] == null || scope[2] == null) return;
+        Utils.setStringPref(context, PREF_SCOPE_PREFIX + email,
+                scope[0] + SCOPE_SEPARATOR + scope[1] + SCOPE_SEPARATOR + scope[2]);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.attendancesystem.services;
+
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU d'entités en mémoire, partagé par toutes les activités.
+ *
+ * Les demandes simultanées pour une même clé partagent une seule Task en cours
+ * (single-flight) : dix écrans qui demandent le même profil ne déclenchent qu'une
+ * lecture. Seuls les résultats réussis sont conservés, pendant ttlMs au plus : une
+ * modification faite hors de ce terminal finit donc par être relue. Les compteurs de hits,
+ * de misses et de demandes regroupées permettent de mesurer l'efficacité du cache.
+ */
+public class EntityCache<V> {
+
+    /**
+     * Chargement d'une entité absente du cache
+     */
+    public interface Loader<V> {
+        Task<V> load();
+    }
+
+    /**
+     * Compteurs d'utilisation
+     */
+    public static class Stats {
+        private final String name;
+        private final long hits;
+        private final long misses;
+        private final long coalesced;
+        private final int size;
+
+        Stats(String name, long hits, long misses, long coalesced, int size) {
+            this.name = name;
+            this.hits = hits;
+            this.misses = misses;
+            this.coalesced = coalesced;
+            this.size = size;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getCoalesced() { return coalesced; }
+        public int getSize() { return size; }
+
+        public double getHitRate() {
+            long total = hits + misses + coalesced;
+            return total == 0 ? 0.0 : (double) (hits + coalesced) / total * 100;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d hits, %d misses, %d coalesced, %d entries (%.1f%%)",
+                    name, hits, misses, coalesced, size, getHitRate());
+        }
+    }
+
+    /**
+     * Entité et instant de son chargement
+     */
+    private static class Cached<V> {
+        final V value;
+        final long loadedAt;
+
+        Cached(V value) {
+            this.value = value;
+            this.loadedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private final String name;
+    private final long ttlMs;
+    private final LruCache<String, Cached<V>> entries;
+    private final Map<String, Task<V>> inFlight = new HashMap<>();
+    // Incrémenté à chaque invalidation : un chargement lancé avant ne doit pas repeupler le cache
+    private final Map<String, Integer> generations = new HashMap<>();
+    private int epoch = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long coalesced = 0;
+
+    public EntityCache(String name, int maxEntries, long ttlMs) {
+        this.name = name;
+        this.ttlMs = ttlMs;
+        this.entries = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * Entité en cache, ou chargement partagé avec les demandes déjà en cours
+     */
+    public synchronized Task<V> get(String key, Loader<V> loader) {
+        Cached<V> cached = entries.get(key);
+        if (cached != null) {
+            if (SystemClock.elapsedRealtime() - cached.loadedAt < ttlMs) {
+                hits++;
+                return Tasks.forResult(cached.value);
+            }
+            entries.remove(key);
+        }
+
+        Task<V> pending = inFlight.get(key);
+        if (pending != null) {
+            coalesced++;
+            return pending;
+        }
+
+        misses++;
+        int loadEpoch = epoch;
+        int generation = generationOf(key);
+        Task<V> task = loader.load();
+        inFlight.put(key, task);
+        task.addOnCompleteListener(done -> onLoaded(key, loadEpoch, generation, done));
+        return task;
+    }
+
+    private synchronized void onLoaded(String key, int loadEpoch, int generation, Task<V> task) {
+        if (inFlight.get(key) == task) {
+            inFlight.remove(key);
+        }
+        if (task.isSuccessful() && task.getResult() != null
+                && loadEpoch == epoch && generationOf(key) == generation) {
+            entries.put(key, new Cached<>(task.getResult()));
+        }
+    }
+
+    public synchronized void put(String key, V value) {
+        if (value == null) {
+            invalidate(key);
+        } else {
+            entries.put(key, new Cached<>(value));
+        }
+    }
+
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+        inFlight.remove(key);
+        generations.put(key, generationOf(key) + 1);
+    }
+
+    public synchronized void clear() {
+        entries.evictAll();
+        inFlight.clear();
+        generations.clear();
+        epoch++;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(name, hits, misses, coalesced, entries.size());
+    }
+
+    private int generationOf(String key) {
+        Integer generation = generations.get(key);
+        return generation != null ? generation : 0;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.attendancesystem.services;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Calcul d'empreintes faciales sur le CPU avec TensorFlow Lite (délégué XNNPACK).
+ *
+ * Le modèle (type MobileFaceNet, entrée [1, taille, taille, 3] en float, sortie [1, dimension])
+ * est mappé en mémoire depuis les assets, sans copie. Les tailles d'entrée et de sortie sont
+ * lues dans le modèle. Les tampons d'entrée et de pixels sont alloués une seule fois.
+ *
+ * Un Interpreter n'est pas thread-safe : embed() est synchronisé, et FaceRecognitionEngine
+ * l'appelle depuis son unique thread d'inférence. Le pointage de groupe (GroupFaceRecognizer)
+ * utilise plutôt plusieurs instances mono-thread, une par cœur.
+ */
+public class FaceEmbedder implements Closeable {
+
+    public static final String MODEL_ASSET = "face_embedding.tflite";
+
+    private static final int DEFAULT_NUM_THREADS = 4;
+    private static final float PIXEL_MEAN = 127.5f;
+    private static final float PIXEL_SCALE = 128f;
+
+    private final Interpreter interpreter;
+    private final int inputSize;
+    private final int dimension;
+    private final ByteBuffer input;
+    private final int[] pixels;
+    private final float[][] output;
+
+    public FaceEmbedder(Context context) throws IOException {
+        this(context, DEFAULT_NUM_THREADS);
+    }
+
+    public FaceEmbedder(Context context, int numThreads) throws IOException {
+        Interpreter.Options options = new Interpreter.Options()
+                .setNumThreads(numThreads)
+                .setUseXNNPACK(true);
+        interpreter = new Interpreter(loadModel(context), options);
+
+        inputSize = interpreter.getInputTensor(0).shape()[1];
+        dimension = interpreter.getOutputTensor(0).shape()[1];
+
+        input = ByteBuffer.allocateDirect(4 * inputSize * inputSize * 3).order(ByteOrder.nativeOrder());
+        pixels = new int[inputSize * inputSize];
+        output = new float[1][dimension];
+    }
+
+    private static MappedByteBuffer loadModel(Context context) throws IOException {
+        // Nécessite noCompress 'tflite' dans build.gradle pour être mappable
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(MODEL_ASSET);
+             FileInputStream stream = new FileInputStream(descriptor.getFileDescriptor());
+             FileChannel channel = stream.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getDeclaredLength());
+        }
+    }
+
+    public int getDimension() { return dimension; }
+    public int getInputSize() { return inputSize; }
+
+    /**
+     * Empreinte normalisée d'un visage déjà recadré (carré de préférence)
+     */
+    public synchronized float[] embed(Bitmap face) {
+        Bitmap scaled = face.getWidth() == inputSize && face.getHeight() == inputSize ?
+                face : Bitmap.createScaledBitmap(face, inputSize, inputSize, true);
+        scaled.getPixels(pixels, 0, inputSize, 0, 0, inputSize, inputSize);
+        if (scaled != face) {
+            scaled.recycle();
+        }
+
+        input.rewind();
+        for (int pixel : pixels) {
+            input.putFloat((((pixel >> 16) & 0xFF) - PIXEL_MEAN) / PIXEL_SCALE);
+            input.putFloat((((pixel >> 8) & 0xFF) - PIXEL_MEAN) / PIXEL_SCALE);
+            input.putFloat(((pixel & 0xFF) - PIXEL_MEAN) / PIXEL_SCALE);
+        }
+        input.rewind();
+
+        interpreter.run(input, output);
+
+        float[] embedding = output[0].clone();
+        FaceEmbeddingIndex.normalize(embedding, 0, dimension);
+        return embedding;
+    }
+
+    @Override
+    public synchronized void close() {
+        interpreter.close();
+    }
+}
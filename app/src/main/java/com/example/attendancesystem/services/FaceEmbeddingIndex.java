@@ -0,0 +1,150 @@
+package com.example.attendancesystem.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index en mémoire des empreintes faciales (embeddings) des étudiants inscrits.
+ *
+ * Toutes les empreintes sont normalisées (norme L2 = 1) à l'ajout et rangées bout à bout
+ * dans un seul float[] : la similarité cosinus devient un simple produit scalaire, parcouru
+ * séquentiellement en mémoire. Le produit scalaire est déroulé sur 4 accumulateurs
+ * indépendants pour que le JIT/ART puisse le vectoriser. Les k meilleurs scores sont gardés
+ * dans deux petits tableaux triés, sans allocation par ligne.
+ *
+ * Construction (add) sur un seul thread ; une fois publié, l'index est en lecture seule
+ * et topK peut être appelé depuis n'importe quel thread.
+ */
+public class FaceEmbeddingIndex {
+
+    /**
+     * Candidat retourné par la recherche
+     */
+    public static class Match {
+        private final String id;
+        private final float score;
+
+        Match(String id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public String getId() { return id; }
+        // Similarité cosinus dans [-1, 1]
+        public float getScore() { return score; }
+    }
+
+    private final int dimension;
+    private float[] vectors;
+    private String[] ids;
+    private int size = 0;
+
+    public FaceEmbeddingIndex(int dimension, int expectedSize) {
+        if (dimension <= 0) throw new IllegalArgumentException("dimension must be positive");
+        this.dimension = dimension;
+        int capacity = Math.max(expectedSize, 1);
+        this.vectors = new float[capacity * dimension];
+        this.ids = new String[capacity];
+    }
+
+    public int getDimension() { return dimension; }
+    public int size() { return size; }
+
+    /**
+     * Ajouter l'empreinte d'un étudiant (copiée et normalisée). Un étudiant peut avoir
+     * plusieurs empreintes (plusieurs photos).
+     */
+    public void add(String id, float[] embedding) {
+        if (embedding.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " values, got " + embedding.length);
+        }
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+
+        int offset = size * dimension;
+        System.arraycopy(embedding, 0, vectors, offset, dimension);
+        normalize(vectors, offset, dimension);
+        ids[size++] = id;
+    }
+
+    // =================== RECHERCHE ===================
+
+    /**
+     * Les k empreintes les plus proches de la requête (similarité cosinus décroissante)
+     */
+    public List<Match> topK(float[] query, int k) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " values, got " + query.length);
+        }
+        int limit = Math.min(k, size);
+        List<Match> matches = new ArrayList<>(limit);
+        if (limit <= 0) return matches;
+
+        float[] normalizedQuery = Arrays.copyOf(query, dimension);
+        normalize(normalizedQuery, 0, dimension);
+
+        // Meilleurs scores triés par ordre décroissant ; bestScores[limit - 1] est le seuil d'entrée
+        float[] bestScores = new float[limit];
+        int[] bestRows = new int[limit];
+        Arrays.fill(bestScores, Float.NEGATIVE_INFINITY);
+
+        float[] data = vectors;
+        for (int row = 0, offset = 0; row < size; row++, offset += dimension) {
+            float score = dot(data, offset, normalizedQuery, dimension);
+            if (score <= bestScores[limit - 1]) continue;
+
+            int position = limit - 1;
+            while (position > 0 && bestScores[position - 1] < score) {
+                bestScores[position] = bestScores[position - 1];
+                bestRows[position] = bestRows[position - 1];
+                position--;
+            }
+            bestScores[position] = score;
+            bestRows[position] = row;
+        }
+
+        for (int i = 0; i < limit; i++) {
+            matches.add(new Match(ids[bestRows[i]], bestScores[i]));
+        }
+        return matches;
+    }
+
+    /**
+     * Produit scalaire de la ligne commençant à offset avec la requête (4 accumulateurs)
+     */
+    static float dot(float[] data, int offset, float[] query, int dimension) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int unrolled = dimension & ~3;
+        for (; i < unrolled; i += 4) {
+            s0 += data[offset + i] * query[i];
+            s1 += data[offset + i + 1] * query[i + 1];
+            s2 += data[offset + i + 2] * query[i + 2];
+            s3 += data[offset + i + 3] * query[i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += data[offset + i] * query[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Normaliser (norme L2 = 1) la portion [offset, offset + length) ; un vecteur nul reste nul
+     */
+    static void normalize(float[] values, int offset, int length) {
+        double sum = 0;
+        for (int i = offset; i < offset + length; i++) {
+            sum += values[i] * values[i];
+        }
+        if (sum == 0) return;
+
+        float scale = (float) (1.0 / Math.sqrt(sum));
+        for (int i = offset; i < offset + length; i++) {
+            values[i] *= scale;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.attendancesystem.services;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyse des images de la caméra du terminal : détection du visage (ML Kit), suivi d'une
+ * image à l'autre (FaceTracker), recadrage YUV -> RGB limité au visage (YuvFaceCropper), puis
+ * reconnaissance (FaceRecognitionEngine) une seule fois par piste tant qu'elle est sûre.
+ *
+ * Conçu pour une file continue d'étudiants :
+ * - ImageAnalysis doit être configuré en STRATEGY_KEEP_ONLY_LATEST : pendant qu'une image
+ *   est traitée, les suivantes sont remplacées par la plus récente au lieu de s'accumuler ;
+ * - le débit est plafonné (MIN_FRAME_INTERVAL_MS) et ralenti quand l'appareil chauffe ;
+ * - tampons de conversion réutilisés, aucune allocation par image de notre côté ;
+ * - un étudiant qui reste devant la caméra n'est pas ré-identifié à chaque image.
+ *
+ * analyze() tourne sur l'exécuteur d'analyse passé à ImageAnalysis ; le Listener est
+ * appelé sur le thread principal.
+ */
+public class FaceFrameAnalyzer implements ImageAnalysis.Analyzer {
+    private static final String TAG = "FaceFrameAnalyzer";
+
+    // 10 images/s au plus : suffisant pour une file, et limite l'échauffement
+    private static final long MIN_FRAME_INTERVAL_MS = 100;
+    // Intervalle doublé à partir de THERMAL_STATUS_MODERATE
+    private static final long THROTTLED_FRAME_INTERVAL_MS = 2 * MIN_FRAME_INTERVAL_MS;
+    private static final long STATS_WINDOW_MS = 1000;
+    // Taille minimale du visage (part de la largeur de l'image) : ignore la file derrière
+    private static final float MIN_FACE_SIZE = 0.2f;
+
+    /**
+     * Mesures d'une image analysée (millisecondes)
+     */
+    public static class FrameStats {
+        private final long detectionTime;
+        private final long cropTime;
+        private final long recognitionTime;
+        private final long totalTime;
+        private final double framesPerSecond;
+        private final double recognitionRate;
+
+        FrameStats(long detectionTime, long cropTime, long recognitionTime, long totalTime,
+                   double framesPerSecond, double recognitionRate) {
+            this.detectionTime = detectionTime;
+            this.cropTime = cropTime;
+            this.recognitionTime = recognitionTime;
+            this.totalTime = totalTime;
+            this.framesPerSecond = framesPerSecond;
+            this.recognitionRate = recognitionRate;
+        }
+
+        public long getDetectionTime() { return detectionTime; }
+        public long getCropTime() { return cropTime; }
+        public long getRecognitionTime() { return recognitionTime; }
+        public long getTotalTime() { return totalTime; }
+        public double getFramesPerSecond() { return framesPerSecond; }
+        // Part des images avec visage qui ont nécessité une reconnaissance (fenêtre d'une seconde)
+        public double getRecognitionRate() { return recognitionRate; }
+    }
+
+    /**
+     * Résultats de l'analyse (thread principal)
+     */
+    public interface Listener {
+        void onNoFace(FrameStats stats);
+        // Reconnaissance effectuée sur une nouvelle piste, ou re-vérification d'une piste incertaine
+        void onRecognition(int trackId, FaceRecognitionEngine.Recognition recognition, FrameStats stats);
+        // Visage déjà identifié par le suivi : aucune inférence sur cette image
+        void onFaceTracked(int trackId, String studentEmail, FrameStats stats);
+        void onError(String error);
+    }
+
+    private final FaceRecognitionEngine engine;
+    private final Listener listener;
+    private final PowerManager powerManager;
+    private final FaceDetector detector;
+    private final YuvFaceCropper cropper;
+    private final FaceTracker tracker = new FaceTracker();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Exécuteur d'analyse uniquement
+    private long lastFrameAt = 0;
+    private long frameInterval = MIN_FRAME_INTERVAL_MS;
+    private long windowStart = 0;
+    private int windowFrames = 0;
+    private int windowFaceFrames = 0;
+    private int windowRecognitions = 0;
+    private double framesPerSecond = 0;
+    private double recognitionRate = 0;
+    private final List<FaceTracker.Box> boxes = new ArrayList<>();
+    private boolean closed = false;
+
+    public FaceFrameAnalyzer(Context context, FaceRecognitionEngine engine, Listener listener) {
+        this.engine = engine;
+        this.listener = listener;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.cropper = new YuvFaceCropper(engine.getFaceInputSize());
+        this.detector = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .setMinFaceSize(MIN_FACE_SIZE)
+                .build());
+    }
+
+    @SuppressLint("UnsafeOptInUsageError")
+    @Override
+    public void analyze(@NonNull ImageProxy image) {
+        try {
+            long start = SystemClock.elapsedRealtime();
+            Image mediaImage = image.getImage();
+            if (closed || mediaImage == null || start - lastFrameAt < frameInterval) return;
+            lastFrameAt = start;
+            updateFrameRate(start);
+
+            // Détection sur l'image YUV d'origine (pas de conversion de l'image entière)
+            InputImage input = InputImage.fromMediaImage(mediaImage, image.getImageInfo().getRotationDegrees());
+            List<Face> faces = Tasks.await(detector.process(input));
+            long detected = SystemClock.elapsedRealtime();
+
+            boxes.clear();
+            for (Face face : faces) {
+                Rect box = face.getBoundingBox();
+                boxes.add(new FaceTracker.Box(box.left, box.top, box.right, box.bottom));
+            }
+            List<FaceTracker.Track> tracks = tracker.update(boxes);
+
+            if (faces.isEmpty()) {
+                FrameStats stats = new FrameStats(detected - start, 0, 0, detected - start,
+                        framesPerSecond, recognitionRate);
+                mainHandler.post(() -> listener.onNoFace(stats));
+                return;
+            }
+            windowFaceFrames++;
+
+            int primary = largest(faces);
+            FaceTracker.Track track = tracks.get(primary);
+            int trackId = track.getId();
+
+            // Même visage qu'aux images précédentes, déjà identifié : pas d'inférence
+            if (!tracker.needsRecognition(track, start)) {
+                String studentEmail = track.getStudentEmail();
+                FrameStats stats = new FrameStats(detected - start, 0, 0, detected - start,
+                        framesPerSecond, recognitionRate);
+                mainHandler.post(() -> listener.onFaceTracked(trackId, studentEmail, stats));
+                return;
+            }
+
+            Bitmap face = cropper.crop(image, faces.get(primary).getBoundingBox());
+            long cropped = SystemClock.elapsedRealtime();
+
+            FaceRecognitionEngine.Recognition recognition = engine.recognizeNow(face);
+            long recognized = SystemClock.elapsedRealtime();
+            if (recognition == null) return;
+
+            windowRecognitions++;
+            tracker.recordRecognition(track,
+                    recognition.isMatch() ? recognition.getStudent().getEmail() : null,
+                    recognition.getConfidence(), recognized);
+
+            FrameStats stats = new FrameStats(detected - start, cropped - detected, recognized - cropped,
+                    recognized - start, framesPerSecond, recognitionRate);
+            mainHandler.post(() -> listener.onRecognition(trackId, recognition, stats));
+        } catch (Exception e) {
+            Log.e(TAG, "Frame analysis failed", e);
+            mainHandler.post(() -> listener.onError(e.getMessage()));
+        } finally {
+            // Libère le tampon : CameraX peut livrer l'image la plus récente
+            image.close();
+        }
+    }
+
+    /**
+     * Débit mesuré sur une fenêtre d'une seconde ; cadence réduite si l'appareil chauffe
+     */
+    private void updateFrameRate(long now) {
+        if (windowStart == 0) {
+            windowStart = now;
+        }
+        windowFrames++;
+
+        long elapsed = now - windowStart;
+        if (elapsed >= STATS_WINDOW_MS) {
+            framesPerSecond = windowFrames * 1000.0 / elapsed;
+            recognitionRate = windowFaceFrames == 0 ? 0 : (double) windowRecognitions / windowFaceFrames;
+            windowStart = now;
+            windowFrames = 0;
+            windowFaceFrames = 0;
+            windowRecognitions = 0;
+            frameInterval = isThermalThrottling() ? THROTTLED_FRAME_INTERVAL_MS : MIN_FRAME_INTERVAL_MS;
+        }
+    }
+
+    private boolean isThermalThrottling() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && powerManager != null
+                && powerManager.getCurrentThermalStatus() >= PowerManager.THERMAL_STATUS_MODERATE;
+    }
+
+    /**
+     * Le visage le plus grand est celui de l'étudiant devant le terminal
+     */
+    private static int largest(List<Face> faces) {
+        int best = 0;
+        long bestArea = 0;
+        for (int i = 0; i < faces.size(); i++) {
+            Rect box = faces.get(i).getBoundingBox();
+            long area = (long) box.width() * box.height();
+            if (area > bestArea) {
+                best = i;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Libérer détecteur et tampons (à appeler sur l'exécuteur d'analyse, après clearAnalyzer)
+     */
+    public void close() {
+        closed = true;
+        tracker.clear();
+        detector.close();
+        cropper.release();
+    }
+}
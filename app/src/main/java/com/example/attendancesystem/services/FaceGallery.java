@@ -0,0 +1,218 @@
+package com.example.attendancesystem.services;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.attendancesystem.models.Student;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Galeries d'empreintes précalculées, une par promotion (département, filière, année).
+ *
+ * Chaque galerie est un FaceGalleryFile (float16, mappé en mémoire) dans le stockage interne :
+ * au démarrage d'une session, FaceRecognitionEngine y lit les empreintes des inscrits en
+ * quelques millisecondes au lieu de télécharger et d'analyser chaque photo de profil.
+ *
+ * La galerie vit sur le terminal qui l'utilise : refreshCohort() y recalcule uniquement les
+ * empreintes des étudiants absents de la galerie ou dont la photo a changé (une photo dont le
+ * contenu, hashé, est inchangé n'est jamais réanalysée). Elle est exclue des sauvegardes
+ * (backup_rules.xml, data_extraction_rules.xml). Les calculs tournent sur un thread dédié ;
+ * callbacks sur le thread principal.
+ */
+public class FaceGallery {
+    private static final String TAG = "FaceGallery";
+
+    private static final String GALLERY_DIRECTORY = "face_gallery";
+    private static final int ENROLLMENT_PHOTO_SIZE = 256;
+
+    private final Context context;
+    private final File directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Galeries ouvertes, par clé de promotion (remplacées après chaque écriture)
+    private final Map<String, FaceGalleryFile> opened = new ConcurrentHashMap<>();
+
+    // Singleton pattern
+    private static FaceGallery instance;
+
+    private FaceGallery(Context context) {
+        this.context = context;
+        this.directory = new File(context.getFilesDir(), GALLERY_DIRECTORY);
+    }
+
+    public static synchronized FaceGallery getInstance(Context context) {
+        if (instance == null) {
+            instance = new FaceGallery(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public static String cohortKey(String department, String field, String year) {
+        String key = department + "_" + field + "_" + year;
+        return key.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_-]", "-");
+    }
+
+    // =================== LECTURE ===================
+
+    /**
+     * Galerie d'une promotion (null si elle n'a jamais été construite, ou si elle a été
+     * calculée avec un autre modèle). Bloquant mais rapide : mappage et lecture de la table.
+     */
+    public FaceGalleryFile load(String cohortKey, int dimension) {
+        FaceGalleryFile gallery = opened.get(cohortKey);
+        if (gallery == null) {
+            try {
+                gallery = FaceGalleryFile.open(fileFor(cohortKey));
+            } catch (IOException e) {
+                Log.w(TAG, "Unreadable gallery " + cohortKey + ", will be rebuilt", e);
+                return null;
+            }
+            if (gallery == null) return null;
+            opened.put(cohortKey, gallery);
+        }
+        return gallery.getDimension() == dimension ? gallery : null;
+    }
+
+    private File fileFor(String cohortKey) {
+        return new File(directory, cohortKey + ".bin");
+    }
+
+    // =================== MISE À JOUR ===================
+
+    /**
+     * Compléter la galerie d'une promotion : seuls les étudiants absents de la galerie ou
+     * dont l'URL de photo a changé sont traités. Retourne le nombre d'empreintes recalculées.
+     */
+    public void refreshCohort(String department, String field, String year,
+                              FirebaseManager.DataCallback<Integer> callback) {
+        FirebaseManager.getInstance().getStudentsInCohort(department, field, year,
+                new FirebaseManager.DataCallback<List<Student>>() {
+            @Override
+            public void onSuccess(List<Student> students) {
+                executor.execute(() -> {
+                    try {
+                        int computed = updateCohort(cohortKey(department, field, year), students);
+                        deliver(callback, computed, null);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Gallery refresh failed", e);
+                        deliver(callback, null, "Galerie de visages indisponible: " + e.getMessage());
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(String error) {
+                deliver(callback, null, error);
+            }
+        });
+    }
+
+    /**
+     * Galerie d'une promotion mise à jour pour la liste d'étudiants (thread de la galerie)
+     */
+    private int updateCohort(String cohortKey, List<Student> students) throws IOException {
+        FaceEmbedder model = FaceRecognitionEngine.getInstance(context).embedder();
+        FaceGalleryFile current = load(cohortKey, model.getDimension());
+
+        Map<String, FaceGalleryFile.Entry> entries = new LinkedHashMap<>();
+        int computed = 0;
+        boolean changed = current == null;
+
+        for (Student student : students) {
+            String email = student.getEmail();
+            String photoUrl = student.getProfileImageUrl();
+            if (photoUrl == null || photoUrl.isEmpty()) {
+                changed |= current != null && current.indexOf(email) >= 0;
+                continue;
+            }
+
+            int position = current != null ? current.indexOf(email) : -1;
+            if (position >= 0 && photoUrl.equals(current.getPhotoUrl(position))) {
+                entries.put(email, current.getEntry(position));
+                continue;
+            }
+
+            try {
+                File photo = Glide.with(context).downloadOnly().load(photoUrl).submit().get();
+                long photoHash;
+                try (InputStream stream = new FileInputStream(photo)) {
+                    photoHash = FaceGalleryFile.contentHash(stream);
+                }
+
+                if (position >= 0 && current.getPhotoHash(position) == photoHash) {
+                    // Même image sous une nouvelle URL : empreinte conservée
+                    FaceGalleryFile.Entry previous = current.getEntry(position);
+                    entries.put(email, new FaceGalleryFile.Entry(email, photoUrl, photoHash, previous.getEmbedding()));
+                } else {
+                    entries.put(email, new FaceGalleryFile.Entry(email, photoUrl, photoHash,
+                            FaceGalleryFile.toHalf(model.embed(decode(photo)))));
+                    computed++;
+                }
+                changed = true;
+            } catch (Exception e) {
+                Log.w(TAG, "Unusable profile photo for " + email, e);
+                if (position >= 0) {
+                    entries.put(email, current.getEntry(position));
+                }
+            }
+        }
+
+        if (current != null && current.size() != entries.size()) {
+            changed = true; // Étudiants sortis de la promotion
+        }
+        if (changed) {
+            save(cohortKey, model.getDimension(), new ArrayList<>(entries.values()));
+        }
+        Log.d(TAG, "Cohort " + cohortKey + ": " + entries.size() + " faces, " + computed + " recomputed");
+        return computed;
+    }
+
+    private Bitmap decode(File source) throws Exception {
+        return Glide.with(context)
+                .asBitmap()
+                .load(source)
+                .centerCrop()
+                .submit(ENROLLMENT_PHOTO_SIZE, ENROLLMENT_PHOTO_SIZE)
+                .get();
+    }
+
+    private void save(String cohortKey, int dimension, List<FaceGalleryFile.Entry> entries) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File file = fileFor(cohortKey);
+        FaceGalleryFile.write(file, dimension, entries);
+        FaceGalleryFile reopened = FaceGalleryFile.open(file);
+        if (reopened != null) {
+            opened.put(cohortKey, reopened);
+        }
+    }
+
+    private <T> void deliver(FirebaseManager.DataCallback<T> callback, T result, String error) {
+        if (callback == null) return;
+        mainHandler.post(() -> {
+            if (error != null) {
+                callback.onFailure(error);
+            } else {
+                callback.onSuccess(result);
+            }
+        });
+    }
+}
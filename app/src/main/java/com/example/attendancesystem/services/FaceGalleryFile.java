@@ -0,0 +1,313 @@
+package com.example.attendancesystem.services;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fichier de galerie d'empreintes d'une promotion (département, filière, année).
+ *
+ * Format (petit-boutiste) :
+ * - en-tête : MAGIC, VERSION, dimension, nombre d'entrées, position du bloc d'empreintes ;
+ * - table : pour chaque étudiant, hash du contenu de la photo, email, URL de la photo ;
+ * - bloc d'empreintes contigu, en float16 (2 octets par valeur au lieu de 4).
+ *
+ * Le fichier est mappé en mémoire : l'ouverture ne lit que la table, les empreintes sont
+ * décodées à la demande. L'écriture passe par un fichier temporaire renommé, un fichier
+ * déjà ouvert reste donc valide pendant une mise à jour.
+ */
+public class FaceGalleryFile {
+
+    private static final int MAGIC = 0x46474131; // "FGA1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * 4;
+
+    /**
+     * Empreinte d'un étudiant, telle qu'elle est stockée (float16)
+     */
+    public static class Entry {
+        private final String email;
+        private final String photoUrl;
+        private final long photoHash;
+        private final short[] embedding;
+
+        public Entry(String email, String photoUrl, long photoHash, short[] embedding) {
+            this.email = email;
+            this.photoUrl = photoUrl != null ? photoUrl : "";
+            this.photoHash = photoHash;
+            this.embedding = embedding;
+        }
+
+        public String getEmail() { return email; }
+        public String getPhotoUrl() { return photoUrl; }
+        public long getPhotoHash() { return photoHash; }
+        public short[] getEmbedding() { return embedding; }
+    }
+
+    private final ByteBuffer embeddings;
+    private final int dimension;
+    private final String[] emails;
+    private final String[] photoUrls;
+    private final long[] photoHashes;
+    private final Map<String, Integer> positions;
+
+    private FaceGalleryFile(ByteBuffer embeddings, int dimension, String[] emails,
+                            String[] photoUrls, long[] photoHashes) {
+        this.embeddings = embeddings;
+        this.dimension = dimension;
+        this.emails = emails;
+        this.photoUrls = photoUrls;
+        this.photoHashes = photoHashes;
+        this.positions = new HashMap<>(emails.length * 2);
+        for (int i = 0; i < emails.length; i++) {
+            positions.put(emails[i], i);
+        }
+    }
+
+    // =================== LECTURE ===================
+
+    /**
+     * Mapper une galerie existante (null si le fichier n'existe pas)
+     */
+    public static FaceGalleryFile open(File file) throws IOException {
+        if (!file.exists()) return null;
+
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a face gallery file: " + file.getName());
+        }
+        int dimension = buffer.getInt();
+        int count = buffer.getInt();
+        int embeddingsOffset = buffer.getInt();
+        if (dimension <= 0 || count < 0
+                || (long) embeddingsOffset + 2L * count * dimension != buffer.capacity()) {
+            throw new IOException("Corrupted face gallery file: " + file.getName());
+        }
+
+        String[] emails = new String[count];
+        String[] photoUrls = new String[count];
+        long[] photoHashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            photoHashes[i] = buffer.getLong();
+            emails[i] = readString(buffer);
+            photoUrls[i] = readString(buffer);
+        }
+
+        buffer.position(embeddingsOffset);
+        ByteBuffer block = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        return new FaceGalleryFile(block, dimension, emails, photoUrls, photoHashes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getDimension() { return dimension; }
+    public int size() { return emails.length; }
+
+    /**
+     * Position d'un étudiant dans la galerie (-1 s'il n'y figure pas)
+     */
+    public int indexOf(String email) {
+        Integer position = positions.get(email);
+        return position != null ? position : -1;
+    }
+
+    public String getEmail(int position) { return emails[position]; }
+    public String getPhotoUrl(int position) { return photoUrls[position]; }
+    public long getPhotoHash(int position) { return photoHashes[position]; }
+
+    /**
+     * Décoder une empreinte en float (out réutilisable, de taille getDimension())
+     */
+    public float[] getEmbedding(int position, float[] out) {
+        int base = position * dimension * 2;
+        for (int i = 0; i < dimension; i++) {
+            out[i] = toFloat(embeddings.getShort(base + 2 * i));
+        }
+        return out;
+    }
+
+    /**
+     * Entrée complète, sans perte (pour réécrire la galerie après une mise à jour)
+     */
+    public Entry getEntry(int position) {
+        short[] values = new short[dimension];
+        int base = position * dimension * 2;
+        for (int i = 0; i < dimension; i++) {
+            values[i] = embeddings.getShort(base + 2 * i);
+        }
+        return new Entry(emails[position], photoUrls[position], photoHashes[position], values);
+    }
+
+    // =================== ÉCRITURE ===================
+
+    /**
+     * Écrire une galerie complète (remplacement atomique du fichier)
+     */
+    public static void write(File file, int dimension, Collection<Entry> entries) throws IOException {
+        int tableSize = 0;
+        for (Entry entry : entries) {
+            if (entry.embedding.length != dimension) {
+                throw new IllegalArgumentException("Expected " + dimension + " values for " + entry.email);
+            }
+            tableSize += 8 + 2 + utf8(entry.email).length + 2 + utf8(entry.photoUrl).length;
+        }
+        // Bloc d'empreintes aligné sur 4 octets
+        int embeddingsOffset = (HEADER_SIZE + tableSize + 3) & ~3;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            writeInt(out, scratch, MAGIC);
+            writeInt(out, scratch, VERSION);
+            writeInt(out, scratch, dimension);
+            writeInt(out, scratch, entries.size());
+            writeInt(out, scratch, embeddingsOffset);
+
+            for (Entry entry : entries) {
+                scratch.clear();
+                out.write(scratch.putLong(entry.photoHash).array(), 0, 8);
+                writeString(out, scratch, entry.email);
+                writeString(out, scratch, entry.photoUrl);
+            }
+            for (int i = HEADER_SIZE + tableSize; i < embeddingsOffset; i++) {
+                out.write(0);
+            }
+
+            for (Entry entry : entries) {
+                for (short value : entry.embedding) {
+                    scratch.clear();
+                    out.write(scratch.putShort(value).array(), 0, 2);
+                }
+            }
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Unable to replace " + file.getName());
+        }
+    }
+
+    private static void writeInt(DataOutputStream out, ByteBuffer scratch, int value) throws IOException {
+        scratch.clear();
+        out.write(scratch.putInt(value).array(), 0, 4);
+    }
+
+    private static void writeString(DataOutputStream out, ByteBuffer scratch, String value) throws IOException {
+        byte[] bytes = utf8(value);
+        scratch.clear();
+        out.write(scratch.putShort((short) bytes.length).array(), 0, 2);
+        out.write(bytes);
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("String too long");
+        return bytes;
+    }
+
+    // =================== HASH ET FLOAT16 ===================
+
+    /**
+     * Hash du contenu d'une photo (64 premiers bits du SHA-256) : une nouvelle URL sur la
+     * même image ne relance pas le calcul de l'empreinte
+     */
+    public static long contentHash(InputStream stream) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] chunk = new byte[16 * 1024];
+            int read;
+            while ((read = stream.read(chunk)) != -1) {
+                digest.update(chunk, 0, read);
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static short[] toHalf(float[] values) {
+        short[] halves = new short[values.length];
+        for (int i = 0; i < values.length; i++) {
+            halves[i] = toHalf(values[i]);
+        }
+        return halves;
+    }
+
+    /**
+     * float -> float16 IEEE 754 (arrondi au plus proche, à égalité vers le pair)
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent == 0xFF) {
+            // Infini ou NaN (NaN conservé comme NaN silencieux)
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+
+        if (halfExponent <= 0) {
+            // Sous-normal en float16 (ou zéro)
+            if (halfExponent < -10) return (short) sign;
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) half++;
+            return (short) (sign | half);
+        }
+
+        int half = (halfExponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1FFF;
+        // Une retenue passe dans l'exposant (jusqu'à l'infini) : c'est le bon résultat
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) half++;
+        return (short) (sign | half);
+    }
+
+    public static float toFloat(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+
+        if (exponent == 0) {
+            float magnitude = mantissa * 0x1p-24f;
+            return sign != 0 ? -magnitude : magnitude;
+        }
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.attendancesystem.services;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.attendancesystem.models.Attendance;
+import com.example.attendancesystem.models.Session;
+import com.example.attendancesystem.models.Student;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pointage par reconnaissance faciale sur le terminal.
+ *
+ * Au démarrage d'une session, les empreintes des inscrits sont lues dans les galeries
+ * précalculées de leur promotion (FaceGallery) et rangées dans un FaceEmbeddingIndex ; seuls
+ * les étudiants absents d'une galerie voient leur photo analysée sur place. Chaque visage capturé
+ * ne coûte ensuite qu'une inférence et un parcours de l'index ; le pointage retenu part
+ * dans CheckInQueue (envoi groupé, reprise hors ligne) avec la confiance et le temps de
+ * traitement dans AttendanceDetails.
+ *
+ * La construction de l'index tourne sur un thread dédié (callback sur le thread principal,
+ * comme FirebaseManager) ; le pipeline caméra (FaceFrameAnalyzer) appelle recognizeNow()
+ * depuis son propre thread d'analyse.
+ */
+public class FaceRecognitionEngine {
+    private static final String TAG = "FaceRecognitionEngine";
+
+    // Similarité cosinus minimale pour accepter un étudiant
+    private static final float MATCH_THRESHOLD = 0.6f;
+    // Écart minimal avec le meilleur autre étudiant (visages proches : pas de pointage)
+    private static final float MIN_MARGIN = 0.05f;
+    private static final int TOP_K = 3;
+    private static final int ENROLLMENT_PHOTO_SIZE = 256;
+
+    private final Context context;
+    private final FirebaseManager firebaseManager;
+    private final CheckInQueue checkInQueue;
+    private final FaceGallery faceGallery;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Créé à la première utilisation (thread d'inférence ou d'analyse)
+    private FaceEmbedder embedder;
+
+    // Publiée par le thread principal, lue par les threads d'inférence et d'analyse
+    private volatile PreparedSession prepared;
+    // Thread principal uniquement
+    private int prepareGeneration = 0;
+
+    // Singleton pattern
+    private static FaceRecognitionEngine instance;
+
+    /**
+     * Résultat d'une reconnaissance
+     */
+    public static class Recognition {
+        private final Student student;
+        private final float confidence;
+        private final long processingTime;
+        private final List<FaceEmbeddingIndex.Match> candidates;
+
+        Recognition(Student student, float confidence, long processingTime, List<FaceEmbeddingIndex.Match> candidates) {
+            this.student = student;
+            this.confidence = confidence;
+            this.processingTime = processingTime;
+            this.candidates = candidates;
+        }
+
+        public boolean isMatch() { return student != null; }
+        // null si aucun inscrit n'est reconnu avec assez de certitude
+        public Student getStudent() { return student; }
+        public float getConfidence() { return confidence; }
+        public long getProcessingTime() { return processingTime; }
+        public List<FaceEmbeddingIndex.Match> getCandidates() { return candidates; }
+    }
+
+    /**
+     * Index prêt pour une session (immuable une fois publié)
+     */
+    private static class PreparedSession {
+        final Session session;
+        final List<String> enrolledEmails;
+        final FaceEmbeddingIndex index;
+        final Map<String, Student> students;
+        final int faceInputSize;
+
+        PreparedSession(Session session, List<String> enrolledEmails, FaceEmbeddingIndex index,
+                        Map<String, Student> students, int faceInputSize) {
+            this.session = session;
+            this.enrolledEmails = enrolledEmails;
+            this.index = index;
+            this.students = students;
+            this.faceInputSize = faceInputSize;
+        }
+    }
+
+    private FaceRecognitionEngine(Context context) {
+        this.context = context;
+        this.firebaseManager = FirebaseManager.getInstance();
+        this.checkInQueue = CheckInQueue.getInstance(context);
+        this.faceGallery = FaceGallery.getInstance(context);
+    }
+
+    public static synchronized FaceRecognitionEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new FaceRecognitionEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // =================== PRÉPARATION DE LA SESSION ===================
+
+    /**
+     * Construire l'index des inscrits de la session (sans effet s'il est déjà à jour).
+     * Retourne le nombre d'étudiants reconnaissables (avec une photo exploitable).
+     */
+    public void prepareSession(Session session, FirebaseManager.DataCallback<Integer> callback) {
+        List<String> emails = new ArrayList<>(session.getEnrolledStudentEmails());
+        PreparedSession current = prepared;
+        if (current != null && session.getSessionId().equals(current.session.getSessionId())
+                && emails.equals(current.enrolledEmails)) {
+            callback.onSuccess(current.index.size());
+            return;
+        }
+
+        int generation = ++prepareGeneration;
+        loadStudents(emails, loaded -> executor.execute(() -> {
+            try {
+                FaceEmbeddingIndex built = buildIndex(loaded);
+                int inputSize = embedder().getInputSize();
+                mainHandler.post(() -> {
+                    if (generation != prepareGeneration) return;
+                    prepared = new PreparedSession(session, emails, built, loaded, inputSize);
+                    Log.d(TAG, "Index ready: " + built.size() + " faces for " + emails.size() + " enrolled");
+                    callback.onSuccess(built.size());
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Face model unavailable", e);
+                mainHandler.post(() -> callback.onFailure("Modèle de reconnaissance faciale introuvable"));
+            }
+        }));
+    }
+
+    private interface StudentsLoaded {
+        void onLoaded(Map<String, Student> students);
+    }
+
+    /**
+     * Profils des inscrits (cache de profils partagé), les introuvables sont ignorés
+     */
+    private void loadStudents(List<String> emails, StudentsLoaded done) {
+        Map<String, Student> loaded = new HashMap<>();
+        if (emails.isEmpty()) {
+            done.onLoaded(loaded);
+            return;
+        }
+
+        int[] remaining = {emails.size()};
+        for (String email : emails) {
+            firebaseManager.getStudentByEmail(email, new FirebaseManager.DataCallback<Student>() {
+                @Override
+                public void onSuccess(Student student) {
+                    loaded.put(email, student);
+                    if (--remaining[0] == 0) done.onLoaded(loaded);
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    Log.w(TAG, "Enrolled student not found: " + email);
+                    if (--remaining[0] == 0) done.onLoaded(loaded);
+                }
+            });
+        }
+    }
+
+    /**
+     * Une empreinte par photo de profil (thread d'inférence) : galerie de la promotion si
+     * elle est à jour pour cette photo, sinon calcul direct et rafraîchissement de la galerie
+     * en arrière-plan pour les sessions suivantes
+     */
+    private FaceEmbeddingIndex buildIndex(Map<String, Student> enrolled) throws IOException {
+        FaceEmbedder model = embedder();
+        FaceEmbeddingIndex built = new FaceEmbeddingIndex(model.getDimension(), enrolled.size());
+        float[] decoded = new float[model.getDimension()];
+        Map<String, Student> staleCohorts = new HashMap<>();
+
+        for (Student student : enrolled.values()) {
+            String photoUrl = student.getProfileImageUrl();
+            if (photoUrl == null || photoUrl.isEmpty()) continue;
+
+            String cohortKey = FaceGallery.cohortKey(student.getDepartment(), student.getField(), student.getYear());
+            FaceGalleryFile gallery = faceGallery.load(cohortKey, model.getDimension());
+            int position = gallery != null ? gallery.indexOf(student.getEmail()) : -1;
+            if (position >= 0 && photoUrl.equals(gallery.getPhotoUrl(position))) {
+                built.add(student.getEmail(), gallery.getEmbedding(position, decoded));
+                continue;
+            }
+
+            staleCohorts.put(cohortKey, student);
+            try {
+                Bitmap photo = Glide.with(context)
+                        .asBitmap()
+                        .load(photoUrl)
+                        .centerCrop()
+                        .submit(ENROLLMENT_PHOTO_SIZE, ENROLLMENT_PHOTO_SIZE)
+                        .get();
+                built.add(student.getEmail(), model.embed(photo));
+            } catch (Exception e) {
+                Log.w(TAG, "Unusable profile photo for " + student.getEmail(), e);
+            }
+        }
+
+        for (Student student : staleCohorts.values()) {
+            faceGallery.refreshCohort(student.getDepartment(), student.getField(), student.getYear(), null);
+        }
+        return built;
+    }
+
+    // Partagé avec FaceGallery : un seul modèle chargé
+    synchronized FaceEmbedder embedder() throws IOException {
+        if (embedder == null) {
+            embedder = new FaceEmbedder(context);
+        }
+        return embedder;
+    }
+
+    // =================== RECONNAISSANCE ===================
+
+    /**
+     * Session dont l'index est prêt (null si aucune)
+     */
+    public Session getPreparedSession() {
+        PreparedSession current = prepared;
+        return current != null ? current.session : null;
+    }
+
+    /**
+     * Taille d'entrée du modèle : le pipeline caméra recadre directement à cette taille
+     */
+    public int getFaceInputSize() {
+        PreparedSession current = prepared;
+        return current != null ? current.faceInputSize : 0;
+    }
+
+    /**
+     * Reconnaissance bloquante, sur le thread appelant (jamais le thread principal).
+     * Retourne null si aucune session n'est préparée.
+     */
+    public Recognition recognizeNow(Bitmap face) throws IOException {
+        PreparedSession current = prepared;
+        if (current == null) return null;
+
+        long start = SystemClock.elapsedRealtime();
+        float[] embedding = embedder().embed(face);
+        List<FaceEmbeddingIndex.Match> candidates = current.index.topK(embedding, TOP_K);
+        long processingTime = SystemClock.elapsedRealtime() - start;
+
+        return decide(candidates, current.students, processingTime);
+    }
+
+    /**
+     * Décision sur une empreinte déjà calculée (pointage de groupe : les empreintes sont
+     * produites en parallèle par GroupFaceRecognizer). Retourne null si aucune session n'est préparée.
+     */
+    Recognition match(float[] embedding, long processingTime) {
+        PreparedSession current = prepared;
+        if (current == null) return null;
+        return decide(current.index.topK(embedding, TOP_K), current.students, processingTime);
+    }
+
+    private static Recognition decide(List<FaceEmbeddingIndex.Match> candidates,
+                                      Map<String, Student> enrolled, long processingTime) {
+        if (candidates.isEmpty()) {
+            return new Recognition(null, 0f, processingTime, candidates);
+        }
+
+        FaceEmbeddingIndex.Match best = candidates.get(0);
+        float runnerUp = -1f;
+        for (FaceEmbeddingIndex.Match candidate : candidates) {
+            if (!candidate.getId().equals(best.getId())) {
+                runnerUp = candidate.getScore();
+                break;
+            }
+        }
+
+        boolean accepted = best.getScore() >= MATCH_THRESHOLD && best.getScore() - runnerUp >= MIN_MARGIN;
+        Student student = accepted ? enrolled.get(best.getId()) : null;
+        return new Recognition(student, best.getScore(), processingTime, candidates);
+    }
+
+    // =================== POINTAGE ===================
+
+    /**
+     * Mettre en file le pointage d'un étudiant reconnu (identifiant déterministe par
+     * session et étudiant : un second passage ne crée pas de doublon).
+     * Les mesures du pipeline caméra vont dans AttendanceDetails : processingTime est le temps
+     * d'analyse de l'image qui a déclenché le pointage, pas la durée depuis l'arrivée du visage.
+     */
+    public String checkIn(Recognition recognition, Session session, int retryCount, FaceFrameAnalyzer.FrameStats stats) {
+        Attendance attendance = toAttendance(recognition, session);
+
+        Attendance.AttendanceDetails details = attendance.getAttendanceDetails();
+        details.setRetryCount(retryCount);
+        if (stats != null) {
+            details.setProcessingTime(stats.getTotalTime());
+            details.setDetectionTime(stats.getDetectionTime());
+            details.setRecognitionTime(stats.getRecognitionTime());
+            details.setFramesPerSecond(stats.getFramesPerSecond());
+        } else {
+            details.setProcessingTime(recognition.getProcessingTime());
+            details.setRecognitionTime(recognition.getProcessingTime());
+        }
+        return checkInQueue.enqueue(attendance);
+    }
+
+    /**
+     * Pointage de groupe : tous les étudiants reconnus partent ensemble dans CheckInQueue
+     * (une écriture de la file, envoi en batchs consécutifs)
+     */
+    public List<String> checkInGroup(List<Recognition> recognitions, Session session) {
+        List<Attendance> attendances = new ArrayList<>(recognitions.size());
+        for (Recognition recognition : recognitions) {
+            Attendance attendance = toAttendance(recognition, session);
+            attendance.getAttendanceDetails().setProcessingTime(recognition.getProcessingTime());
+            attendance.getAttendanceDetails().setRecognitionTime(recognition.getProcessingTime());
+            attendances.add(attendance);
+        }
+        return checkInQueue.enqueueAll(attendances);
+    }
+
+    private static Attendance toAttendance(Recognition recognition, Session session) {
+        Student student = recognition.getStudent();
+        Attendance attendance = new Attendance(student.getEmail(), student.getFullName(), student.getStudentId(),
+                session.getCourseId(), session.getCourseName(), recognition.getConfidence());
+        attendance.setSessionId(session.getSessionId());
+        return attendance;
+    }
+
+    /**
+     * Libérer l'index (fin de session)
+     */
+    public void release() {
+        prepareGeneration++;
+        prepared = null;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.attendancesystem.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Suivi des visages d'une image à l'autre, par recouvrement des cadres (IoU).
+ *
+ * Un étudiant qui reste devant le terminal garde le même identifiant de piste : la
+ * reconnaissance complète (empreinte + recherche) n'est faite qu'une fois par piste, puis
+ * refaite toutes les REVERIFY_INTERVAL_MS tant que le résultat est incertain (confiance sous
+ * VERIFIED_CONFIDENCE ou visage inconnu).
+ *
+ * Une piste vérifiée n'est pas figée : elle est re-vérifiée toutes les VERIFIED_REVERIFY_INTERVAL_MS
+ * et dès que le cadre saute (recouvrement sous STABLE_IOU), et elle est abandonnée sous MIN_IOU.
+ * L'étudiant suivant qui prend la place devant le terminal n'hérite donc pas de l'identité
+ * du précédent.
+ *
+ * Utilisé par un seul thread (l'exécuteur d'analyse de la caméra).
+ */
+public class FaceTracker {
+
+    // Recouvrement minimal entre deux images consécutives pour rester sur la même piste
+    static final float MIN_IOU = 0.5f;
+    // En dessous, le visage a bougé d'un coup : l'identité de la piste est re-vérifiée
+    static final float STABLE_IOU = 0.7f;
+    // Images consécutives sans visage avant d'abandonner la piste
+    private static final int MAX_MISSED_FRAMES = 5;
+    // Au-dessus de cette confiance, la piste n'est re-vérifiée que périodiquement
+    static final float VERIFIED_CONFIDENCE = 0.75f;
+    static final long REVERIFY_INTERVAL_MS = 500;
+    static final long VERIFIED_REVERIFY_INTERVAL_MS = 2000;
+
+    /**
+     * Cadre d'un visage (coordonnées de l'image redressée)
+     */
+    public static class Box {
+        final int left, top, right, bottom;
+
+        public Box(int left, int top, int right, int bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        long area() {
+            return (long) Math.max(0, right - left) * Math.max(0, bottom - top);
+        }
+
+        float iou(Box other) {
+            long overlapWidth = Math.max(0, Math.min(right, other.right) - Math.max(left, other.left));
+            long overlapHeight = Math.max(0, Math.min(bottom, other.bottom) - Math.max(top, other.top));
+            long intersection = overlapWidth * overlapHeight;
+            long union = area() + other.area() - intersection;
+            return union <= 0 ? 0f : (float) intersection / union;
+        }
+    }
+
+    /**
+     * Piste d'un visage et dernier résultat de reconnaissance
+     */
+    public static class Track {
+        private final int id;
+        private Box box;
+        private int missedFrames = 0;
+
+        private String studentEmail;
+        private float confidence = 0f;
+        private int recognitions = 0;
+        private long lastRecognizedAt = 0;
+        // Saut du cadre depuis la dernière reconnaissance
+        private boolean moved = false;
+
+        Track(int id, Box box) {
+            this.id = id;
+            this.box = box;
+        }
+
+        public int getId() { return id; }
+        // Dernier étudiant reconnu sur la piste (null si inconnu)
+        public String getStudentEmail() { return studentEmail; }
+        public float getConfidence() { return confidence; }
+        public int getRecognitions() { return recognitions; }
+
+        public boolean isVerified() {
+            return studentEmail != null && confidence >= VERIFIED_CONFIDENCE;
+        }
+    }
+
+    private final List<Track> tracks = new ArrayList<>();
+    private int nextTrackId = 1;
+
+    /**
+     * Associer les visages de l'image aux pistes existantes (plus fort recouvrement d'abord).
+     * Retourne la piste de chaque visage, dans l'ordre de boxes.
+     */
+    public List<Track> update(List<Box> boxes) {
+        Track[] assigned = new Track[boxes.size()];
+        boolean[] matched = new boolean[tracks.size()];
+
+        // Appariement glouton : les couples (piste, visage) au meilleur IoU sont fixés en premier
+        while (true) {
+            float bestIou = MIN_IOU;
+            int bestTrack = -1;
+            int bestBox = -1;
+            for (int t = 0; t < tracks.size(); t++) {
+                if (matched[t]) continue;
+                for (int b = 0; b < boxes.size(); b++) {
+                    if (assigned[b] != null) continue;
+                    float iou = tracks.get(t).box.iou(boxes.get(b));
+                    if (iou >= bestIou) {
+                        bestIou = iou;
+                        bestTrack = t;
+                        bestBox = b;
+                    }
+                }
+            }
+            if (bestTrack < 0) break;
+
+            Track track = tracks.get(bestTrack);
+            if (bestIou < STABLE_IOU) {
+                track.moved = true;
+            }
+            track.box = boxes.get(bestBox);
+            track.missedFrames = 0;
+            matched[bestTrack] = true;
+            assigned[bestBox] = track;
+        }
+
+        // Pistes sans visage dans cette image : conservées quelques images (clignement, tête tournée)
+        int index = 0;
+        for (Iterator<Track> iterator = tracks.iterator(); iterator.hasNext(); index++) {
+            Track track = iterator.next();
+            if (!matched[index] && ++track.missedFrames > MAX_MISSED_FRAMES) {
+                iterator.remove();
+            }
+        }
+
+        List<Track> result = new ArrayList<>(boxes.size());
+        for (int b = 0; b < boxes.size(); b++) {
+            if (assigned[b] == null) {
+                assigned[b] = new Track(nextTrackId++, boxes.get(b));
+                tracks.add(assigned[b]);
+            }
+            result.add(assigned[b]);
+        }
+        return result;
+    }
+
+    /**
+     * Faut-il (re)lancer la reconnaissance sur cette piste ?
+     */
+    public boolean needsRecognition(Track track, long now) {
+        if (track.recognitions == 0 || track.moved) return true;
+        long interval = track.isVerified() ? VERIFIED_REVERIFY_INTERVAL_MS : REVERIFY_INTERVAL_MS;
+        return now - track.lastRecognizedAt >= interval;
+    }
+
+    /**
+     * Enregistrer le résultat d'une reconnaissance : il remplace le précédent, y compris sur
+     * une piste vérifiée (re-vérification qui trouve un autre étudiant ou un inconnu).
+     */
+    public void recordRecognition(Track track, String studentEmail, float confidence, long now) {
+        track.recognitions++;
+        track.lastRecognizedAt = now;
+        track.moved = false;
+
+        track.studentEmail = studentEmail;
+        track.confidence = studentEmail != null ? confidence : 0f;
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    public void clear() {
+        tracks.clear();
+    }
+}
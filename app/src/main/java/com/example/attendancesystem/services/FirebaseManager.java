@@ -6,6 +6,7 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.example.attendancesystem.models.Course;
 import com.example.attendancesystem.models.Justification;
 import com.example.attendancesystem.models.Session;
 import com.example.attendancesystem.models.Student;
@@ -16,15 +17,30 @@ import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateField;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.PersistentCacheIndexManager;
+import com.google.firebase.firestore.PersistentCacheSettings;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
 import com.google.firebase.storage.UploadTask;
@@ -36,8 +52,12 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class FirebaseManager {
     private static final String TAG = "FirebaseManager";
@@ -47,16 +67,36 @@ public class FirebaseManager {
     private FirebaseFirestore db;
     private FirebaseStorage storage;
 
+    // Profils partagés entre les activités (LRU + une seule lecture par profil en cours)
+    private static final int PROFILE_CACHE_ENTRIES = 64;
+    // Au-delà, le profil est relu (cache persistant puis Firestore)
+    private static final long PROFILE_CACHE_TTL_MS = 10 * 60 * 1000;
+    private final EntityCache<Student> studentCache = new EntityCache<>("students", PROFILE_CACHE_ENTRIES, PROFILE_CACHE_TTL_MS);
+    private final EntityCache<Teacher> teacherCache = new EntityCache<>("teachers", PROFILE_CACHE_ENTRIES, PROFILE_CACHE_TTL_MS);
+    private final EntityCache<Admin> adminCache = new EntityCache<>("admins", PROFILE_CACHE_ENTRIES, PROFILE_CACHE_TTL_MS);
+
     // Collections Firestore selon la nouvelle architecture
     private static final String STUDENTS_COLLECTION = "students";
     private static final String TEACHERS_COLLECTION = "teachers";
     private static final String ADMINS_COLLECTION = "admins";
+    // Annuaire des rôles : users/{email} -> { role }, écrit à l'inscription
+    private static final String USERS_COLLECTION = "users";
     private static final String ATTENDANCE_COLLECTION = "attendance";
     private static final String COURSES_COLLECTION = "courses";
     private static final String SESSIONS_COLLECTION = "sessions";
     private static final String JUSTIFICATIONS_COLLECTION = "justifications";
     private static final String REPORTS_COLLECTION = "reports";
 
+    // Taille du cache local Firestore (persistant sur l'appareil)
+    private static final long LOCAL_CACHE_SIZE_BYTES = 100L * 1024 * 1024;
+
+    // Limite Firestore du nombre d'écritures par WriteBatch
+    private static final int MAX_BATCH_WRITES = 500;
+    // Une présence = le document + ses compteurs agrégés (deux changements au pire :
+    // l'ancien statut décompté d'un autre jour, le nouveau compté, cf. recordReplacement)
+    public static final int MAX_ATTENDANCE_PER_BATCH =
+            MAX_BATCH_WRITES / (1 + 2 * AttendanceAggregates.WRITES_PER_STATUS_CHANGE);
+
     // Singleton pattern
     private static FirebaseManager instance;
 
@@ -86,6 +126,30 @@ public class FirebaseManager {
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
         storage = FirebaseStorage.getInstance();
+        configureLocalCache();
+    }
+
+    /**
+     * Activer le cache persistant de Firestore et l'indexation automatique des requêtes locales,
+     * pour que les lectures hors ligne restent rapides même quand l'historique d'un étudiant grossit.
+     */
+    private void configureLocalCache() {
+        try {
+            FirebaseFirestoreSettings settings = new FirebaseFirestoreSettings.Builder()
+                    .setLocalCacheSettings(PersistentCacheSettings.newBuilder()
+                            .setSizeBytes(LOCAL_CACHE_SIZE_BYTES)
+                            .build())
+                    .build();
+            db.setFirestoreSettings(settings);
+        } catch (IllegalStateException e) {
+            // Firestore a déjà été utilisé avant FirebaseManager : garder les paramètres existants
+            Log.w(TAG, "Paramètres Firestore déjà figés, cache par défaut conservé", e);
+        }
+
+        PersistentCacheIndexManager indexManager = db.getPersistentCacheIndexManager();
+        if (indexManager != null) {
+            indexManager.enableIndexAutoCreation();
+        }
     }
 
     public static synchronized FirebaseManager getInstance() {
@@ -154,6 +218,10 @@ public class FirebaseManager {
      */
     public void signOut() {
         mAuth.signOut();
+        ProfileCache.getInstance().clear();
+        studentCache.clear();
+        teacherCache.clear();
+        adminCache.clear();
         Log.d(TAG, "Utilisateur déconnecté");
     }
 
@@ -187,13 +255,17 @@ public class FirebaseManager {
      * Sauvegarder un étudiant dans Firestore
      */
     public void saveStudent(Student student, DataCallback<Void> callback) {
-        db.collection(STUDENTS_COLLECTION)
-                .document(student.getEmail())
-                .set(student.toMap())
+        WriteBatch batch = db.batch();
+        batch.set(db.collection(STUDENTS_COLLECTION).document(student.getEmail()), student.toMap());
+        batch.set(userDirectoryRef(student.getEmail()), userDirectoryEntry(student.getEmail(), ProfileCache.ROLE_STUDENT));
+
+        batch.commit()
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void aVoid) {
                         Log.d(TAG, "Étudiant sauvegardé: " + student.getEmail());
+                        ProfileCache.getInstance().putProfile(student.getEmail(), ProfileCache.ROLE_STUDENT, student);
+                        studentCache.put(student.getEmail(), student);
                         callback.onSuccess(null);
                     }
                 })
@@ -215,10 +287,15 @@ public class FirebaseManager {
                 .update(student.toMap())
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "Étudiant mis à jour: " + student.getEmail());
+                    ProfileCache.getInstance().putProfile(student.getEmail(), ProfileCache.ROLE_STUDENT, student);
+                    studentCache.put(student.getEmail(), student);
                     callback.onSuccess(null);
                 })
                 .addOnFailureListener(e -> {
                     Log.w(TAG, "Erreur mise à jour étudiant", e);
+                    // Le profil en cache a pu être modifié localement avant l'échec
+                    ProfileCache.getInstance().invalidate(student.getEmail());
+                    studentCache.invalidate(student.getEmail());
                     callback.onFailure(e.getMessage());
                 });
     }
@@ -229,13 +306,17 @@ public class FirebaseManager {
      * Sauvegarder un enseignant dans Firestore
      */
     public void saveTeacher(Teacher teacher, DataCallback<Void> callback) {
-        db.collection(TEACHERS_COLLECTION)
-                .document(teacher.getEmail())
-                .set(teacher.toMap())
+        WriteBatch batch = db.batch();
+        batch.set(db.collection(TEACHERS_COLLECTION).document(teacher.getEmail()), teacher.toMap());
+        batch.set(userDirectoryRef(teacher.getEmail()), userDirectoryEntry(teacher.getEmail(), ProfileCache.ROLE_TEACHER));
+
+        batch.commit()
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void aVoid) {
                         Log.d(TAG, "Enseignant sauvegardé: " + teacher.getEmail());
+                        ProfileCache.getInstance().putProfile(teacher.getEmail(), ProfileCache.ROLE_TEACHER, teacher);
+                        teacherCache.put(teacher.getEmail(), teacher);
                         callback.onSuccess(null);
                     }
                 })
@@ -252,29 +333,9 @@ public class FirebaseManager {
      * Récupérer un enseignant par son email
      */
     public void getTeacherByEmail(String email, DataCallback<Teacher> callback) {
-        db.collection(TEACHERS_COLLECTION)
-                .document(email)
-                .get()
-                .addOnCompleteListener(new OnCompleteListener<DocumentSnapshot>() {
-                    @Override
-                    public void onComplete(@NonNull Task<DocumentSnapshot> task) {
-                        if (task.isSuccessful()) {
-                            DocumentSnapshot document = task.getResult();
-                            if (document.exists()) {
-                                Teacher teacher = document.toObject(Teacher.class);
-                                if (teacher != null) {
-                                    callback.onSuccess(teacher);
-                                } else {
-                                    callback.onFailure("Erreur de conversion des données");
-                                }
-                            } else {
-                                callback.onFailure("Enseignant non trouvé");
-                            }
-                        } else {
-                            callback.onFailure(task.getException().getMessage());
-                        }
-                    }
-                });
+        deliver(teacherCache.get(email, () ->
+                loadProfile(TEACHERS_COLLECTION, email, Teacher.class, ProfileCache.ROLE_TEACHER, "Enseignant non trouvé")),
+                callback);
     }
 
     /**
@@ -286,10 +347,15 @@ public class FirebaseManager {
                 .update(teacher.toMap())
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "Enseignant mis à jour: " + teacher.getEmail());
+                    ProfileCache.getInstance().putProfile(teacher.getEmail(), ProfileCache.ROLE_TEACHER, teacher);
+                    teacherCache.put(teacher.getEmail(), teacher);
                     callback.onSuccess(null);
                 })
                 .addOnFailureListener(e -> {
                     Log.w(TAG, "Erreur mise à jour enseignant", e);
+                    // Le profil en cache a pu être modifié localement avant l'échec
+                    ProfileCache.getInstance().invalidate(teacher.getEmail());
+                    teacherCache.invalidate(teacher.getEmail());
                     callback.onFailure(e.getMessage());
                 });
     }
@@ -300,13 +366,17 @@ public class FirebaseManager {
      * Sauvegarder un administrateur dans Firestore
      */
     public void saveAdmin(Admin admin, DataCallback<Void> callback) {
-        db.collection(ADMINS_COLLECTION)
-                .document(admin.getEmail())
-                .set(admin.toMap())
+        WriteBatch batch = db.batch();
+        batch.set(db.collection(ADMINS_COLLECTION).document(admin.getEmail()), admin.toMap());
+        batch.set(userDirectoryRef(admin.getEmail()), userDirectoryEntry(admin.getEmail(), ProfileCache.ROLE_ADMIN));
+
+        batch.commit()
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void aVoid) {
                         Log.d(TAG, "Administrateur sauvegardé: " + admin.getEmail());
+                        ProfileCache.getInstance().putProfile(admin.getEmail(), ProfileCache.ROLE_ADMIN, admin);
+                        adminCache.put(admin.getEmail(), admin);
                         callback.onSuccess(null);
                     }
                 })
@@ -323,29 +393,9 @@ public class FirebaseManager {
      * Récupérer un administrateur par son email
      */
     public void getAdminByEmail(String email, DataCallback<Admin> callback) {
-        db.collection(ADMINS_COLLECTION)
-                .document(email)
-                .get()
-                .addOnCompleteListener(new OnCompleteListener<DocumentSnapshot>() {
-                    @Override
-                    public void onComplete(@NonNull Task<DocumentSnapshot> task) {
-                        if (task.isSuccessful()) {
-                            DocumentSnapshot document = task.getResult();
-                            if (document.exists()) {
-                                Admin admin = document.toObject(Admin.class);
-                                if (admin != null) {
-                                    callback.onSuccess(admin);
-                                } else {
-                                    callback.onFailure("Erreur de conversion des données");
-                                }
-                            } else {
-                                callback.onFailure("Administrateur non trouvé");
-                            }
-                        } else {
-                            callback.onFailure(task.getException().getMessage());
-                        }
-                    }
-                });
+        deliver(adminCache.get(email, () ->
+                loadProfile(ADMINS_COLLECTION, email, Admin.class, ProfileCache.ROLE_ADMIN, "Administrateur non trouvé")),
+                callback);
     }
 
     /**
@@ -357,43 +407,193 @@ public class FirebaseManager {
                 .update(admin.toMap())
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "Administrateur mis à jour: " + admin.getEmail());
+                    ProfileCache.getInstance().putProfile(admin.getEmail(), ProfileCache.ROLE_ADMIN, admin);
+                    adminCache.put(admin.getEmail(), admin);
                     callback.onSuccess(null);
                 })
                 .addOnFailureListener(e -> {
                     Log.w(TAG, "Erreur mise à jour administrateur", e);
+                    // Le profil en cache a pu être modifié localement avant l'échec
+                    ProfileCache.getInstance().invalidate(admin.getEmail());
+                    adminCache.invalidate(admin.getEmail());
                     callback.onFailure(e.getMessage());
                 });
     }
 
+    // =================== CACHE DES PROFILS ===================
+
+    /**
+     * Charger un profil : cache persistant (ProfileCache) puis Firestore.
+     * Appelé uniquement en cas de miss de l'EntityCache correspondant.
+     */
+    private <T> Task<T> loadProfile(String collection, String email, Class<T> type, String role, String notFound) {
+        T persisted = ProfileCache.getInstance().getProfile(email, type);
+        if (persisted != null) {
+            return Tasks.forResult(persisted);
+        }
+
+        return db.collection(collection)
+                .document(email)
+                .get()
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw new Exception("Erreur de récupération du profil: " + task.getException().getMessage());
+                    }
+                    DocumentSnapshot document = task.getResult();
+                    if (!document.exists()) {
+                        throw new Exception(notFound);
+                    }
+                    T profile = document.toObject(type);
+                    if (profile == null) {
+                        throw new Exception("Erreur de conversion des données");
+                    }
+                    ProfileCache.getInstance().putProfile(email, role, profile);
+                    return profile;
+                });
+    }
+
+    private static <T> void deliver(Task<T> task, DataCallback<T> callback) {
+        task.addOnCompleteListener(done -> {
+            if (done.isSuccessful()) {
+                callback.onSuccess(done.getResult());
+            } else {
+                Exception e = done.getException();
+                callback.onFailure(e != null ? e.getMessage() : "Erreur inconnue");
+            }
+        });
+    }
+
+    /**
+     * Oublier un profil (toutes collections) : la prochaine lecture repart de Firestore
+     */
+    public void invalidateProfile(String email) {
+        studentCache.invalidate(email);
+        teacherCache.invalidate(email);
+        adminCache.invalidate(email);
+    }
+
+    /**
+     * Compteurs hits / misses / requêtes regroupées des caches de profils
+     */
+    public List<EntityCache.Stats> getProfileCacheStats() {
+        List<EntityCache.Stats> stats = new ArrayList<>();
+        stats.add(studentCache.getStats());
+        stats.add(teacherCache.getStats());
+        stats.add(adminCache.getStats());
+        return stats;
+    }
+
     // =================== DÉTECTION AUTOMATIQUE DU TYPE D'UTILISATEUR ===================
 
     /**
-     * Déterminer le type d'utilisateur par email et récupérer ses données
+     * Déterminer le type d'utilisateur par email et récupérer ses données.
+     * Le rôle vient du cache ou de l'annuaire users/{email} : une seule collection de
+     * profils est lue. Les comptes antérieurs à l'annuaire sont cherchés dans les trois
+     * collections puis ajoutés à l'annuaire.
      */
     public void getUserByEmail(String email, DataCallback<Object> callback) {
-        // Essayer d'abord dans la collection students
+        Object cached = ProfileCache.getInstance().getProfile(email);
+        if (cached != null) {
+            callback.onSuccess(cached);
+            return;
+        }
+
+        getUserRole(email, new DataCallback<String>() {
+            @Override
+            public void onSuccess(String role) {
+                getProfileForRole(email, role, callback);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        });
+    }
+
+    /**
+     * Obtenir le rôle d'un utilisateur par email
+     */
+    public void getUserRole(String email, DataCallback<String> callback) {
+        String cachedRole = ProfileCache.getInstance().getRole(email);
+        if (cachedRole != null) {
+            callback.onSuccess(cachedRole);
+            return;
+        }
+
+        userDirectoryRef(email)
+                .get()
+                .addOnSuccessListener(document -> {
+                    String role = document.exists() ? document.getString("role") : null;
+                    if (role != null) {
+                        ProfileCache.getInstance().putRole(email, role);
+                        callback.onSuccess(role);
+                    } else {
+                        findUserInProfileCollections(email, callback);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Erreur lecture annuaire utilisateurs", e);
+                    findUserInProfileCollections(email, callback);
+                });
+    }
+
+    private void getProfileForRole(String email, String role, DataCallback<Object> callback) {
+        switch (role) {
+            case ProfileCache.ROLE_STUDENT:
+                getStudentByEmail(email, widen(callback));
+                break;
+            case ProfileCache.ROLE_TEACHER:
+                getTeacherByEmail(email, widen(callback));
+                break;
+            case ProfileCache.ROLE_ADMIN:
+                getAdminByEmail(email, widen(callback));
+                break;
+            default:
+                callback.onFailure("Type d'utilisateur non reconnu");
+                break;
+        }
+    }
+
+    private static <T> DataCallback<T> widen(DataCallback<Object> callback) {
+        return new DataCallback<T>() {
+            @Override
+            public void onSuccess(T data) {
+                callback.onSuccess(data);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        };
+    }
+
+    /**
+     * Comptes sans entrée d'annuaire : recherche dans students, teachers puis admins,
+     * et création de l'entrée pour les connexions suivantes
+     */
+    private void findUserInProfileCollections(String email, DataCallback<String> callback) {
         getStudentByEmail(email, new DataCallback<Student>() {
             @Override
             public void onSuccess(Student student) {
-                callback.onSuccess(student);
+                backfillUserDirectory(email, ProfileCache.ROLE_STUDENT, callback);
             }
 
             @Override
             public void onFailure(String error) {
-                // Si pas trouvé dans students, essayer teachers
                 getTeacherByEmail(email, new DataCallback<Teacher>() {
                     @Override
                     public void onSuccess(Teacher teacher) {
-                        callback.onSuccess(teacher);
+                        backfillUserDirectory(email, ProfileCache.ROLE_TEACHER, callback);
                     }
 
                     @Override
                     public void onFailure(String error) {
-                        // Si pas trouvé dans teachers, essayer admins
                         getAdminByEmail(email, new DataCallback<Admin>() {
                             @Override
                             public void onSuccess(Admin admin) {
-                                callback.onSuccess(admin);
+                                backfillUserDirectory(email, ProfileCache.ROLE_ADMIN, callback);
                             }
 
                             @Override
@@ -407,29 +607,23 @@ public class FirebaseManager {
         });
     }
 
-    /**
-     * Obtenir le rôle d'un utilisateur par email
-     */
-    public void getUserRole(String email, DataCallback<String> callback) {
-        getUserByEmail(email, new DataCallback<Object>() {
-            @Override
-            public void onSuccess(Object user) {
-                if (user instanceof Student) {
-                    callback.onSuccess("student");
-                } else if (user instanceof Teacher) {
-                    callback.onSuccess("teacher");
-                } else if (user instanceof Admin) {
-                    callback.onSuccess("admin");
-                } else {
-                    callback.onFailure("Type d'utilisateur non reconnu");
-                }
-            }
+    private void backfillUserDirectory(String email, String role, DataCallback<String> callback) {
+        userDirectoryRef(email)
+                .set(userDirectoryEntry(email, role))
+                .addOnFailureListener(e -> Log.w(TAG, "Erreur écriture annuaire utilisateurs", e));
+        callback.onSuccess(role);
+    }
 
-            @Override
-            public void onFailure(String error) {
-                callback.onFailure(error);
-            }
-        });
+    private DocumentReference userDirectoryRef(String email) {
+        return db.collection(USERS_COLLECTION).document(email);
+    }
+
+    private static Map<String, Object> userDirectoryEntry(String email, String role) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("email", email);
+        entry.put("role", role);
+        entry.put("updatedAt", FieldValue.serverTimestamp());
+        return entry;
     }
 
     // =================== GESTION DES PRÉSENCES ===================
@@ -438,22 +632,79 @@ public class FirebaseManager {
      * Enregistrer une présence
      */
     public void saveAttendance(Attendance attendance, DataCallback<String> callback) {
-        db.collection(ATTENDANCE_COLLECTION)
-                .add(attendance.toMap())
-                .addOnSuccessListener(documentReference -> {
-                    String attendanceId = documentReference.getId();
-                    attendance.setAttendanceId(attendanceId);
+        List<Attendance> single = new ArrayList<>();
+        single.add(attendance);
 
-                    // Mettre à jour avec l'ID généré
-                    documentReference.update("attendanceId", attendanceId);
+        saveAttendanceBatch(single)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Présence enregistrée: " + attendance.getAttendanceId());
+                    callback.onSuccess(attendance.getAttendanceId());
+                })
+                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
+    }
+
+    /**
+     * Enregistrer plusieurs présences (et leurs compteurs) dans un seul WriteBatch.
+     * Au plus MAX_ATTENDANCE_PER_BATCH présences par appel.
+     *
+     * Les IDs sont déterministes par (session, étudiant) : le document peut déjà exister
+     * (nouvel essai de CheckInQueue, second terminal, pointage tardif après la fermeture).
+     * Les statuts enregistrés sont lus en parallèle sur le serveur juste avant le batch
+     * (un aller-retour, pas de lectures en série ni de transaction rejouée) et seul le
+     * changement réel est compté. Deux terminaux qui écrivent le même étudiant entre ces
+     * lectures et le commit peuvent encore compter deux fois (rebuildStudentAggregates répare).
+     *
+     * Retourne la Task brute : CheckInQueue distingue les erreurs passagères (réseau) des
+     * refus définitifs à partir de FirebaseFirestoreException.getCode().
+     */
+    public Task<Void> saveAttendanceBatch(List<Attendance> attendances) {
+        if (attendances.size() > MAX_ATTENDANCE_PER_BATCH) {
+            return Tasks.forException(new IllegalArgumentException(
+                    "Trop de présences pour un seul batch: " + attendances.size()));
+        }
+
+        // Un document par ID : deux écritures du même document partiraient du même état
+        Map<String, Attendance> byId = new LinkedHashMap<>();
+        for (Attendance attendance : attendances) {
+            // ID généré côté client : pas de second aller-retour pour l'écrire
+            if (attendance.getAttendanceId() == null) {
+                attendance.setAttendanceId(newAttendanceId(attendance));
+            }
+            byId.put(attendance.getAttendanceId(), attendance);
+        }
 
-                    Log.d(TAG, "Présence enregistrée: " + attendanceId);
-                    callback.onSuccess(attendanceId);
+        List<Task<DocumentSnapshot>> reads = new ArrayList<>(byId.size());
+        for (String attendanceId : byId.keySet()) {
+            reads.add(db.collection(ATTENDANCE_COLLECTION).document(attendanceId).get(Source.SERVER));
+        }
+
+        return Tasks.<DocumentSnapshot>whenAllSuccess(reads)
+                .onSuccessTask(stored -> {
+                    WriteBatch batch = db.batch();
+                    AttendanceAggregates.CounterWrites counters = AttendanceAggregates.into(batch);
+                    int index = 0;
+                    for (Attendance attendance : byId.values()) {
+                        Map<String, Object> data = attendance.toMap();
+                        // Horodatage serveur : sert de high-water mark pour la synchronisation delta
+                        data.put("lastModifiedAt", FieldValue.serverTimestamp());
+
+                        batch.set(db.collection(ATTENDANCE_COLLECTION).document(attendance.getAttendanceId()), data);
+                        AttendanceAggregates.recordReplacement(db, counters, stored.get(index++), attendance);
+                    }
+                    return batch.commit();
                 })
-                .addOnFailureListener(e -> {
-                    Log.w(TAG, "Erreur enregistrement présence", e);
-                    callback.onFailure(e.getMessage());
-                });
+                .addOnFailureListener(e -> Log.w(TAG, "Erreur enregistrement présences", e));
+    }
+
+    /**
+     * Nouvel identifiant de présence, généré sans aller-retour réseau.
+     * Une présence rattachée à une session reçoit l'ID déterministe (session, étudiant).
+     */
+    public String newAttendanceId(Attendance attendance) {
+        if (attendance.getSessionId() != null && attendance.getStudentEmail() != null) {
+            return sessionAttendanceId(attendance.getSessionId(), attendance.getStudentEmail());
+        }
+        return db.collection(ATTENDANCE_COLLECTION).document().getId();
     }
 
     /**
@@ -463,13 +714,21 @@ public class FirebaseManager {
      * Récupérer l'historique de présence d'un étudiant - VERSION SANS INDEX
      */
     public void getStudentAttendanceHistory(String studentEmail, DataCallback<List<Attendance>> callback) {
-        Log.d(TAG, "🔍 Loading attendance history for: " + studentEmail);
+        getStudentAttendanceHistory(studentEmail, Source.DEFAULT, callback);
+    }
+
+    /**
+     * Récupérer l'historique de présence d'un étudiant depuis une source donnée
+     * (Source.CACHE pour lire uniquement le cache local, Source.SERVER pour forcer le réseau)
+     */
+    public void getStudentAttendanceHistory(String studentEmail, Source source, DataCallback<List<Attendance>> callback) {
+        Log.d(TAG, "🔍 Loading attendance history for: " + studentEmail + " (source: " + source + ")");
 
         db.collection(ATTENDANCE_COLLECTION)
                 .whereEqualTo("studentEmail", studentEmail)
                 // ❌ SUPPRIMER cette ligne qui cause l'erreur d'index :
                 // .orderBy("timestamp", Query.Direction.DESCENDING)
-                .get()
+                .get(source)
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful() && task.getResult() != null) {
                         List<Attendance> attendanceList = new ArrayList<>();
@@ -482,7 +741,8 @@ public class FirebaseManager {
                                 try {
                                     // Utiliser la conversion automatique de Firebase
                                     Attendance attendance = document.toObject(Attendance.class);
-                                    if (attendance != null) {
+                                    // Ignorer les suppressions logiques
+                                    if (attendance != null && !attendance.isDeleted()) {
                                         attendance.setAttendanceId(document.getId());
                                         attendanceList.add(attendance);
                                         Log.d(TAG, "✅ Added attendance: " + attendance.getCourseName() + " - " + attendance.getStatus());
@@ -515,6 +775,144 @@ public class FirebaseManager {
                 });
     }
 
+    /**
+     * Récupérer uniquement les présences d'un étudiant modifiées depuis un instant donné
+     * (synchronisation delta). Les suppressions logiques (deleted = true) sont incluses
+     * pour que le client puisse les retirer de sa copie locale.
+     * Nécessite l'index composite (studentEmail ASC, lastModifiedAt ASC).
+     */
+    public void getStudentAttendanceModifiedSince(String studentEmail, Timestamp since,
+                                                  DataCallback<List<Attendance>> callback) {
+        db.collection(ATTENDANCE_COLLECTION)
+                .whereEqualTo("studentEmail", studentEmail)
+                // >= plutôt que > : deux écritures peuvent partager le même horodatage,
+                // la fusion côté client est idempotente
+                .whereGreaterThanOrEqualTo("lastModifiedAt", since)
+                .orderBy("lastModifiedAt", Query.Direction.ASCENDING)
+                .get(Source.SERVER)
+                .addOnSuccessListener(querySnapshot -> {
+                    List<Attendance> changes = new ArrayList<>();
+                    for (DocumentSnapshot document : querySnapshot.getDocuments()) {
+                        try {
+                            Attendance attendance = document.toObject(Attendance.class);
+                            if (attendance != null) {
+                                attendance.setAttendanceId(document.getId());
+                                changes.add(attendance);
+                            }
+                        } catch (Exception e) {
+                            Log.e(TAG, "❌ Error processing document: " + document.getId(), e);
+                        }
+                    }
+                    Log.d(TAG, "🔄 Delta sync for " + studentEmail + ": " + changes.size() + " changed attendance documents");
+                    callback.onSuccess(changes);
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Erreur synchronisation delta des présences", e);
+                    callback.onFailure(e.getMessage());
+                });
+    }
+
+    /**
+     * Page d'historique de présence, avec le curseur pour charger la page suivante
+     */
+    public static class AttendancePage {
+        private final List<Attendance> attendances;
+        private final DocumentSnapshot lastDocument;
+        private final boolean hasMore;
+
+        public AttendancePage(List<Attendance> attendances, DocumentSnapshot lastDocument, boolean hasMore) {
+            this.attendances = attendances;
+            this.lastDocument = lastDocument;
+            this.hasMore = hasMore;
+        }
+
+        public List<Attendance> getAttendances() { return attendances; }
+        public DocumentSnapshot getLastDocument() { return lastDocument; }
+        public boolean hasMore() { return hasMore; }
+    }
+
+    /**
+     * Récupérer une page de l'historique d'un étudiant, triée côté serveur (plus récent en premier).
+     * Passer null comme curseur pour la première page, puis page.getLastDocument() pour les suivantes.
+     * Nécessite l'index composite (studentEmail ASC, timestamp DESC) de firestore.indexes.json.
+     */
+    public void getStudentAttendanceHistoryPage(String studentEmail, int pageSize, DocumentSnapshot startAfter,
+                                                DataCallback<AttendancePage> callback) {
+        Query query = db.collection(ATTENDANCE_COLLECTION)
+                .whereEqualTo("studentEmail", studentEmail)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .limit(pageSize);
+
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+
+        query.get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<DocumentSnapshot> documents = querySnapshot.getDocuments();
+                    List<Attendance> attendances = new ArrayList<>(documents.size());
+
+                    for (DocumentSnapshot document : documents) {
+                        try {
+                            Attendance attendance = document.toObject(Attendance.class);
+                            // Ignorer les suppressions logiques (la page peut être un peu plus courte)
+                            if (attendance != null && !attendance.isDeleted()) {
+                                attendance.setAttendanceId(document.getId());
+                                attendances.add(attendance);
+                            }
+                        } catch (Exception e) {
+                            Log.e(TAG, "❌ Error processing document: " + document.getId(), e);
+                        }
+                    }
+
+                    DocumentSnapshot lastDocument = documents.isEmpty() ?
+                            startAfter : documents.get(documents.size() - 1);
+                    boolean hasMore = documents.size() == pageSize;
+
+                    Log.d(TAG, "📄 History page for " + studentEmail + ": " + attendances.size()
+                            + " records, hasMore=" + hasMore);
+                    callback.onSuccess(new AttendancePage(attendances, lastDocument, hasMore));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Error loading history page", e);
+                    callback.onFailure("Erreur lors du chargement: " + e.getMessage());
+                });
+    }
+
+    /**
+     * Supprimer une présence (suppression logique : visible par la synchronisation delta et les listeners de liste d'appel).
+     * Lecture et décompte dans la même transaction : une double suppression ne décompte qu'une fois.
+     */
+    public void deleteAttendance(String attendanceId, String modifiedBy, DataCallback<Void> callback) {
+        DocumentReference attendanceRef = db.collection(ATTENDANCE_COLLECTION).document(attendanceId);
+
+        db.runTransaction(transaction -> {
+            DocumentSnapshot document = transaction.get(attendanceRef);
+            if (!document.exists() || Boolean.TRUE.equals(document.getBoolean("deleted"))) {
+                return null;
+            }
+
+            Attendance attendance = convertDocumentToAttendance(document);
+            transaction.update(attendanceRef,
+                    "deleted", true,
+                    "modifiedBy", modifiedBy,
+                    "lastModifiedAt", FieldValue.serverTimestamp());
+            if (attendance != null) {
+                AttendanceAggregates.recordStatusChange(db, AttendanceAggregates.into(transaction),
+                        attendance, attendance.getStatus(), null);
+            }
+            return null;
+        })
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Présence supprimée: " + attendanceId);
+                    callback.onSuccess(null);
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Erreur suppression présence", e);
+                    callback.onFailure(e.getMessage());
+                });
+    }
+
     /**
      * Convertir un DocumentSnapshot en objet Attendance - MÉTHODE ROBUSTE
      */
@@ -566,6 +964,9 @@ public class FirebaseManager {
                 attendance.setLastModifiedAt((Timestamp) lastModifiedObj);
             }
 
+            Boolean deleted = document.getBoolean("deleted");
+            attendance.setDeleted(deleted != null ? deleted : false);
+
             // Détails d'attendance (optionnel)
             Map<String, Object> detailsMap = (Map<String, Object>) document.get("attendanceDetails");
             if (detailsMap != null) {
@@ -581,6 +982,21 @@ public class FirebaseManager {
                     details.setProcessingTime(((Number) processingTimeObj).longValue());
                 }
 
+                Object detectionTimeObj = detailsMap.get("detectionTime");
+                if (detectionTimeObj instanceof Number) {
+                    details.setDetectionTime(((Number) detectionTimeObj).longValue());
+                }
+
+                Object recognitionTimeObj = detailsMap.get("recognitionTime");
+                if (recognitionTimeObj instanceof Number) {
+                    details.setRecognitionTime(((Number) recognitionTimeObj).longValue());
+                }
+
+                Object framesPerSecondObj = detailsMap.get("framesPerSecond");
+                if (framesPerSecondObj instanceof Number) {
+                    details.setFramesPerSecond(((Number) framesPerSecondObj).doubleValue());
+                }
+
                 Object retryCountObj = detailsMap.get("retryCount");
                 if (retryCountObj instanceof Number) {
                     details.setRetryCount(((Number) retryCountObj).intValue());
@@ -616,7 +1032,7 @@ public class FirebaseManager {
                         List<Attendance> attendanceList = new ArrayList<>();
                         for (DocumentSnapshot document : task.getResult()) {
                             Attendance attendance = document.toObject(Attendance.class);
-                            if (attendance != null) {
+                            if (attendance != null && !attendance.isDeleted()) {
                                 attendance.setAttendanceId(document.getId());
                                 attendanceList.add(attendance);
                             }
@@ -698,6 +1114,9 @@ public class FirebaseManager {
                 .update("profileImageUrl", imageUrl, "lastUpdatedAt", com.google.firebase.Timestamp.now())
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "URL de l'image mise à jour pour " + userEmail);
+                    // Le profil en cache porte l'ancienne URL
+                    ProfileCache.getInstance().invalidate(userEmail);
+                    invalidateProfile(userEmail);
                     callback.onSuccess(null);
                 })
                 .addOnFailureListener(e -> {
@@ -786,35 +1205,161 @@ public class FirebaseManager {
                 });
     }
 
-    // Add these NEW methods to your FirebaseManager.java (replace the existing session methods)
-
-// =================== FIELD-BASED SESSION MANAGEMENT ===================
-
     /**
-     * Obtenir les sessions d'aujourd'hui pour un étudiant (par département, filière et année)
+     * Terminer une session : une requête et quelques WriteBatch.
+     *
+     * Les présences déjà écrites pour la session sont lues en une seule requête sur
+     * sessionId (serveur). Un étudiant qui a déjà un document (pointage arrivé entre-temps,
+     * absence d'une tentative précédente interrompue) n'est ni réécrit ni recompté, et un
+     * pointage "present" trouvé le remet présent. Les absences manquantes et leurs compteurs
+     * sont écrits par WriteBatch d'au plus MAX_BATCH_WRITES opérations ; la mise à jour de la
+     * session (statut, listes d'appel, statistiques) part dans le dernier batch, validé après
+     * les autres. Avec les IDs déterministes (session + étudiant) et la requête préalable,
+     * une nouvelle tentative après un échec partiel ne réécrit pas les batchs déjà validés.
      */
-    public void getTodaySessionsForStudent(String studentEmail, String department, String field, String year, DataCallback<List<Session>> callback) {
-        Log.d(TAG, "Loading today's sessions for: " + studentEmail + " in " + department + "/" + field + "/" + year);
-
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(Calendar.HOUR_OF_DAY, 0);
-        calendar.set(Calendar.MINUTE, 0);
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-        Timestamp startOfDay = new Timestamp(calendar.getTime());
-
-        calendar.add(Calendar.DAY_OF_MONTH, 1);
-        Timestamp startOfNextDay = new Timestamp(calendar.getTime());
+    public void completeSession(Session session, DataCallback<Void> callback) {
+        if (session.getSessionId() == null) {
+            callback.onFailure("ID de session manquant");
+            return;
+        }
 
-        // Construire une requête flexible
-        Query query = db.collection(SESSIONS_COLLECTION);
+        String previousStatus = session.getStatus();
+        List<String> previousPresent = session.getPresentStudentEmails();
+        List<String> previousAbsent = session.getAbsentStudentEmails();
+        List<String> newlyAbsent = session.endSession();
 
-        if (department != null && !department.isEmpty()) {
-            query = query.whereEqualTo("department", department);
-        }
+        db.collection(ATTENDANCE_COLLECTION)
+                .whereEqualTo("sessionId", session.getSessionId())
+                .get(Source.SERVER)
+                .onSuccessTask(querySnapshot -> {
+                    Map<String, String> storedStatuses = new HashMap<>();
+                    for (DocumentSnapshot document : querySnapshot.getDocuments()) {
+                        String studentEmail = document.getString("studentEmail");
+                        if (studentEmail != null && !Boolean.TRUE.equals(document.getBoolean("deleted"))) {
+                            storedStatuses.put(studentEmail, document.getString("status"));
+                        }
+                    }
 
-        query.whereGreaterThanOrEqualTo("startTime", startOfDay)
-                .whereLessThan("startTime", startOfNextDay)
+                    List<String> missing = new ArrayList<>();
+                    for (String studentEmail : newlyAbsent) {
+                        if (!storedStatuses.containsKey(studentEmail)) {
+                            missing.add(studentEmail);
+                        } else if ("present".equals(storedStatuses.get(studentEmail))) {
+                            session.markStudentPresent(studentEmail);
+                        }
+                    }
+                    return writeAbsences(session, missing);
+                })
+                .addOnSuccessListener(batchCount -> {
+                    Log.d(TAG, "Session terminée: " + session.getSessionId() + " (" + session.getAbsentStudentEmails().size()
+                            + " absences, " + batchCount + " batch(s))");
+                    callback.onSuccess(null);
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Erreur fermeture session", e);
+                    // Restaurer l'état local pour permettre une nouvelle tentative
+                    session.setStatus(previousStatus);
+                    session.setPresentStudentEmails(previousPresent);
+                    session.setAbsentStudentEmails(previousAbsent);
+                    callback.onFailure(e.getMessage());
+                });
+    }
+
+    /**
+     * Écrire les absences manquantes (document + compteurs) puis la session dans le dernier
+     * batch ; retourne le nombre de batchs validés.
+     */
+    private Task<Integer> writeAbsences(Session session, List<String> studentEmails) {
+        Date sessionDay = session.getStartTime() != null ? session.getStartTime().toDate() : new Date();
+        // Une écriture réservée à la session dans chaque batch : le dernier n'est jamais trop plein
+        int absencesPerBatch = (MAX_BATCH_WRITES - 1) / (1 + AttendanceAggregates.WRITES_PER_STATUS_CHANGE);
+
+        List<WriteBatch> batches = new ArrayList<>();
+        WriteBatch batch = db.batch();
+        batches.add(batch);
+        int inBatch = 0;
+        for (String studentEmail : studentEmails) {
+            if (inBatch == absencesPerBatch) {
+                batch = db.batch();
+                batches.add(batch);
+                inBatch = 0;
+            }
+
+            Attendance absence = new Attendance(studentEmail, null, null, session.getCourseId(),
+                    session.getCourseName(), "absent", session.getTeacherEmail());
+            absence.setAttendanceId(sessionAttendanceId(session.getSessionId(), studentEmail));
+            absence.setSessionId(session.getSessionId());
+            if (session.getStartTime() != null) {
+                absence.setTimestamp(session.getStartTime());
+            }
+
+            Map<String, Object> data = absence.toMap();
+            data.put("lastModifiedAt", FieldValue.serverTimestamp());
+            batch.set(db.collection(ATTENDANCE_COLLECTION).document(absence.getAttendanceId()), data);
+            AttendanceAggregates.recordStatusChange(db, batch, studentEmail, session.getCourseId(),
+                    session.getCourseName(), sessionDay, null, "absent");
+            inBatch++;
+        }
+
+        Map<String, Object> sessionUpdates = new HashMap<>();
+        sessionUpdates.put("status", session.getStatus());
+        sessionUpdates.put("presentStudentEmails", session.getPresentStudentEmails());
+        sessionUpdates.put("absentStudentEmails", session.getAbsentStudentEmails());
+        if (session.getStatistics() != null) {
+            sessionUpdates.put("statistics", session.getStatistics().toMap());
+        }
+        sessionUpdates.put("lastUpdatedAt", session.getLastUpdatedAt());
+        WriteBatch last = batches.remove(batches.size() - 1);
+        last.update(db.collection(SESSIONS_COLLECTION).document(session.getSessionId()), sessionUpdates);
+
+        // Les absences des premiers batchs portent sur des étudiants distincts : envoi en parallèle.
+        // La session n'est marquée terminée qu'une fois toutes les absences validées.
+        List<Task<Void>> commits = new ArrayList<>(batches.size());
+        for (WriteBatch absences : batches) {
+            commits.add(absences.commit());
+        }
+        int batchCount = batches.size() + 1;
+        return Tasks.whenAll(commits)
+                .onSuccessTask(aVoid -> last.commit())
+                .onSuccessTask(aVoid -> Tasks.forResult(batchCount));
+    }
+
+    /**
+     * Identifiant du document de présence d'un étudiant pour une session
+     */
+    public static String sessionAttendanceId(String sessionId, String studentEmail) {
+        return sessionId + "_" + studentEmail;
+    }
+
+    // Add these NEW methods to your FirebaseManager.java (replace the existing session methods)
+
+// =================== FIELD-BASED SESSION MANAGEMENT ===================
+
+    /**
+     * Obtenir les sessions d'aujourd'hui pour un étudiant (par département, filière et année)
+     */
+    public void getTodaySessionsForStudent(String studentEmail, String department, String field, String year, DataCallback<List<Session>> callback) {
+        Log.d(TAG, "Loading today's sessions for: " + studentEmail + " in " + department + "/" + field + "/" + year);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        Timestamp startOfDay = new Timestamp(calendar.getTime());
+
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        Timestamp startOfNextDay = new Timestamp(calendar.getTime());
+
+        // Construire une requête flexible
+        Query query = db.collection(SESSIONS_COLLECTION);
+
+        if (department != null && !department.isEmpty()) {
+            query = query.whereEqualTo("department", department);
+        }
+
+        query.whereGreaterThanOrEqualTo("startTime", startOfDay)
+                .whereLessThan("startTime", startOfNextDay)
                 .orderBy("startTime")
                 .get()
                 .addOnCompleteListener(task -> {
@@ -1012,81 +1557,116 @@ public class FirebaseManager {
     }
 
     /**
-     * NOUVELLE VERSION - Obtenir les statistiques d'assiduité d'un étudiant
-     * Cette version utilise directement la collection 'attendance' au lieu de 'sessions'
+     * Obtenir les statistiques d'assiduité d'un étudiant (60 derniers jours).
+     * Une seule lecture : le document agrégé attendance_stats/{email}.
      */
     public void getStudentAttendanceStatistics(String studentEmail, String department, String field, String year, DataCallback<AttendanceStatsDetailed> callback) {
         Log.d(TAG, "🔍 Loading statistics for student: " + studentEmail + " in " + department + "/" + field + "/" + year);
+        getStudentAttendanceStatistics(studentEmail, callback);
+    }
 
-        // Calculer les statistiques des 60 derniers jours
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_MONTH, -60);
-        Timestamp sixtyDaysAgo = new Timestamp(calendar.getTime());
+    public void getStudentAttendanceStatistics(String studentEmail, DataCallback<AttendanceStatsDetailed> callback) {
+        long windowStart = getStatisticsWindowStart();
 
-        // ✅ UTILISER LA COLLECTION ATTENDANCE au lieu de SESSIONS
-        db.collection(ATTENDANCE_COLLECTION)
-                .whereEqualTo("studentEmail", studentEmail)
-                .whereGreaterThanOrEqualTo("timestamp", sixtyDaysAgo) // Filtrer par date
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        int totalSessions = 0;
-                        int attendedSessions = 0;
-                        int absentSessions = 0;
-                        int justifiedSessions = 0;
+        getStudentAggregates(studentEmail, new DataCallback<DocumentSnapshot>() {
+            @Override
+            public void onSuccess(DocumentSnapshot document) {
+                AttendanceStatsDetailed stats = AttendanceAggregates.toWindowStats(document, windowStart);
+                pruneExpiredBuckets(document);
+
+                Log.d(TAG, "📈 Statistics from aggregate - Rate: " + stats.getAttendanceRate() +
+                        "%, Total: " + stats.getTotalSessions() +
+                        ", Present: " + stats.getAttendedSessions() +
+                        ", Absent: " + stats.getAbsentSessions() +
+                        ", Justified: " + stats.getJustifiedSessions());
+                callback.onSuccess(stats);
+            }
 
-                        QuerySnapshot querySnapshot = task.getResult();
-                        Log.d(TAG, "📊 Found " + querySnapshot.size() + " attendance records");
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "❌ Error getting attendance statistics: " + error);
+                // Retourner des stats vides plutôt qu'une erreur
+                callback.onSuccess(new AttendanceStatsDetailed(0, 0, 0, 0));
+            }
+        });
+    }
 
-                        if (!querySnapshot.isEmpty()) {
-                            // ✅ Compter chaque statut
-                            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                                try {
-                                    String status = document.getString("status");
-
-                                    if (status != null) {
-                                        totalSessions++;
-
-                                        switch (status.toLowerCase()) {
-                                            case "present":
-                                                attendedSessions++;
-                                                break;
-                                            case "absent":
-                                                absentSessions++;
-                                                break;
-                                            case "justified":
-                                                justifiedSessions++;
-                                                break;
-                                        }
-                                    }
+    /**
+     * Lire le document agrégé d'un étudiant ; s'il n'a jamais été initialisé (présences
+     * antérieures aux compteurs), le reconstruire une fois depuis l'historique complet.
+     */
+    private void getStudentAggregates(String studentEmail, DataCallback<DocumentSnapshot> callback) {
+        DocumentReference statsRef = AttendanceAggregates.studentStatsRef(db, studentEmail);
 
-                                } catch (Exception e) {
-                                    Log.w(TAG, "❌ Error parsing attendance document: " + document.getId(), e);
-                                }
-                            }
+        statsRef.get()
+                .addOnSuccessListener(document -> {
+                    if (AttendanceAggregates.isInitialized(document)) {
+                        callback.onSuccess(document);
+                        return;
+                    }
+
+                    rebuildStudentAggregates(studentEmail, new DataCallback<Void>() {
+                        @Override
+                        public void onSuccess(Void data) {
+                            statsRef.get()
+                                    .addOnSuccessListener(callback::onSuccess)
+                                    .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
                         }
 
-                        // ✅ Créer les statistiques avec tous les détails
-                        AttendanceStatsDetailed stats = new AttendanceStatsDetailed(
-                                totalSessions,
-                                attendedSessions,
-                                absentSessions,
-                                justifiedSessions
-                        );
-
-                        Log.d(TAG, "📈 Statistics calculated - Rate: " + stats.getAttendanceRate() +
-                                "%, Total: " + totalSessions +
-                                ", Present: " + attendedSessions +
-                                ", Absent: " + absentSessions +
-                                ", Justified: " + justifiedSessions);
-
-                        callback.onSuccess(stats);
-                    } else {
-                        Log.e(TAG, "❌ Error getting attendance statistics", task.getException());
-                        // Retourner des stats vides plutôt qu'une erreur
-                        callback.onSuccess(new AttendanceStatsDetailed(0, 0, 0, 0));
-                    }
-                });
+                        @Override
+                        public void onFailure(String error) {
+                            callback.onFailure(error);
+                        }
+                    });
+                })
+                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
+    }
+
+    /**
+     * Recalculer les compteurs d'un étudiant depuis toutes ses présences (migration)
+     */
+    public void rebuildStudentAggregates(String studentEmail, DataCallback<Void> callback) {
+        Log.d(TAG, "Rebuilding attendance aggregates for: " + studentEmail);
+
+        getStudentAttendanceHistory(studentEmail, Source.SERVER, new DataCallback<List<Attendance>>() {
+            @Override
+            public void onSuccess(List<Attendance> records) {
+                WriteBatch batch = db.batch();
+                AttendanceAggregates.writeRebuild(db, batch, studentEmail, records);
+                batch.commit()
+                        .addOnSuccessListener(aVoid -> callback.onSuccess(null))
+                        .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        });
+    }
+
+    /**
+     * Supprimer les buckets journaliers sortis de la période de rétention
+     */
+    private void pruneExpiredBuckets(DocumentSnapshot document) {
+        List<String> expired = AttendanceAggregates.expiredBucketPaths(document);
+        if (expired.isEmpty()) return;
+
+        Map<String, Object> updates = new HashMap<>();
+        for (String path : expired) {
+            updates.put(path, FieldValue.delete());
+        }
+        document.getReference().update(updates)
+                .addOnFailureListener(e -> Log.w(TAG, "Error pruning aggregate buckets", e));
+    }
+
+    /**
+     * Début de la fenêtre des statistiques (60 derniers jours), partagé avec la copie locale
+     */
+    long getStatisticsWindowStart() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -60);
+        return calendar.getTimeInMillis();
     }
 
     /**
@@ -1129,67 +1709,53 @@ public class FirebaseManager {
     }
 
     /**
-     * BONUS : Méthode pour calculer les statistiques par cours
+     * Statistiques par cours (clé = nom du cours) : un document agrégé par cours suivi
      */
     public void getStudentStatisticsByCourse(String studentEmail, DataCallback<Map<String, AttendanceStatsDetailed>> callback) {
         Log.d(TAG, "📚 Loading course-specific statistics for: " + studentEmail);
+        long windowStart = getStatisticsWindowStart();
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_MONTH, -60);
-        Timestamp sixtyDaysAgo = new Timestamp(calendar.getTime());
-
-        db.collection(ATTENDANCE_COLLECTION)
-                .whereEqualTo("studentEmail", studentEmail)
-                .whereGreaterThanOrEqualTo("timestamp", sixtyDaysAgo)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        Map<String, AttendanceStatsDetailed> courseStats = new HashMap<>();
+        // Garantit l'initialisation des compteurs avant de lire la sous-collection
+        getStudentAggregates(studentEmail, new DataCallback<DocumentSnapshot>() {
+            @Override
+            public void onSuccess(DocumentSnapshot studentDocument) {
+                studentDocument.getReference()
+                        .collection(AttendanceAggregates.COURSES_SUBCOLLECTION)
+                        .get()
+                        .addOnSuccessListener(querySnapshot -> {
+                            Map<String, AttendanceStatsDetailed> courseStats = new HashMap<>();
 
-                        for (DocumentSnapshot document : task.getResult().getDocuments()) {
-                            try {
+                            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
                                 String courseName = document.getString("courseName");
-                                String status = document.getString("status");
-
-                                if (courseName != null && status != null) {
-                                    // Initialiser les stats du cours si nécessaire
-                                    if (!courseStats.containsKey(courseName)) {
-                                        courseStats.put(courseName, new AttendanceStatsDetailed(0, 0, 0, 0));
+                                if (courseName == null) continue;
+
+                                AttendanceStatsDetailed stats = AttendanceAggregates.toWindowStats(document, windowStart);
+                                if (stats.getTotalSessions() > 0) {
+                                    // Même nom pour plusieurs identifiants de cours : cumuler
+                                    AttendanceStatsDetailed existing = courseStats.get(courseName);
+                                    if (existing != null) {
+                                        stats = new AttendanceStatsDetailed(
+                                                existing.getTotalSessions() + stats.getTotalSessions(),
+                                                existing.getAttendedSessions() + stats.getAttendedSessions(),
+                                                existing.getAbsentSessions() + stats.getAbsentSessions(),
+                                                existing.getJustifiedSessions() + stats.getJustifiedSessions());
                                     }
-
-                                    // Mettre à jour les compteurs
-                                    AttendanceStatsDetailed stats = courseStats.get(courseName);
-                                    stats.setTotalSessions(stats.getTotalSessions() + 1);
-
-                                    switch (status.toLowerCase()) {
-                                        case "present":
-                                            stats.setAttendedSessions(stats.getAttendedSessions() + 1);
-                                            break;
-                                        case "absent":
-                                            stats.setAbsentSessions(stats.getAbsentSessions() + 1);
-                                            break;
-                                        case "justified":
-                                            stats.setJustifiedSessions(stats.getJustifiedSessions() + 1);
-                                            break;
-                                    }
-
-                                    // Recalculer le taux d'assiduité
-                                    double newRate = stats.getTotalSessions() > 0 ?
-                                            (double) stats.getAttendedSessions() / stats.getTotalSessions() * 100 : 0.0;
-                                    stats.setAttendanceRate(newRate);
+                                    courseStats.put(courseName, stats);
                                 }
-
-                            } catch (Exception e) {
-                                Log.w(TAG, "Error processing course stats: " + document.getId(), e);
+                                pruneExpiredBuckets(document);
                             }
-                        }
 
-                        Log.d(TAG, "📊 Course statistics calculated for " + courseStats.size() + " courses");
-                        callback.onSuccess(courseStats);
-                    } else {
-                        callback.onFailure("Erreur lors du calcul des statistiques par cours");
-                    }
-                });
+                            Log.d(TAG, "📊 Course statistics loaded for " + courseStats.size() + " courses");
+                            callback.onSuccess(courseStats);
+                        })
+                        .addOnFailureListener(e -> callback.onFailure("Erreur lors du calcul des statistiques par cours"));
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure("Erreur lors du calcul des statistiques par cours");
+            }
+        });
     }
 
     /**
@@ -1203,12 +1769,20 @@ public class FirebaseManager {
         calendar.add(Calendar.DAY_OF_MONTH, 7);
         Timestamp weekEnd = new Timestamp(calendar.getTime());
 
+        getSessionsForFieldInRange(department, field, year, weekStart, weekEnd, callback);
+    }
+
+    /**
+     * Obtenir les sessions d'une filière dans [start, end[ (utilisé par ScheduleRepository pour un mois complet)
+     */
+    public void getSessionsForFieldInRange(String department, String field, String year,
+                                           Timestamp start, Timestamp end, DataCallback<List<Session>> callback) {
         db.collection(SESSIONS_COLLECTION)
                 .whereEqualTo("department", department)
                 .whereEqualTo("field", field)
                 .whereArrayContains("targetYears", year)
-                .whereGreaterThanOrEqualTo("startTime", weekStart)
-                .whereLessThan("startTime", weekEnd)
+                .whereGreaterThanOrEqualTo("startTime", start)
+                .whereLessThan("startTime", end)
                 .orderBy("startTime")
                 .get()
                 .addOnCompleteListener(task -> {
@@ -1228,6 +1802,32 @@ public class FirebaseManager {
                 });
     }
 
+    /**
+     * Étudiants actifs d'une promotion (département, filière, année) : galerie d'empreintes
+     */
+    public void getStudentsInCohort(String department, String field, String year, DataCallback<List<Student>> callback) {
+        db.collection(STUDENTS_COLLECTION)
+                .whereEqualTo("department", department)
+                .whereEqualTo("field", field)
+                .whereEqualTo("year", year)
+                .whereEqualTo("isActive", true)
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        List<Student> students = new ArrayList<>();
+                        for (DocumentSnapshot document : task.getResult()) {
+                            Student student = document.toObject(Student.class);
+                            if (student != null) {
+                                students.add(student);
+                            }
+                        }
+                        callback.onSuccess(students);
+                    } else {
+                        callback.onFailure(task.getException().getMessage());
+                    }
+                });
+    }
+
     /**
      * Auto-enroll students in sessions based on their field and year
      */
@@ -1261,6 +1861,7 @@ public class FirebaseManager {
                     }
                 });
     }
+
     // Add this method to your existing FirebaseManager.java class
 
     /**
@@ -1297,246 +1898,288 @@ public class FirebaseManager {
     }
 
 
-    // ---------------------------------------------- JUSTIFS
-    public void getStudentByEmail(String email, DataCallback<Student> callback) {
-        db.collection(STUDENTS_COLLECTION)
-                .document(email)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Student student = documentSnapshot.toObject(Student.class);
-                        if (student != null) { // Added null check for robustness
-                            callback.onSuccess(student);
-                        } else {
-                            callback.onFailure("Erreur de conversion des données"); // More specific error
-                        }
-                    } else {
-                        callback.onFailure("Étudiant non trouvé");
-                    }
-                })
-                .addOnFailureListener(e -> callback.onFailure("Erreur de récupération de l'étudiant: " + e.getMessage()));
-    }
-
-    // This method needs to be implemented to fetch courses associated with the student
-    // based on department, field, and year.
-    public void getStudentCourses(String studentEmail, String department, String field, String year, DataCallback<List<Map<String, String>>> callback) {
-        Log.d(TAG, "Searching courses - Dept: " + department + ", Field: " + field + ", Year: " + year);
-
-        // STRATÉGIE 1 : Requête progressive (du plus spécifique au plus général)
+    // =================== SUIVI EN TEMPS RÉEL ===================
 
-        // Tentative 1 : Critères complets
-        searchCoursesWithAllCriteria(department, field, year, new DataCallback<List<Map<String, String>>>() {
-            @Override
-            public void onSuccess(List<Map<String, String>> courses) {
-                if (courses.size() >= 3) { // Minimum acceptable
-                    callback.onSuccess(courses);
-                } else {
-                    // Tentative 2 : Sans filière spécifique
-                    searchCoursesByFieldAndYear(field, year, callback);
-                }
-            }
-
-            @Override
-            public void onFailure(String error) {
-                // Fallback immédiat
-                searchCoursesByFieldAndYear(field, year, callback);
-            }
-        });
+    /**
+     * Interface pour recevoir les changements d'une session en cours.
+     * Les présences arrivent sous forme de différences (ajout / modification / retrait).
+     */
+    public interface SessionRosterListener {
+        void onSessionChanged(Session session);
+        void onAttendanceAdded(Attendance attendance);
+        void onAttendanceModified(Attendance attendance);
+        void onAttendanceRemoved(Attendance attendance);
+        void onError(String error);
     }
 
-    // Méthode avec tous les critères
-    private void searchCoursesWithAllCriteria(String department, String field, String year, DataCallback<List<Map<String, String>>> callback) {
-        db.collection("courses")
-                .whereEqualTo("department", department)
-                .whereEqualTo("field", field)
-                .whereArrayContains("targetYears", year)
-                .whereEqualTo("isActive", true)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Map<String, String>> courses = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        courses.add(createCourseMap(document));
+    /**
+     * Écouter la session active d'un enseignant (null quand aucune session n'est active).
+     * Retirer l'écouteur avec remove() quand l'écran n'est plus visible.
+     */
+    public ListenerRegistration listenToActiveSessionForTeacher(String teacherEmail, DataCallback<Session> callback) {
+        return db.collection(SESSIONS_COLLECTION)
+                .whereEqualTo("teacherEmail", teacherEmail)
+                .whereEqualTo("status", "active")
+                .limit(1)
+                .addSnapshotListener((querySnapshot, e) -> {
+                    if (e != null) {
+                        Log.w(TAG, "Active session listener failed", e);
+                        callback.onFailure(e.getMessage());
+                        return;
                     }
-                    Log.d(TAG, "Found " + courses.size() + " courses with complete criteria");
-                    callback.onSuccess(courses);
-                })
-                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
-    }
-
-    // Méthode fallback par département et année
-    private void searchCoursesByFieldAndYear(String field, String year, DataCallback<List<Map<String, String>>> callback) {
-        db.collection("courses")
-                .whereEqualTo("field", field)
-                .whereArrayContains("targetYears", year)
-                .whereEqualTo("isActive", true)
-                .limit(10) // Limiter pour éviter trop de résultats
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Map<String, String>> courses = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        courses.add(createCourseMap(document));
+                    if (querySnapshot == null || querySnapshot.isEmpty()) {
+                        callback.onSuccess(null);
+                        return;
                     }
-                    Log.d(TAG, "Fallback found " + courses.size() + " courses");
 
-                    if (courses.size() >= 3) {
-                        callback.onSuccess(courses);
-                    } else {
-                        // Dernier recours : par field seulement
-                        searchCoursesByFieldOnly(field, callback);
+                    DocumentSnapshot document = querySnapshot.getDocuments().get(0);
+                    Session session = document.toObject(Session.class);
+                    if (session != null) {
+                        session.setSessionId(document.getId());
                     }
-                })
-                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
+                    callback.onSuccess(session);
+                });
     }
 
-    // Dernier recours : département seulement
-    private void searchCoursesByFieldOnly(String field, DataCallback<List<Map<String, String>>> callback) {
-        db.collection("courses")
-                .whereEqualTo("field", field)
-                .whereEqualTo("isActive", true)
-                .limit(8)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Map<String, String>> courses = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        courses.add(createCourseMap(document));
+    /**
+     * Écouter une session et ses pointages. Le document de session n'est renvoyé que
+     * lorsqu'il change ; chaque pointage est transmis individuellement (docChanges).
+     */
+    public ListenerRegistration listenToSessionRoster(String sessionId, SessionRosterListener listener) {
+        ListenerRegistration sessionRegistration = db.collection(SESSIONS_COLLECTION)
+                .document(sessionId)
+                .addSnapshotListener((document, e) -> {
+                    if (e != null) {
+                        Log.w(TAG, "Session listener failed", e);
+                        listener.onError(e.getMessage());
+                        return;
                     }
-                    Log.d(TAG, "Final fallback found " + courses.size() + " courses");
-                    callback.onSuccess(courses);
-                })
-                .addOnFailureListener(e -> callback.onFailure(e.getMessage()));
-    }
+                    if (document == null || !document.exists()) return;
 
-    // Helper method pour créer la map de cours
-    private Map<String, String> createCourseMap(QueryDocumentSnapshot document) {
-        Map<String, String> course = new HashMap<>();
-        course.put("id", document.getId());
-        course.put("name", document.getString("courseName"));
-        course.put("teacherName", document.getString("teacherName"));
-        course.put("department", document.getString("department"));
-        course.put("field", document.getString("field"));
-
-        // Ajouter les détails du planning si disponibles
-        Map<String, Object> schedule = (Map<String, Object>) document.get("courseScheduleEntry");
-        if (schedule != null) {
-            course.put("dayOfWeek", (String) schedule.get("dayOfWeek"));
-            course.put("timeSlot", schedule.get("startTime") + "-" + schedule.get("endTime"));
-            course.put("room", (String) schedule.get("room"));
-        }
+                    Session session = document.toObject(Session.class);
+                    if (session != null) {
+                        session.setSessionId(document.getId());
+                        listener.onSessionChanged(session);
+                    }
+                });
 
-        return course;
-    }
+        ListenerRegistration attendanceRegistration = db.collection(ATTENDANCE_COLLECTION)
+                .whereEqualTo("sessionId", sessionId)
+                .addSnapshotListener((querySnapshot, e) -> {
+                    if (e != null) {
+                        Log.w(TAG, "Session attendance listener failed", e);
+                        listener.onError(e.getMessage());
+                        return;
+                    }
+                    if (querySnapshot == null) return;
 
-    // Méthode de fallback pour chercher seulement par département
-    private void fallbackSearchByDepartment(String department, String year, DataCallback<List<Map<String, String>>> callback) {
-        Log.d(TAG, "Fallback search - Department: " + department + ", Year: " + year);
+                    for (DocumentChange change : querySnapshot.getDocumentChanges()) {
+                        Attendance attendance = convertDocumentToAttendance(change.getDocument());
+                        if (attendance == null) continue;
 
-        db.collection("courses")
-                .whereEqualTo("department", department)
-                .whereArrayContains("targetYears", year)
-                .whereEqualTo("isActive", true)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (!queryDocumentSnapshots.isEmpty()) {
-                        List<Map<String, String>> courses = new ArrayList<>();
-                        for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                            Map<String, String> course = new HashMap<>();
-                            course.put("id", document.getId());
-                            course.put("name", document.getString("courseName"));
-                            course.put("teacherName", document.getString("teacherName"));
-                            course.put("department", document.getString("department"));
-                            course.put("field", document.getString("field"));
-                            courses.add(course);
+                        if (change.getType() == DocumentChange.Type.REMOVED || attendance.isDeleted()) {
+                            listener.onAttendanceRemoved(attendance);
+                        } else if (change.getType() == DocumentChange.Type.ADDED) {
+                            listener.onAttendanceAdded(attendance);
+                        } else {
+                            listener.onAttendanceModified(attendance);
                         }
-                        Log.d(TAG, "Found " + courses.size() + " courses with department fallback");
-                        callback.onSuccess(courses);
-                    } else {
-                        // Dernière tentative : tous les cours actifs
-                        Log.d(TAG, "No courses found with department, trying all active courses");
-                        getAllActiveCourses(callback);
                     }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error in fallback search: " + e.getMessage());
-                    getAllActiveCourses(callback);
                 });
+
+        return () -> {
+            sessionRegistration.remove();
+            attendanceRegistration.remove();
+        };
     }
 
-    // Dernière méthode de fallback : tous les cours actifs
-    private void getAllActiveCourses(DataCallback<List<Map<String, String>>> callback) {
-        Log.d(TAG, "Final fallback: getting all active courses");
+    // ---------------------------------------------- JUSTIFS
+    public void getStudentByEmail(String email, DataCallback<Student> callback) {
+        deliver(studentCache.get(email, () ->
+                loadProfile(STUDENTS_COLLECTION, email, Student.class, ProfileCache.ROLE_STUDENT, "Étudiant non trouvé")),
+                callback);
+    }
 
-        db.collection("courses")
-                .whereEqualTo("isActive", true)
-                .limit(20) // Limiter pour éviter trop de résultats
+    // =================== CATALOGUE DES COURS ===================
+
+    /**
+     * Charger tous les cours (chargement initial de CourseCatalog)
+     */
+    public void getAllCourses(DataCallback<List<Course>> callback) {
+        db.collection(COURSES_COLLECTION)
                 .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Map<String, String>> courses = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Map<String, String> course = new HashMap<>();
-                        course.put("id", document.getId());
-                        course.put("name", document.getString("courseName"));
-                        course.put("teacherName", document.getString("teacherName"));
-                        course.put("department", document.getString("department"));
-                        course.put("field", document.getString("field"));
-                        courses.add(course);
-                    }
-                    Log.d(TAG, "Final fallback found " + courses.size() + " courses");
-                    callback.onSuccess(courses);
-                })
+                .addOnSuccessListener(querySnapshot -> callback.onSuccess(toCourses(querySnapshot.getDocuments())))
                 .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error in final fallback: " + e.getMessage());
+                    Log.e(TAG, "Error loading course catalog", e);
                     callback.onFailure("Impossible de charger les cours: " + e.getMessage());
                 });
     }
 
+    /**
+     * Cours modifiés depuis un instant donné (rafraîchissement delta de CourseCatalog).
+     * Les cours désactivés sont inclus pour être retirés du catalogue local.
+     */
+    public void getCoursesModifiedSince(Timestamp since, DataCallback<List<Course>> callback) {
+        db.collection(COURSES_COLLECTION)
+                .whereGreaterThanOrEqualTo("lastModifiedAt", since)
+                .orderBy("lastModifiedAt", Query.Direction.ASCENDING)
+                .get(Source.SERVER)
+                .addOnSuccessListener(querySnapshot -> callback.onSuccess(toCourses(querySnapshot.getDocuments())))
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Erreur rafraîchissement des cours", e);
+                    callback.onFailure(e.getMessage());
+                });
+    }
+
+    private List<Course> toCourses(List<DocumentSnapshot> documents) {
+        List<Course> courses = new ArrayList<>();
+        for (DocumentSnapshot document : documents) {
+            try {
+                Course course = document.toObject(Course.class);
+                if (course != null) {
+                    course.setCourseId(document.getId());
+                    // Le champ est stocké sous "isActive", que le mapping automatique ne relie pas à setActive
+                    Boolean active = document.getBoolean("isActive");
+                    course.setActive(active != null && active);
+                    Object lastModifiedObj = document.get("lastModifiedAt");
+                    if (lastModifiedObj instanceof Timestamp) {
+                        course.setLastModifiedAt((Timestamp) lastModifiedObj);
+                    }
+                    courses.add(course);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Error parsing course document: " + document.getId(), e);
+            }
+        }
+        return courses;
+    }
+
     // --- Justification Operations ---
 
     /**
-     * Get all justifications from Firestore for admin review.
-     * Can be extended with filtering if needed.
+     * Page de la file de revue des justifications, avec le curseur de la page suivante
      */
-    public void getAllJustifications(DataCallback<List<Justification>> callback) {
-        db.collection("justifications")
-                .orderBy("submittedAt", Query.Direction.DESCENDING) // Order by latest submitted
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Justification> justifications = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        try {
-                            Justification justification = document.toObject(Justification.class);
-                            // Assign the Firestore document ID to the Justification object
-                            justification.setJustificationId(document.getId());
+    public static class JustificationPage {
+        private final List<Justification> justifications;
+        private final DocumentSnapshot lastDocument;
+        private final boolean hasMore;
+
+        public JustificationPage(List<Justification> justifications, DocumentSnapshot lastDocument, boolean hasMore) {
+            this.justifications = justifications;
+            this.lastDocument = lastDocument;
+            this.hasMore = hasMore;
+        }
+
+        public List<Justification> getJustifications() { return justifications; }
+        public DocumentSnapshot getLastDocument() { return lastDocument; }
+        public boolean hasMore() { return hasMore; }
+    }
+
+    /**
+     * Interface pour recevoir les justifications soumises après le chargement de la file
+     */
+    public interface JustificationQueueListener {
+        void onJustificationAdded(Justification justification);
+        void onJustificationModified(Justification justification);
+        // Retirée de la requête (par exemple revue par un autre administrateur)
+        void onJustificationRemoved(Justification justification);
+        void onError(String error);
+    }
+
+    /**
+     * Récupérer une page de justifications pour la revue administrateur (plus récentes en premier).
+     * Le filtre de statut est appliqué côté serveur (null = tous les statuts) : le coût ne dépend
+     * que de la taille de page, pas du volume archivé.
+     * Passer null comme curseur pour la première page, puis page.getLastDocument() pour les suivantes.
+     * Nécessite l'index composite (status ASC, submittedAt DESC) de firestore.indexes.json.
+     */
+    public void getJustificationsPage(String status, int pageSize, DocumentSnapshot startAfter,
+                                      DataCallback<JustificationPage> callback) {
+        Query query = justificationQueueQuery(status).limit(pageSize);
+
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+
+        query.get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<DocumentSnapshot> documents = querySnapshot.getDocuments();
+                    List<Justification> justifications = new ArrayList<>(documents.size());
+
+                    for (DocumentSnapshot document : documents) {
+                        Justification justification = convertDocumentToJustification(document);
+                        if (justification != null) {
                             justifications.add(justification);
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error deserializing justification document: " + document.getId(), e);
-                            // Handle corrupted documents gracefully, perhaps skip them
                         }
                     }
-                    callback.onSuccess(justifications);
+
+                    DocumentSnapshot lastDocument = documents.isEmpty() ?
+                            startAfter : documents.get(documents.size() - 1);
+                    boolean hasMore = documents.size() == pageSize;
+
+                    Log.d(TAG, "Justification page (" + (status != null ? status : "all") + "): "
+                            + justifications.size() + " items, hasMore=" + hasMore);
+                    callback.onSuccess(new JustificationPage(justifications, lastDocument, hasMore));
                 })
-                .addOnFailureListener(e -> callback.onFailure("Error getting all justifications: " + e.getMessage()));
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error loading justification page", e);
+                    callback.onFailure("Error getting justifications: " + e.getMessage());
+                });
     }
 
     /**
-     * Update an existing justification in Firestore.
+     * Écouter les justifications soumises après {@code since} (la plus récente déjà affichée).
+     * Seule la tête de file est écoutée : les pages plus anciennes restent des lectures ponctuelles.
+     * Retirer l'écouteur avec remove() quand l'écran n'est plus visible.
      */
-    public void updateJustification(Justification justification, DataCallback<Void> callback) {
-        if (justification.getJustificationId() == null || justification.getJustificationId().isEmpty()) {
-            callback.onFailure("Justification ID is missing for update.");
-            return;
+    public ListenerRegistration listenToNewJustifications(String status, Timestamp since,
+                                                          JustificationQueueListener listener) {
+        Query query = justificationQueueQuery(status).whereGreaterThan("submittedAt", since);
+
+        return query.addSnapshotListener((querySnapshot, e) -> {
+            if (e != null) {
+                Log.w(TAG, "Justification queue listener failed", e);
+                listener.onError(e.getMessage());
+                return;
+            }
+            if (querySnapshot == null) return;
+
+            for (DocumentChange change : querySnapshot.getDocumentChanges()) {
+                Justification justification = convertDocumentToJustification(change.getDocument());
+                if (justification == null) continue;
+
+                if (change.getType() == DocumentChange.Type.ADDED) {
+                    listener.onJustificationAdded(justification);
+                } else if (change.getType() == DocumentChange.Type.MODIFIED) {
+                    listener.onJustificationModified(justification);
+                } else {
+                    listener.onJustificationRemoved(justification);
+                }
+            }
+        });
+    }
+
+    private Query justificationQueueQuery(String status) {
+        Query query = db.collection(JUSTIFICATIONS_COLLECTION);
+        if (status != null) {
+            query = query.whereEqualTo("status", status);
         }
+        return query.orderBy("submittedAt", Query.Direction.DESCENDING);
+    }
 
-        db.collection("justifications")
-                .document(justification.getJustificationId())
-                .set(justification.toMap()) // Use toMap() to ensure all fields are set correctly
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Justification updated: " + justification.getJustificationId());
-                    callback.onSuccess(null);
-                })
-                .addOnFailureListener(e -> {
-                    Log.w(TAG, "Error updating justification", e);
-                    callback.onFailure("Error updating justification: " + e.getMessage());
-                });
+    private Justification convertDocumentToJustification(DocumentSnapshot document) {
+        try {
+            Justification justification = document.toObject(Justification.class);
+            if (justification != null) {
+                // Assign the Firestore document ID to the Justification object
+                justification.setJustificationId(document.getId());
+            }
+            return justification;
+        } catch (Exception e) {
+            // Document corrompu : ignoré plutôt que de bloquer toute la file
+            Log.e(TAG, "Error deserializing justification document: " + document.getId(), e);
+            return null;
+        }
     }
 
     // Save a new justification (modified to use Justification model with justificationDate)
@@ -1545,8 +2188,12 @@ public class FirebaseManager {
      * Définit également l'ID du document généré sur l'objet Justification.
      */
     public void saveJustification(Justification justification, DataCallback<String> callback) {
+        Map<String, Object> data = justification.toMap();
+        // Horodatage serveur : sert de high-water mark pour la synchronisation delta
+        data.put("lastUpdatedAt", FieldValue.serverTimestamp());
+
         db.collection("justifications")
-                .add(justification.toMap()) // Use toMap() for explicit control
+                .add(data) // Use toMap() for explicit control
                 .addOnSuccessListener(documentReference -> {
                     // IMPORTANT: Set the generated Firestore document ID back to the Justification object
                     justification.setJustificationId(documentReference.getId());
@@ -1576,72 +2223,408 @@ public class FirebaseManager {
 
     // Get all justifications for a specific student (modified to use studentEmail)
     public void getStudentJustifications(String studentEmail, DataCallback<List<Justification>> callback) {
+        getStudentJustifications(studentEmail, Source.DEFAULT, callback);
+    }
+
+    /**
+     * Justifications d'un étudiant depuis une source donnée (Source.SERVER pour la synchronisation complète)
+     */
+    public void getStudentJustifications(String studentEmail, Source source, DataCallback<List<Justification>> callback) {
         db.collection("justifications")
                 .whereEqualTo("studentEmail", studentEmail)
                 .orderBy("submittedAt", Query.Direction.DESCENDING) // Order by latest submitted
-                .get()
+                .get(source)
                 .addOnSuccessListener(queryDocumentSnapshots -> {
                     List<Justification> justifications = new ArrayList<>();
                     for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        justifications.add(document.toObject(Justification.class));
+                        Justification justification = document.toObject(Justification.class);
+                        justification.setJustificationId(document.getId());
+                        justifications.add(justification);
                     }
                     callback.onSuccess(justifications);
                 })
                 .addOnFailureListener(e -> callback.onFailure("Error getting student justifications: " + e.getMessage()));
     }
 
-    // --- New/Modified: Attendance Operations (to be used by admin after justification approval) ---
+    /**
+     * Justifications d'un étudiant modifiées depuis un instant donné (synchronisation delta :
+     * dépôt, passage en revue, acceptation ou refus mettent tous lastUpdatedAt à jour).
+     * Nécessite l'index composite (studentEmail ASC, lastUpdatedAt ASC).
+     */
+    public void getStudentJustificationsModifiedSince(String studentEmail, Timestamp since,
+                                                      DataCallback<List<Justification>> callback) {
+        db.collection(JUSTIFICATIONS_COLLECTION)
+                .whereEqualTo("studentEmail", studentEmail)
+                .whereGreaterThanOrEqualTo("lastUpdatedAt", since)
+                .orderBy("lastUpdatedAt", Query.Direction.ASCENDING)
+                .get(Source.SERVER)
+                .addOnSuccessListener(querySnapshot -> {
+                    List<Justification> changes = new ArrayList<>();
+                    for (DocumentSnapshot document : querySnapshot.getDocuments()) {
+                        Justification justification = convertDocumentToJustification(document);
+                        if (justification != null) {
+                            changes.add(justification);
+                        }
+                    }
+                    Log.d(TAG, "🔄 Delta sync for " + studentEmail + ": " + changes.size() + " changed justifications");
+                    callback.onSuccess(changes);
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Erreur synchronisation delta des justifications", e);
+                    callback.onFailure(e.getMessage());
+                });
+    }
 
-    // This method will be used by an ADMIN to update attendance status
-    // after a justification is approved.
-    public void updateAttendanceStatusForJustifiedAbsence(
-            String studentEmail, String courseId, Date justificationDate, DataCallback<Void> callback) {
+    // =================== REVUE DES JUSTIFICATIONS ===================
 
-        // To handle potential time differences and ensure date-based matching,
-        // we'll query for attendance records within a specific day range.
+    /**
+     * Résultat de la revue d'une justification
+     */
+    public static class JustificationReviewResult {
+        private final Justification justification;
+        private final boolean success;
+        private final int justifiedAbsences;
+        private final String error;
+
+        JustificationReviewResult(Justification justification, boolean success, int justifiedAbsences, String error) {
+            this.justification = justification;
+            this.success = success;
+            this.justifiedAbsences = justifiedAbsences;
+            this.error = error;
+        }
+
+        public Justification getJustification() { return justification; }
+        public boolean isSuccess() { return success; }
+        // Absences passées à "justified" par l'approbation
+        public int getJustifiedAbsences() { return justifiedAbsences; }
+        public String getError() { return error; }
+    }
+
+    /**
+     * Approuver ou rejeter un lot de justifications.
+     *
+     * Pour une approbation, les absences correspondantes (étudiant, cours, jour) passent à
+     * "justified" avec leurs compteurs agrégés, dans la même transaction que la justification :
+     * chaque justification est appliquée entièrement ou pas du tout, après avoir relu son
+     * statut et celui de ses absences. Les absences candidates sont lues avec une seule
+     * requête par étudiant. Seuls les champs de revue sont écrits (update, pas de set complet).
+     *
+     * Le callback reçoit un résultat par justification, dans l'ordre de la liste ;
+     * les objets Justification des revues réussies sont mis à jour localement.
+     *
+     * @param decision "approved" ou "rejected"
+     */
+    public void reviewJustifications(List<Justification> justifications, String decision, String reviewerEmail,
+                                     String comments, String reason,
+                                     DataCallback<List<JustificationReviewResult>> callback) {
+        if (!"approved".equals(decision) && !"rejected".equals(decision)) {
+            callback.onFailure("Invalid review decision: " + decision);
+            return;
+        }
+        if (justifications.isEmpty()) {
+            callback.onSuccess(new ArrayList<>());
+            return;
+        }
+
+        boolean approve = "approved".equals(decision);
+        Task<Map<String, List<DocumentSnapshot>>> absencesTask = approve ?
+                loadAbsencesForJustifications(justifications) : Tasks.forResult(new HashMap<>());
+
+        absencesTask.addOnCompleteListener(task -> {
+            Map<String, List<DocumentSnapshot>> absencesByStudent = task.isSuccessful() ?
+                    task.getResult() : new HashMap<>();
+            commitReviews(justifications, decision, reviewerEmail, comments, reason, absencesByStudent, callback);
+        });
+    }
+
+    /**
+     * Absences sur la période couverte par les justifications, une requête par étudiant
+     * (étudiant absent de la map = lecture échouée)
+     */
+    private Task<Map<String, List<DocumentSnapshot>>> loadAbsencesForJustifications(List<Justification> justifications) {
+        Map<String, Date[]> rangeByStudent = new HashMap<>();
+        for (Justification justification : justifications) {
+            if (justification.getStudentEmail() == null || justification.getJustificationDate() == null) continue;
+
+            Date[] day = dayBounds(justification.getJustificationDate());
+            Date[] range = rangeByStudent.get(justification.getStudentEmail());
+            if (range == null) {
+                rangeByStudent.put(justification.getStudentEmail(), day);
+            } else {
+                if (day[0].before(range[0])) range[0] = day[0];
+                if (day[1].after(range[1])) range[1] = day[1];
+            }
+        }
+
+        Map<String, List<DocumentSnapshot>> absencesByStudent = new HashMap<>();
+        List<Task<QuerySnapshot>> reads = new ArrayList<>(rangeByStudent.size());
+        for (Map.Entry<String, Date[]> entry : rangeByStudent.entrySet()) {
+            String studentEmail = entry.getKey();
+            // Index composite (studentEmail ASC, timestamp DESC) déjà utilisé par l'historique
+            Task<QuerySnapshot> read = db.collection(ATTENDANCE_COLLECTION)
+                    .whereEqualTo("studentEmail", studentEmail)
+                    .whereGreaterThanOrEqualTo("timestamp", entry.getValue()[0])
+                    .whereLessThanOrEqualTo("timestamp", entry.getValue()[1])
+                    .orderBy("timestamp", Query.Direction.DESCENDING)
+                    .get()
+                    .addOnSuccessListener(querySnapshot ->
+                            absencesByStudent.put(studentEmail, querySnapshot.getDocuments()))
+                    .addOnFailureListener(e ->
+                            Log.w(TAG, "Error loading attendance for justification review: " + studentEmail, e));
+            reads.add(read);
+        }
+
+        return Tasks.whenAllComplete(reads).continueWith(task -> absencesByStudent);
+    }
+
+    private void commitReviews(List<Justification> justifications, String decision, String reviewerEmail,
+                               String comments, String reason,
+                               Map<String, List<DocumentSnapshot>> absencesByStudent,
+                               DataCallback<List<JustificationReviewResult>> callback) {
+        boolean approve = "approved".equals(decision);
+        int writesPerAbsence = 1 + AttendanceAggregates.WRITES_PER_STATUS_CHANGE;
+
+        JustificationReviewResult[] results = new JustificationReviewResult[justifications.size()];
+        Task<?>[] reviewOfItem = new Task<?>[justifications.size()];
+        // Une absence couverte par deux justifications du lot n'est basculée qu'une fois
+        Set<String> claimedAbsences = new HashSet<>();
+        List<Task<Integer>> reviews = new ArrayList<>();
+
+        for (int i = 0; i < justifications.size(); i++) {
+            Justification justification = justifications.get(i);
+
+            if (justification.getJustificationId() == null || justification.getJustificationId().isEmpty()) {
+                results[i] = new JustificationReviewResult(justification, false, 0, "Justification ID is missing for update.");
+                continue;
+            }
+
+            List<DocumentSnapshot> absences = new ArrayList<>();
+            if (approve && justification.getJustificationDate() != null) {
+                List<DocumentSnapshot> candidates = absencesByStudent.get(justification.getStudentEmail());
+                if (candidates == null) {
+                    results[i] = new JustificationReviewResult(justification, false, 0,
+                            "Error querying attendance for update.");
+                    continue;
+                }
+                absences = matchingAbsences(justification, candidates, claimedAbsences);
+            }
+
+            if (1 + absences.size() * writesPerAbsence > MAX_BATCH_WRITES) {
+                results[i] = new JustificationReviewResult(justification, false, 0,
+                        "Too many attendance records for a single justification: " + absences.size());
+                continue;
+            }
+            for (DocumentSnapshot absence : absences) {
+                claimedAbsences.add(absence.getId());
+            }
+
+            Task<Integer> review = reviewJustification(justification, decision, reviewerEmail, comments, reason, absences);
+            reviewOfItem[i] = review;
+            reviews.add(review);
+        }
+
+        Tasks.whenAllComplete(reviews).addOnCompleteListener(done -> {
+            int succeeded = 0;
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] != null) continue;
+
+                Justification justification = justifications.get(i);
+                Task<?> review = reviewOfItem[i];
+                if (review.isSuccessful()) {
+                    if (approve) {
+                        justification.approve(reviewerEmail, comments, reason);
+                    } else {
+                        justification.reject(reviewerEmail, comments, reason);
+                    }
+                    results[i] = new JustificationReviewResult(justification, true, (Integer) review.getResult(), null);
+                    succeeded++;
+                } else {
+                    String error = review.getException() != null ? review.getException().getMessage() : "Unknown error";
+                    results[i] = new JustificationReviewResult(justification, false, 0,
+                            "Error updating justification: " + error);
+                }
+            }
+
+            Log.d(TAG, "Justification review (" + decision + "): " + succeeded + "/" + results.length
+                    + " applied in " + reviews.size() + " transaction(s)");
+            callback.onSuccess(Arrays.asList(results));
+        });
+    }
+
+    /**
+     * Revue d'une justification dans une transaction : la justification doit encore être en
+     * attente ("submitted" ou "under_review") et seules les absences encore "absent" au moment
+     * de l'écriture sont justifiées. Deux revues concurrentes (deux administrateurs, une
+     * modification de l'enseignant) ne basculent donc ni ne recomptent rien deux fois.
+     * Retourne le nombre d'absences justifiées.
+     */
+    private Task<Integer> reviewJustification(Justification justification, String decision, String reviewerEmail,
+                                              String comments, String reason, List<DocumentSnapshot> candidates) {
+        DocumentReference justificationRef = db.collection(JUSTIFICATIONS_COLLECTION)
+                .document(justification.getJustificationId());
+
+        return db.runTransaction(transaction -> {
+            // Toutes les lectures avant la première écriture (contrainte des transactions)
+            DocumentSnapshot stored = transaction.get(justificationRef);
+            List<DocumentSnapshot> absences = new ArrayList<>(candidates.size());
+            for (DocumentSnapshot candidate : candidates) {
+                absences.add(transaction.get(candidate.getReference()));
+            }
+
+            String status = stored.getString("status");
+            if (!stored.exists() || !("submitted".equals(status) || "under_review".equals(status))) {
+                throw new FirebaseFirestoreException("Justification already reviewed: " + status,
+                        FirebaseFirestoreException.Code.FAILED_PRECONDITION);
+            }
+
+            Map<String, Object> review = new HashMap<>();
+            review.put("status", decision);
+            review.put("reviewedBy", reviewerEmail);
+            review.put("reviewedAt", FieldValue.serverTimestamp());
+            review.put("reviewComments", comments);
+            review.put("approvalReason", reason);
+            review.put("lastUpdatedAt", FieldValue.serverTimestamp());
+            transaction.update(justificationRef, review);
+
+            AttendanceAggregates.CounterWrites counters = AttendanceAggregates.into(transaction);
+            int justified = 0;
+            for (DocumentSnapshot absence : absences) {
+                // Modifiée depuis la requête (pointage corrigé, supprimée) : laissée telle quelle
+                if (!"absent".equalsIgnoreCase(absence.getString("status"))
+                        || Boolean.TRUE.equals(absence.getBoolean("deleted"))) continue;
+
+                // lastModifiedAt : la bascule sera reprise par la synchronisation delta
+                transaction.update(absence.getReference(),
+                        "status", "justified",
+                        "lastModifiedAt", FieldValue.serverTimestamp());
+
+                // Compteurs : absent -1 / justifié +1 dans la même transaction
+                Timestamp timestamp = absence.getTimestamp("timestamp");
+                AttendanceAggregates.recordStatusChange(db, counters, justification.getStudentEmail(),
+                        justification.getCourseId(), absence.getString("courseName"),
+                        timestamp != null ? timestamp.toDate() : justification.getJustificationDate(),
+                        "absent", "justified");
+                justified++;
+            }
+            return justified;
+        });
+    }
+
+    /**
+     * Absences non supprimées du même cours le jour de la justification
+     */
+    private static List<DocumentSnapshot> matchingAbsences(Justification justification, List<DocumentSnapshot> candidates,
+                                                           Set<String> claimedAbsences) {
+        Date[] day = dayBounds(justification.getJustificationDate());
+        List<DocumentSnapshot> absences = new ArrayList<>();
+
+        for (DocumentSnapshot document : candidates) {
+            Timestamp timestamp = document.getTimestamp("timestamp");
+            if (timestamp == null || timestamp.toDate().before(day[0]) || timestamp.toDate().after(day[1])) continue;
+            // Only update if current status is "absent". If it's already "justified" or "present",
+            // it means it was handled or not an absence.
+            if (!"absent".equalsIgnoreCase(document.getString("status"))) continue;
+            if (Boolean.TRUE.equals(document.getBoolean("deleted"))) continue;
+            if (!Objects.equals(justification.getCourseId(), document.getString("courseId"))) continue;
+            if (claimedAbsences.contains(document.getId())) continue;
+            absences.add(document);
+        }
+        return absences;
+    }
+
+    private static Date[] dayBounds(Date date) {
         Calendar startOfDay = Calendar.getInstance();
-        startOfDay.setTime(justificationDate);
+        startOfDay.setTime(date);
         startOfDay.set(Calendar.HOUR_OF_DAY, 0);
         startOfDay.set(Calendar.MINUTE, 0);
         startOfDay.set(Calendar.SECOND, 0);
         startOfDay.set(Calendar.MILLISECOND, 0);
 
-        Calendar endOfDay = Calendar.getInstance();
-        endOfDay.setTime(justificationDate);
-        endOfDay.set(Calendar.HOUR_OF_DAY, 23);
-        endOfDay.set(Calendar.MINUTE, 59);
-        endOfDay.set(Calendar.SECOND, 59);
-        endOfDay.set(Calendar.MILLISECOND, 999);
+        Calendar endOfDay = (Calendar) startOfDay.clone();
+        endOfDay.add(Calendar.DAY_OF_MONTH, 1);
+        endOfDay.add(Calendar.MILLISECOND, -1);
 
+        return new Date[]{startOfDay.getTime(), endOfDay.getTime()};
+    }
 
-        db.collection("attendance")
-                .whereEqualTo("studentEmail", studentEmail)
-                .whereEqualTo("courseId", courseId)
-                .whereGreaterThanOrEqualTo("timestamp", startOfDay.getTime())
-                .whereLessThanOrEqualTo("timestamp", endOfDay.getTime())
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        callback.onFailure("No attendance record found for this student, course, and date.");
-                        return;
+
+    // =================== STATISTIQUES SYSTÈME ===================
+
+    /**
+     * Statistiques globales du tableau de bord administrateur
+     */
+    public static class SystemStats {
+        private final long studentCount;
+        private final long teacherCount;
+        private final long adminCount;
+        private final long todayPresentCount;
+        private final long todayAbsentCount;
+        private final long computedAt;
+
+        public SystemStats(long studentCount, long teacherCount, long adminCount,
+                           long todayPresentCount, long todayAbsentCount, long computedAt) {
+            this.studentCount = studentCount;
+            this.teacherCount = teacherCount;
+            this.adminCount = adminCount;
+            this.todayPresentCount = todayPresentCount;
+            this.todayAbsentCount = todayAbsentCount;
+            this.computedAt = computedAt;
+        }
+
+        public long getStudentCount() { return studentCount; }
+        public long getTeacherCount() { return teacherCount; }
+        public long getAdminCount() { return adminCount; }
+        public long getTotalUsers() { return studentCount + teacherCount + adminCount; }
+        // Pointages du jour (présences), les absences de fin de session sont comptées à part
+        public long getTodayPresentCount() { return todayPresentCount; }
+        public long getTodayAbsentCount() { return todayAbsentCount; }
+        public long getComputedAt() { return computedAt; }
+    }
+
+    /**
+     * Compter utilisateurs et pointages du jour par requêtes d'agrégation (count/sum) :
+     * le serveur renvoie uniquement les totaux, aucun document n'est téléchargé.
+     *
+     * Présents/absents du jour = sum() des buckets journaliers de attendance_stats, tenus à
+     * jour avec chaque écriture de présence (suppressions et justifications comprises).
+     */
+    public void getSystemStatistics(DataCallback<SystemStats> callback) {
+        String dayKey = AttendanceAggregates.dayKey(new Date());
+        AggregateField todayPresent = AggregateField.sum(FieldPath.of("daily", dayKey, "present"));
+        AggregateField todayAbsent = AggregateField.sum(FieldPath.of("daily", dayKey, "absent"));
+
+        Task<AggregateQuerySnapshot> students = db.collection(STUDENTS_COLLECTION).count().get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> teachers = db.collection(TEACHERS_COLLECTION).count().get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> admins = db.collection(ADMINS_COLLECTION).count().get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> statuses = db.collection(AttendanceAggregates.STATS_COLLECTION)
+                .aggregate(todayPresent, todayAbsent).get(AggregateSource.SERVER);
+
+        // Requêtes lancées en parallèle : le temps total est celui de la plus lente
+        Tasks.whenAllComplete(students, teachers, admins, statuses)
+                .addOnCompleteListener(done -> {
+                    for (Task<AggregateQuerySnapshot> task : Arrays.asList(students, teachers, admins, statuses)) {
+                        if (!task.isSuccessful()) {
+                            Log.e(TAG, "Error counting system statistics", task.getException());
+                            callback.onFailure(task.getException() != null ?
+                                    task.getException().getMessage() : "Erreur de calcul des statistiques");
+                            return;
+                        }
                     }
 
-                    // Batch update to ensure all matching records are updated
-                    // This is crucial if a student had multiple sessions/attendances for the same course on one day
-                    // and was absent from all.
-                    FirebaseFirestore.getInstance().runBatch(batch -> {
-                                for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                                    // Only update if current status is "absent". If it's already "justified" or "present",
-                                    // it means it was handled or not an absence.
-                                    if ("absent".equalsIgnoreCase(document.getString("status"))) {
-                                        batch.update(document.getReference(), "status", "justified");
-                                    }
-                                }
-                            })
-                            .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                            .addOnFailureListener(e -> callback.onFailure("Error updating attendance status in batch: " + e.getMessage()));
-                })
-                .addOnFailureListener(e -> callback.onFailure("Error querying attendance for update: " + e.getMessage()));
+                    AggregateQuerySnapshot statusSums = statuses.getResult();
+                    callback.onSuccess(new SystemStats(
+                            students.getResult().getCount(),
+                            teachers.getResult().getCount(),
+                            admins.getResult().getCount(),
+                            sumOrZero(statusSums, todayPresent),
+                            sumOrZero(statusSums, todayAbsent),
+                            System.currentTimeMillis()));
+                });
+    }
+
+    private static long sumOrZero(AggregateQuerySnapshot snapshot, AggregateField field) {
+        Long value = snapshot.getLong(field);
+        return value != null ? value : 0;
     }
 
 
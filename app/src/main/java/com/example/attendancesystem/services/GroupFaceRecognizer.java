@@ -0,0 +1,257 @@
+package com.example.attendancesystem.services;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.os.SystemClock;
+
+import com.example.attendancesystem.models.Session;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pointage de groupe (amphithéâtre) : tous les visages d'une photo grand angle sont détectés
+ * puis reconnus en parallèle, un FaceEmbedder mono-thread par cœur.
+ *
+ * L'index de la session préparée (FaceRecognitionEngine) est partagé en lecture seule par
+ * les workers. Les résultats de plusieurs photos sont rapprochés de la liste d'appel par
+ * Reconciler avant l'envoi groupé (FaceRecognitionEngine.checkInGroup).
+ *
+ * recognize() est bloquant : à appeler depuis un thread d'arrière-plan.
+ */
+public class GroupFaceRecognizer implements Closeable {
+
+    private static final int MAX_WORKERS = 4;
+    // Visages lointains : 2 % de la largeur de l'image suffisent à la détection
+    private static final float MIN_FACE_SIZE = 0.02f;
+    // Marge autour du cadre détecté, comme sur le terminal (YuvFaceCropper)
+    private static final float BOX_MARGIN = 0.15f;
+
+    /**
+     * Résultat d'une photo : une reconnaissance par visage détecté
+     */
+    public static class FrameResult {
+        private final int faceCount;
+        private final List<FaceRecognitionEngine.Recognition> recognitions;
+        private final long detectionTime;
+        private final long recognitionTime;
+
+        FrameResult(int faceCount, List<FaceRecognitionEngine.Recognition> recognitions,
+                    long detectionTime, long recognitionTime) {
+            this.faceCount = faceCount;
+            this.recognitions = recognitions;
+            this.detectionTime = detectionTime;
+            this.recognitionTime = recognitionTime;
+        }
+
+        public int getFaceCount() { return faceCount; }
+        public List<FaceRecognitionEngine.Recognition> getRecognitions() { return recognitions; }
+        public long getDetectionTime() { return detectionTime; }
+        // Durée totale de la reconnaissance des visages de la photo (tous workers confondus)
+        public long getRecognitionTime() { return recognitionTime; }
+    }
+
+    private final FaceRecognitionEngine engine;
+    private final FaceDetector detector;
+    private final ExecutorService workers;
+    private final BlockingQueue<FaceEmbedder> embedders;
+    private final int workerCount;
+    private final int inputSize;
+
+    public GroupFaceRecognizer(Context context, FaceRecognitionEngine engine) throws IOException {
+        this.engine = engine;
+        this.workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+
+        // Un Interpreter par worker : embed() est synchronisé sur son instance
+        this.embedders = new ArrayBlockingQueue<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            embedders.add(new FaceEmbedder(context, 1));
+        }
+        this.inputSize = embedders.peek().getInputSize();
+        this.workers = Executors.newFixedThreadPool(workerCount);
+
+        this.detector = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .setMinFaceSize(MIN_FACE_SIZE)
+                .build());
+    }
+
+    public int getWorkerCount() { return workerCount; }
+
+    /**
+     * Détecter et reconnaître tous les visages d'une photo redressée
+     */
+    public FrameResult recognize(Bitmap frame) throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        List<Face> faces = Tasks.await(detector.process(InputImage.fromBitmap(frame, 0)));
+        long detected = SystemClock.elapsedRealtime();
+
+        List<Future<FaceRecognitionEngine.Recognition>> pending = new ArrayList<>(faces.size());
+        for (Face face : faces) {
+            Rect box = face.getBoundingBox();
+            pending.add(workers.submit(() -> recognizeFace(frame, box)));
+        }
+
+        // Attendre tous les visages avant de rendre la main : l'appelant peut recycler la photo
+        List<FaceRecognitionEngine.Recognition> recognitions = new ArrayList<>(faces.size());
+        ExecutionException failure = null;
+        for (Future<FaceRecognitionEngine.Recognition> future : pending) {
+            try {
+                FaceRecognitionEngine.Recognition recognition = future.get();
+                if (recognition != null) {
+                    recognitions.add(recognition);
+                }
+            } catch (ExecutionException e) {
+                failure = failure != null ? failure : e;
+            }
+        }
+        if (failure != null) throw failure;
+        long recognized = SystemClock.elapsedRealtime();
+
+        return new FrameResult(faces.size(), recognitions, detected - start, recognized - detected);
+    }
+
+    private FaceRecognitionEngine.Recognition recognizeFace(Bitmap frame, Rect box) throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        Bitmap face = crop(frame, box);
+
+        FaceEmbedder embedder = embedders.take();
+        float[] embedding;
+        try {
+            embedding = embedder.embed(face);
+        } finally {
+            embedders.put(embedder);
+            if (face != frame) {
+                face.recycle();
+            }
+        }
+        return engine.match(embedding, SystemClock.elapsedRealtime() - start);
+    }
+
+    /**
+     * Carré centré sur le visage, avec marge, directement à la taille d'entrée du modèle
+     */
+    private Bitmap crop(Bitmap frame, Rect box) {
+        int side = Math.round(Math.max(box.width(), box.height()) * (1 + 2 * BOX_MARGIN));
+        side = Math.max(1, Math.min(side, Math.min(frame.getWidth(), frame.getHeight())));
+        int left = clamp(box.centerX() - side / 2, 0, frame.getWidth() - side);
+        int top = clamp(box.centerY() - side / 2, 0, frame.getHeight() - side);
+
+        Matrix scale = new Matrix();
+        scale.setScale((float) inputSize / side, (float) inputSize / side);
+        return Bitmap.createBitmap(frame, left, top, side, side, scale, true);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+        detector.close();
+        for (FaceEmbedder embedder : embedders) {
+            embedder.close();
+        }
+    }
+
+    // =================== RAPPROCHEMENT AVEC LA LISTE D'APPEL ===================
+
+    /**
+     * Cumul des photos d'un pointage de groupe. Un étudiant n'est compté qu'une fois (meilleure
+     * confiance sur l'ensemble des photos) ; dans une même photo, deux visages reconnus comme
+     * le même étudiant ne donnent qu'un seul pointage. Seuls les inscrits de la session qui ne
+     * sont pas déjà présents sont retenus.
+     */
+    public static class Reconciler {
+        private final Set<String> enrolled;
+        private final Session session;
+        private final Map<String, FaceRecognitionEngine.Recognition> matches = new LinkedHashMap<>();
+        private final Set<String> alreadyPresent = new HashSet<>();
+        private int frameCount = 0;
+        private int unrecognizedFaces = 0;
+        private int duplicateFaces = 0;
+
+        public Reconciler(Session session) {
+            this.session = session;
+            this.enrolled = new HashSet<>(session.getEnrolledStudentEmails());
+        }
+
+        /**
+         * Ajouter une photo ; retourne le nombre d'étudiants trouvés pour la première fois
+         */
+        public int addFrame(FrameResult frame) {
+            frameCount++;
+            Map<String, FaceRecognitionEngine.Recognition> inFrame = new HashMap<>();
+            int unknown = frame.getFaceCount() - frame.getRecognitions().size();
+
+            for (FaceRecognitionEngine.Recognition recognition : frame.getRecognitions()) {
+                if (!recognition.isMatch()) {
+                    unknown++;
+                    continue;
+                }
+                String email = recognition.getStudent().getEmail();
+                if (!enrolled.contains(email)) {
+                    unknown++;
+                    continue;
+                }
+                FaceRecognitionEngine.Recognition previous = inFrame.get(email);
+                if (previous != null) {
+                    duplicateFaces++;
+                    if (previous.getConfidence() >= recognition.getConfidence()) continue;
+                }
+                inFrame.put(email, recognition);
+            }
+            // Les photos se recouvrent : on garde le pire cas plutôt que la somme
+            unrecognizedFaces = Math.max(unrecognizedFaces, unknown);
+
+            int added = 0;
+            for (FaceRecognitionEngine.Recognition recognition : inFrame.values()) {
+                String email = recognition.getStudent().getEmail();
+                if (session.isStudentPresent(email)) {
+                    alreadyPresent.add(email);
+                    continue;
+                }
+                FaceRecognitionEngine.Recognition best = matches.get(email);
+                if (best == null) {
+                    added++;
+                }
+                if (best == null || recognition.getConfidence() > best.getConfidence()) {
+                    matches.put(email, recognition);
+                }
+            }
+            return added;
+        }
+
+        public List<FaceRecognitionEngine.Recognition> getMatches() { return new ArrayList<>(matches.values()); }
+        public int getMatchCount() { return matches.size(); }
+        public int getAlreadyPresentCount() { return alreadyPresent.size(); }
+        public int getFrameCount() { return frameCount; }
+        // Visages non reconnus dans la photo qui en comptait le plus
+        public int getUnrecognizedFaces() { return unrecognizedFaces; }
+        public int getDuplicateFaces() { return duplicateFaces; }
+    }
+}
@@ -0,0 +1,610 @@
+package com.example.attendancesystem.services;
+
+import com.example.attendancesystem.models.Attendance;
+import com.example.attendancesystem.models.Justification;
+import com.example.attendancesystem.models.Session;
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Copie locale des présences, justifications et sessions des étudiants, indexée en mémoire.
+ *
+ * Les présences sont indexées par identifiant, par étudiant (triées du plus récent au plus
+ * ancien) et par session ; les justifications par identifiant et par étudiant ; les sessions
+ * du tableau de bord (sessions du jour, prochaine session) par identifiant et par étudiant.
+ *
+ * Chaque copie d'étudiant porte, par collection, son high-water mark : le plus grand
+ * horodatage serveur (lastModifiedAt des présences, lastUpdatedAt des justifications) déjà
+ * fusionné. Une copie n'existe qu'après une synchronisation complète ; les synchronisations
+ * delta y fusionnent ensuite modifications, suppressions logiques et bascules de statut.
+ * Données et high-water marks sont exportés ensemble (StoredCopy) pour être écrits dans le
+ * même fichier : une copie relue du disque est toujours cohérente avec son point de reprise.
+ *
+ * Aucune dépendance Android : la persistance est assurée par AttendanceStoreFiles.
+ */
+public class LocalAttendanceStore {
+
+    // Collections suivies (clés des high-water marks)
+    public static final String ATTENDANCE = "attendance";
+    public static final String JUSTIFICATIONS = "justifications";
+
+    // Tri du plus récent au plus ancien, les présences sans timestamp en dernier
+    private static final Comparator<Attendance> NEWEST_FIRST = (a1, a2) -> {
+        if (a1.getTimestamp() == null && a2.getTimestamp() == null) return 0;
+        if (a1.getTimestamp() == null) return 1;
+        if (a2.getTimestamp() == null) return -1;
+        return a2.getTimestamp().compareTo(a1.getTimestamp());
+    };
+
+    // Justifications : dernière déposée en premier
+    private static final Comparator<Justification> LATEST_SUBMITTED_FIRST = (j1, j2) -> {
+        if (j1.getSubmittedAt() == null && j2.getSubmittedAt() == null) return 0;
+        if (j1.getSubmittedAt() == null) return 1;
+        if (j2.getSubmittedAt() == null) return -1;
+        return j2.getSubmittedAt().compareTo(j1.getSubmittedAt());
+    };
+
+    // Index principaux
+    private final Map<String, Attendance> attendanceById = new HashMap<>();
+    private final Map<String, List<Attendance>> attendanceByStudent = new HashMap<>();
+    private final Map<String, Set<String>> attendanceIdsBySession = new HashMap<>();
+    private final Map<String, Justification> justificationsById = new HashMap<>();
+    private final Map<String, List<Justification>> justificationsByStudent = new HashMap<>();
+    private final Map<String, Session> sessionsById = new HashMap<>();
+    private final Map<String, StudentSessions> sessionsByStudent = new HashMap<>();
+
+    // État de synchronisation des copies d'étudiants
+    private final Map<String, CopyState> copies = new HashMap<>();
+
+    private static class CopyState {
+        // Collection -> high-water mark (ms)
+        final Map<String, Long> watermarks = new HashMap<>();
+        long lastFullSyncAt;
+        long lastRefreshAt;
+    }
+
+    /**
+     * Contenu persistant d'une copie d'étudiant : données et high-water marks ensemble
+     */
+    public static class StoredCopy {
+        public Map<String, Long> watermarks = new HashMap<>();
+        public long lastFullSyncAt;
+        public List<Attendance> attendance = new ArrayList<>();
+        public List<Justification> justifications = new ArrayList<>();
+        public StudentSessions sessions;
+    }
+
+    /**
+     * Sessions du tableau de bord d'un étudiant, valables pour un périmètre (département, filière, année)
+     */
+    public static class StudentSessions {
+        public String scope;
+        // Début du jour des sessions du jour (ms), 0 si elles n'ont pas encore été lues
+        public long todayStart;
+        public List<Session> todaySessions = new ArrayList<>();
+        public boolean nextSessionKnown;
+        // null : aucune session à venir
+        public Session nextSession;
+    }
+
+    // =================== COPIES D'ÉTUDIANTS ===================
+
+    /**
+     * Une copie complète de l'étudiant est-elle disponible ?
+     */
+    public synchronized boolean hasCopy(String studentEmail) {
+        return copies.containsKey(studentEmail);
+    }
+
+    /**
+     * High-water mark d'une collection (ms), 0 si rien n'a encore été fusionné
+     */
+    public synchronized long getWatermark(String studentEmail, String collection) {
+        CopyState state = copies.get(studentEmail);
+        Long watermark = state != null ? state.watermarks.get(collection) : null;
+        return watermark != null ? watermark : 0;
+    }
+
+    public synchronized long getLastFullSyncAt(String studentEmail) {
+        CopyState state = copies.get(studentEmail);
+        return state != null ? state.lastFullSyncAt : 0;
+    }
+
+    /**
+     * Dernière synchronisation réussie (complète ou delta) dans ce processus ; 0 pour une copie relue du disque
+     */
+    public synchronized long getLastRefresh(String studentEmail) {
+        CopyState state = copies.get(studentEmail);
+        return state != null ? state.lastRefreshAt : 0;
+    }
+
+    /**
+     * Synchronisation complète : remplacer la copie de l'étudiant.
+     * Les suppressions logiques sont ignorées ; les high-water marks repartent des documents reçus.
+     */
+    public synchronized void replaceCopy(String studentEmail, List<Attendance> attendance,
+                                         List<Justification> justifications, long now) {
+        removeStudent(studentEmail);
+
+        CopyState state = new CopyState();
+        state.lastFullSyncAt = now;
+        state.lastRefreshAt = now;
+        copies.put(studentEmail, state);
+
+        for (Attendance record : attendance) {
+            advance(state, ATTENDANCE, record.getLastModifiedAt());
+            if (!record.isDeleted()) {
+                index(record);
+            }
+        }
+        for (Justification justification : justifications) {
+            advance(state, JUSTIFICATIONS, justification.getLastUpdatedAt());
+            indexJustification(justification);
+        }
+    }
+
+    /**
+     * Synchronisation delta : fusionner les documents modifiés depuis les high-water marks.
+     * Une présence supprimée logiquement est retirée, les autres documents sont ajoutés ou
+     * remplacés (bascule absent -> justifié comprise). Un document déjà fusionné dans la même
+     * version (chevauchement de la fenêtre delta) est ignoré.
+     * Retourne true si la copie a changé. Sans copie complète, rien n'est fusionné.
+     */
+    public synchronized boolean applyChanges(String studentEmail, List<Attendance> attendanceChanges,
+                                             List<Justification> justificationChanges, long now) {
+        CopyState state = copies.get(studentEmail);
+        if (state == null) return false;
+
+        boolean changed = false;
+        for (Attendance record : attendanceChanges) {
+            advance(state, ATTENDANCE, record.getLastModifiedAt());
+            changed |= mergeAttendance(record);
+        }
+        for (Justification justification : justificationChanges) {
+            advance(state, JUSTIFICATIONS, justification.getLastUpdatedAt());
+            changed |= mergeJustification(justification);
+        }
+        state.lastRefreshAt = now;
+        return changed;
+    }
+
+    /**
+     * Présence écrite par l'application : visible tout de suite, sans attendre la
+     * synchronisation (qui la remplacera par la version serveur). Ignorée sans copie complète.
+     */
+    public synchronized boolean putLocalAttendance(Attendance attendance) {
+        if (attendance == null || !copies.containsKey(attendance.getStudentEmail())) return false;
+        return mergeAttendance(attendance);
+    }
+
+    /**
+     * Justification déposée par l'application (même principe que putLocalAttendance)
+     */
+    public synchronized boolean putLocalJustification(Justification justification) {
+        if (justification == null || !copies.containsKey(justification.getStudentEmail())) return false;
+        return mergeJustification(justification);
+    }
+
+    /**
+     * Recharger une copie persistée (données et high-water marks)
+     */
+    public synchronized void importCopy(String studentEmail, StoredCopy copy) {
+        removeStudent(studentEmail);
+
+        CopyState state = new CopyState();
+        if (copy.watermarks != null) {
+            state.watermarks.putAll(copy.watermarks);
+        }
+        state.lastFullSyncAt = copy.lastFullSyncAt;
+        copies.put(studentEmail, state);
+
+        if (copy.attendance != null) {
+            for (Attendance record : copy.attendance) {
+                if (!record.isDeleted()) index(record);
+            }
+        }
+        if (copy.justifications != null) {
+            for (Justification justification : copy.justifications) {
+                indexJustification(justification);
+            }
+        }
+        // Sessions déjà relues du réseau pendant ce processus : plus récentes que le fichier
+        if (copy.sessions != null && !sessionsByStudent.containsKey(studentEmail)) {
+            putStudentSessions(studentEmail, copy.sessions);
+        }
+    }
+
+    /**
+     * Instantané persistant de la copie d'un étudiant, null sans copie complète
+     */
+    public synchronized StoredCopy exportCopy(String studentEmail) {
+        CopyState state = copies.get(studentEmail);
+        if (state == null) return null;
+
+        StoredCopy copy = new StoredCopy();
+        copy.watermarks.putAll(state.watermarks);
+        copy.lastFullSyncAt = state.lastFullSyncAt;
+        copy.attendance = getStudentAttendance(studentEmail);
+        copy.justifications = getStudentJustifications(studentEmail);
+        copy.sessions = sessionsByStudent.get(studentEmail);
+        return copy;
+    }
+
+    private static void advance(CopyState state, String collection, Timestamp marker) {
+        if (marker == null) return;
+        long millis = marker.toDate().getTime();
+        Long current = state.watermarks.get(collection);
+        if (current == null || millis > current) {
+            state.watermarks.put(collection, millis);
+        }
+    }
+
+    // =================== PRÉSENCES ===================
+
+    private boolean mergeAttendance(Attendance attendance) {
+        if (attendance.getAttendanceId() == null) return false;
+
+        Attendance previous = attendanceById.get(attendance.getAttendanceId());
+        if (attendance.isDeleted()) {
+            if (previous == null) return false;
+            unindex(previous);
+            return true;
+        }
+        if (previous != null && sameVersion(previous, attendance)) return false;
+
+        if (previous != null) unindex(previous);
+        index(attendance);
+        return true;
+    }
+
+    private static boolean sameVersion(Attendance a, Attendance b) {
+        return a.getLastModifiedAt() != null
+                && a.getLastModifiedAt().equals(b.getLastModifiedAt())
+                && Objects.equals(a.getStatus(), b.getStatus());
+    }
+
+    private void index(Attendance attendance) {
+        if (attendance.getAttendanceId() == null) return;
+
+        attendanceById.put(attendance.getAttendanceId(), attendance);
+
+        if (attendance.getStudentEmail() != null) {
+            List<Attendance> list = attendanceByStudent.get(attendance.getStudentEmail());
+            if (list == null) {
+                list = new ArrayList<>();
+                attendanceByStudent.put(attendance.getStudentEmail(), list);
+            }
+            // Insertion triée : la liste reste ordonnée sans re-tri complet
+            int index = Collections.binarySearch(list, attendance, NEWEST_FIRST);
+            list.add(index < 0 ? -index - 1 : index, attendance);
+        }
+
+        if (attendance.getSessionId() != null) {
+            Set<String> ids = attendanceIdsBySession.get(attendance.getSessionId());
+            if (ids == null) {
+                ids = new HashSet<>();
+                attendanceIdsBySession.put(attendance.getSessionId(), ids);
+            }
+            ids.add(attendance.getAttendanceId());
+        }
+    }
+
+    private void unindex(Attendance attendance) {
+        attendanceById.remove(attendance.getAttendanceId());
+
+        List<Attendance> list = attendanceByStudent.get(attendance.getStudentEmail());
+        if (list != null) {
+            list.remove(attendance);
+        }
+
+        Set<String> ids = attendanceIdsBySession.get(attendance.getSessionId());
+        if (ids != null) {
+            ids.remove(attendance.getAttendanceId());
+        }
+    }
+
+    public synchronized Attendance getAttendance(String attendanceId) {
+        return attendanceById.get(attendanceId);
+    }
+
+    /**
+     * Historique d'un étudiant, déjà trié du plus récent au plus ancien (copie)
+     */
+    public synchronized List<Attendance> getStudentAttendance(String studentEmail) {
+        List<Attendance> list = attendanceByStudent.get(studentEmail);
+        return list != null ? new ArrayList<>(list) : new ArrayList<>();
+    }
+
+    public synchronized List<Attendance> getSessionAttendance(String sessionId) {
+        List<Attendance> result = new ArrayList<>();
+        Set<String> ids = attendanceIdsBySession.get(sessionId);
+        if (ids != null) {
+            for (String id : ids) {
+                result.add(attendanceById.get(id));
+            }
+        }
+        return result;
+    }
+
+    // =================== JUSTIFICATIONS ===================
+
+    private boolean mergeJustification(Justification justification) {
+        if (justification.getJustificationId() == null) return false;
+
+        Justification previous = justificationsById.get(justification.getJustificationId());
+        if (previous != null && previous.getLastUpdatedAt() != null
+                && previous.getLastUpdatedAt().equals(justification.getLastUpdatedAt())
+                && Objects.equals(previous.getStatus(), justification.getStatus())) {
+            return false;
+        }
+
+        if (previous != null) unindexJustification(previous);
+        indexJustification(justification);
+        return true;
+    }
+
+    private void indexJustification(Justification justification) {
+        if (justification.getJustificationId() == null || justification.getStudentEmail() == null) return;
+
+        justificationsById.put(justification.getJustificationId(), justification);
+
+        List<Justification> list = justificationsByStudent.get(justification.getStudentEmail());
+        if (list == null) {
+            list = new ArrayList<>();
+            justificationsByStudent.put(justification.getStudentEmail(), list);
+        }
+        int index = Collections.binarySearch(list, justification, LATEST_SUBMITTED_FIRST);
+        list.add(index < 0 ? -index - 1 : index, justification);
+    }
+
+    private void unindexJustification(Justification justification) {
+        justificationsById.remove(justification.getJustificationId());
+
+        List<Justification> list = justificationsByStudent.get(justification.getStudentEmail());
+        if (list != null) {
+            list.remove(justification);
+        }
+    }
+
+    /**
+     * Justifications d'un étudiant, dernière déposée en premier (copie)
+     */
+    public synchronized List<Justification> getStudentJustifications(String studentEmail) {
+        List<Justification> list = justificationsByStudent.get(studentEmail);
+        return list != null ? new ArrayList<>(list) : new ArrayList<>();
+    }
+
+    public synchronized Justification getJustification(String justificationId) {
+        return justificationsById.get(justificationId);
+    }
+
+    // =================== STATISTIQUES ===================
+
+    /**
+     * Statistiques d'un étudiant depuis le jour de sinceMillis, calculées sur la copie locale.
+     * Mêmes règles que les compteurs agrégés : jour de la présence (présence sans timestamp
+     * comptée aujourd'hui), statuts present / absent / justified uniquement.
+     */
+    public synchronized FirebaseManager.AttendanceStatsDetailed computeStatistics(String studentEmail, long sinceMillis) {
+        int[] counters = new int[4];
+        long windowStart = startOfDay(sinceMillis);
+
+        List<Attendance> list = attendanceByStudent.get(studentEmail);
+        if (list != null) {
+            for (Attendance attendance : list) {
+                if (inWindow(attendance, windowStart)) {
+                    count(counters, attendance.getStatus());
+                }
+            }
+        }
+        return new FirebaseManager.AttendanceStatsDetailed(counters[0], counters[1], counters[2], counters[3]);
+    }
+
+    /**
+     * Statistiques par cours (clé = nom du cours, cumulé entre identifiants de même nom)
+     * depuis le jour de sinceMillis
+     */
+    public synchronized Map<String, FirebaseManager.AttendanceStatsDetailed> computeStatisticsByCourse(
+            String studentEmail, long sinceMillis) {
+        Map<String, int[]> counters = new HashMap<>();
+        long windowStart = startOfDay(sinceMillis);
+
+        List<Attendance> list = attendanceByStudent.get(studentEmail);
+        if (list != null) {
+            for (Attendance attendance : list) {
+                if (attendance.getCourseName() == null || !inWindow(attendance, windowStart)) continue;
+
+                int[] c = counters.get(attendance.getCourseName());
+                if (c == null) {
+                    c = new int[4];
+                    counters.put(attendance.getCourseName(), c);
+                }
+                count(c, attendance.getStatus());
+            }
+        }
+
+        Map<String, FirebaseManager.AttendanceStatsDetailed> result = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : counters.entrySet()) {
+            int[] c = entry.getValue();
+            if (c[0] > 0) {
+                result.put(entry.getKey(), new FirebaseManager.AttendanceStatsDetailed(c[0], c[1], c[2], c[3]));
+            }
+        }
+        return result;
+    }
+
+    private static boolean inWindow(Attendance attendance, long windowStart) {
+        return attendance.getTimestamp() == null || attendance.getTimestamp().toDate().getTime() >= windowStart;
+    }
+
+    // total, present, absent, justified
+    private static void count(int[] counters, String status) {
+        if (status == null) return;
+        switch (status.toLowerCase()) {
+            case "present": counters[1]++; break;
+            case "absent": counters[2]++; break;
+            case "justified": counters[3]++; break;
+            default: return;
+        }
+        counters[0]++;
+    }
+
+    private static long startOfDay(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    // =================== SESSIONS ===================
+
+    /**
+     * Sessions du jour connues pour ce périmètre et ce jour, null sinon
+     */
+    public synchronized List<Session> getTodaySessions(String studentEmail, String scope, long todayStart) {
+        StudentSessions sessions = sessionsByStudent.get(studentEmail);
+        if (sessions == null || !scope.equals(sessions.scope) || sessions.todayStart != todayStart) return null;
+        return new ArrayList<>(sessions.todaySessions);
+    }
+
+    /**
+     * Mémoriser les sessions du jour lues du réseau ; retourne true si elles ont changé
+     */
+    public synchronized boolean putTodaySessions(String studentEmail, String scope, long todayStart, List<Session> today) {
+        StudentSessions sessions = sessionsFor(studentEmail, scope);
+        boolean changed = sessions.todayStart != todayStart || !sameSessions(sessions.todaySessions, today);
+        sessions.todayStart = todayStart;
+        sessions.todaySessions = new ArrayList<>(today);
+        indexSessions(today);
+        return changed;
+    }
+
+    /**
+     * Prochaine session connue pour ce périmètre et pas encore commencée
+     */
+    public synchronized boolean hasNextSession(String studentEmail, String scope, long now) {
+        StudentSessions sessions = sessionsByStudent.get(studentEmail);
+        if (sessions == null || !scope.equals(sessions.scope) || !sessions.nextSessionKnown) return false;
+        Session next = sessions.nextSession;
+        return next == null || next.getStartTime() == null || next.getStartTime().toDate().getTime() >= now;
+    }
+
+    public synchronized Session getNextSession(String studentEmail) {
+        StudentSessions sessions = sessionsByStudent.get(studentEmail);
+        return sessions != null ? sessions.nextSession : null;
+    }
+
+    /**
+     * Mémoriser la prochaine session (null : aucune) ; retourne true si elle a changé
+     */
+    public synchronized boolean putNextSession(String studentEmail, String scope, Session next) {
+        StudentSessions sessions = sessionsFor(studentEmail, scope);
+        boolean changed = !sessions.nextSessionKnown
+                || (next == null ? sessions.nextSession != null : !sameSession(sessions.nextSession, next));
+        sessions.nextSessionKnown = true;
+        sessions.nextSession = next;
+        if (next != null) {
+            indexSessions(Collections.singletonList(next));
+        }
+        return changed;
+    }
+
+    public synchronized Session getSession(String sessionId) {
+        return sessionsById.get(sessionId);
+    }
+
+    private StudentSessions sessionsFor(String studentEmail, String scope) {
+        StudentSessions sessions = sessionsByStudent.get(studentEmail);
+        if (sessions == null || !scope.equals(sessions.scope)) {
+            // Nouveau périmètre : les sessions de l'ancien ne sont plus valables
+            sessions = new StudentSessions();
+            sessions.scope = scope;
+            sessionsByStudent.put(studentEmail, sessions);
+        }
+        return sessions;
+    }
+
+    private void putStudentSessions(String studentEmail, StudentSessions sessions) {
+        if (sessions.scope == null) return;
+        if (sessions.todaySessions == null) {
+            sessions.todaySessions = new ArrayList<>();
+        }
+        sessionsByStudent.put(studentEmail, sessions);
+        indexSessions(sessions.todaySessions);
+        if (sessions.nextSession != null) {
+            indexSessions(Collections.singletonList(sessions.nextSession));
+        }
+    }
+
+    private void indexSessions(List<Session> sessions) {
+        for (Session session : sessions) {
+            if (session != null && session.getSessionId() != null) {
+                sessionsById.put(session.getSessionId(), session);
+            }
+        }
+    }
+
+    private static boolean sameSessions(List<Session> a, List<Session> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!sameSession(a.get(i), b.get(i))) return false;
+        }
+        return true;
+    }
+
+    // Champs affichés par le tableau de bord
+    private static boolean sameSession(Session a, Session b) {
+        if (a == null || b == null) return a == b;
+        return Objects.equals(a.getSessionId(), b.getSessionId())
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getStartTime(), b.getStartTime())
+                && Objects.equals(a.getEndTime(), b.getEndTime())
+                && Objects.equals(a.getRoom(), b.getRoom())
+                && Objects.equals(a.getLastUpdatedAt(), b.getLastUpdatedAt());
+    }
+
+    // =================== NETTOYAGE ===================
+
+    private void removeStudent(String studentEmail) {
+        List<Attendance> previous = attendanceByStudent.remove(studentEmail);
+        if (previous != null) {
+            for (Attendance attendance : previous) {
+                unindex(attendance);
+            }
+        }
+        List<Justification> previousJustifications = justificationsByStudent.remove(studentEmail);
+        if (previousJustifications != null) {
+            for (Justification justification : previousJustifications) {
+                justificationsById.remove(justification.getJustificationId());
+            }
+        }
+        copies.remove(studentEmail);
+    }
+
+    /**
+     * Vider la copie locale (déconnexion)
+     */
+    public synchronized void clear() {
+        attendanceById.clear();
+        attendanceByStudent.clear();
+        attendanceIdsBySession.clear();
+        justificationsById.clear();
+        justificationsByStudent.clear();
+        sessionsById.clear();
+        sessionsByStudent.clear();
+        copies.clear();
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.attendancesystem.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.security.crypto.EncryptedSharedPreferences;
+import androidx.security.crypto.MasterKeys;
+
+import com.example.attendancesystem.models.Admin;
+import com.example.attendancesystem.models.Student;
+import com.example.attendancesystem.models.Teacher;
+import com.google.gson.Gson;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache local des profils et des rôles utilisateurs.
+ *
+ * Un premier niveau en mémoire sert les appels répétés de getXByEmail ; un second
+ * niveau chiffré (EncryptedSharedPreferences) survit au redémarrage de l'application,
+ * ce qui permet à la connexion de résoudre le rôle sans lecture Firestore.
+ * Le rôle, qui ne change pas après l'inscription, reste valide ROLE_TTL_MS ; le profil,
+ * modifiable depuis un autre terminal, n'est servi que pendant PROFILE_TTL_MS puis relu.
+ * Le cache est vidé à la déconnexion.
+ */
+public class ProfileCache {
+    private static final String TAG = "ProfileCache";
+
+    private static final String PREFS_NAME = "profile_cache";
+    private static final String KEY_PREFIX = "profile_";
+
+    // Durée de validité d'un rôle (résolution du rôle à la connexion)
+    private static final long ROLE_TTL_MS = 12 * 60 * 60 * 1000;
+    // Durée de validité d'un profil : bornée car il peut être modifié depuis un autre terminal
+    private static final long PROFILE_TTL_MS = 60 * 60 * 1000;
+
+    public static final String ROLE_STUDENT = "student";
+    public static final String ROLE_TEACHER = "teacher";
+    public static final String ROLE_ADMIN = "admin";
+
+    private final Context context;
+    private final Gson gson = new Gson();
+    private final Map<String, Entry> memory = new HashMap<>();
+    // Créé à la première utilisation : l'initialisation de la clé maître est coûteuse
+    private SharedPreferences securePrefs;
+
+    // Singleton pattern
+    private static ProfileCache instance;
+
+    private static class Entry {
+        final String role;
+        final Object profile; // null si seul le rôle est connu
+        final long cachedAt;
+
+        Entry(String role, Object profile, long cachedAt) {
+            this.role = role;
+            this.profile = profile;
+            this.cachedAt = cachedAt;
+        }
+
+        boolean isRoleFresh() {
+            return System.currentTimeMillis() - cachedAt < ROLE_TTL_MS;
+        }
+
+        // Profil périmé : on ne garde que le rôle
+        Object freshProfile() {
+            return System.currentTimeMillis() - cachedAt < PROFILE_TTL_MS ? profile : null;
+        }
+    }
+
+    private ProfileCache(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Initialiser le cache persistant (appelé par AttendanceApplication)
+     */
+    public static synchronized void init(Context context) {
+        if (instance == null || instance.context == null) {
+            instance = new ProfileCache(context.getApplicationContext());
+        }
+    }
+
+    /**
+     * Sans init(), le cache reste en mémoire uniquement
+     */
+    public static synchronized ProfileCache getInstance() {
+        if (instance == null) {
+            instance = new ProfileCache(null);
+        }
+        return instance;
+    }
+
+    // =================== LECTURE ===================
+
+    /**
+     * Profil en cache s'il est encore valide et du type demandé, sinon null
+     */
+    public synchronized <T> T getProfile(String email, Class<T> type) {
+        Entry entry = getEntry(email);
+        Object profile = entry != null ? entry.freshProfile() : null;
+        if (type.isInstance(profile)) {
+            return type.cast(profile);
+        }
+        return null;
+    }
+
+    /**
+     * Profil en cache quel que soit le rôle (Student, Teacher ou Admin), sinon null
+     */
+    public synchronized Object getProfile(String email) {
+        Entry entry = getEntry(email);
+        return entry != null ? entry.freshProfile() : null;
+    }
+
+    public synchronized String getRole(String email) {
+        Entry entry = getEntry(email);
+        return entry != null ? entry.role : null;
+    }
+
+    private Entry getEntry(String email) {
+        if (email == null) return null;
+
+        Entry entry = memory.get(email);
+        if (entry == null) {
+            entry = readPersisted(email);
+            if (entry != null) {
+                memory.put(email, entry);
+            }
+        }
+        if (entry != null && !entry.isRoleFresh()) {
+            invalidate(email);
+            return null;
+        }
+        return entry;
+    }
+
+    // =================== ÉCRITURE ===================
+
+    public synchronized void putProfile(String email, String role, Object profile) {
+        if (email == null || role == null) return;
+        Entry entry = new Entry(role, profile, System.currentTimeMillis());
+        memory.put(email, entry);
+        persist(email, entry);
+    }
+
+    /**
+     * Mémoriser le rôle seul (profil conservé s'il est déjà en cache pour ce rôle)
+     */
+    public synchronized void putRole(String email, String role) {
+        if (email == null || role == null) return;
+        Entry current = memory.get(email);
+        Object profile = current != null && role.equals(current.role) ? current.freshProfile() : null;
+        putProfile(email, role, profile);
+    }
+
+    public synchronized void invalidate(String email) {
+        memory.remove(email);
+        SharedPreferences prefs = getSecurePrefs();
+        if (prefs != null) {
+            prefs.edit().remove(KEY_PREFIX + email).apply();
+        }
+    }
+
+    /**
+     * Vider le cache (déconnexion)
+     */
+    public synchronized void clear() {
+        memory.clear();
+        SharedPreferences prefs = getSecurePrefs();
+        if (prefs != null) {
+            prefs.edit().clear().apply();
+        }
+    }
+
+    // =================== PERSISTANCE CHIFFRÉE ===================
+
+    private void persist(String email, Entry entry) {
+        SharedPreferences prefs = getSecurePrefs();
+        if (prefs == null) return;
+
+        try {
+            JSONObject json = new JSONObject();
+            json.put("role", entry.role);
+            json.put("cachedAt", entry.cachedAt);
+            if (entry.profile != null) {
+                json.put("profile", gson.toJson(entry.profile));
+            }
+            prefs.edit().putString(KEY_PREFIX + email, json.toString()).apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Error serializing profile for " + email, e);
+        }
+    }
+
+    private Entry readPersisted(String email) {
+        SharedPreferences prefs = getSecurePrefs();
+        if (prefs == null) return null;
+
+        String value = prefs.getString(KEY_PREFIX + email, null);
+        if (value == null) return null;
+
+        try {
+            JSONObject json = new JSONObject(value);
+            String role = json.getString("role");
+            Object profile = null;
+            if (json.has("profile")) {
+                profile = gson.fromJson(json.getString("profile"), profileClass(role));
+            }
+            return new Entry(role, profile, json.getLong("cachedAt"));
+        } catch (Exception e) {
+            // Entrée illisible (ancien format, modèle modifié) : on l'oublie
+            Log.w(TAG, "Dropping unreadable cached profile for " + email, e);
+            prefs.edit().remove(KEY_PREFIX + email).apply();
+            return null;
+        }
+    }
+
+    private SharedPreferences getSecurePrefs() {
+        if (securePrefs == null && context != null) {
+            try {
+                String masterKeyAlias = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC);
+                securePrefs = EncryptedSharedPreferences.create(
+                        PREFS_NAME,
+                        masterKeyAlias,
+                        context,
+                        EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+                        EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM);
+            } catch (GeneralSecurityException | IOException e) {
+                // Keystore indisponible : on reste sur le cache mémoire
+                Log.e(TAG, "Encrypted profile cache unavailable", e);
+            }
+        }
+        return securePrefs;
+    }
+
+    private static Class<?> profileClass(String role) {
+        switch (role) {
+            case ROLE_STUDENT: return Student.class;
+            case ROLE_TEACHER: return Teacher.class;
+            case ROLE_ADMIN: return Admin.class;
+            default: throw new IllegalArgumentException("Unknown role: " + role);
+        }
+    }
+}
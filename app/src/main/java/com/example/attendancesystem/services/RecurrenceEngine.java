@@ -0,0 +1,179 @@
+package com.example.attendancesystem.services;
+
+import com.example.attendancesystem.models.Course;
+import com.example.attendancesystem.models.Session;
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Moteur de récurrence de l'emploi du temps.
+ *
+ * Les cours récurrents (Course.Schedule) sont développés localement en occurrences
+ * de Session pour n'importe quelle période. Les documents "sessions" de Firestore ne
+ * servent plus que d'exceptions : une session matérialisée pour le même cours et le
+ * même jour (annulation, changement de salle, session démarrée par l'enseignant)
+ * remplace l'occurrence calculée ; une session sans cours récurrent correspondant
+ * (cours ponctuel) est conservée telle quelle.
+ *
+ * Seuls les cours actifs sont développés, et jamais avant le jour de leur création.
+ * Les occurrences calculées n'ont pas de document (createdAt null, statut "scheduled") ;
+ * leur identifiant cours + jour ne sert qu'à l'affichage.
+ */
+public final class RecurrenceEngine {
+
+    // Statut d'une occurrence calculée qui n'a encore aucun document Firestore
+    public static final String STATUS_SCHEDULED = "scheduled";
+
+    private RecurrenceEngine() {}
+
+    /**
+     * Développer les cours sur [start, end[ et fusionner les exceptions matérialisées.
+     * Le résultat est trié par heure de début.
+     */
+    public static List<Session> expand(List<Course> courses, List<Session> materialized, Date start, Date end) {
+        // Exceptions indexées par (cours, jour)
+        Map<String, Session> exceptions = new HashMap<>();
+        List<Session> result = new ArrayList<>();
+        if (materialized != null) {
+            for (Session session : materialized) {
+                if (session.getStartTime() == null) continue;
+                if (session.getCourseId() != null) {
+                    exceptions.put(occurrenceKey(session.getCourseId(), session.getStartTime().toDate()), session);
+                }
+                // Les exceptions sont toujours affichées, qu'elles correspondent ou non à un cours récurrent
+                result.add(session);
+            }
+        }
+
+        if (courses != null) {
+            for (Course course : courses) {
+                Course.Schedule schedule = course.getCourseScheduleEntry();
+                if (!course.isActive() || schedule == null || !schedule.isRecurring()) continue;
+
+                int dayOfWeek = toCalendarDay(schedule.getDayOfWeek());
+                int[] startClock = parseClock(schedule.getStartTime());
+                int[] endClock = parseClock(schedule.getEndTime());
+                if (dayOfWeek < 0 || startClock == null || endClock == null) continue;
+
+                // Pas d'occurrence avant la création du cours
+                Date from = start;
+                if (course.getCreatedAt() != null && course.getCreatedAt().toDate().after(start)) {
+                    from = course.getCreatedAt().toDate();
+                }
+
+                Calendar day = firstOccurrence(from, dayOfWeek);
+                while (day.getTimeInMillis() < end.getTime()) {
+                    Date occurrenceStart = atClock(day, startClock);
+                    if (occurrenceStart.getTime() >= start.getTime()
+                            && !occurrenceStart.before(startOfDay(from))
+                            && !exceptions.containsKey(occurrenceKey(course.getCourseId(), occurrenceStart))) {
+                        result.add(buildOccurrence(course, schedule, occurrenceStart, atClock(day, endClock)));
+                    }
+                    day.add(Calendar.DAY_OF_MONTH, 7);
+                }
+            }
+        }
+
+        result.sort((s1, s2) -> s1.getStartTime().compareTo(s2.getStartTime()));
+        return result;
+    }
+
+    // =================== CONSTRUCTION ===================
+
+    private static Session buildOccurrence(Course course, Course.Schedule schedule, Date start, Date end) {
+        Session session = new Session();
+        session.setSessionId(occurrenceKey(course.getCourseId(), start));
+        session.setCourseId(course.getCourseId());
+        session.setCourseName(course.getCourseName());
+        session.setTeacherEmail(course.getTeacherEmail());
+        session.setTeacherName(course.getTeacherName());
+        session.setStartTime(new Timestamp(start));
+        session.setEndTime(new Timestamp(end));
+        session.setRoom(schedule.getRoom());
+        session.setDepartment(course.getDepartment());
+        session.setField(course.getField());
+        session.setTargetYears(course.getTargetYears());
+        session.setDayOfWeek(schedule.getDayOfWeek());
+        session.setTimeSlot(schedule.getStartTime() + "-" + schedule.getEndTime());
+        session.setStatus(STATUS_SCHEDULED);
+        session.setRecurring(true);
+        // createdAt reste null : l'occurrence n'existe pas dans Firestore
+        session.setCreatedAt(null);
+        session.setLastUpdatedAt(null);
+        return session;
+    }
+
+    // =================== CALENDRIER ===================
+
+    private static String occurrenceKey(String courseId, Date day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(day);
+        return String.format(Locale.US, "%s_%04d%02d%02d", courseId,
+                calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    private static Date startOfDay(Date date) {
+        Calendar day = Calendar.getInstance();
+        day.setTime(date);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        return day.getTime();
+    }
+
+    private static Calendar firstOccurrence(Date start, int dayOfWeek) {
+        Calendar day = Calendar.getInstance();
+        day.setTime(startOfDay(start));
+        int offset = (dayOfWeek - day.get(Calendar.DAY_OF_WEEK) + 7) % 7;
+        day.add(Calendar.DAY_OF_MONTH, offset);
+        return day;
+    }
+
+    private static Date atClock(Calendar day, int[] clock) {
+        Calendar calendar = (Calendar) day.clone();
+        calendar.set(Calendar.HOUR_OF_DAY, clock[0]);
+        calendar.set(Calendar.MINUTE, clock[1]);
+        return calendar.getTime();
+    }
+
+    /**
+     * "08:00" -> {8, 0}, null si le format est invalide
+     */
+    private static int[] parseClock(String clock) {
+        if (clock == null) return null;
+        String[] parts = clock.trim().split(":");
+        if (parts.length != 2) return null;
+        try {
+            int hours = Integer.parseInt(parts[0]);
+            int minutes = Integer.parseInt(parts[1]);
+            if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) return null;
+            return new int[]{hours, minutes};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int toCalendarDay(String dayOfWeek) {
+        if (dayOfWeek == null) return -1;
+        switch (dayOfWeek.toLowerCase(Locale.ROOT)) {
+            case "monday": return Calendar.MONDAY;
+            case "tuesday": return Calendar.TUESDAY;
+            case "wednesday": return Calendar.WEDNESDAY;
+            case "thursday": return Calendar.THURSDAY;
+            case "friday": return Calendar.FRIDAY;
+            case "saturday": return Calendar.SATURDAY;
+            case "sunday": return Calendar.SUNDAY;
+            default: return -1;
+        }
+    }
+}
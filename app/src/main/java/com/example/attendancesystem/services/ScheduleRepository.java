@@ -0,0 +1,274 @@
+package com.example.attendancesystem.services;
+
+import android.util.Log;
+
+import com.example.attendancesystem.models.Course;
+import com.example.attendancesystem.models.Session;
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emploi du temps d'une filière, chargé par mois.
+ *
+ * Les cours récurrents de la filière viennent de CourseCatalog et sont développés
+ * localement par RecurrenceEngine ; pour chaque mois, seules les sessions matérialisées
+ * (exceptions : annulations, changements de salle, sessions démarrées) sont lues.
+ * Le résultat est mis en cache par (département, filière, année, mois) ; les vues
+ * jour / semaine / mois sont des tranches calculées en mémoire. Les requêtes
+ * simultanées sur le même mois sont regroupées et les mois voisins peuvent être préchargés.
+ */
+public class ScheduleRepository {
+    private static final String TAG = "ScheduleRepository";
+
+    // Durée de validité d'un mois en cache
+    private static final long CACHE_TTL_MS = 10 * 60 * 1000;
+    // Nombre de mois conservés (mois courant + voisins + navigation récente)
+    private static final int MAX_CACHED_MONTHS = 6;
+
+    private final FirebaseManager firebaseManager;
+    private final CourseCatalog courseCatalog;
+
+    // Mois en cache (ordre d'accès, le plus ancien est évincé)
+    private final Map<String, MonthEntry> monthCache = new LinkedHashMap<String, MonthEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MonthEntry> eldest) {
+            return size() > MAX_CACHED_MONTHS;
+        }
+    };
+    // Requêtes en cours par mois, avec les callbacks en attente
+    private final Map<String, List<FirebaseManager.DataCallback<List<Session>>>> pendingLoads = new HashMap<>();
+
+    // Singleton pattern
+    private static ScheduleRepository instance;
+
+    private static class MonthEntry {
+        final List<Session> sessions;
+        final long loadedAt;
+
+        MonthEntry(List<Session> sessions) {
+            this.sessions = sessions;
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() - loadedAt < CACHE_TTL_MS;
+        }
+    }
+
+    private ScheduleRepository() {
+        this.firebaseManager = FirebaseManager.getInstance();
+        this.courseCatalog = CourseCatalog.getInstance();
+    }
+
+    public static synchronized ScheduleRepository getInstance() {
+        if (instance == null) {
+            instance = new ScheduleRepository();
+        }
+        return instance;
+    }
+
+    // =================== VUES ===================
+
+    /**
+     * Sessions d'un jour (tranche du mois en cache)
+     */
+    public void getDaySessions(String department, String field, String year, Calendar day,
+                               FirebaseManager.DataCallback<List<Session>> callback) {
+        Calendar start = startOfDay(day);
+        Calendar end = (Calendar) start.clone();
+        end.add(Calendar.DAY_OF_MONTH, 1);
+        getSessionsInRange(department, field, year, start, end, callback);
+    }
+
+    /**
+     * Sessions de la semaine contenant le jour donné
+     */
+    public void getWeekSessions(String department, String field, String year, Calendar day,
+                                FirebaseManager.DataCallback<List<Session>> callback) {
+        Calendar start = startOfDay(day);
+        start.set(Calendar.DAY_OF_WEEK, start.getFirstDayOfWeek());
+        Calendar end = (Calendar) start.clone();
+        end.add(Calendar.DAY_OF_MONTH, 7);
+        getSessionsInRange(department, field, year, start, end, callback);
+    }
+
+    /**
+     * Sessions du mois complet contenant le jour donné
+     */
+    public void getMonthSessions(String department, String field, String year, Calendar day,
+                                 FirebaseManager.DataCallback<List<Session>> callback) {
+        loadMonth(department, field, year, startOfMonth(day), callback);
+    }
+
+    /**
+     * Précharger les mois précédent et suivant (navigation)
+     */
+    public void prefetchAdjacentMonths(String department, String field, String year, Calendar day) {
+        FirebaseManager.DataCallback<List<Session>> ignore = new FirebaseManager.DataCallback<List<Session>>() {
+            @Override
+            public void onSuccess(List<Session> sessions) {}
+
+            @Override
+            public void onFailure(String error) {
+                Log.w(TAG, "Prefetch failed: " + error);
+            }
+        };
+
+        Calendar previous = startOfMonth(day);
+        previous.add(Calendar.MONTH, -1);
+        loadMonth(department, field, year, previous, ignore);
+
+        Calendar next = startOfMonth(day);
+        next.add(Calendar.MONTH, 1);
+        loadMonth(department, field, year, next, ignore);
+    }
+
+    /**
+     * Sessions dans [start, end[ ; une semaine à cheval sur deux mois charge les deux mois
+     */
+    public void getSessionsInRange(String department, String field, String year, Calendar start, Calendar end,
+                                   FirebaseManager.DataCallback<List<Session>> callback) {
+        List<Calendar> months = new ArrayList<>();
+        Calendar month = startOfMonth(start);
+        while (month.getTimeInMillis() < end.getTimeInMillis()) {
+            months.add((Calendar) month.clone());
+            month.add(Calendar.MONTH, 1);
+        }
+
+        List<Session> merged = new ArrayList<>();
+        int[] remaining = {months.size()};
+        boolean[] failed = {false};
+
+        for (Calendar monthStart : months) {
+            loadMonth(department, field, year, monthStart, new FirebaseManager.DataCallback<List<Session>>() {
+                @Override
+                public void onSuccess(List<Session> sessions) {
+                    merged.addAll(sessions);
+                    if (--remaining[0] == 0 && !failed[0]) {
+                        callback.onSuccess(slice(merged, start.getTimeInMillis(), end.getTimeInMillis()));
+                    }
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    if (!failed[0]) {
+                        failed[0] = true;
+                        callback.onFailure(error);
+                    }
+                }
+            });
+        }
+    }
+
+    // =================== CACHE ===================
+
+    private void loadMonth(String department, String field, String year, Calendar monthStart,
+                           FirebaseManager.DataCallback<List<Session>> callback) {
+        String key = cacheKey(department, field, year, monthStart);
+
+        MonthEntry cached = monthCache.get(key);
+        if (cached != null && cached.isFresh()) {
+            callback.onSuccess(new ArrayList<>(cached.sessions));
+            return;
+        }
+
+        // Une requête est déjà en cours pour ce mois : attendre son résultat
+        List<FirebaseManager.DataCallback<List<Session>>> waiting = pendingLoads.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        pendingLoads.put(key, waiting);
+
+        Calendar monthEnd = (Calendar) monthStart.clone();
+        monthEnd.add(Calendar.MONTH, 1);
+
+        Log.d(TAG, "Loading month " + key);
+        courseCatalog.getCoursesFor(department, field, year, new FirebaseManager.DataCallback<List<Course>>() {
+            @Override
+            public void onSuccess(List<Course> courses) {
+                // Seules les exceptions matérialisées sont lues pour le mois
+                firebaseManager.getSessionsForFieldInRange(department, field, year,
+                        new Timestamp(monthStart.getTime()), new Timestamp(monthEnd.getTime()),
+                        new FirebaseManager.DataCallback<List<Session>>() {
+                            @Override
+                            public void onSuccess(List<Session> exceptions) {
+                                List<Session> sessions = RecurrenceEngine.expand(courses, exceptions,
+                                        monthStart.getTime(), monthEnd.getTime());
+                                monthCache.put(key, new MonthEntry(sessions));
+                                for (FirebaseManager.DataCallback<List<Session>> pending : pendingLoads.remove(key)) {
+                                    pending.onSuccess(new ArrayList<>(sessions));
+                                }
+                            }
+
+                            @Override
+                            public void onFailure(String error) {
+                                failMonth(key, error);
+                            }
+                        });
+            }
+
+            @Override
+            public void onFailure(String error) {
+                failMonth(key, error);
+            }
+        });
+    }
+
+    private void failMonth(String key, String error) {
+        for (FirebaseManager.DataCallback<List<Session>> pending : pendingLoads.remove(key)) {
+            pending.onFailure(error);
+        }
+    }
+
+    /**
+     * Oublier les mois en cache (ex. après modification de l'emploi du temps)
+     */
+    public void invalidate() {
+        monthCache.clear();
+    }
+
+    // =================== UTILITAIRES ===================
+
+    private static List<Session> slice(List<Session> sessions, long startMillis, long endMillis) {
+        List<Session> result = new ArrayList<>();
+        for (Session session : sessions) {
+            if (session.getStartTime() == null) continue;
+            long time = session.getStartTime().toDate().getTime();
+            if (time >= startMillis && time < endMillis) {
+                result.add(session);
+            }
+        }
+        // Deux mois peuvent arriver dans le désordre : retrier la tranche
+        result.sort((s1, s2) -> s1.getStartTime().compareTo(s2.getStartTime()));
+        return result;
+    }
+
+    private static String cacheKey(String department, String field, String year, Calendar monthStart) {
+        return department + "|" + field + "|" + year + "|"
+                + monthStart.get(Calendar.YEAR) + "-" + (monthStart.get(Calendar.MONTH) + 1);
+    }
+
+    private static Calendar startOfDay(Calendar day) {
+        Calendar calendar = (Calendar) day.clone();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+
+    private static Calendar startOfMonth(Calendar day) {
+        Calendar calendar = startOfDay(day);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        return calendar;
+    }
+}
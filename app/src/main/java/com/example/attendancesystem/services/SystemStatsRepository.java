@@ -0,0 +1,133 @@
+package com.example.attendancesystem.services;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Statistiques système du tableau de bord administrateur, en cache.
+ *
+ * Les totaux viennent de requêtes d'agrégation (FirebaseManager.getSystemStatistics) et
+ * sont conservés CACHE_TTL_MS : revenir sur le tableau de bord ne relance pas de requête.
+ * Tant qu'un écran est abonné, un rafraîchissement périodique met les chiffres à jour et
+ * notifie les abonnés. Les demandes simultanées partagent la même requête en cours.
+ * Tout se passe sur le thread principal, comme les callbacks de FirebaseManager.
+ */
+public class SystemStatsRepository {
+    private static final String TAG = "SystemStatsRepository";
+
+    private static final long CACHE_TTL_MS = 60 * 1000;
+    private static final long REFRESH_INTERVAL_MS = 2 * 60 * 1000;
+
+    private final FirebaseManager firebaseManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<SystemStatsListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<FirebaseManager.DataCallback<FirebaseManager.SystemStats>> pendingCallbacks = new ArrayList<>();
+
+    private FirebaseManager.SystemStats cachedStats;
+    private boolean loading = false;
+
+    // Singleton pattern
+    private static SystemStatsRepository instance;
+
+    /**
+     * Interface pour être notifié des statistiques rafraîchies en arrière-plan
+     */
+    public interface SystemStatsListener {
+        void onSystemStatsUpdated(FirebaseManager.SystemStats stats);
+    }
+
+    private final Runnable periodicRefresh = new Runnable() {
+        @Override
+        public void run() {
+            refresh(null);
+            mainHandler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    private SystemStatsRepository() {
+        this.firebaseManager = FirebaseManager.getInstance();
+    }
+
+    public static synchronized SystemStatsRepository getInstance() {
+        if (instance == null) {
+            instance = new SystemStatsRepository();
+        }
+        return instance;
+    }
+
+    /**
+     * S'abonner : le rafraîchissement périodique tourne tant qu'il reste un abonné
+     */
+    public void addListener(SystemStatsListener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (listeners.size() == 1) {
+            mainHandler.postDelayed(periodicRefresh, REFRESH_INTERVAL_MS);
+        }
+    }
+
+    public void removeListener(SystemStatsListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            mainHandler.removeCallbacks(periodicRefresh);
+        }
+    }
+
+    // =================== LECTURE ===================
+
+    /**
+     * Statistiques en cache si elles ont moins de CACHE_TTL_MS, sinon requête d'agrégation
+     */
+    public void getSystemStats(FirebaseManager.DataCallback<FirebaseManager.SystemStats> callback) {
+        if (cachedStats != null && System.currentTimeMillis() - cachedStats.getComputedAt() < CACHE_TTL_MS) {
+            callback.onSuccess(cachedStats);
+            return;
+        }
+        refresh(callback);
+    }
+
+    /**
+     * Ignorer le cache (actualisation demandée par l'utilisateur)
+     */
+    public void refresh(FirebaseManager.DataCallback<FirebaseManager.SystemStats> callback) {
+        if (callback != null) {
+            pendingCallbacks.add(callback);
+        }
+        if (loading) return;
+        loading = true;
+
+        firebaseManager.getSystemStatistics(new FirebaseManager.DataCallback<FirebaseManager.SystemStats>() {
+            @Override
+            public void onSuccess(FirebaseManager.SystemStats stats) {
+                loading = false;
+                cachedStats = stats;
+                for (FirebaseManager.DataCallback<FirebaseManager.SystemStats> pending : drainCallbacks()) {
+                    pending.onSuccess(stats);
+                }
+                for (SystemStatsListener listener : listeners) {
+                    listener.onSystemStatsUpdated(stats);
+                }
+            }
+
+            @Override
+            public void onFailure(String error) {
+                loading = false;
+                Log.e(TAG, "Error refreshing system statistics: " + error);
+                for (FirebaseManager.DataCallback<FirebaseManager.SystemStats> pending : drainCallbacks()) {
+                    pending.onFailure(error);
+                }
+            }
+        });
+    }
+
+    private List<FirebaseManager.DataCallback<FirebaseManager.SystemStats>> drainCallbacks() {
+        List<FirebaseManager.DataCallback<FirebaseManager.SystemStats>> callbacks = new ArrayList<>(pendingCallbacks);
+        pendingCallbacks.clear();
+        return callbacks;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.attendancesystem.services;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Conversion YUV_420_888 -> ARGB limitée à la zone du visage, directement à la taille
+ * d'entrée du modèle.
+ *
+ * Seuls les pixels échantillonnés dans le cadre du visage sont convertis (et non l'image
+ * entière), la rotation du capteur est appliquée au passage, et le tableau de pixels comme
+ * le Bitmap de sortie sont réutilisés d'une image à l'autre : aucune allocation par image.
+ *
+ * Utilisé par un seul thread (l'exécuteur d'analyse de la caméra).
+ */
+public class YuvFaceCropper {
+
+    // Marge autour du cadre détecté (front, menton, oreilles)
+    private static final float BOX_MARGIN = 0.15f;
+
+    private final int outputSize;
+    private final int[] pixels;
+    private final Bitmap output;
+
+    public YuvFaceCropper(int outputSize) {
+        this.outputSize = outputSize;
+        this.pixels = new int[outputSize * outputSize];
+        this.output = Bitmap.createBitmap(outputSize, outputSize, Bitmap.Config.ARGB_8888);
+    }
+
+    public int getOutputSize() { return outputSize; }
+
+    /**
+     * Recadrer le visage (cadre en coordonnées de l'image redressée, comme ML Kit).
+     * Le Bitmap retourné est réutilisé : il n'est valide que jusqu'à l'appel suivant.
+     */
+    public Bitmap crop(ImageProxy image, Rect faceBox) {
+        int rotation = image.getImageInfo().getRotationDegrees();
+        int sensorWidth = image.getWidth();
+        int sensorHeight = image.getHeight();
+        boolean swapped = rotation == 90 || rotation == 270;
+        int uprightWidth = swapped ? sensorHeight : sensorWidth;
+        int uprightHeight = swapped ? sensorWidth : sensorHeight;
+
+        // Carré centré sur le visage, avec marge, borné à l'image
+        int side = Math.round(Math.max(faceBox.width(), faceBox.height()) * (1 + 2 * BOX_MARGIN));
+        side = Math.min(side, Math.min(uprightWidth, uprightHeight));
+        int left = clamp(faceBox.centerX() - side / 2, 0, uprightWidth - side);
+        int top = clamp(faceBox.centerY() - side / 2, 0, uprightHeight - side);
+
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        ByteBuffer yBuffer = planes[0].getBuffer();
+        ByteBuffer uBuffer = planes[1].getBuffer();
+        ByteBuffer vBuffer = planes[2].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        int yPixelStride = planes[0].getPixelStride();
+        int uvRowStride = planes[1].getRowStride();
+        int uvPixelStride = planes[1].getPixelStride();
+
+        int index = 0;
+        for (int outY = 0; outY < outputSize; outY++) {
+            int v = top + outY * side / outputSize;
+            for (int outX = 0; outX < outputSize; outX++) {
+                int u = left + outX * side / outputSize;
+
+                // Coordonnées redressées -> coordonnées capteur
+                int x;
+                int y;
+                switch (rotation) {
+                    case 90:
+                        x = v;
+                        y = sensorHeight - 1 - u;
+                        break;
+                    case 180:
+                        x = sensorWidth - 1 - u;
+                        y = sensorHeight - 1 - v;
+                        break;
+                    case 270:
+                        x = sensorWidth - 1 - v;
+                        y = u;
+                        break;
+                    default:
+                        x = u;
+                        y = v;
+                        break;
+                }
+
+                int luma = yBuffer.get(y * yRowStride + x * yPixelStride) & 0xFF;
+                int uvIndex = (y >> 1) * uvRowStride + (x >> 1) * uvPixelStride;
+                int cb = (uBuffer.get(uvIndex) & 0xFF) - 128;
+                int cr = (vBuffer.get(uvIndex) & 0xFF) - 128;
+
+                pixels[index++] = toArgb(luma, cb, cr);
+            }
+        }
+
+        output.setPixels(pixels, 0, outputSize, 0, 0, outputSize, outputSize);
+        return output;
+    }
+
+    /**
+     * BT.601 plage complète, en arithmétique entière (coefficients * 1024)
+     */
+    private static int toArgb(int luma, int cb, int cr) {
+        int r = luma + ((1436 * cr) >> 10);
+        int g = luma - ((352 * cb + 731 * cr) >> 10);
+        int b = luma + ((1815 * cb) >> 10);
+        return 0xFF000000 | (clamp(r, 0, 255) << 16) | (clamp(g, 0, 255) << 8) | clamp(b, 0, 255);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
+    public void release() {
+        output.recycle();
+    }
+}
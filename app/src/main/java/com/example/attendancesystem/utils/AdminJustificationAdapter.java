@@ -11,29 +11,27 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Justification;
 
-import java.text.SimpleDateFormat;
-import java.util.List;
-import java.util.Locale;
 
-public class AdminJustificationAdapter extends RecyclerView.Adapter<AdminJustificationAdapter.JustificationViewHolder> {
+public class AdminJustificationAdapter extends ListAdapter<Justification, AdminJustificationAdapter.JustificationViewHolder> {
 
-    private List<Justification> justifications;
     private OnJustificationActionListener listener;
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
 
     public interface OnJustificationActionListener {
         void onApproveClick(Justification justification, String comments, String reason);
         void onRejectClick(Justification justification, String comments, String reason);
     }
 
-    public AdminJustificationAdapter(List<Justification> justifications, OnJustificationActionListener listener) {
-        this.justifications = justifications;
+    public AdminJustificationAdapter(OnJustificationActionListener listener) {
+        // Même comparaison que la liste étudiant
+        super(JustificationAdapter.DIFF_CALLBACK);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -45,13 +43,13 @@ public class AdminJustificationAdapter extends RecyclerView.Adapter<AdminJustifi
 
     @Override
     public void onBindViewHolder(@NonNull JustificationViewHolder holder, int position) {
-        Justification justification = justifications.get(position);
+        Justification justification = getItem(position);
         holder.bind(justification);
     }
 
     @Override
-    public int getItemCount() {
-        return justifications.size();
+    public long getItemId(int position) {
+        return StableIds.of(getItem(position).getJustificationId());
     }
 
     public class JustificationViewHolder extends RecyclerView.ViewHolder {
@@ -91,7 +89,7 @@ public class AdminJustificationAdapter extends RecyclerView.Adapter<AdminJustifi
         public void bind(Justification justification) {
             tvStudentName.setText("Étudiant: " + justification.getStudentName());
             tvCourseName.setText("Cours: " + justification.getCourseName());
-            tvJustificationDate.setText("Date: " + dateFormat.format(justification.getJustificationDate()));
+            tvJustificationDate.setText("Date: " + DateFormats.date(justification.getJustificationDate()));
             tvReason.setText("Raison: " + justification.getReason());
             tvDescription.setText("Description: " + justification.getDescription());
             tvStatus.setText("Statut: " + justification.getStatus());
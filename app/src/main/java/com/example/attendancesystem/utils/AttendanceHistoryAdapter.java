@@ -8,21 +8,41 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Attendance;
 
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import android.app.AlertDialog;
 import android.content.Context;
 
-public class AttendanceHistoryAdapter extends RecyclerView.Adapter<AttendanceHistoryAdapter.AttendanceViewHolder> {
+public class AttendanceHistoryAdapter extends ListAdapter<Attendance, AttendanceHistoryAdapter.AttendanceViewHolder> {
+
+    // Diff calculé en arrière-plan : seules les lignes dont le contenu affiché a changé sont re-liées
+    private static final DiffUtil.ItemCallback<Attendance> DIFF_CALLBACK = new DiffUtil.ItemCallback<Attendance>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Attendance oldItem, @NonNull Attendance newItem) {
+            return StableIds.sameItem(oldItem.getAttendanceId(), newItem.getAttendanceId(), oldItem, newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Attendance oldItem, @NonNull Attendance newItem) {
+            return Objects.equals(oldItem.getStatus(), newItem.getStatus())
+                    && Objects.equals(oldItem.getCourseName(), newItem.getCourseName())
+                    && Objects.equals(oldItem.getTimestamp(), newItem.getTimestamp())
+                    && oldItem.getConfidence() == newItem.getConfidence()
+                    && oldItem.isManualEntry() == newItem.isManualEntry()
+                    && Objects.equals(oldItem.getLastModifiedAt(), newItem.getLastModifiedAt());
+        }
+    };
 
-    private List<Attendance> attendanceList;
     private Context context;
     private OnAttendanceClickListener listener;
 
@@ -31,8 +51,9 @@ public class AttendanceHistoryAdapter extends RecyclerView.Adapter<AttendanceHis
         void onAttendanceClick(Attendance attendance);
     }
 
-    public AttendanceHistoryAdapter(List<Attendance> attendanceList) {
-        this.attendanceList = attendanceList;
+    public AttendanceHistoryAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
     }
 
     public void setOnAttendanceClickListener(OnAttendanceClickListener listener) {
@@ -50,18 +71,20 @@ public class AttendanceHistoryAdapter extends RecyclerView.Adapter<AttendanceHis
 
     @Override
     public void onBindViewHolder(@NonNull AttendanceViewHolder holder, int position) {
-        Attendance attendance = attendanceList.get(position);
+        Attendance attendance = getItem(position);
         holder.bind(attendance);
     }
 
     @Override
-    public int getItemCount() {
-        return attendanceList != null ? attendanceList.size() : 0;
+    public long getItemId(int position) {
+        return StableIds.of(getItem(position).getAttendanceId());
     }
 
+    /**
+     * Afficher une nouvelle liste (copiée : la liste de l'appelant peut continuer à changer)
+     */
     public void updateAttendanceList(List<Attendance> newAttendanceList) {
-        this.attendanceList = newAttendanceList;
-        notifyDataSetChanged();
+        submitList(newAttendanceList != null ? new ArrayList<>(newAttendanceList) : null);
     }
 
     class AttendanceViewHolder extends RecyclerView.ViewHolder {
@@ -79,7 +102,7 @@ public class AttendanceHistoryAdapter extends RecyclerView.Adapter<AttendanceHis
             // Listener pour les clics
             itemView.setOnClickListener(v -> {
                 if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onAttendanceClick(attendanceList.get(getAdapterPosition()));
+                    listener.onAttendanceClick(getItem(getAdapterPosition()));
                 }
             });
         }
@@ -91,15 +114,10 @@ public class AttendanceHistoryAdapter extends RecyclerView.Adapter<AttendanceHis
 
             // Date et heure DÉTAILLÉE
             if (attendance.getTimestamp() != null) {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("EEEE dd MMMM yyyy", Locale.FRENCH);
-                SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.FRENCH);
-
+                // Formatters partagés et libellé du jour en cache : pas d'allocation de format par ligne
                 Date attendanceDate = attendance.getTimestamp().toDate();
-                String dateStr = dateFormat.format(attendanceDate);
-                String timeStr = timeFormat.format(attendanceDate);
-
-                tvDateTime.setText(String.format("%s\n🕐 %s",
-                        capitalizeFirst(dateStr), timeStr));
+                tvDateTime.setText(DateFormats.longDate(attendanceDate)
+                        + "\n🕐 " + DateFormats.timeWithSeconds(attendanceDate));
             } else {
                 tvDateTime.setText("Date non disponible");
             }
@@ -148,11 +166,6 @@ public class AttendanceHistoryAdapter extends RecyclerView.Adapter<AttendanceHis
             }
         }
 
-        private String capitalizeFirst(String text) {
-            if (text == null || text.isEmpty()) return text;
-            return text.substring(0, 1).toUpperCase() + text.substring(1);
-        }
-
         // NOUVEAU: Dialog avec détails complets
         private void showAttendanceDetails(Attendance attendance) {
             AlertDialog.Builder builder = new AlertDialog.Builder(context);
@@ -162,8 +175,7 @@ public class AttendanceHistoryAdapter extends RecyclerView.Adapter<AttendanceHis
             details.append("📚 Cours: ").append(attendance.getCourseName()).append("\n\n");
 
             if (attendance.getTimestamp() != null) {
-                SimpleDateFormat fullFormat = new SimpleDateFormat("EEEE dd MMMM yyyy 'à' HH:mm:ss", Locale.FRENCH);
-                details.append("📅 Date/Heure: ").append(fullFormat.format(attendance.getTimestamp().toDate())).append("\n\n");
+                details.append("📅 Date/Heure: ").append(DateFormats.longDateTime(attendance.getTimestamp().toDate())).append("\n\n");
             }
 
             details.append("📊 Statut: ").append(getStatusDisplayText(attendance.getStatus())).append("\n\n");
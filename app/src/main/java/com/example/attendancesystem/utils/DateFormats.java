@@ -0,0 +1,158 @@
+package com.example.attendancesystem.utils;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Formatage des dates pour l'affichage (français), partagé par les adapters et les fragments.
+ *
+ * SimpleDateFormat n'est pas thread-safe : chaque thread garde ses propres instances
+ * (ThreadLocal), créées une seule fois au lieu d'une fois par ligne liée. Les noms de jours
+ * et de mois sont précalculés et les dates longues ("Lundi 05 mars 2025") sont mises en
+ * cache par jour : en défilant, une même date n'est formatée qu'une fois.
+ */
+public final class DateFormats {
+
+    private static final Locale LOCALE = Locale.FRENCH;
+
+    private static final ThreadLocal<SimpleDateFormat> DATE = formatter("dd/MM/yyyy");
+    private static final ThreadLocal<SimpleDateFormat> TIME = formatter("HH:mm");
+    private static final ThreadLocal<SimpleDateFormat> TIME_SECONDS = formatter("HH:mm:ss");
+    private static final ThreadLocal<SimpleDateFormat> DATE_TIME = formatter("dd/MM/yyyy HH:mm");
+    private static final ThreadLocal<SimpleDateFormat> DAY_MONTH = formatter("dd/MM");
+
+    private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance(LOCALE);
+        }
+    };
+
+    // Index = Calendar.DAY_OF_WEEK (1 = dimanche)
+    private static final String[] DAY_NAMES = {
+            "", "Dimanche", "Lundi", "Mardi", "Mercredi", "Jeudi", "Vendredi", "Samedi"
+    };
+
+    // Index = Calendar.MONTH (0 = janvier)
+    private static final String[] MONTH_NAMES = {
+            "janvier", "février", "mars", "avril", "mai", "juin",
+            "juillet", "août", "septembre", "octobre", "novembre", "décembre"
+    };
+
+    // Dates longues déjà construites, par jour (année * 1000 + jour de l'année)
+    private static final int LONG_DATE_CACHE_SIZE = 400;
+    private static final Map<Integer, String> LONG_DATES =
+            new LinkedHashMap<Integer, String>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                    return size() > LONG_DATE_CACHE_SIZE;
+                }
+            };
+
+    private DateFormats() {}
+
+    private static ThreadLocal<SimpleDateFormat> formatter(String pattern) {
+        return new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return new SimpleDateFormat(pattern, LOCALE);
+            }
+        };
+    }
+
+    // =================== FORMATS NUMÉRIQUES ===================
+
+    /**
+     * 05/03/2025
+     */
+    public static String date(Date date) {
+        return DATE.get().format(date);
+    }
+
+    /**
+     * 08:30
+     */
+    public static String time(Date date) {
+        return TIME.get().format(date);
+    }
+
+    /**
+     * 08:30:15
+     */
+    public static String timeWithSeconds(Date date) {
+        return TIME_SECONDS.get().format(date);
+    }
+
+    /**
+     * 05/03/2025 08:30
+     */
+    public static String dateTime(Date date) {
+        return DATE_TIME.get().format(date);
+    }
+
+    /**
+     * 05/03
+     */
+    public static String dayMonth(Date date) {
+        return DAY_MONTH.get().format(date);
+    }
+
+    // =================== LIBELLÉS ===================
+
+    /**
+     * Nom du jour avec majuscule ("Lundi") à partir de Calendar.DAY_OF_WEEK
+     */
+    public static String dayName(int calendarDayOfWeek) {
+        return DAY_NAMES[calendarDayOfWeek];
+    }
+
+    public static String dayName(Date date) {
+        Calendar calendar = CALENDAR.get();
+        calendar.setTime(date);
+        return DAY_NAMES[calendar.get(Calendar.DAY_OF_WEEK)];
+    }
+
+    /**
+     * Nom du mois en minuscules ("mars") à partir de Calendar.MONTH
+     */
+    public static String monthName(int calendarMonth) {
+        return MONTH_NAMES[calendarMonth];
+    }
+
+    /**
+     * Lundi 05 mars 2025
+     */
+    public static String longDate(Date date) {
+        Calendar calendar = CALENDAR.get();
+        calendar.setTime(date);
+        int year = calendar.get(Calendar.YEAR);
+        int key = year * 1000 + calendar.get(Calendar.DAY_OF_YEAR);
+
+        synchronized (LONG_DATES) {
+            String cached = LONG_DATES.get(key);
+            if (cached != null) return cached;
+        }
+
+        int day = calendar.get(Calendar.DAY_OF_MONTH);
+        String label = DAY_NAMES[calendar.get(Calendar.DAY_OF_WEEK)]
+                + (day < 10 ? " 0" : " ") + day
+                + " " + MONTH_NAMES[calendar.get(Calendar.MONTH)]
+                + " " + year;
+
+        synchronized (LONG_DATES) {
+            LONG_DATES.put(key, label);
+        }
+        return label;
+    }
+
+    /**
+     * Lundi 05 mars 2025 à 08:30:15
+     */
+    public static String longDateTime(Date date) {
+        return longDate(date) + " à " + timeWithSeconds(date);
+    }
+}
@@ -7,29 +7,49 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Justification;
 
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
-public class JustificationAdapter extends RecyclerView.Adapter<JustificationAdapter.JustificationViewHolder> {
+public class JustificationAdapter extends ListAdapter<Justification, JustificationAdapter.JustificationViewHolder> {
 
-    private List<Justification> justificationsList;
-    private boolean isAdminView; // Flag to determine if it's an admin view
+    // Diff calculé en arrière-plan : seules les lignes dont le contenu affiché a changé sont re-liées
+    static final DiffUtil.ItemCallback<Justification> DIFF_CALLBACK = new DiffUtil.ItemCallback<Justification>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Justification oldItem, @NonNull Justification newItem) {
+            return StableIds.sameItem(oldItem.getJustificationId(), newItem.getJustificationId(), oldItem, newItem);
+        }
 
-    // Date formatter for display
-    private SimpleDateFormat dateFormatter = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-    private SimpleDateFormat dateTimeFormatter = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
+        @Override
+        public boolean areContentsTheSame(@NonNull Justification oldItem, @NonNull Justification newItem) {
+            return Objects.equals(oldItem.getStatus(), newItem.getStatus())
+                    && Objects.equals(oldItem.getReason(), newItem.getReason())
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription())
+                    && Objects.equals(oldItem.getCourseName(), newItem.getCourseName())
+                    && Objects.equals(oldItem.getJustificationDate(), newItem.getJustificationDate())
+                    && Objects.equals(oldItem.getSubmittedAt(), newItem.getSubmittedAt())
+                    && Objects.equals(oldItem.getReviewedBy(), newItem.getReviewedBy())
+                    && Objects.equals(oldItem.getReviewComments(), newItem.getReviewComments())
+                    && Objects.equals(oldItem.getApprovalReason(), newItem.getApprovalReason())
+                    && Objects.equals(oldItem.getLastUpdatedAt(), newItem.getLastUpdatedAt());
+        }
+    };
+
+    private boolean isAdminView; // Flag to determine if it's an admin view
 
 
     // Constructor
-    public JustificationAdapter(List<Justification> justificationsList, boolean isAdminView) {
-        this.justificationsList = justificationsList;
+    public JustificationAdapter(boolean isAdminView) {
+        super(DIFF_CALLBACK);
         this.isAdminView = isAdminView;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -43,13 +63,13 @@ public class JustificationAdapter extends RecyclerView.Adapter<JustificationAdap
 
     @Override
     public void onBindViewHolder(@NonNull JustificationViewHolder holder, int position) {
-        Justification justification = justificationsList.get(position);
+        Justification justification = getItem(position);
 
         holder.tvCourseName.setText(justification.getCourseName());
         holder.tvJustificationReason.setText(justification.getReason());
         holder.tvJustificationDescription.setText(justification.getDescription());
-        holder.tvSubmittedDate.setText("Soumis le: " + dateTimeFormatter.format(justification.getSubmittedAt().toDate()));
-        holder.tvJustificationAbsenceDate.setText("Date d'absence: " + dateFormatter.format(justification.getJustificationDate()));
+        holder.tvSubmittedDate.setText("Soumis le: " + DateFormats.dateTime(justification.getSubmittedAt().toDate()));
+        holder.tvJustificationAbsenceDate.setText("Date d'absence: " + DateFormats.date(justification.getJustificationDate()));
 
         // Set status text and color
         String status = justification.getStatus();
@@ -79,7 +99,7 @@ public class JustificationAdapter extends RecyclerView.Adapter<JustificationAdap
 
             if (justification.getReviewedBy() != null && !justification.getReviewedBy().isEmpty()) {
                 holder.tvReviewedBy.setText("Révisé par: " + justification.getReviewedBy());
-                holder.tvReviewedAt.setText("Le: " + dateTimeFormatter.format(justification.getReviewedAt().toDate()));
+                holder.tvReviewedAt.setText("Le: " + DateFormats.dateTime(justification.getReviewedAt().toDate()));
                 holder.tvReviewComments.setText("Commentaires: " + (justification.getReviewComments() != null ? justification.getReviewComments() : "N/A"));
                 holder.tvApprovalReason.setText("Raison décision: " + (justification.getApprovalReason() != null ? justification.getApprovalReason() : "N/A"));
             } else {
@@ -99,8 +119,8 @@ public class JustificationAdapter extends RecyclerView.Adapter<JustificationAdap
     }
 
     @Override
-    public int getItemCount() {
-        return justificationsList.size();
+    public long getItemId(int position) {
+        return StableIds.of(getItem(position).getJustificationId());
     }
 
     // ViewHolder class
@@ -136,10 +156,10 @@ public class JustificationAdapter extends RecyclerView.Adapter<JustificationAdap
         }
     }
 
-    // You can add methods here to update the list if needed, e.g.:
+    /**
+     * Afficher une nouvelle liste (copiée : la liste de l'appelant peut continuer à changer)
+     */
     public void updateJustifications(List<Justification> newJustifications) {
-        this.justificationsList.clear();
-        this.justificationsList.addAll(newJustifications);
-        notifyDataSetChanged();
+        submitList(newJustifications != null ? new ArrayList<>(newJustifications) : null);
     }
 }
\ No newline at end of file
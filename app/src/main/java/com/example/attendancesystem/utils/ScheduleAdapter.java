@@ -8,21 +8,23 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 import com.example.attendancesystem.models.Session;
 
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
 /**
  * Adapter pour afficher les sessions dans l'emploi du temps
  * Supporte différents types d'affichage : jour, semaine, mois
  */
-public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.ScheduleViewHolder> {
+public class ScheduleAdapter extends ListAdapter<Session, ScheduleAdapter.ScheduleViewHolder> {
 
     private static final String TAG = "ScheduleAdapter";
 
@@ -31,16 +33,31 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.Schedu
     public static final int VIEW_TYPE_WEEK = 2;
     public static final int VIEW_TYPE_MONTH = 3;
 
-    private List<Session> sessions;
+    // Diff calculé en arrière-plan : seules les lignes dont le contenu affiché a changé sont re-liées.
+    // Les occurrences virtuelles du moteur de récurrence ont un sessionId déterministe.
+    private static final DiffUtil.ItemCallback<Session> DIFF_CALLBACK = new DiffUtil.ItemCallback<Session>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Session oldItem, @NonNull Session newItem) {
+            return StableIds.sameItem(oldItem.getSessionId(), newItem.getSessionId(), oldItem, newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Session oldItem, @NonNull Session newItem) {
+            return Objects.equals(oldItem.getStatus(), newItem.getStatus())
+                    && Objects.equals(oldItem.getCourseName(), newItem.getCourseName())
+                    && Objects.equals(oldItem.getTeacherName(), newItem.getTeacherName())
+                    && Objects.equals(oldItem.getRoom(), newItem.getRoom())
+                    && Objects.equals(oldItem.getStartTime(), newItem.getStartTime())
+                    && Objects.equals(oldItem.getEndTime(), newItem.getEndTime())
+                    && Objects.equals(oldItem.getField(), newItem.getField())
+                    && Objects.equals(oldItem.getDepartment(), newItem.getDepartment());
+        }
+    };
+
     private Context context;
     private int viewType;
     private OnSessionClickListener listener;
 
-    // Formatters de date
-    private SimpleDateFormat timeFormatter = new SimpleDateFormat("HH:mm", Locale.FRENCH);
-    private SimpleDateFormat dateFormatter = new SimpleDateFormat("dd/MM", Locale.FRENCH);
-    private SimpleDateFormat dayFormatter = new SimpleDateFormat("EEEE", Locale.FRENCH);
-
     /**
      * Interface pour gérer les clics sur les sessions
      */
@@ -49,9 +66,10 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.Schedu
         void onSessionLongClick(Session session);
     }
 
-    public ScheduleAdapter(List<Session> sessions, int viewType) {
-        this.sessions = sessions;
+    public ScheduleAdapter(int viewType) {
+        super(DIFF_CALLBACK);
         this.viewType = viewType;
+        setHasStableIds(true);
     }
 
     public void setOnSessionClickListener(OnSessionClickListener listener) {
@@ -68,13 +86,13 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.Schedu
 
     @Override
     public void onBindViewHolder(@NonNull ScheduleViewHolder holder, int position) {
-        Session session = sessions.get(position);
+        Session session = getItem(position);
         holder.bind(session, viewType);
     }
 
     @Override
-    public int getItemCount() {
-        return sessions != null ? sessions.size() : 0;
+    public long getItemId(int position) {
+        return StableIds.of(getItem(position).getSessionId());
     }
 
     /**
@@ -103,13 +121,13 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.Schedu
             // Listeners pour les clics
             itemView.setOnClickListener(v -> {
                 if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onSessionClick(sessions.get(getAdapterPosition()));
+                    listener.onSessionClick(getItem(getAdapterPosition()));
                 }
             });
 
             itemView.setOnLongClickListener(v -> {
                 if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onSessionLongClick(sessions.get(getAdapterPosition()));
+                    listener.onSessionLongClick(getItem(getAdapterPosition()));
                     return true;
                 }
                 return false;
@@ -142,26 +160,26 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.Schedu
                 return;
             }
 
-            String startTime = timeFormatter.format(session.getStartTime().toDate());
-            String endTime = timeFormatter.format(session.getEndTime().toDate());
+            // Formatters partagés (DateFormats) : rien n'est alloué pour le format à chaque liaison
+            String startTime = DateFormats.time(session.getStartTime().toDate());
+            String endTime = DateFormats.time(session.getEndTime().toDate());
 
             switch (displayType) {
                 case VIEW_TYPE_DAY:
                     // Pour le jour : juste l'heure
-                    tvTime.setText(String.format("%s - %s", startTime, endTime));
+                    tvTime.setText(startTime + " - " + endTime);
                     break;
 
                 case VIEW_TYPE_WEEK:
                     // Pour la semaine : jour + heure
-                    String dayName = dayFormatter.format(session.getStartTime().toDate());
-                    tvTime.setText(String.format("%s %s-%s",
-                            capitalizeFirst(dayName), startTime, endTime));
+                    String dayName = DateFormats.dayName(session.getStartTime().toDate());
+                    tvTime.setText(dayName + " " + startTime + "-" + endTime);
                     break;
 
                 case VIEW_TYPE_MONTH:
                     // Pour le mois : date + heure
-                    String date = dateFormatter.format(session.getStartTime().toDate());
-                    tvTime.setText(String.format("%s %s-%s", date, startTime, endTime));
+                    String date = DateFormats.dayMonth(session.getStartTime().toDate());
+                    tvTime.setText(date + " " + startTime + "-" + endTime);
                     break;
             }
         }
@@ -212,29 +230,21 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.Schedu
                 }
             }
         }
-
-        private String capitalizeFirst(String text) {
-            if (text == null || text.isEmpty()) {
-                return text;
-            }
-            return text.substring(0, 1).toUpperCase() + text.substring(1).toLowerCase();
-        }
     }
 
     /**
      * Mettre à jour la liste des sessions
      */
     public void updateSessions(List<Session> newSessions) {
-        this.sessions = newSessions;
-        notifyDataSetChanged();
+        submitList(newSessions != null ? new ArrayList<>(newSessions) : null);
     }
 
     /**
      * Obtenir une session à une position donnée
      */
     public Session getSession(int position) {
-        if (position >= 0 && position < sessions.size()) {
-            return sessions.get(position);
+        if (position >= 0 && position < getItemCount()) {
+            return getItem(position);
         }
         return null;
     }
@@ -243,7 +253,7 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.Schedu
      * Vérifier s'il y a des sessions actives
      */
     public boolean hasActiveSessions() {
-        for (Session session : sessions) {
+        for (Session session : getCurrentList()) {
             if (session.isActive()) {
                 return true;
             }
@@ -256,7 +266,7 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.Schedu
      */
     public int getSessionCountByStatus(String status) {
         int count = 0;
-        for (Session session : sessions) {
+        for (Session session : getCurrentList()) {
             if (status.equals(session.getStatus())) {
                 count++;
             }
@@ -0,0 +1,130 @@
+package com.example.attendancesystem.utils;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.attendancesystem.R;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adapter pour la liste d'appel d'une session en cours.
+ * Les pointages sont appliqués un par un : seule la ligne concernée est rafraîchie.
+ */
+public class SessionStudentsAdapter extends RecyclerView.Adapter<SessionStudentsAdapter.StudentViewHolder> {
+
+    public static final String STATUS_PENDING = "pending";
+
+    private final List<String> studentEmails = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<String, String> statuses = new HashMap<>();
+
+    /**
+     * Remplacer la liste des inscrits (en conservant les statuts déjà connus)
+     */
+    public void setEnrolledStudents(List<String> enrolled) {
+        studentEmails.clear();
+        positions.clear();
+        for (String email : enrolled) {
+            positions.put(email, studentEmails.size());
+            studentEmails.add(email);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Mettre à jour le statut d'un étudiant ; un étudiant inconnu est ajouté en fin de liste
+     */
+    public void setStatus(String studentEmail, String status) {
+        statuses.put(studentEmail, status);
+
+        Integer position = positions.get(studentEmail);
+        if (position != null) {
+            notifyItemChanged(position);
+        } else {
+            positions.put(studentEmail, studentEmails.size());
+            studentEmails.add(studentEmail);
+            notifyItemInserted(studentEmails.size() - 1);
+        }
+    }
+
+    public void clearStatus(String studentEmail) {
+        statuses.remove(studentEmail);
+        Integer position = positions.get(studentEmail);
+        if (position != null) {
+            notifyItemChanged(position);
+        }
+    }
+
+    public void clear() {
+        studentEmails.clear();
+        positions.clear();
+        statuses.clear();
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public StudentViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_session_student, parent, false);
+        return new StudentViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull StudentViewHolder holder, int position) {
+        String email = studentEmails.get(position);
+        String status = statuses.get(email);
+        holder.bind(email, status != null ? status : STATUS_PENDING);
+    }
+
+    @Override
+    public int getItemCount() {
+        return studentEmails.size();
+    }
+
+    static class StudentViewHolder extends RecyclerView.ViewHolder {
+        private final TextView tvStudentEmail, tvStudentStatus;
+
+        StudentViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvStudentEmail = itemView.findViewById(R.id.tv_student_email);
+            tvStudentStatus = itemView.findViewById(R.id.tv_student_status);
+        }
+
+        void bind(String email, String status) {
+            tvStudentEmail.setText(email);
+
+            int colorRes;
+            String label;
+            switch (status) {
+                case "present":
+                    label = "Présent";
+                    colorRes = R.color.present_color;
+                    break;
+                case "absent":
+                    label = "Absent";
+                    colorRes = R.color.absent_color;
+                    break;
+                case "justified":
+                    label = "Justifié";
+                    colorRes = R.color.justified_color;
+                    break;
+                default:
+                    label = "En attente";
+                    colorRes = R.color.text_secondary;
+                    break;
+            }
+            tvStudentStatus.setText(label);
+            tvStudentStatus.setTextColor(itemView.getContext().getColor(colorRes));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.attendancesystem.utils;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Identifiants stables des lignes de liste, dérivés de l'identifiant Firestore
+ * (attendanceId, sessionId, justificationId...).
+ *
+ * Utilisés par les ListAdapter : getItemId() pour les animations et la conservation
+ * de la position, sameItem() pour DiffUtil.ItemCallback.areItemsTheSame().
+ */
+public final class StableIds {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private StableIds() {}
+
+    /**
+     * Hash 64 bits (FNV-1a) de la clé : bien moins de collisions que String.hashCode()
+     */
+    public static long of(String key) {
+        if (key == null) return RecyclerView.NO_ID;
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        // NO_ID (-1) est réservé par RecyclerView
+        return hash == RecyclerView.NO_ID ? 0 : hash;
+    }
+
+    /**
+     * Même ligne : même identifiant, ou même instance si l'élément n'a pas encore d'identifiant
+     */
+    public static boolean sameItem(String oldKey, String newKey, Object oldItem, Object newItem) {
+        if (oldKey == null || newKey == null) return oldItem == newItem;
+        return oldKey.equals(newKey);
+    }
+}
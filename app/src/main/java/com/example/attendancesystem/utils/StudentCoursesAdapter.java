@@ -8,19 +8,35 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.attendancesystem.R;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Adapter pour afficher la liste des cours auxquels l'étudiant est rattaché
  */
-public class StudentCoursesAdapter extends RecyclerView.Adapter<StudentCoursesAdapter.CourseViewHolder> {
+public class StudentCoursesAdapter extends ListAdapter<Map<String, String>, StudentCoursesAdapter.CourseViewHolder> {
+
+    // Diff calculé en arrière-plan : seules les lignes dont le contenu affiché a changé sont re-liées
+    private static final DiffUtil.ItemCallback<Map<String, String>> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<Map<String, String>>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull Map<String, String> oldItem, @NonNull Map<String, String> newItem) {
+                    return StableIds.sameItem(oldItem.get("id"), newItem.get("id"), oldItem, newItem);
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull Map<String, String> oldItem, @NonNull Map<String, String> newItem) {
+                    return oldItem.equals(newItem);
+                }
+            };
 
-    private List<Map<String, String>> courses;
     private Context context;
     private OnCourseClickListener listener;
 
@@ -30,8 +46,9 @@ public class StudentCoursesAdapter extends RecyclerView.Adapter<StudentCoursesAd
         void onCourseInfoClick(Map<String, String> course);
     }
 
-    public StudentCoursesAdapter(List<Map<String, String>> courses) {
-        this.courses = courses;
+    public StudentCoursesAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
     }
 
     public void setOnCourseClickListener(OnCourseClickListener listener) {
@@ -49,13 +66,13 @@ public class StudentCoursesAdapter extends RecyclerView.Adapter<StudentCoursesAd
 
     @Override
     public void onBindViewHolder(@NonNull CourseViewHolder holder, int position) {
-        Map<String, String> course = courses.get(position);
+        Map<String, String> course = getItem(position);
         holder.bind(course);
     }
 
     @Override
-    public int getItemCount() {
-        return courses != null ? courses.size() : 0;
+    public long getItemId(int position) {
+        return StableIds.of(getItem(position).get("id"));
     }
 
     class CourseViewHolder extends RecyclerView.ViewHolder {
@@ -75,13 +92,13 @@ public class StudentCoursesAdapter extends RecyclerView.Adapter<StudentCoursesAd
             // Listeners pour les clics
             itemView.setOnClickListener(v -> {
                 if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onCourseClick(courses.get(getAdapterPosition()));
+                    listener.onCourseClick(getItem(getAdapterPosition()));
                 }
             });
 
             ivInfoIcon.setOnClickListener(v -> {
                 if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onCourseInfoClick(courses.get(getAdapterPosition()));
+                    listener.onCourseInfoClick(getItem(getAdapterPosition()));
                 }
             });
         }
@@ -208,16 +225,15 @@ public class StudentCoursesAdapter extends RecyclerView.Adapter<StudentCoursesAd
      * Mettre à jour la liste des cours
      */
     public void updateCourses(List<Map<String, String>> newCourses) {
-        this.courses = newCourses;
-        notifyDataSetChanged();
+        submitList(newCourses != null ? new ArrayList<>(newCourses) : null);
     }
 
     /**
      * Obtenir un cours à une position spécifique
      */
     public Map<String, String> getCourseAt(int position) {
-        if (position >= 0 && position < courses.size()) {
-            return courses.get(position);
+        if (position >= 0 && position < getItemCount()) {
+            return getItem(position);
         }
         return null;
     }
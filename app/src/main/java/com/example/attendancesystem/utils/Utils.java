@@ -15,9 +15,7 @@ import androidx.core.content.ContextCompat;
 import com.example.attendancesystem.R;
 import com.google.firebase.Timestamp;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
 import java.util.regex.Pattern;
 
 public class Utils {
@@ -29,11 +27,6 @@ public class Utils {
     public static final String PREF_USER_NAME = "user_name";
     public static final String PREF_IS_LOGGED_IN = "is_logged_in";
 
-    // Formats de date
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd/MM/yyyy", Locale.FRENCH);
-    private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm", Locale.FRENCH);
-    private static final SimpleDateFormat DATETIME_FORMAT = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.FRENCH);
-
     // =================== VALIDATION ===================
 
     /**
@@ -94,13 +87,14 @@ public class Utils {
     }
 
     // =================== FORMATAGE DES DATES ===================
+    // Délègue à DateFormats : ces méthodes sont aussi appelées depuis des callbacks hors thread principal
 
     /**
      * Convertir Timestamp Firebase en string de date
      */
     public static String formatDate(Timestamp timestamp) {
         if (timestamp == null) return "N/A";
-        return DATE_FORMAT.format(timestamp.toDate());
+        return DateFormats.date(timestamp.toDate());
     }
 
     /**
@@ -108,7 +102,7 @@ public class Utils {
      */
     public static String formatTime(Timestamp timestamp) {
         if (timestamp == null) return "N/A";
-        return TIME_FORMAT.format(timestamp.toDate());
+        return DateFormats.time(timestamp.toDate());
     }
 
     /**
@@ -116,21 +110,21 @@ public class Utils {
      */
     public static String formatDateTime(Timestamp timestamp) {
         if (timestamp == null) return "N/A";
-        return DATETIME_FORMAT.format(timestamp.toDate());
+        return DateFormats.dateTime(timestamp.toDate());
     }
 
     /**
      * Obtenir la date du jour
      */
     public static String getTodayDate() {
-        return DATE_FORMAT.format(new Date());
+        return DateFormats.date(new Date());
     }
 
     /**
      * Obtenir l'heure actuelle
      */
     public static String getCurrentTime() {
-        return TIME_FORMAT.format(new Date());
+        return DateFormats.time(new Date());
     }
 
     // =================== SHARED PREFERENCES MODIFIÉES ===================
@@ -0,0 +1,245 @@
+package com.example.attendancesystem.models;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * SessionRoster et Session : comportement de la liste d'appel, listes Firestore identiques
+ * entre le modèle et la liste d'appel, et micro-benchmark manuel (1k à 10k
+ * étudiants) comparé à l'ancienne implémentation à base d'ArrayList (contains/remove
+ * linéaires à chaque pointage).
+ */
+public class SessionRosterBenchmarkTest {
+
+    private static final int[] CLASS_SIZES = {1_000, 2_000, 5_000, 10_000};
+    private static final int WARMUP_ROUNDS = 3;
+
+    @Test
+    public void roster_keepsConsistentCounts() {
+        SessionRoster roster = new SessionRoster();
+        assertTrue(roster.enroll("a@test.com"));
+        assertFalse(roster.enroll("a@test.com"));
+        roster.enroll("b@test.com");
+        roster.enroll("c@test.com");
+
+        assertTrue(roster.markPresent("a@test.com"));
+        assertFalse(roster.markPresent("a@test.com"));
+        assertFalse(roster.markPresent("unknown@test.com"));
+        assertTrue(roster.markAbsent("b@test.com"));
+
+        List<String> newlyAbsent = roster.markUnmarkedAbsent();
+        assertEquals(1, newlyAbsent.size());
+        assertEquals("c@test.com", newlyAbsent.get(0));
+
+        assertEquals(3, roster.getEnrolledCount());
+        assertEquals(1, roster.getPresentCount());
+        assertEquals(2, roster.getAbsentCount());
+
+        // Un absent qui pointe passe présent
+        assertTrue(roster.markPresent("b@test.com"));
+        assertEquals(2, roster.getPresentCount());
+        assertEquals(1, roster.getAbsentCount());
+        assertFalse(roster.isAbsent("b@test.com"));
+
+        // Pointage supprimé : l'étudiant redevient non pointé
+        assertTrue(roster.unmark("b@test.com"));
+        assertFalse(roster.unmark("b@test.com"));
+        assertTrue(roster.isEnrolled("b@test.com"));
+        assertEquals(1, roster.getPresentCount());
+        assertEquals(1, roster.getAbsentCount());
+    }
+
+    @Test
+    public void roster_preservesInsertionOrderForFirestoreLists() {
+        SessionRoster roster = new SessionRoster();
+        List<String> emails = buildEmails(100);
+        roster.setEnrolled(emails);
+        assertEquals(emails, roster.getEnrolled());
+    }
+
+    @Test
+    public void session_matchesRosterOnLargeClass() {
+        List<String> emails = buildEmails(2_000);
+
+        // Session chargée depuis Firestore (listes) et liste d'appel alimentée directement
+        Session session = new Session();
+        session.setEnrolledStudentEmails(emails);
+        SessionRoster roster = new SessionRoster();
+        roster.setEnrolled(emails);
+
+        for (int i = 0; i < emails.size(); i++) {
+            String email = emails.get(i);
+            if (i % 3 == 0) {
+                session.markStudentAbsent(email);
+                roster.markAbsent(email);
+            }
+            if (i % 2 == 0) {
+                session.markStudentPresent(email);
+                roster.markPresent(email);
+            }
+            if (i % 7 == 0) {
+                // Pointage supprimé
+                session.unmarkStudent(email);
+                roster.unmark(email);
+            }
+        }
+        session.markStudentPresent("unknown@univ.test");
+        assertLists(roster, session);
+
+        List<String> newlyAbsent = session.endSession();
+        assertEquals(roster.markUnmarkedAbsent(), newlyAbsent);
+        assertEquals("completed", session.getStatus());
+        assertLists(roster, session);
+        assertEquals(emails.size(), roster.getPresentCount() + roster.getAbsentCount());
+
+        // Un second appel ne marque plus personne
+        assertTrue(session.endSession().isEmpty());
+    }
+
+    @Test
+    public void session_roundTripsFirestoreLists() {
+        Session session = new Session();
+        List<String> emails = buildEmails(50);
+        for (String email : emails) {
+            session.enrollStudent(email);
+        }
+        for (int i = 0; i < emails.size(); i += 3) {
+            session.markStudentPresent(emails.get(i));
+        }
+        session.endSession();
+
+        Map<String, Object> map = session.toMap();
+        Session reloaded = new Session();
+        reloaded.setEnrolledStudentEmails(castList(map.get("enrolledStudentEmails")));
+        reloaded.setPresentStudentEmails(castList(map.get("presentStudentEmails")));
+        reloaded.setAbsentStudentEmails(castList(map.get("absentStudentEmails")));
+
+        assertEquals(emails, reloaded.getEnrolledStudentEmails());
+        assertEquals(session.getPresentStudentEmails(), reloaded.getPresentStudentEmails());
+        assertEquals(session.getAbsentStudentEmails(), reloaded.getAbsentStudentEmails());
+        assertEquals(17, reloaded.getStatistics().getTotalPresent());
+        assertEquals(33, reloaded.getStatistics().getTotalAbsent());
+
+        // Les getters renvoient des copies : les modifier ne touche pas la session
+        reloaded.getPresentStudentEmails().clear();
+        assertEquals(17, reloaded.getPresentStudentEmails().size());
+    }
+
+    private static void assertLists(SessionRoster roster, Session session) {
+        assertEquals(roster.getEnrolled(), session.getEnrolledStudentEmails());
+        assertEquals(roster.getPresent(), session.getPresentStudentEmails());
+        assertEquals(roster.getAbsent(), session.getAbsentStudentEmails());
+
+        Map<String, Object> map = session.toMap();
+        assertEquals(roster.getEnrolled(), map.get("enrolledStudentEmails"));
+        assertEquals(roster.getPresent(), map.get("presentStudentEmails"));
+        assertEquals(roster.getAbsent(), map.get("absentStudentEmails"));
+
+        Session.SessionStatistics statistics = session.getStatistics();
+        assertEquals(roster.getEnrolledCount(), statistics.getTotalEnrolled());
+        assertEquals(roster.getPresentCount(), statistics.getTotalPresent());
+        assertEquals(roster.getAbsentCount(), statistics.getTotalAbsent());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> castList(Object value) {
+        return (List<String>) value;
+    }
+
+    /**
+     * Mesure manuelle (temps machine-dépendants, aucune assertion sur les durées)
+     */
+    @Ignore("Benchmark manuel : retirer @Ignore pour mesurer")
+    @Test
+    public void benchmark_checkInThroughput() {
+        Logger logger = Logger.getLogger(SessionRosterBenchmarkTest.class.getName());
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runRoster(buildEmails(1_000));
+            runArrayLists(buildEmails(1_000));
+        }
+
+        for (int size : CLASS_SIZES) {
+            List<String> emails = buildEmails(size);
+
+            long rosterNanos = runRoster(emails);
+            long listNanos = runArrayLists(emails);
+
+            logger.info(String.format(Locale.ROOT, "Roster %6d students: SessionRoster %8.2f ms | ArrayList %9.2f ms",
+                    size, rosterNanos / 1e6, listNanos / 1e6));
+        }
+    }
+
+    /**
+     * Inscription, pointage de la moitié des étudiants puis fin de session
+     */
+    private static long runRoster(List<String> emails) {
+        long start = System.nanoTime();
+
+        SessionRoster roster = new SessionRoster();
+        for (String email : emails) {
+            roster.enroll(email);
+        }
+        for (int i = 0; i < emails.size(); i += 2) {
+            roster.markPresent(emails.get(i));
+        }
+        List<String> newlyAbsent = roster.markUnmarkedAbsent();
+
+        long elapsed = System.nanoTime() - start;
+        assertEquals(emails.size() / 2, roster.getPresentCount());
+        assertEquals(emails.size() - emails.size() / 2, newlyAbsent.size());
+        return elapsed;
+    }
+
+    /**
+     * Même scénario avec l'ancienne logique de Session (ArrayList + contains/remove)
+     */
+    private static long runArrayLists(List<String> emails) {
+        long start = System.nanoTime();
+
+        List<String> enrolled = new ArrayList<>();
+        List<String> present = new ArrayList<>();
+        List<String> absent = new ArrayList<>();
+
+        for (String email : emails) {
+            if (!enrolled.contains(email)) {
+                enrolled.add(email);
+            }
+        }
+        for (int i = 0; i < emails.size(); i += 2) {
+            String email = emails.get(i);
+            if (enrolled.contains(email)) {
+                if (!present.contains(email)) {
+                    present.add(email);
+                }
+                absent.remove(email);
+            }
+        }
+        for (String email : enrolled) {
+            if (!present.contains(email) && enrolled.contains(email) && !absent.contains(email)) {
+                absent.add(email);
+                present.remove(email);
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        assertEquals(emails.size() / 2, present.size());
+        assertEquals(emails.size() - emails.size() / 2, absent.size());
+        return elapsed;
+    }
+
+    private static List<String> buildEmails(int count) {
+        List<String> emails = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            emails.add("student" + i + "@univ.test");
+        }
+        return emails;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.attendancesystem.services;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * FaceEmbeddingIndex : exactitude de la recherche top-k, et micro-benchmark manuel
+ * (500 à 50k identités) comparé à une recherche naïve : une empreinte par objet, cosinus
+ * recalculé avec les normes, tri de tous les scores.
+ */
+public class FaceEmbeddingIndexBenchmarkTest {
+
+    private static final int[] GALLERY_SIZES = {500, 5_000, 50_000};
+    private static final int DIMENSION = 192; // MobileFaceNet
+    private static final int QUERIES = 50;
+    private static final int TOP_K = 3;
+    private static final int WARMUP_ROUNDS = 3;
+
+    @Test
+    public void index_returnsClosestIdentitiesInOrder() {
+        FaceEmbeddingIndex index = new FaceEmbeddingIndex(3, 1);
+        index.add("a", new float[]{1f, 0f, 0f});
+        index.add("b", new float[]{0f, 2f, 0f}); // normalisé à l'ajout
+        index.add("c", new float[]{1f, 1f, 0f});
+
+        List<FaceEmbeddingIndex.Match> matches = index.topK(new float[]{0f, 5f, 0.1f}, 2);
+        assertEquals(2, matches.size());
+        assertEquals("b", matches.get(0).getId());
+        assertEquals("c", matches.get(1).getId());
+        assertEquals(1f, matches.get(0).getScore(), 0.01f);
+        assertTrue(matches.get(0).getScore() >= matches.get(1).getScore());
+
+        assertEquals(3, index.topK(new float[]{1f, 0f, 0f}, 10).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void index_rejectsWrongDimension() {
+        new FaceEmbeddingIndex(4, 1).add("a", new float[]{1f, 0f});
+    }
+
+    @Test
+    public void index_findsNoisyIdentitiesLikeNaiveSearch() {
+        Random random = new Random(7);
+        float[][] gallery = buildGallery(5_000, random);
+        // Les deux recherches vérifient que l'identité bruitée revient en tête
+        runIndex(gallery, random);
+        runNaive(gallery, random);
+    }
+
+    /**
+     * Mesure manuelle (temps machine-dépendants, aucune assertion sur les durées)
+     */
+    @Ignore("Benchmark manuel : retirer @Ignore pour mesurer")
+    @Test
+    public void benchmark_topKThroughput() {
+        Logger logger = Logger.getLogger(FaceEmbeddingIndexBenchmarkTest.class.getName());
+        Random random = new Random(42);
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            float[][] warmup = buildGallery(5_000, random);
+            runIndex(warmup, random);
+            runNaive(warmup, random);
+        }
+
+        for (int size : GALLERY_SIZES) {
+            float[][] gallery = buildGallery(size, random);
+
+            double indexMs = runIndex(gallery, random);
+            double naiveMs = runNaive(gallery, random);
+
+            logger.info(String.format(Locale.ROOT,
+                    "Gallery %6d identities: FaceEmbeddingIndex %7.3f ms/query | naive %8.3f ms/query",
+                    size, indexMs, naiveMs));
+        }
+    }
+
+    /**
+     * Temps moyen par requête ; chaque requête est une identité bruitée qui doit revenir en tête
+     */
+    private static double runIndex(float[][] gallery, Random random) {
+        FaceEmbeddingIndex index = new FaceEmbeddingIndex(DIMENSION, gallery.length);
+        for (int i = 0; i < gallery.length; i++) {
+            index.add("student" + i, gallery[i]);
+        }
+
+        long elapsed = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            int expected = random.nextInt(gallery.length);
+            float[] query = noisyCopy(gallery[expected], random);
+
+            long start = System.nanoTime();
+            List<FaceEmbeddingIndex.Match> matches = index.topK(query, TOP_K);
+            elapsed += System.nanoTime() - start;
+
+            assertEquals("student" + expected, matches.get(0).getId());
+        }
+        return elapsed / 1e6 / QUERIES;
+    }
+
+    /**
+     * Même recherche sans index : objets séparés, normes recalculées, tri complet
+     */
+    private static double runNaive(float[][] gallery, Random random) {
+        List<float[]> embeddings = new ArrayList<>(gallery.length);
+        List<String> ids = new ArrayList<>(gallery.length);
+        for (int i = 0; i < gallery.length; i++) {
+            embeddings.add(gallery[i].clone());
+            ids.add("student" + i);
+        }
+
+        long elapsed = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            int expected = random.nextInt(gallery.length);
+            float[] query = noisyCopy(gallery[expected], random);
+
+            long start = System.nanoTime();
+            List<Object[]> scored = new ArrayList<>(embeddings.size());
+            for (int i = 0; i < embeddings.size(); i++) {
+                scored.add(new Object[]{ids.get(i), cosine(embeddings.get(i), query)});
+            }
+            scored.sort((a, b) -> Double.compare((Double) b[1], (Double) a[1]));
+            List<Object[]> top = scored.subList(0, TOP_K);
+            elapsed += System.nanoTime() - start;
+
+            assertEquals("student" + expected, top.get(0)[0]);
+        }
+        return elapsed / 1e6 / QUERIES;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    private static float[][] buildGallery(int size, Random random) {
+        float[][] gallery = new float[size][DIMENSION];
+        for (float[] embedding : gallery) {
+            for (int i = 0; i < DIMENSION; i++) {
+                embedding[i] = (float) random.nextGaussian();
+            }
+        }
+        return gallery;
+    }
+
+    private static float[] noisyCopy(float[] embedding, Random random) {
+        float[] copy = new float[embedding.length];
+        for (int i = 0; i < embedding.length; i++) {
+            copy[i] = embedding[i] + (float) random.nextGaussian() * 0.3f;
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.attendancesystem.services;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Format de galerie : conversion float16, relecture mappée et taille sur disque
+ */
+public class FaceGalleryFileTest {
+
+    private static final int DIMENSION = 192; // MobileFaceNet
+
+    @Test
+    public void half_roundTripsEveryFiniteValue() {
+        for (int bits = 0; bits < 0x10000; bits++) {
+            float value = FaceGalleryFile.toFloat((short) bits);
+            if (Float.isNaN(value)) continue;
+            assertEquals("half " + bits, (short) bits, FaceGalleryFile.toHalf(value));
+        }
+    }
+
+    @Test
+    public void half_keepsEmbeddingPrecision() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            float value = (float) random.nextGaussian() * 0.1f;
+            float restored = FaceGalleryFile.toFloat(FaceGalleryFile.toHalf(value));
+            assertEquals(value, restored, Math.abs(value) / 1024f + 1e-7f);
+        }
+        assertTrue(Float.isInfinite(FaceGalleryFile.toFloat(FaceGalleryFile.toHalf(1e6f))));
+        assertEquals(0f, FaceGalleryFile.toFloat(FaceGalleryFile.toHalf(1e-10f)), 0f);
+    }
+
+    @Test
+    public void file_roundTripsEntries() throws Exception {
+        Random random = new Random(42);
+        List<FaceGalleryFile.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            float[] embedding = new float[DIMENSION];
+            for (int k = 0; k < DIMENSION; k++) {
+                embedding[k] = (float) random.nextGaussian();
+            }
+            FaceEmbeddingIndex.normalize(embedding, 0, DIMENSION);
+            entries.add(new FaceGalleryFile.Entry("etudiant" + i + "@école.fr", "https://drive/photo" + i,
+                    random.nextLong(), FaceGalleryFile.toHalf(embedding)));
+        }
+
+        File file = File.createTempFile("gallery", ".bin");
+        try {
+            FaceGalleryFile.write(file, DIMENSION, entries);
+            // En-tête + table + 2 octets par valeur
+            assertTrue(file.length() < entries.size() * (DIMENSION * 2 + 80));
+
+            FaceGalleryFile gallery = FaceGalleryFile.open(file);
+            assertEquals(DIMENSION, gallery.getDimension());
+            assertEquals(entries.size(), gallery.size());
+
+            FaceGalleryFile.Entry expected = entries.get(123);
+            int position = gallery.indexOf(expected.getEmail());
+            assertEquals(123, position);
+            assertEquals(expected.getPhotoUrl(), gallery.getPhotoUrl(position));
+            assertEquals(expected.getPhotoHash(), gallery.getPhotoHash(position));
+            assertTrue(Arrays.equals(expected.getEmbedding(), gallery.getEntry(position).getEmbedding()));
+
+            float[] decoded = gallery.getEmbedding(position, new float[DIMENSION]);
+            assertEquals(1f, FaceEmbeddingIndex.dot(decoded, 0, decoded, DIMENSION), 0.01f);
+            assertEquals(-1, gallery.indexOf("inconnu@école.fr"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_missingFileReturnsNull() throws Exception {
+        assertNull(FaceGalleryFile.open(new File("does-not-exist.bin")));
+    }
+
+    @Test
+    public void contentHash_dependsOnlyOnBytes() throws Exception {
+        byte[] photo = {1, 2, 3, 4, 5};
+        long first = FaceGalleryFile.contentHash(new ByteArrayInputStream(photo));
+        assertEquals(first, FaceGalleryFile.contentHash(new ByteArrayInputStream(photo.clone())));
+        assertNotEquals(first, FaceGalleryFile.contentHash(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 6})));
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.attendancesystem.services;
+
+import com.example.attendancesystem.models.Attendance;
+import com.example.attendancesystem.models.Justification;
+import com.example.attendancesystem.models.Session;
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copie locale : synchronisation complète, fusion delta (bascules de statut, suppressions,
+ * chevauchement de fenêtre), high-water marks, export/import persistant, statistiques
+ * locales et sessions du tableau de bord
+ */
+public class LocalAttendanceStoreTest {
+
+    private static final String STUDENT = "etudiant@univ.test";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void fullSync_createsSortedCopyAndWatermarks() {
+        LocalAttendanceStore store = new LocalAttendanceStore();
+        assertFalse(store.hasCopy(STUDENT));
+
+        Attendance deleted = attendance("a3", "s3", "present", 3 * DAY, 3 * DAY + 20);
+        deleted.setDeleted(true);
+        store.replaceCopy(STUDENT, Arrays.asList(
+                attendance("a1", "s1", "present", DAY, DAY + 10),
+                attendance("a2", "s2", "absent", 2 * DAY, 2 * DAY + 10),
+                deleted), Collections.singletonList(justification("j1", "submitted", 2 * DAY + 5)), 1000);
+
+        assertTrue(store.hasCopy(STUDENT));
+        assertEquals(1000, store.getLastFullSyncAt(STUDENT));
+        // Suppressions logiques ignorées, plus récent en premier
+        assertEquals(Arrays.asList("a2", "a1"), ids(store.getStudentAttendance(STUDENT)));
+        assertEquals(1, store.getSessionAttendance("s2").size());
+        // Le high-water mark couvre aussi les documents supprimés reçus
+        assertEquals(3 * DAY + 20, store.getWatermark(STUDENT, LocalAttendanceStore.ATTENDANCE));
+        assertEquals(2 * DAY + 5, store.getWatermark(STUDENT, LocalAttendanceStore.JUSTIFICATIONS));
+    }
+
+    @Test
+    public void delta_mergesStatusFlipsDeletionsAndNewRecords() {
+        LocalAttendanceStore store = syncedStore();
+
+        Attendance justified = attendance("a2", "s2", "justified", 2 * DAY, 5 * DAY);
+        Attendance removed = attendance("a1", "s1", "present", DAY, 5 * DAY + 1);
+        removed.setDeleted(true);
+        Attendance added = attendance("a4", "s4", "present", 4 * DAY, 5 * DAY + 2);
+        Justification approved = justification("j1", "approved", 5 * DAY);
+
+        assertTrue(store.applyChanges(STUDENT, Arrays.asList(justified, removed, added),
+                Collections.singletonList(approved), 2000));
+
+        assertEquals(Arrays.asList("a4", "a2"), ids(store.getStudentAttendance(STUDENT)));
+        assertEquals("justified", store.getAttendance("a2").getStatus());
+        assertNull(store.getAttendance("a1"));
+        assertTrue(store.getSessionAttendance("s1").isEmpty());
+        assertEquals("approved", store.getStudentJustifications(STUDENT).get(0).getStatus());
+        assertEquals(5 * DAY + 2, store.getWatermark(STUDENT, LocalAttendanceStore.ATTENDANCE));
+        assertEquals(5 * DAY, store.getWatermark(STUDENT, LocalAttendanceStore.JUSTIFICATIONS));
+        assertEquals(2000, store.getLastRefresh(STUDENT));
+    }
+
+    @Test
+    public void delta_ignoresDocumentsAlreadyMerged() {
+        LocalAttendanceStore store = syncedStore();
+        long watermark = store.getWatermark(STUDENT, LocalAttendanceStore.ATTENDANCE);
+
+        // Chevauchement de fenêtre : mêmes versions reçues une seconde fois
+        assertFalse(store.applyChanges(STUDENT,
+                Collections.singletonList(attendance("a2", "s2", "absent", 2 * DAY, 2 * DAY + 10)),
+                Collections.singletonList(justification("j1", "submitted", 2 * DAY + 5)), 3000));
+        // Suppression d'un document inconnu
+        Attendance unknown = attendance("zz", "s9", "present", DAY, DAY);
+        unknown.setDeleted(true);
+        assertFalse(store.applyChanges(STUDENT, Collections.singletonList(unknown),
+                new ArrayList<>(), 3000));
+
+        assertEquals(2, store.getStudentAttendance(STUDENT).size());
+        assertEquals(watermark, store.getWatermark(STUDENT, LocalAttendanceStore.ATTENDANCE));
+    }
+
+    @Test
+    public void delta_withoutCopyIsIgnored() {
+        LocalAttendanceStore store = new LocalAttendanceStore();
+        assertFalse(store.applyChanges(STUDENT,
+                Collections.singletonList(attendance("a1", "s1", "present", DAY, DAY)), new ArrayList<>(), 1));
+        assertFalse(store.putLocalAttendance(attendance("a1", "s1", "present", DAY, DAY)));
+        assertTrue(store.getStudentAttendance(STUDENT).isEmpty());
+    }
+
+    @Test
+    public void localWrite_isReplacedByServerVersion() {
+        LocalAttendanceStore store = syncedStore();
+
+        Attendance local = attendance("a5", "s5", "present", 6 * DAY, 0);
+        local.setLastModifiedAt(null);
+        assertTrue(store.putLocalAttendance(local));
+        assertEquals("a5", store.getStudentAttendance(STUDENT).get(0).getAttendanceId());
+
+        Attendance server = attendance("a5", "s5", "present", 6 * DAY, 6 * DAY + 1);
+        assertTrue(store.applyChanges(STUDENT, Collections.singletonList(server), new ArrayList<>(), 4000));
+        assertSame(server, store.getAttendance("a5"));
+        assertEquals(3, store.getStudentAttendance(STUDENT).size());
+    }
+
+    @Test
+    public void exportImport_keepsDataAndWatermarksTogether() {
+        LocalAttendanceStore store = syncedStore();
+        LocalAttendanceStore.StoredCopy copy = store.exportCopy(STUDENT);
+
+        LocalAttendanceStore reloaded = new LocalAttendanceStore();
+        reloaded.importCopy(STUDENT, copy);
+
+        assertTrue(reloaded.hasCopy(STUDENT));
+        assertEquals(ids(store.getStudentAttendance(STUDENT)), ids(reloaded.getStudentAttendance(STUDENT)));
+        assertEquals(store.getWatermark(STUDENT, LocalAttendanceStore.ATTENDANCE),
+                reloaded.getWatermark(STUDENT, LocalAttendanceStore.ATTENDANCE));
+        assertEquals(store.getLastFullSyncAt(STUDENT), reloaded.getLastFullSyncAt(STUDENT));
+        // Copie relue du disque : à rafraîchir dès la première lecture
+        assertEquals(0, reloaded.getLastRefresh(STUDENT));
+
+        reloaded.clear();
+        assertFalse(reloaded.hasCopy(STUDENT));
+        assertNull(reloaded.exportCopy(STUDENT));
+    }
+
+    @Test
+    public void statistics_followJustifiedFlipsAndWindow() {
+        long now = System.currentTimeMillis();
+        long since = now - 60 * DAY;
+        LocalAttendanceStore store = new LocalAttendanceStore();
+        Attendance old = attendance("a0", "s0", "present", since - 2 * DAY, 1);
+        Attendance math1 = attendance("a1", "s1", "present", now - DAY, 1);
+        Attendance math2 = attendance("a2", "s2", "absent", now - 2 * DAY, 1);
+        math2.setCourseName(math1.getCourseName());
+        Attendance physics = attendance("a3", "s3", "absent", now - 3 * DAY, 1);
+        store.replaceCopy(STUDENT, Arrays.asList(old, math1, math2, physics), new ArrayList<>(), now);
+
+        FirebaseManager.AttendanceStatsDetailed stats = store.computeStatistics(STUDENT, since);
+        assertEquals(3, stats.getTotalSessions());
+        assertEquals(1, stats.getAttendedSessions());
+        assertEquals(2, stats.getAbsentSessions());
+
+        // Justification acceptée : l'absence bascule en justifiée
+        store.applyChanges(STUDENT, Collections.singletonList(
+                attendance("a3", "s3", "justified", now - 3 * DAY, 2)), new ArrayList<>(), now);
+        stats = store.computeStatistics(STUDENT, since);
+        assertEquals(1, stats.getAbsentSessions());
+        assertEquals(1, stats.getJustifiedSessions());
+
+        Map<String, FirebaseManager.AttendanceStatsDetailed> byCourse = store.computeStatisticsByCourse(STUDENT, since);
+        assertEquals(2, byCourse.size());
+        assertEquals(2, byCourse.get(math1.getCourseName()).getTotalSessions());
+        assertEquals(1, byCourse.get("Cours s3").getJustifiedSessions());
+    }
+
+    @Test
+    public void sessions_areValidForScopeAndDay() {
+        LocalAttendanceStore store = new LocalAttendanceStore();
+        List<Session> today = Collections.singletonList(session("s1", 10 * DAY));
+
+        assertNull(store.getTodaySessions(STUDENT, "info|L3", 10 * DAY));
+        assertTrue(store.putTodaySessions(STUDENT, "info|L3", 10 * DAY, today));
+        assertFalse(store.putTodaySessions(STUDENT, "info|L3", 10 * DAY,
+                Collections.singletonList(session("s1", 10 * DAY))));
+        assertEquals(1, store.getTodaySessions(STUDENT, "info|L3", 10 * DAY).size());
+        assertNotNull(store.getSession("s1"));
+        // Autre jour ou autre périmètre : rien à servir
+        assertNull(store.getTodaySessions(STUDENT, "info|L3", 11 * DAY));
+        assertNull(store.getTodaySessions(STUDENT, "math|L3", 10 * DAY));
+
+        assertFalse(store.hasNextSession(STUDENT, "info|L3", 10 * DAY));
+        assertTrue(store.putNextSession(STUDENT, "info|L3", session("s2", 12 * DAY)));
+        assertTrue(store.hasNextSession(STUDENT, "info|L3", 11 * DAY));
+        // Session commencée : à relire
+        assertFalse(store.hasNextSession(STUDENT, "info|L3", 13 * DAY));
+        // Aucune session à venir : réponse connue
+        assertTrue(store.putNextSession(STUDENT, "info|L3", null));
+        assertTrue(store.hasNextSession(STUDENT, "info|L3", 13 * DAY));
+        assertNull(store.getNextSession(STUDENT));
+
+        // Nouveau périmètre : les sessions de l'ancien sont oubliées
+        store.putNextSession(STUDENT, "math|L3", null);
+        assertNull(store.getTodaySessions(STUDENT, "info|L3", 10 * DAY));
+    }
+
+    private static LocalAttendanceStore syncedStore() {
+        LocalAttendanceStore store = new LocalAttendanceStore();
+        store.replaceCopy(STUDENT, Arrays.asList(
+                attendance("a1", "s1", "present", DAY, DAY + 10),
+                attendance("a2", "s2", "absent", 2 * DAY, 2 * DAY + 10)),
+                Collections.singletonList(justification("j1", "submitted", 2 * DAY + 5)), 1000);
+        return store;
+    }
+
+    private static Attendance attendance(String id, String sessionId, String status, long time, long modifiedAt) {
+        Attendance attendance = new Attendance();
+        attendance.setAttendanceId(id);
+        attendance.setStudentEmail(STUDENT);
+        attendance.setSessionId(sessionId);
+        attendance.setCourseName("Cours " + sessionId);
+        attendance.setStatus(status);
+        attendance.setTimestamp(new Timestamp(new Date(time)));
+        attendance.setLastModifiedAt(new Timestamp(new Date(modifiedAt)));
+        return attendance;
+    }
+
+    private static Justification justification(String id, String status, long updatedAt) {
+        Justification justification = new Justification();
+        justification.setJustificationId(id);
+        justification.setStudentEmail(STUDENT);
+        justification.setStatus(status);
+        justification.setSubmittedAt(new Timestamp(new Date(DAY)));
+        justification.setLastUpdatedAt(new Timestamp(new Date(updatedAt)));
+        return justification;
+    }
+
+    private static Session session(String id, long start) {
+        Session session = new Session();
+        session.setSessionId(id);
+        session.setStatus("scheduled");
+        session.setStartTime(new Timestamp(new Date(start)));
+        session.setLastUpdatedAt(new Timestamp(new Date(start - DAY)));
+        return session;
+    }
+
+    private static List<String> ids(List<Attendance> records) {
+        List<String> ids = new ArrayList<>();
+        for (Attendance attendance : records) {
+            ids.add(attendance.getAttendanceId());
+        }
+        return ids;
+    }
+}